@@ -31,10 +31,13 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -311,6 +314,22 @@ public class ExtendedPermissionServiceImpl extends PermissionServiceImpl impleme
         return AccessStatus.DENIED;
     }
 
+    /**
+     * Checks each node through {@link #hasPermission(NodeRef, String)} so that the permission processors are applied to every node of the batch.
+     *
+     * @see org.alfresco.repo.security.permissions.impl.PermissionServiceImpl#hasPermissions(java.util.Collection, java.lang.String)
+     */
+    @Override
+    public Map<NodeRef, AccessStatus> hasPermissions(Collection<NodeRef> nodeRefs, String perm)
+    {
+        Map<NodeRef, AccessStatus> statuses = new HashMap<>(nodeRefs.size() * 2);
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            statuses.put(nodeRef, hasPermission(nodeRef, perm));
+        }
+        return statuses;
+    }
+
     /**
      * @see org.alfresco.repo.security.permissions.impl.PermissionServiceImpl#getReaders(java.lang.Long)
      */
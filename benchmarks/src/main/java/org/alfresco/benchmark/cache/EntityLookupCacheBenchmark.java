@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.alfresco.repo.cache.lookup.EntityLookupCache;
+import org.alfresco.repo.cache.lookup.EntityLookupCache.EntityLookupCallbackDAOAdaptor;
+import org.alfresco.util.Pair;
+
+/**
+ * Microbenchmarks for {@link EntityLookupCache#getByKey(Serializable)} and {@link EntityLookupCache#getByValue(Object)}.
+ * <p>
+ * The entities are held by an in-memory DAO so that only the cache lookups, key wrapping and result creation are measured. When <tt>cacheSize</tt> is smaller than <tt>entityCount</tt> the benchmark includes the miss and re-population path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class EntityLookupCacheBenchmark
+{
+    @Param({"10000"})
+    public int entityCount;
+
+    @Param({"20000", "2000"})
+    public int cacheSize;
+
+    private EntityLookupCache<Long, String, String> lookupCache;
+    private String[] values;
+
+    @State(Scope.Thread)
+    public static class Cursor
+    {
+        int next;
+
+        int next(int max)
+        {
+            int i = next++;
+            if (next >= max)
+            {
+                next = 0;
+            }
+            return i;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        values = new String[entityCount];
+        Map<Long, String> entities = new HashMap<>(entityCount * 2);
+        for (int i = 0; i < entityCount; i++)
+        {
+            values[i] = "{http://www.alfresco.org/model/benchmark/1.0}value" + i;
+            entities.put((long) i, values[i]);
+        }
+        DefaultSimpleCache<Serializable, Object> cache = new DefaultSimpleCache<>(cacheSize, "benchmark.entityLookupCache");
+        lookupCache = new EntityLookupCache<>(cache, new InMemoryEntityDAO(entities));
+
+        // Warm up the cache
+        for (int i = 0; i < entityCount; i++)
+        {
+            lookupCache.getByKey((long) i);
+        }
+    }
+
+    @Benchmark
+    public Pair<Long, String> getByKey(Cursor cursor)
+    {
+        return lookupCache.getByKey((long) cursor.next(entityCount));
+    }
+
+    @Benchmark
+    public Pair<Long, String> getByValue(Cursor cursor)
+    {
+        return lookupCache.getByValue(values[cursor.next(entityCount)]);
+    }
+
+    /**
+     * Simple map-backed DAO so that no storage costs are included
+     */
+    private static class InMemoryEntityDAO extends EntityLookupCallbackDAOAdaptor<Long, String, String>
+    {
+        private final Map<Long, String> entitiesById;
+        private final Map<String, Long> idsByValue;
+
+        private InMemoryEntityDAO(Map<Long, String> entities)
+        {
+            this.entitiesById = entities;
+            this.idsByValue = new HashMap<>(entities.size() * 2);
+            for (Map.Entry<Long, String> entry : entities.entrySet())
+            {
+                idsByValue.put(entry.getValue(), entry.getKey());
+            }
+        }
+
+        @Override
+        public String getValueKey(String value)
+        {
+            return value;
+        }
+
+        @Override
+        public Pair<Long, String> findByKey(Long key)
+        {
+            String value = entitiesById.get(key);
+            return value == null ? null : new Pair<>(key, value);
+        }
+
+        @Override
+        public List<Pair<Long, String>> findByKeys(List<Long> keys)
+        {
+            List<Pair<Long, String>> results = new ArrayList<>(keys.size());
+            for (Long key : keys)
+            {
+                Pair<Long, String> pair = findByKey(key);
+                if (pair != null)
+                {
+                    results.add(pair);
+                }
+            }
+            return results;
+        }
+
+        @Override
+        public Pair<Long, String> findByValue(String value)
+        {
+            Long id = idsByValue.get(value);
+            return id == null ? null : new Pair<>(id, value);
+        }
+
+        @Override
+        public List<Pair<Long, String>> findByValues(List<String> values)
+        {
+            List<Pair<Long, String>> results = new ArrayList<>(values.size());
+            for (String value : values)
+            {
+                Pair<Long, String> pair = findByValue(value);
+                if (pair != null)
+                {
+                    results.add(pair);
+                }
+            }
+            return results;
+        }
+
+        @Override
+        public Pair<Long, String> createValue(String value)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
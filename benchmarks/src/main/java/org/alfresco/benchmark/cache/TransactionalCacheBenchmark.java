@@ -0,0 +1,214 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.TransactionStatus;
+
+import org.alfresco.benchmark.util.BenchmarkTransactionManager;
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.alfresco.repo.cache.TransactionalCache;
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+
+/**
+ * Microbenchmarks for {@link TransactionalCache#get(Serializable)} and {@link TransactionalCache#put(Serializable, Object)}.
+ * <p>
+ * Each transactional invocation models a short repository transaction: a transaction is started, <tt>opsPerTxn</tt> cache operations are made against a warm shared cache and the transaction is committed, so that the cost of creating and flushing the transaction-local buckets is included in the score.
+ * <p>
+ * Run with <tt>-prof gc</tt> to check the allocation rate (<tt>gc.alloc.rate.norm</tt> is the number of bytes allocated per invocation). {@link #getTxnLocalHit(Blackhole)} keeps one transaction open for the whole iteration, so it measures the transaction-local hit path on its own: it should report no allocation at all.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class TransactionalCacheBenchmark
+{
+    @Param({"10000"})
+    public int keyCount;
+
+    @Param({"50"})
+    public int opsPerTxn;
+
+    @Param({"true", "false"})
+    public boolean readOnly;
+
+    private BenchmarkTransactionManager transactionManager;
+    private TransactionalCache<Long, String> cache;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        transactionManager = new BenchmarkTransactionManager();
+
+        DefaultSimpleCache<Serializable, ValueHolder<String>> sharedCache = new DefaultSimpleCache<>(keyCount * 2, "benchmark.sharedCache");
+        cache = new TransactionalCache<>();
+        cache.setName("benchmark.transactionalCache");
+        cache.setSharedCache(sharedCache);
+        cache.setMaxCacheSize(opsPerTxn * 2);
+        cache.setMutable(true);
+        cache.afterPropertiesSet();
+
+        // Warm the shared cache outside of a transaction
+        for (long i = 0; i < keyCount; i++)
+        {
+            cache.put(i, "value-" + i);
+        }
+    }
+
+    private long nextKey()
+    {
+        long key = next++;
+        if (next >= keyCount)
+        {
+            next = 0;
+        }
+        return key;
+    }
+
+    @Benchmark
+    public void getNoTxn(Blackhole bh)
+    {
+        for (int i = 0; i < opsPerTxn; i++)
+        {
+            bh.consume(cache.get(nextKey()));
+        }
+    }
+
+    @Benchmark
+    public void getInTxn(Blackhole bh)
+    {
+        TransactionStatus txn = transactionManager.begin(readOnly);
+        try
+        {
+            for (int i = 0; i < opsPerTxn; i++)
+            {
+                bh.consume(cache.get(nextKey()));
+            }
+        }
+        finally
+        {
+            transactionManager.commit(txn);
+        }
+    }
+
+    /**
+     * Repeated reads of the same keys within one transaction, i.e. the transaction-local hit path.
+     */
+    @Benchmark
+    public void getRepeatedInTxn(Blackhole bh)
+    {
+        TransactionStatus txn = transactionManager.begin(readOnly);
+        try
+        {
+            long base = nextKey();
+            for (int pass = 0; pass < 4; pass++)
+            {
+                for (int i = 0; i < opsPerTxn; i++)
+                {
+                    bh.consume(cache.get((base + i) % keyCount));
+                }
+            }
+        }
+        finally
+        {
+            transactionManager.commit(txn);
+        }
+    }
+
+    /**
+     * A transaction that stays open for a whole iteration, with <tt>opsPerTxn</tt> keys already read into it
+     */
+    @State(Scope.Thread)
+    public static class OpenTransaction
+    {
+        private TransactionStatus txn;
+
+        @Setup(Level.Iteration)
+        public void begin(TransactionalCacheBenchmark benchmark)
+        {
+            txn = benchmark.transactionManager.begin(benchmark.readOnly);
+            for (long i = 0; i < benchmark.opsPerTxn; i++)
+            {
+                benchmark.cache.get(i);
+            }
+        }
+
+        @TearDown(Level.Iteration)
+        public void commit(TransactionalCacheBenchmark benchmark)
+        {
+            benchmark.transactionManager.commit(txn);
+        }
+    }
+
+    /**
+     * Reads of keys that the open transaction has already read, i.e. only the transaction-local hit path
+     */
+    @Benchmark
+    public void getTxnLocalHit(OpenTransaction txn, Blackhole bh)
+    {
+        for (long i = 0; i < opsPerTxn; i++)
+        {
+            bh.consume(cache.get(i));
+        }
+    }
+
+    @Benchmark
+    public void putInTxn()
+    {
+        TransactionStatus txn = transactionManager.begin(false);
+        try
+        {
+            for (int i = 0; i < opsPerTxn; i++)
+            {
+                long key = nextKey();
+                cache.put(key, "value-" + key);
+            }
+        }
+        finally
+        {
+            transactionManager.commit(txn);
+        }
+    }
+}
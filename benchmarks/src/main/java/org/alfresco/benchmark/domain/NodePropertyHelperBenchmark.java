@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.domain;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.alfresco.benchmark.util.RepositoryState;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.repo.domain.locale.LocaleDAO;
+import org.alfresco.repo.domain.node.NodePropertyHelper;
+import org.alfresco.repo.domain.node.NodePropertyKey;
+import org.alfresco.repo.domain.node.NodePropertyValue;
+import org.alfresco.repo.domain.qname.QNameDAO;
+import org.alfresco.service.cmr.dictionary.DictionaryService;
+import org.alfresco.service.namespace.QName;
+
+/**
+ * Benchmark for the {@link NodePropertyHelper} conversions between public and persisted property maps.
+ * <p>
+ * The helper is wired with the real dictionary and DAOs; all QNames and locales are resolved before measurement so that only cache-hit conversions are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class NodePropertyHelperBenchmark
+{
+    private NodePropertyHelper helper;
+    private RepositoryState repository;
+    private Map<QName, Serializable> publicProperties;
+    private Map<NodePropertyKey, NodePropertyValue> persistentProperties;
+
+    @Setup(Level.Trial)
+    public void setUp(RepositoryState repository)
+    {
+        this.repository = repository;
+        helper = new NodePropertyHelper(
+                (DictionaryService) repository.ctx.getBean("dictionaryService"),
+                (QNameDAO) repository.ctx.getBean("qnameDAO"),
+                (LocaleDAO) repository.ctx.getBean("localeDAO"),
+                (ContentDataDAO) repository.ctx.getBean("contentDataDAO"));
+        publicProperties = RepositoryState.createProperties("benchmark.txt");
+        persistentProperties = repository.txnHelper.doInTransaction(
+                () -> helper.convertToPersistentProperties(publicProperties), false, true);
+    }
+
+    @Benchmark
+    public Map<NodePropertyKey, NodePropertyValue> convertToPersistentProperties()
+    {
+        return repository.txnHelper.doInTransaction(
+                () -> helper.convertToPersistentProperties(publicProperties), true, false);
+    }
+
+    @Benchmark
+    public Map<QName, Serializable> convertToPublicProperties()
+    {
+        return repository.txnHelper.doInTransaction(
+                () -> helper.convertToPublicProperties(persistentProperties), true, false);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.domain;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.alfresco.benchmark.util.RepositoryState;
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.GUID;
+
+/**
+ * Macro benchmarks for the node DAO read and write paths that dominate folder listings and uploads.
+ * <p>
+ * These run against the database configured for the repository, so they include the MyBatis, JDBC and cache costs. Compare results only between runs against the same database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class NodeServiceBenchmark
+{
+    private NodeService nodeService;
+
+    @Setup(Level.Trial)
+    public void setUp(RepositoryState repository)
+    {
+        nodeService = (NodeService) repository.ctx.getBean("nodeService");
+    }
+
+    /**
+     * List the folder and read the properties and aspects of every child, as a folder browse does.
+     */
+    @Benchmark
+    public void listChildrenWithProperties(RepositoryState repository, Blackhole bh)
+    {
+        AuthenticationUtil.runAsSystem(() -> repository.txnHelper.doInTransaction(() -> {
+            for (ChildAssociationRef assocRef : nodeService.getChildAssocs(repository.folderNodeRef))
+            {
+                NodeRef childNodeRef = assocRef.getChildRef();
+                bh.consume(nodeService.getProperties(childNodeRef));
+                bh.consume(nodeService.getAspects(childNodeRef));
+            }
+            return null;
+        }, true, false));
+    }
+
+    @Benchmark
+    public NodeRef createNode(RepositoryState repository)
+    {
+        return AuthenticationUtil.runAsSystem(() -> repository.txnHelper.doInTransaction(() -> {
+            String name = GUID.generate() + ".txt";
+            return nodeService.createNode(
+                    repository.folderNodeRef,
+                    ContentModel.ASSOC_CONTAINS,
+                    QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, name),
+                    ContentModel.TYPE_CONTENT,
+                    RepositoryState.createProperties(name)).getChildRef();
+        }, false, true));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.search;
+
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.runtime.ANTLRStringStream;
+import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.tree.CommonTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.alfresco.repo.search.impl.parsers.CMISLexer;
+import org.alfresco.repo.search.impl.parsers.CMISParser;
+import org.alfresco.repo.search.impl.parsers.FTSLexer;
+import org.alfresco.repo.search.impl.parsers.FTSParser;
+
+/**
+ * Microbenchmarks for the ANTLR grammars behind {@link FTSParser} and {@link CMISParser}.
+ * <p>
+ * Only lexing and tree construction are measured; building the query model needs a dictionary and is covered by the macro benchmarks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryParserBenchmark
+{
+    @Param({
+            "simple",
+            "complex"})
+    public String shape;
+
+    private static final String FTS_SIMPLE = "cm:name:\"budget*\" AND TYPE:\"cm:content\"";
+    private static final String FTS_COMPLEX = "(cm:name:(report OR summary) AND cm:title:\"quarterly results\"~3)"
+            + " OR (TEXT:alfresco^2 AND -ASPECT:\"cm:workingcopy\" AND cm:modified:[2020-01-01 TO NOW])"
+            + " OR PATH:\"/app:company_home/st:sites/cm:marketing//*\" AND =cm:creator:admin";
+
+    private static final String CMIS_SIMPLE = "SELECT * FROM cmis:document WHERE cmis:name LIKE 'budget%'";
+    private static final String CMIS_COMPLEX = "SELECT d.cmis:objectId, d.cmis:name, t.cm:title FROM cmis:document AS d"
+            + " JOIN cm:titled AS t ON d.cmis:objectId = t.cmis:objectId"
+            + " WHERE IN_TREE(d, 'workspace://SpacesStore/0d3b26ff-c4c1-4680-8622-8608ea7ab4b2')"
+            + " AND CONTAINS(d, 'quarterly AND results') AND d.cmis:lastModificationDate > TIMESTAMP '2020-01-01T00:00:00.000Z'"
+            + " AND t.cm:title IS NOT NULL ORDER BY d.cmis:name ASC";
+
+    private String ftsQuery()
+    {
+        return "simple".equals(shape) ? FTS_SIMPLE : FTS_COMPLEX;
+    }
+
+    private String cmisQuery()
+    {
+        return "simple".equals(shape) ? CMIS_SIMPLE : CMIS_COMPLEX;
+    }
+
+    @Benchmark
+    public CommonTree parseFTS() throws RecognitionException
+    {
+        FTSLexer lexer = new FTSLexer(new ANTLRStringStream(ftsQuery()));
+        FTSParser parser = new FTSParser(new CommonTokenStream(lexer));
+        parser.setMode(FTSParser.Mode.DEFAULT_DISJUNCTION);
+        return (CommonTree) parser.ftsQuery().getTree();
+    }
+
+    @Benchmark
+    public CommonTree parseCMIS() throws RecognitionException
+    {
+        CMISLexer lexer = new CMISLexer(new ANTLRStringStream(cmisQuery()));
+        CMISParser parser = new CMISParser(new CommonTokenStream(lexer));
+        parser.setStrict(false);
+        return (CommonTree) parser.query().getTree();
+    }
+}
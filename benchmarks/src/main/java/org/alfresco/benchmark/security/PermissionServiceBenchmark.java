@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.security;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.alfresco.benchmark.util.RepositoryState;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.security.permissions.impl.PermissionServiceImpl;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.security.PermissionService;
+
+/**
+ * Macro benchmark for {@link PermissionServiceImpl#hasPermission(NodeRef, String)} as called when filtering a folder listing.
+ * <p>
+ * Each invocation checks <tt>Read</tt> for every child of the benchmark folder as a non-admin user within a single read-only transaction, i.e. the same pattern as the after-invocation result filtering.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PermissionServiceBenchmark
+{
+    private PermissionService permissionService;
+
+    @Setup(Level.Trial)
+    public void setUp(RepositoryState repository)
+    {
+        permissionService = (PermissionService) repository.ctx.getBean("permissionServiceImpl");
+    }
+
+    @Benchmark
+    public void hasReadPermission(RepositoryState repository, Blackhole bh)
+    {
+        final List<NodeRef> nodeRefs = repository.childNodeRefs;
+        AuthenticationUtil.runAs(() -> repository.txnHelper.doInTransaction(() -> {
+            for (NodeRef nodeRef : nodeRefs)
+            {
+                bh.consume(permissionService.hasPermission(nodeRef, PermissionService.READ));
+            }
+            return null;
+        }, true, false), RepositoryState.BENCHMARK_USER);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.util;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+/**
+ * A resource-less transaction manager that drives the Spring transaction synchronization lifecycle without touching a database.
+ * <p>
+ * Microbenchmarks use it to exercise transaction-aware components such as the <tt>TransactionalCache</tt> exactly as they are used in the repository, including the commit-time listener callbacks, but with none of the JDBC costs.
+ */
+public class BenchmarkTransactionManager extends AbstractPlatformTransactionManager
+{
+    private static final long serialVersionUID = 1L;
+
+    private final Object txn = new Object();
+
+    public BenchmarkTransactionManager()
+    {
+        setTransactionSynchronization(SYNCHRONIZATION_ALWAYS);
+    }
+
+    /**
+     * Start a new transaction bound to the current thread
+     *
+     * @param readOnly
+     *            <tt>true</tt> to flag the transaction as read-only
+     * @return the status to pass to {@link #commit(TransactionStatus)}
+     */
+    public TransactionStatus begin(boolean readOnly)
+    {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        definition.setReadOnly(readOnly);
+        return getTransaction(definition);
+    }
+
+    @Override
+    protected Object doGetTransaction()
+    {
+        return txn;
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition)
+    {}
+
+    @Override
+    protected Object doSuspend(Object transaction)
+    {
+        return null;
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources)
+    {}
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status)
+    {}
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status)
+    {}
+}
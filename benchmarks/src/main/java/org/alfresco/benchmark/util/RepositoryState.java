@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ApplicationContext;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.service.ServiceRegistry;
+import org.alfresco.service.cmr.repository.MLText;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.cmr.security.PermissionService;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.ApplicationContextHelper;
+import org.alfresco.util.GUID;
+
+/**
+ * Shared state for the macro benchmarks: a full repository application context and a folder of content nodes.
+ * <p>
+ * The database is configured exactly as for the repository integration tests, i.e. using the <tt>db.*</tt> system properties (or <tt>alfresco-global.properties</tt> on the classpath), so the benchmarks can be pointed at the same PostgreSQL instance that the build uses for tests.
+ */
+@State(Scope.Benchmark)
+public class RepositoryState
+{
+    public static final String BENCHMARK_USER = "benchmark.user";
+
+    @Param({"1000"})
+    public int childCount;
+
+    public ApplicationContext ctx;
+    public ServiceRegistry serviceRegistry;
+    public RetryingTransactionHelper txnHelper;
+    public StoreRef storeRef;
+    public NodeRef folderNodeRef;
+    public List<NodeRef> childNodeRefs;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        ctx = ApplicationContextHelper.getApplicationContext();
+        serviceRegistry = (ServiceRegistry) ctx.getBean(ServiceRegistry.SERVICE_REGISTRY);
+        txnHelper = serviceRegistry.getRetryingTransactionHelper();
+
+        AuthenticationUtil.runAsSystem(() -> txnHelper.doInTransaction(() -> {
+            NodeService nodeService = serviceRegistry.getNodeService();
+            storeRef = nodeService.createStore(StoreRef.PROTOCOL_WORKSPACE, "Benchmark-" + GUID.generate());
+            NodeRef rootNodeRef = nodeService.getRootNode(storeRef);
+            folderNodeRef = nodeService.createNode(
+                    rootNodeRef,
+                    ContentModel.ASSOC_CHILDREN,
+                    QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, "benchmark"),
+                    ContentModel.TYPE_FOLDER,
+                    Map.of(ContentModel.PROP_NAME, "benchmark")).getChildRef();
+
+            childNodeRefs = new ArrayList<>(childCount);
+            for (int i = 0; i < childCount; i++)
+            {
+                String name = "doc-" + i + ".txt";
+                childNodeRefs.add(nodeService.createNode(
+                        folderNodeRef,
+                        ContentModel.ASSOC_CONTAINS,
+                        QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, name),
+                        ContentModel.TYPE_CONTENT,
+                        createProperties(name)).getChildRef());
+            }
+
+            if (!serviceRegistry.getPersonService().personExists(BENCHMARK_USER))
+            {
+                serviceRegistry.getPersonService().createPerson(Map.of(ContentModel.PROP_USERNAME, BENCHMARK_USER));
+            }
+            serviceRegistry.getPermissionService().setPermission(folderNodeRef, BENCHMARK_USER, PermissionService.READ, true);
+            return null;
+        }, false, true));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        AuthenticationUtil.runAsSystem(() -> txnHelper.doInTransaction(() -> {
+            serviceRegistry.getNodeService().deleteStore(storeRef);
+            return null;
+        }, false, true));
+        ApplicationContextHelper.closeApplicationContext();
+    }
+
+    /**
+     * @return a property map typical of a document: a mix of text, multilingual, date, boolean and numeric values
+     */
+    public static Map<QName, Serializable> createProperties(String name)
+    {
+        MLText title = new MLText(Locale.ENGLISH, "Title of " + name);
+        title.addValue(Locale.FRENCH, "Titre de " + name);
+
+        Map<QName, Serializable> properties = new HashMap<>(17);
+        properties.put(ContentModel.PROP_NAME, name);
+        properties.put(ContentModel.PROP_TITLE, title);
+        properties.put(ContentModel.PROP_DESCRIPTION, "Description of " + name);
+        properties.put(ContentModel.PROP_AUTHOR, "benchmark");
+        properties.put(ContentModel.PROP_LOCALE, Locale.ENGLISH);
+        properties.put(ContentModel.PROP_AUTO_VERSION, Boolean.TRUE);
+        properties.put(ContentModel.PROP_SIZE_CURRENT, Long.valueOf(1024L));
+        properties.put(ContentModel.PROP_EXPIRY_DATE, new Date());
+        return properties;
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (C) 2005-2012 Alfresco Software Limited.
+ * Copyright (C) 2005-2026 Alfresco Software Limited.
  *
  * This file is part of Alfresco
  *
@@ -18,6 +18,8 @@
  */
 package org.alfresco.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -26,24 +28,46 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Generic bridge table support with optional reference counting to allow multiple membership for an object via several relationships.
+ * <p>
+ * Each object is given a dense int id and the ancestor and descendant closures are held as primitive id to count tables, one per depth. The table is safe for concurrent readers while links are added and removed.
  * 
  * @author Andy
  */
 public class BridgeTable<T>
 {
-    HashMap<T, HashMap<Integer, HashMap<T, Counter>>> descendants = new HashMap<T, HashMap<Integer, HashMap<T, Counter>>>();
+    private final HashMap<T, Integer> ids = new HashMap<T, Integer>();
 
-    HashMap<T, HashMap<Integer, HashMap<T, Counter>>> ancestors = new HashMap<T, HashMap<Integer, HashMap<T, Counter>>>();
+    private final ArrayList<T> objects = new ArrayList<T>();
 
-    ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+    /** The descendants of each object by id, or null if the object has never been a parent */
+    private final ArrayList<Closure> descendants = new ArrayList<Closure>();
 
+    /** The ancestors of each object by id, or null if the object has never been a child */
+    private final ArrayList<Closure> ancestors = new ArrayList<Closure>();
+
+    private int ancestorsSize = 0;
+
+    private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+
+    /**
+     * Add a link
+     * 
+     * @throws IllegalArgumentException
+     *             if the link would make a cycle
+     */
     public void addLink(T parent, T child)
     {
         readWriteLock.writeLock().lock();
         try
         {
-            addDescendants(parent, child);
-            addAncestors(parent, child);
+            int parentId = getOrCreateId(parent);
+            int childId = getOrCreateId(child);
+            if (parentId == childId || contains(descendants, childId, parentId))
+            {
+                throw new IllegalArgumentException("A link from '" + parent + "' to '" + child + "' would make a cycle");
+            }
+            addDescendants(parentId, childId);
+            addAncestors(parentId, childId);
         }
         finally
         {
@@ -70,8 +94,14 @@ public class BridgeTable<T>
         readWriteLock.writeLock().lock();
         try
         {
-            removeDescendants(parent, child);
-            removeAncestors(parent, child);
+            Integer parentId = ids.get(parent);
+            Integer childId = ids.get(child);
+            if (parentId == null || childId == null)
+            {
+                return;
+            }
+            removeDescendants(parentId, childId);
+            removeAncestors(parentId, childId);
         }
         finally
         {
@@ -93,6 +123,30 @@ public class BridgeTable<T>
         }
     }
 
+    /**
+     * @return true if the parent has a direct link to the child
+     */
+    public boolean hasLink(T parent, T child)
+    {
+        readWriteLock.readLock().lock();
+        try
+        {
+            Integer parentId = ids.get(parent);
+            Integer childId = ids.get(child);
+            if (parentId == null || childId == null)
+            {
+                return false;
+            }
+            Closure closure = get(descendants, parentId);
+            IntCounts direct = (closure == null) ? null : closure.get(1);
+            return (direct != null) && direct.contains(childId);
+        }
+        finally
+        {
+            readWriteLock.readLock().unlock();
+        }
+    }
+
     public HashSet<T> getDescendants(T node)
     {
         return getDescendants(node, 1, Integer.MAX_VALUE);
@@ -104,357 +158,496 @@ public class BridgeTable<T>
     }
 
     public HashSet<T> getDescendants(T node, int start, int end)
+    {
+        return getRelated(descendants, node, start, end);
+    }
+
+    public HashSet<T> getAncestors(T node)
+    {
+        return getAncestors(node, 1, Integer.MAX_VALUE);
+    }
+
+    public HashSet<T> getAncestors(T node, int position)
+    {
+        return getAncestors(node, position, position);
+    }
+
+    public HashSet<T> getAncestors(T node, int start, int end)
+    {
+        return getRelated(ancestors, node, start, end);
+    }
+
+    private HashSet<T> getRelated(ArrayList<Closure> closures, T node, int start, int end)
     {
         HashSet<T> answer = new HashSet<T>();
-        HashMap<Integer, HashMap<T, Counter>> found = descendants.get(node);
-        if (found != null)
+        readWriteLock.readLock().lock();
+        try
         {
-            for (Integer key : found.keySet())
+            Integer id = ids.get(node);
+            Closure found = (id == null) ? null : get(closures, id);
+            if (found != null)
             {
-                if ((key.intValue() >= start) && (key.intValue() <= end))
+                int last = Math.min(end, found.maxDepth());
+                for (int depth = Math.max(start, 1); depth <= last; depth++)
                 {
-                    HashMap<T, Counter> asd = found.get(key);
-                    answer.addAll(asd.keySet());
+                    IntCounts atDepth = found.get(depth);
+                    if (atDepth != null)
+                    {
+                        for (int i = 0; i < atDepth.keys.length; i++)
+                        {
+                            if (atDepth.keys[i] >= 0)
+                            {
+                                answer.add(objects.get(atDepth.keys[i]));
+                            }
+                        }
+                    }
                 }
             }
         }
+        finally
+        {
+            readWriteLock.readLock().unlock();
+        }
         return answer;
     }
 
-    public HashSet<T> getAncestors(T node)
+    private int getOrCreateId(T object)
     {
-        return getAncestors(node, 1, Integer.MAX_VALUE);
+        Integer id = ids.get(object);
+        if (id == null)
+        {
+            id = objects.size();
+            ids.put(object, id);
+            objects.add(object);
+            descendants.add(null);
+            ancestors.add(null);
+        }
+        return id;
     }
 
-    public HashSet<T> getAncestors(T node, int position)
+    private static Closure get(ArrayList<Closure> closures, int id)
     {
-        return getAncestors(node, position, position);
+        return closures.get(id);
     }
 
-    public HashSet<T> getAncestors(T node, int start, int end)
+    private static boolean contains(ArrayList<Closure> closures, int id, int related)
     {
-        HashSet<T> answer = new HashSet<T>();
-        HashMap<Integer, HashMap<T, Counter>> found = ancestors.get(node);
-        if (found != null)
+        Closure closure = closures.get(id);
+        if (closure != null)
         {
-            for (Integer key : found.keySet())
+            for (int depth = 1; depth <= closure.maxDepth(); depth++)
             {
-                if ((key.intValue() >= start) && (key.intValue() <= end))
+                IntCounts atDepth = closure.get(depth);
+                if (atDepth != null && atDepth.contains(related))
                 {
-                    HashMap<T, Counter> asd = found.get(key);
-                    answer.addAll(asd.keySet());
+                    return true;
                 }
             }
         }
-        return answer;
+        return false;
     }
 
-    /**
-     * @param parent
-     *            T
-     * @param child
-     *            T
-     */
-    private void addDescendants(T parent, T child)
+    private void addDescendants(int parent, int child)
     {
-        HashMap<Integer, HashMap<T, Counter>> parentsDescendants = descendants.get(parent);
+        Closure parentsDescendants = descendants.get(parent);
         if (parentsDescendants == null)
         {
-            parentsDescendants = new HashMap<Integer, HashMap<T, Counter>>();
-            descendants.put(parent, parentsDescendants);
+            parentsDescendants = new Closure();
+            descendants.set(parent, parentsDescendants);
         }
 
-        HashMap<Integer, HashMap<T, Counter>> childDescendantsToAdd = descendants.get(child);
+        Closure childDescendantsToAdd = descendants.get(child);
 
         // add all the childs children to the parents descendants
 
-        add(childDescendantsToAdd, Integer.valueOf(0), parentsDescendants, child);
+        add(childDescendantsToAdd, 0, parentsDescendants, child);
 
         // add childs descendants to all parents ancestors at the correct depth
 
-        HashMap<Integer, HashMap<T, Counter>> ancestorsToFixUp = ancestors.get(parent);
-
+        Closure ancestorsToFixUp = ancestors.get(parent);
         if (ancestorsToFixUp != null)
         {
-            for (Integer ancestorPosition : ancestorsToFixUp.keySet())
+            for (int ancestorPosition = 1; ancestorPosition <= ancestorsToFixUp.maxDepth(); ancestorPosition++)
             {
-                HashMap<T, Counter> ancestorsToFixUpAtPosition = ancestorsToFixUp.get(ancestorPosition);
-                for (T ancestorToFixUpAtPosition : ancestorsToFixUpAtPosition.keySet())
+                IntCounts ancestorsToFixUpAtPosition = ancestorsToFixUp.get(ancestorPosition);
+                if (ancestorsToFixUpAtPosition == null)
                 {
-                    HashMap<Integer, HashMap<T, Counter>> ancestorDescendants = descendants.get(ancestorToFixUpAtPosition);
-                    add(childDescendantsToAdd, ancestorPosition, ancestorDescendants, child);
+                    continue;
+                }
+                for (int i = 0; i < ancestorsToFixUpAtPosition.keys.length; i++)
+                {
+                    int ancestorToFixUpAtPosition = ancestorsToFixUpAtPosition.keys[i];
+                    if (ancestorToFixUpAtPosition >= 0)
+                    {
+                        add(childDescendantsToAdd, ancestorPosition, descendants.get(ancestorToFixUpAtPosition), child);
+                    }
                 }
             }
         }
     }
 
-    /**
-     * @param parent
-     *            T
-     * @param child
-     *            T
-     */
-    private void removeDescendants(T parent, T child)
+    private void removeDescendants(int parent, int child)
     {
-        HashMap<Integer, HashMap<T, Counter>> parentsDescendants = descendants.get(parent);
+        Closure parentsDescendants = descendants.get(parent);
         if (parentsDescendants == null)
         {
             return;
         }
 
-        HashMap<Integer, HashMap<T, Counter>> childDescendantsToRemove = descendants.get(child);
+        Closure childDescendantsToRemove = descendants.get(child);
 
-        // add all the childs children to the parents descendants
-
-        remove(childDescendantsToRemove, Integer.valueOf(0), parentsDescendants, child);
+        // remove all the childs children from the parents descendants
 
-        // add childs descendants to all parents ancestors at the correct depth
+        remove(childDescendantsToRemove, 0, parentsDescendants, child);
 
-        HashMap<Integer, HashMap<T, Counter>> ancestorsToFixUp = ancestors.get(parent);
+        // remove childs descendants from all parents ancestors at the correct depth
 
+        Closure ancestorsToFixUp = ancestors.get(parent);
         if (ancestorsToFixUp != null)
         {
-            for (Integer ancestorPosition : ancestorsToFixUp.keySet())
+            for (int ancestorPosition = 1; ancestorPosition <= ancestorsToFixUp.maxDepth(); ancestorPosition++)
             {
-                HashMap<T, Counter> ancestorsToFixUpAtPosition = ancestorsToFixUp.get(ancestorPosition);
-                for (T ancestorToFixUpAtPosition : ancestorsToFixUpAtPosition.keySet())
+                IntCounts ancestorsToFixUpAtPosition = ancestorsToFixUp.get(ancestorPosition);
+                if (ancestorsToFixUpAtPosition == null)
                 {
-                    HashMap<Integer, HashMap<T, Counter>> ancestorDescendants = descendants.get(ancestorToFixUpAtPosition);
-                    remove(childDescendantsToRemove, ancestorPosition, ancestorDescendants, child);
+                    continue;
+                }
+                for (int i = 0; i < ancestorsToFixUpAtPosition.keys.length; i++)
+                {
+                    int ancestorToFixUpAtPosition = ancestorsToFixUpAtPosition.keys[i];
+                    if (ancestorToFixUpAtPosition >= 0)
+                    {
+                        remove(childDescendantsToRemove, ancestorPosition, descendants.get(ancestorToFixUpAtPosition), child);
+                    }
                 }
             }
         }
     }
 
-    /**
-     * @param parent
-     *            T
-     * @param child
-     *            T
-     */
-    private void removeAncestors(T parent, T child)
+    private void addAncestors(int parent, int child)
     {
-        HashMap<Integer, HashMap<T, Counter>> childsAncestors = ancestors.get(child);
+        Closure childsAncestors = ancestors.get(child);
         if (childsAncestors == null)
         {
-            return;
+            childsAncestors = new Closure();
+            ancestors.set(child, childsAncestors);
+            ancestorsSize++;
         }
 
-        HashMap<Integer, HashMap<T, Counter>> parentAncestorsToRemove = ancestors.get(parent);
-
-        // add all the childs children to the parents descendants
+        Closure parentAncestorsToAdd = ancestors.get(parent);
 
-        remove(parentAncestorsToRemove, Integer.valueOf(0), childsAncestors, parent);
+        // add all the parents ancestors to the childs ancestors
 
-        // add childs descendants to all parents ancestors at the correct depth
+        add(parentAncestorsToAdd, 0, childsAncestors, parent);
 
-        HashMap<Integer, HashMap<T, Counter>> decendantsToFixUp = descendants.get(child);
+        // add parents ancestors to all childs descendants at the correct depth
 
-        if (decendantsToFixUp != null)
+        Closure descendantsToFixUp = descendants.get(child);
+        if (descendantsToFixUp != null)
         {
-            for (Integer descendantPosition : decendantsToFixUp.keySet())
+            for (int descendantPosition = 1; descendantPosition <= descendantsToFixUp.maxDepth(); descendantPosition++)
             {
-                HashMap<T, Counter> decendantsToFixUpAtPosition = decendantsToFixUp.get(descendantPosition);
-                for (T descendantToFixUpAtPosition : decendantsToFixUpAtPosition.keySet())
+                IntCounts descendantsToFixUpAtPosition = descendantsToFixUp.get(descendantPosition);
+                if (descendantsToFixUpAtPosition == null)
+                {
+                    continue;
+                }
+                for (int i = 0; i < descendantsToFixUpAtPosition.keys.length; i++)
                 {
-                    HashMap<Integer, HashMap<T, Counter>> descendantAncestors = ancestors.get(descendantToFixUpAtPosition);
-                    remove(parentAncestorsToRemove, descendantPosition, descendantAncestors, parent);
+                    int descendantToFixUpAtPosition = descendantsToFixUpAtPosition.keys[i];
+                    if (descendantToFixUpAtPosition >= 0)
+                    {
+                        add(parentAncestorsToAdd, descendantPosition, ancestors.get(descendantToFixUpAtPosition), parent);
+                    }
                 }
             }
         }
     }
 
-    /**
-     * @param toAdd
-     *            HashMap<Integer, HashMap<T, Counter>>
-     * @param position
-     *            Integer
-     * @param target
-     *            HashMap<Integer, HashMap<T, Counter>>
-     * @param node
-     *            T
-     */
-    private void add(HashMap<Integer, HashMap<T, Counter>> toAdd, Integer position, HashMap<Integer, HashMap<T, Counter>> target, T node)
+    private void removeAncestors(int parent, int child)
     {
-        // add direct child
-        Integer directKey = Integer.valueOf(position.intValue() + 1);
-        HashMap<T, Counter> direct = target.get(directKey);
-        if (direct == null)
-        {
-            direct = new HashMap<T, Counter>();
-            target.put(directKey, direct);
-        }
-        Counter counter = direct.get(node);
-        if (counter == null)
+        Closure childsAncestors = ancestors.get(child);
+        if (childsAncestors == null)
         {
-            counter = new Counter();
-            direct.put(node, counter);
+            return;
         }
-        counter.increment();
 
-        if (toAdd != null)
+        Closure parentAncestorsToRemove = ancestors.get(parent);
+
+        // remove all the parents ancestors from the childs ancestors
+
+        remove(parentAncestorsToRemove, 0, childsAncestors, parent);
+
+        // remove parents ancestors from all childs descendants at the correct depth
+
+        Closure descendantsToFixUp = descendants.get(child);
+        if (descendantsToFixUp != null)
         {
-            for (Integer depth : toAdd.keySet())
+            for (int descendantPosition = 1; descendantPosition <= descendantsToFixUp.maxDepth(); descendantPosition++)
             {
-                Integer newKey = Integer.valueOf(position.intValue() + depth.intValue() + 1);
-                HashMap<T, Counter> toAddAtDepth = toAdd.get(depth);
-                HashMap<T, Counter> targetAtDepthPlusOne = target.get(newKey);
-                if (targetAtDepthPlusOne == null)
+                IntCounts descendantsToFixUpAtPosition = descendantsToFixUp.get(descendantPosition);
+                if (descendantsToFixUpAtPosition == null)
                 {
-                    targetAtDepthPlusOne = new HashMap<T, Counter>();
-                    target.put(newKey, targetAtDepthPlusOne);
+                    continue;
                 }
-
-                for (T key : toAddAtDepth.keySet())
+                for (int i = 0; i < descendantsToFixUpAtPosition.keys.length; i++)
                 {
-                    Counter counterToAdd = toAddAtDepth.get(key);
-                    Counter counterToAddTo = targetAtDepthPlusOne.get(key);
-                    if (counterToAddTo == null)
+                    int descendantToFixUpAtPosition = descendantsToFixUpAtPosition.keys[i];
+                    if (descendantToFixUpAtPosition >= 0)
                     {
-                        counterToAddTo = new Counter();
-                        targetAtDepthPlusOne.put(key, counterToAddTo);
+                        remove(parentAncestorsToRemove, descendantPosition, ancestors.get(descendantToFixUpAtPosition), parent);
                     }
-                    counterToAddTo.add(counterToAdd);
                 }
             }
         }
     }
 
     /**
-     * @param toRemove
-     *            HashMap<Integer, HashMap<T, Counter>>
-     * @param position
-     *            Integer
-     * @param target
-     *            HashMap<Integer, HashMap<T, Counter>>
-     * @param node
-     *            T
+     * Add a node at position + 1 and the related nodes of that node, shifted by the position, to the target.
      */
-    private void remove(HashMap<Integer, HashMap<T, Counter>> toRemove, Integer position, HashMap<Integer, HashMap<T, Counter>> target, T node)
+    private void add(Closure toAdd, int position, Closure target, int node)
     {
-        // remove direct child
-        Integer directKey = Integer.valueOf(position.intValue() + 1);
-        HashMap<T, Counter> direct = target.get(directKey);
-        if (direct != null)
+        // add direct child
+        target.getOrCreate(position + 1).add(node, 1);
+
+        if (toAdd != null)
         {
-            Counter counter = direct.get(node);
-            if (counter != null)
+            for (int depth = 1; depth <= toAdd.maxDepth(); depth++)
             {
-                counter.decrement();
-                if (counter.getCount() == 0)
+                IntCounts toAddAtDepth = toAdd.get(depth);
+                if (toAddAtDepth == null)
                 {
-                    direct.remove(node);
+                    continue;
+                }
+                IntCounts targetAtDepthPlusOne = target.getOrCreate(position + depth + 1);
+                for (int i = 0; i < toAddAtDepth.keys.length; i++)
+                {
+                    if (toAddAtDepth.keys[i] >= 0)
+                    {
+                        targetAtDepthPlusOne.add(toAddAtDepth.keys[i], toAddAtDepth.counts[i]);
+                    }
                 }
             }
+        }
+    }
 
+    /**
+     * Remove a node at position + 1 and the related nodes of that node, shifted by the position, from the target.
+     */
+    private void remove(Closure toRemove, int position, Closure target, int node)
+    {
+        // remove direct child
+        IntCounts direct = target.get(position + 1);
+        if (direct != null)
+        {
+            direct.subtractIfPresent(node, 1);
         }
 
         if (toRemove != null)
         {
-            for (Integer depth : toRemove.keySet())
+            for (int depth = 1; depth <= toRemove.maxDepth(); depth++)
             {
-                Integer newKey = Integer.valueOf(position.intValue() + depth.intValue() + 1);
-                HashMap<T, Counter> toRemoveAtDepth = toRemove.get(depth);
-                HashMap<T, Counter> targetAtDepthPlusOne = target.get(newKey);
-                if (targetAtDepthPlusOne != null)
+                IntCounts toRemoveAtDepth = toRemove.get(depth);
+                IntCounts targetAtDepthPlusOne = target.get(position + depth + 1);
+                if (toRemoveAtDepth == null || targetAtDepthPlusOne == null)
+                {
+                    continue;
+                }
+                for (int i = 0; i < toRemoveAtDepth.keys.length; i++)
                 {
-                    for (T key : toRemoveAtDepth.keySet())
+                    if (toRemoveAtDepth.keys[i] >= 0)
                     {
-                        Counter counterToRemove = toRemoveAtDepth.get(key);
-                        Counter counterToRemoveFrom = targetAtDepthPlusOne.get(key);
-                        if (counterToRemoveFrom != null)
-                        {
-                            counterToRemoveFrom.remove(counterToRemove);
-                            if (counterToRemoveFrom.getCount() == 0)
-                            {
-                                targetAtDepthPlusOne.remove(key);
-                            }
-                        }
+                        targetAtDepthPlusOne.subtractIfPresent(toRemoveAtDepth.keys[i], toRemoveAtDepth.counts[i]);
                     }
                 }
             }
         }
     }
 
+    public int size()
+    {
+        readWriteLock.readLock().lock();
+        try
+        {
+            return ancestorsSize;
+        }
+        finally
+        {
+            readWriteLock.readLock().unlock();
+        }
+    }
+
     /**
-     * @param parent
-     *            T
-     * @param child
-     *            T
+     * @return a copy of the objects that have been the child of a link
      */
-    private void addAncestors(T parent, T child)
+    public Set<T> keySet()
     {
-        HashMap<Integer, HashMap<T, Counter>> childsAncestors = ancestors.get(child);
-        if (childsAncestors == null)
+        readWriteLock.readLock().lock();
+        try
+        {
+            Set<T> keys = new HashSet<T>(ancestorsSize * 2);
+            for (int id = 0; id < objects.size(); id++)
+            {
+                if (ancestors.get(id) != null)
+                {
+                    keys.add(objects.get(id));
+                }
+            }
+            return keys;
+        }
+        finally
         {
-            childsAncestors = new HashMap<Integer, HashMap<T, Counter>>();
-            ancestors.put(child, childsAncestors);
+            readWriteLock.readLock().unlock();
         }
+    }
 
-        HashMap<Integer, HashMap<T, Counter>> parentAncestorsToAdd = ancestors.get(parent);
-
-        // add all the childs children to the parents descendants
-
-        add(parentAncestorsToAdd, Integer.valueOf(0), childsAncestors, parent);
+    /**
+     * The related objects of one object, by depth.
+     */
+    private static class Closure
+    {
+        private IntCounts[] byDepth = new IntCounts[2];
 
-        // add childs descendants to all parents ancestors at the correct depth
+        int maxDepth()
+        {
+            return byDepth.length - 1;
+        }
 
-        HashMap<Integer, HashMap<T, Counter>> descenantsToFixUp = descendants.get(child);
+        IntCounts get(int depth)
+        {
+            return (depth < byDepth.length) ? byDepth[depth] : null;
+        }
 
-        if (descenantsToFixUp != null)
+        IntCounts getOrCreate(int depth)
         {
-            for (Integer descendantPosition : descenantsToFixUp.keySet())
+            if (depth >= byDepth.length)
             {
-                HashMap<T, Counter> descenantsToFixUpAtPosition = descenantsToFixUp.get(descendantPosition);
-                for (T descenantToFixUpAtPosition : descenantsToFixUpAtPosition.keySet())
-                {
-                    HashMap<Integer, HashMap<T, Counter>> descendatAncestors = ancestors.get(descenantToFixUpAtPosition);
-                    add(parentAncestorsToAdd, descendantPosition, descendatAncestors, parent);
-                }
+                byDepth = Arrays.copyOf(byDepth, depth + 1);
+            }
+            IntCounts counts = byDepth[depth];
+            if (counts == null)
+            {
+                counts = new IntCounts();
+                byDepth[depth] = counts;
             }
+            return counts;
         }
     }
 
-    public int size()
+    /**
+     * An open addressing table from object id to reference count. Entries are removed when the count reaches zero.
+     */
+    private static class IntCounts
     {
-        return ancestors.size();
-    }
+        private static final int FREE = -1;
+        private static final int REMOVED = -2;
 
-    private static class Counter
-    {
-        int count = 0;
+        int[] keys = newKeys(4);
+        int[] counts = new int[4];
+        private int size;
+        private int used;
 
-        void increment()
+        private static int[] newKeys(int capacity)
         {
-            count++;
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, FREE);
+            return keys;
         }
 
-        void decrement()
+        private int indexOf(int key)
         {
-            count--;
+            int mask = keys.length - 1;
+            int index = (key * 0x9E3779B9) & mask;
+            while (keys[index] != FREE)
+            {
+                if (keys[index] == key)
+                {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
         }
 
-        int getCount()
+        boolean contains(int key)
         {
-            return count;
+            return indexOf(key) >= 0;
         }
 
-        void add(Counter other)
+        void add(int key, int count)
         {
-            count += other.count;
+            int index = indexOf(key);
+            if (index >= 0)
+            {
+                counts[index] += count;
+                return;
+            }
+            if ((used + 1) * 4 > keys.length * 3)
+            {
+                rehash();
+            }
+            int mask = keys.length - 1;
+            index = (key * 0x9E3779B9) & mask;
+            while (keys[index] >= 0)
+            {
+                index = (index + 1) & mask;
+            }
+            if (keys[index] == FREE)
+            {
+                used++;
+            }
+            keys[index] = key;
+            counts[index] = count;
+            size++;
         }
 
-        void remove(Counter other)
+        void subtractIfPresent(int key, int count)
         {
-            count -= other.count;
+            int index = indexOf(key);
+            if (index >= 0)
+            {
+                counts[index] -= count;
+                if (counts[index] == 0)
+                {
+                    keys[index] = REMOVED;
+                    size--;
+                }
+            }
         }
-    }
 
-    /**
-     * @return Set<T>
-     */
-    public Set<T> keySet()
-    {
-        return ancestors.keySet();
+        private void rehash()
+        {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            int capacity = keys.length;
+            while (size * 2 >= capacity)
+            {
+                capacity *= 2;
+            }
+            if (capacity == keys.length && (size + 1) * 4 > capacity * 3)
+            {
+                capacity *= 2;
+            }
+            keys = newKeys(capacity);
+            counts = new int[capacity];
+            size = 0;
+            used = 0;
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++)
+            {
+                if (oldKeys[i] >= 0)
+                {
+                    int index = (oldKeys[i] * 0x9E3779B9) & mask;
+                    while (keys[index] != FREE)
+                    {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    counts[index] = oldCounts[i];
+                    size++;
+                    used++;
+                }
+            }
+        }
     }
 }
@@ -50,6 +50,7 @@ public class TraceableThreadFactory implements ThreadFactory
     private final AtomicInteger threadNumber;
     private boolean threadDaemon;
     private int threadPriority;
+    private boolean virtualThreads;
 
     public TraceableThreadFactory()
     {
@@ -82,8 +83,30 @@ public class TraceableThreadFactory implements ThreadFactory
         this.threadPriority = threadPriority;
     }
 
+    /**
+     * Virtual threads are always daemon threads with normal priority, so the {@link #setThreadDaemon(boolean) daemon} and {@link #setThreadPriority(int) priority} settings do not apply to them. They are not members of the factory's thread group either, although they are named in the same way as platform threads and inherit inheritable thread locals, e.g. the logging context, in the same way.
+     * <p>
+     * A virtual thread that blocks while holding a monitor (inside a <code>synchronized</code> block or in <code>Object.wait()</code>) pins its carrier thread, so virtual threads must only be used for tasks that do not do that.
+     * 
+     * @param virtualThreads
+     *            <tt>true</tt> to create virtual threads instead of platform threads
+     */
+    public void setVirtualThreads(boolean virtualThreads)
+    {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public boolean isVirtualThreads()
+    {
+        return this.virtualThreads;
+    }
+
     public Thread newThread(Runnable r)
     {
+        if (virtualThreads)
+        {
+            return Thread.ofVirtual().name(namePrefix + threadNumber.getAndIncrement()).unstarted(r);
+        }
         Thread thread = new Thread(
                 group,
                 r,
@@ -18,10 +18,15 @@
  */
 package org.alfresco.util.cache;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -224,6 +229,113 @@ public abstract class AbstractAsynchronouslyRefreshedCache<T>
         }
     }
 
+    /**
+     * Apply a change to the cache entry for the key, on all listeners, in place of a full refresh. In a transaction the change is applied after the transaction commits. If the change can not be applied the entry is refreshed.
+     * 
+     * @param key
+     *            the cache key
+     * @param update
+     *            the change, understood by {@link #applyUpdate(String, Object, Serializable)}
+     */
+    public void update(String key, Serializable update)
+    {
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Async cache update request for tenant " + key + " on " + this);
+        }
+        registry.broadcastEvent(new RefreshableCacheUpdateEvent(cacheId, key, update), true);
+    }
+
+    /**
+     * Refresh the cache entry for the key on this instance only, e.g. as a periodic consistency check.
+     * 
+     * @param key
+     *            the cache key
+     */
+    public void refreshLocally(String key)
+    {
+        LinkedHashSet<String> keys = new LinkedHashSet<String>();
+        keys.add(key);
+        queueRefreshAndSubmit(keys);
+    }
+
+    /**
+     * @return the keys that currently have a built cache entry
+     */
+    public List<String> getKeys()
+    {
+        liveLock.readLock().lock();
+        try
+        {
+            return new ArrayList<String>(live.keySet());
+        }
+        finally
+        {
+            liveLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a change to a built cache entry. This is called with the live lock held for writing. The default is to not support updates.
+     * 
+     * @param key
+     *            the cache key
+     * @param cache
+     *            the current cache entry
+     * @param update
+     *            the change
+     * @return true if the change was applied, false if the entry must be rebuilt
+     */
+    protected boolean applyUpdate(String key, T cache, Serializable update)
+    {
+        return false;
+    }
+
+    private void applyUpdates(String key, List<Serializable> updates)
+    {
+        boolean applied = true;
+        liveLock.writeLock().lock();
+        try
+        {
+            T cache = live.get(key);
+            if (cache == null)
+            {
+                // Nothing built yet - it will be built from the committed data when first used
+                return;
+            }
+            for (Serializable update : updates)
+            {
+                if (!applyUpdate(key, cache, update))
+                {
+                    applied = false;
+                    break;
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Cache update failed, refreshing: " + this, e);
+            applied = false;
+        }
+        finally
+        {
+            liveLock.writeLock().unlock();
+        }
+
+        if (applied)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Cache entry updated in place for tenant " + key + " on " + this);
+            }
+            broadcastEvent(new RefreshableCacheRefreshedEvent(cacheId, key));
+        }
+        else
+        {
+            refreshLocally(key);
+        }
+    }
+
     @Override
     public void refresh(String key)
     {
@@ -248,6 +360,21 @@ public abstract class AbstractAsynchronouslyRefreshedCache<T>
             logger.debug("Async cache onRefreshableCacheEvent " + refreshableCacheEvent + " on " + this);
         }
 
+        if (refreshableCacheEvent instanceof RefreshableCacheUpdateEvent)
+        {
+            Serializable update = ((RefreshableCacheUpdateEvent) refreshableCacheEvent).getUpdate();
+            if (TransactionSupportUtil.getTransactionId() != null)
+            {
+                TransactionData txData = getTransactionData();
+                txData.updates.computeIfAbsent(refreshableCacheEvent.getKey(), key -> new ArrayList<Serializable>()).add(update);
+            }
+            else
+            {
+                applyUpdates(refreshableCacheEvent.getKey(), Collections.singletonList(update));
+            }
+            return;
+        }
+
         // If in a transaction delay the refresh until after it commits
 
         if (TransactionSupportUtil.getTransactionId() != null)
@@ -278,6 +405,7 @@ public abstract class AbstractAsynchronouslyRefreshedCache<T>
             data = new TransactionData();
             // create and initialize caches
             data.keys = new LinkedHashSet<String>();
+            data.updates = new LinkedHashMap<String, List<Serializable>>();
 
             // ensure that we get the transaction callbacks as we have bound the unique
             // transactional caches to a common manager
@@ -332,7 +460,8 @@ public abstract class AbstractAsynchronouslyRefreshedCache<T>
             }
             if (TransactionSupportUtil.getTransactionId() != null)
             {
-                return (!getTransactionData().keys.contains(key));
+                TransactionData txData = getTransactionData();
+                return (!txData.keys.contains(key) && !txData.updates.containsKey(key));
             }
             else
             {
@@ -728,6 +857,13 @@ public abstract class AbstractAsynchronouslyRefreshedCache<T>
     public void afterCommit()
     {
         TransactionData txnData = getTransactionData();
+        for (Map.Entry<String, List<Serializable>> updates : txnData.updates.entrySet())
+        {
+            if (!txnData.keys.contains(updates.getKey()))
+            {
+                applyUpdates(updates.getKey(), updates.getValue());
+            }
+        }
         queueRefreshAndSubmit(txnData.keys);
     }
 
@@ -740,5 +876,6 @@ public abstract class AbstractAsynchronouslyRefreshedCache<T>
     private static class TransactionData
     {
         LinkedHashSet<String> keys;
+        LinkedHashMap<String, List<Serializable>> updates;
     }
 }
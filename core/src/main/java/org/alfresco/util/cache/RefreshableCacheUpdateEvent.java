@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2005-2026 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.util.cache;
+
+import java.io.Serializable;
+
+/**
+ * Describes a change to apply to an entry in the cache in place of a full refresh
+ */
+public class RefreshableCacheUpdateEvent extends AbstractRefreshableCacheEvent
+{
+    private static final long serialVersionUID = 4290118934257311724L;
+
+    private Serializable update;
+
+    RefreshableCacheUpdateEvent(String cacheId, String key, Serializable update)
+    {
+        super(cacheId, key);
+        this.update = update;
+    }
+
+    /**
+     * @return the change to apply
+     */
+    public Serializable getUpdate()
+    {
+        return update;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * super.hashCode() + ((update == null) ? 0 : update.hashCode());
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!super.equals(obj))
+        {
+            return false;
+        }
+        RefreshableCacheUpdateEvent other = (RefreshableCacheUpdateEvent) obj;
+        return (update == null) ? (other.update == null) : update.equals(other.update);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RefreshableCacheUpdateEvent [cacheId=" + getCacheId() + ", tenantId=" + getKey() + ", update=" + update + "]";
+    }
+}
@@ -46,6 +46,7 @@ import org.junit.runners.Suite;
         org.alfresco.util.LogTeeTest.class,
         org.alfresco.util.PathMapperTest.class,
         org.alfresco.util.TempFileProviderTest.class,
+        org.alfresco.util.TraceableThreadFactoryTest.class,
         org.alfresco.util.VersionNumberTest.class,
         org.alfresco.util.collections.CollectionUtilsTest.class,
         org.alfresco.util.exec.ExecParameterTokenizerTest.class,
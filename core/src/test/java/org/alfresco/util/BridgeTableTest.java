@@ -314,6 +314,44 @@ public class BridgeTableTest extends TestCase
 
     }
 
+    @Test
+    public void testCyclicLinksAreRejected()
+    {
+        BridgeTable<String> bridgeTable = new BridgeTable<String>();
+        bridgeTable.addLink("A", "B");
+        bridgeTable.addLink("B", "C");
+        assertTrue(bridgeTable.hasLink("A", "B"));
+        assertFalse(bridgeTable.hasLink("A", "C"));
+
+        try
+        {
+            bridgeTable.addLink("C", "A");
+            fail("A cyclic link should be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        try
+        {
+            bridgeTable.addLink("B", "B");
+            fail("A link to itself should be rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+
+        assertEquals(2, bridgeTable.getDescendants("A").size());
+        assertEquals(0, bridgeTable.getAncestors("A").size());
+        assertEquals(2, bridgeTable.getAncestors("C").size());
+
+        bridgeTable.removeLink("B", "C");
+        assertFalse(bridgeTable.hasLink("B", "C"));
+        assertEquals(1, bridgeTable.getDescendants("A").size());
+        assertEquals(0, bridgeTable.getAncestors("C").size());
+    }
+
     private Set<Pair<String, String>> getTreeLinks(int depth)
     {
         int count = 0;
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2005-2026 Alfresco Software Limited.
+ *
+ * This file is part of Alfresco
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.alfresco.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test class for TraceableThreadFactory.
+ */
+public class TraceableThreadFactoryTest
+{
+    @Test
+    public void platformThreadsByDefault()
+    {
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setNamePrefix("platform-");
+
+        Thread thread = threadFactory.newThread(() -> {});
+
+        assertFalse(thread.isVirtual());
+        assertTrue(thread.isDaemon());
+        assertEquals("platform-1", thread.getName());
+    }
+
+    @Test
+    public void virtualThreadsKeepNaming()
+    {
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setNamePrefix("virtual-");
+        threadFactory.setVirtualThreads(true);
+
+        Thread thread1 = threadFactory.newThread(() -> {});
+        Thread thread2 = threadFactory.newThread(() -> {});
+
+        assertTrue(thread1.isVirtual());
+        assertEquals("virtual-1", thread1.getName());
+        assertEquals("virtual-2", thread2.getName());
+    }
+
+    @Test
+    public void poolRunsTasksOnVirtualThreads() throws Exception
+    {
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setVirtualThreads(true);
+        DynamicallySizedThreadPoolExecutor executor = new DynamicallySizedThreadPoolExecutor(
+                4, 4, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+        try
+        {
+            int tasks = 100;
+            CountDownLatch done = new CountDownLatch(tasks);
+            AtomicInteger virtualCount = new AtomicInteger();
+            for (int i = 0; i < tasks; i++)
+            {
+                executor.execute(() -> {
+                    if (Thread.currentThread().isVirtual())
+                    {
+                        virtualCount.incrementAndGet();
+                    }
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(tasks, virtualCount.get());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
@@ -56,6 +56,7 @@ import org.alfresco.repo.content.ContentDownloadContext;
 import org.alfresco.repo.content.MimetypeMap;
 import org.alfresco.repo.content.filestore.FileContentReader;
 import org.alfresco.repo.web.scripts.MimeTypeUtil;
+import org.alfresco.repo.web.util.FileContentTransfer;
 import org.alfresco.repo.web.util.HttpRangeProcessor;
 import org.alfresco.rest.framework.resource.content.CacheDirective;
 import org.alfresco.service.cmr.repository.ArchivedIOException;
@@ -450,7 +451,7 @@ public class ContentStreamer implements ResourceLoaderAware
                     }
                     else
                     {
-                        HttpRangeProcessor rangeProcessor = new HttpRangeProcessor(contentService);
+                        HttpRangeProcessor rangeProcessor = new HttpRangeProcessor(contentService, FileContentTransfer.getHttpServletRequest(req));
                         processedRange = rangeProcessor.processRange(
                                 res, reader, range.substring(6), nodeRef, propertyQName,
                                 mimetype, req.getHeader(HEADER_USER_AGENT));
@@ -473,10 +474,13 @@ public class ContentStreamer implements ResourceLoaderAware
                 // set caching
                 setResponseCache(res, modified, eTag, model);
 
-                // get the content and stream directly to the response output stream
-                // assuming the repository is capable of streaming in chunks, this should allow large files
-                // to be streamed directly to the browser response stream.
-                reader.getContent(res.getOutputStream());
+                // let the container send file content directly, otherwise get the content and stream directly
+                // to the response output stream - assuming the repository is capable of streaming in chunks,
+                // this should allow large files to be streamed directly to the browser response stream.
+                if (!FileContentTransfer.sendFile(FileContentTransfer.getHttpServletRequest(req), FileContentTransfer.getHttpServletResponse(res), reader, 0L, size))
+                {
+                    reader.getContent(res.getOutputStream());
+                }
             }
         }
         catch (SocketException e1)
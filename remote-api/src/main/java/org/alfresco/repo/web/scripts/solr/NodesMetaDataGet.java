@@ -36,6 +36,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import freemarker.core.Environment;
+import freemarker.template.TemplateDirectiveBody;
+import freemarker.template.TemplateDirectiveModel;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.json.JSONArray;
@@ -59,6 +66,8 @@ import org.alfresco.repo.tenant.TenantUtil.TenantRunAsWork;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.Path;
+import org.alfresco.service.namespace.NamespaceException;
+import org.alfresco.service.namespace.NamespaceService;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.util.Pair;
 
@@ -74,9 +83,12 @@ public class NodesMetaDataGet extends DeclarativeWebScript
     protected static final Log logger = LogFactory.getLog(NodesMetaDataGet.class);
     private static final int INITIAL_DEFAULT_SIZE = 100;
     private static final int BATCH_SIZE = 50;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
     private SearchTrackingComponent searchTrackingComponent;
     private SOLRSerializer solrSerializer;
+    private NamespaceService namespaceService;
+    private boolean streaming;
 
     public void setSearchTrackingComponent(SearchTrackingComponent searchTrackingComponent)
     {
@@ -88,6 +100,20 @@ public class NodesMetaDataGet extends DeclarativeWebScript
         this.solrSerializer = solrSerializer;
     }
 
+    public void setNamespaceService(NamespaceService namespaceService)
+    {
+        this.namespaceService = namespaceService;
+    }
+
+    /**
+     * @param streaming
+     *            <tt>true</tt> to write each node to the response as its metadata is built, rather than building the metadata of all the nodes before the response is rendered
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
     @Override
     protected Map<String, Object> executeImpl(WebScriptRequest req, Status status)
     {
@@ -185,13 +211,22 @@ public class NodesMetaDataGet extends DeclarativeWebScript
                 filter.setIncludeTxnId(o.getBoolean("includeTxnId"));
             }
 
-            final ArrayList<FreemarkerNodeMetaData> nodesMetaData = new ArrayList<FreemarkerNodeMetaData>(size > 0 ? size : INITIAL_DEFAULT_SIZE);
             NodeMetaDataParameters params = new NodeMetaDataParameters();
             params.setNodeIds(nodeIds);
             params.setFromNodeId(fromNodeId);
             params.setToNodeId(toNodeId);
             params.setMaxResults(maxResults);
 
+            if (streaming)
+            {
+                // The template calls back to write the nodes as they are found
+                Map<String, Object> model = new HashMap<String, Object>(2, 1.0f);
+                model.put("nodesWriter", new NodesMetaDataWriter(params, filter));
+                model.put("filter", filter);
+                return model;
+            }
+
+            final ArrayList<FreemarkerNodeMetaData> nodesMetaData = new ArrayList<FreemarkerNodeMetaData>(size > 0 ? size : INITIAL_DEFAULT_SIZE);
             searchTrackingComponent.getNodesMetadata(params, filter, new NodeMetaDataQueryCallback() {
                 private int counter = BATCH_SIZE;
                 private int numBatches = 0;
@@ -242,6 +277,173 @@ public class NodesMetaDataGet extends DeclarativeWebScript
         }
     }
 
+    private String shortQName(QName qName)
+    {
+        try
+        {
+            return qName.toPrefixString(namespaceService);
+        }
+        catch (NamespaceException e)
+        {
+            // not a valid qname -> use the full name, as the shortQName template method does
+            return qName.toString();
+        }
+    }
+
+    /**
+     * Template directive that gets the node metadata and writes each node to the response as it is found, in the same JSON form as the <tt>nodeMetaDataJSON</tt> template macro.
+     */
+    private class NodesMetaDataWriter implements TemplateDirectiveModel
+    {
+        private final NodeMetaDataParameters params;
+        private final MetaDataResultsFilter filter;
+
+        NodesMetaDataWriter(NodeMetaDataParameters params, MetaDataResultsFilter filter)
+        {
+            this.params = params;
+            this.filter = filter;
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public void execute(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body)
+                throws TemplateException, IOException
+        {
+            final JsonGenerator generator = JSON_FACTORY.createGenerator(env.getOut());
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("nodes");
+
+            searchTrackingComponent.getNodesMetadata(this.params, filter, new NodeMetaDataQueryCallback() {
+                @Override
+                public boolean handleNodeMetaData(NodeMetaData nodeMetaData)
+                {
+                    FreemarkerNodeMetaData fNodeMetaData;
+                    try
+                    {
+                        fNodeMetaData = new FreemarkerNodeMetaData(solrSerializer, nodeMetaData);
+                    }
+                    catch (Exception e)
+                    {
+                        throw new AlfrescoRuntimeException("Problem converting to JSON using node " + nodeMetaData.getNodeRef(), e);
+                    }
+                    try
+                    {
+                        writeNodeMetaData(generator, fNodeMetaData);
+                    }
+                    catch (IOException e)
+                    {
+                        throw new WebScriptException("Failed to write node metadata", e);
+                    }
+                    return true;
+                }
+            });
+
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.flush();
+        }
+
+        private void writeNodeMetaData(JsonGenerator generator, FreemarkerNodeMetaData nodeMetaData) throws IOException
+        {
+            generator.writeStartObject();
+            generator.writeNumberField("id", nodeMetaData.getNodeId());
+            if (nodeMetaData.getTenantDomain() != null)
+            {
+                generator.writeStringField("tenantDomain", nodeMetaData.getTenantDomain());
+            }
+            if (nodeMetaData.getNodeRef() != null)
+            {
+                generator.writeStringField("nodeRef", nodeMetaData.getNodeRef().toString());
+            }
+            if (nodeMetaData.getNodeType() != null)
+            {
+                generator.writeStringField("type", shortQName(nodeMetaData.getNodeType()));
+            }
+            if (nodeMetaData.getAclId() != null)
+            {
+                generator.writeNumberField("aclId", nodeMetaData.getAclId());
+            }
+            if (nodeMetaData.getTxnId() != null)
+            {
+                generator.writeNumberField("txnId", nodeMetaData.getTxnId());
+            }
+            if (nodeMetaData.getProperties() != null)
+            {
+                // The property values are already JSON
+                generator.writeObjectFieldStart("properties");
+                for (Map.Entry<String, PropertyValue> property : nodeMetaData.getProperties().entrySet())
+                {
+                    generator.writeFieldName(property.getKey());
+                    generator.writeRawValue(property.getValue().toString());
+                }
+                generator.writeEndObject();
+            }
+            if (nodeMetaData.getAspects() != null)
+            {
+                generator.writeArrayFieldStart("aspects");
+                for (QName aspectQName : nodeMetaData.getAspects())
+                {
+                    generator.writeString(shortQName(aspectQName));
+                }
+                generator.writeEndArray();
+            }
+            writeRawArray(generator, "paths", nodeMetaData.getPaths(), false);
+            if (nodeMetaData.getAncestors() != null && !nodeMetaData.getAncestors().isEmpty())
+            {
+                generator.writeArrayFieldStart("ancestors");
+                for (String ancestor : nodeMetaData.getAncestors())
+                {
+                    generator.writeString(ancestor);
+                }
+                generator.writeEndArray();
+            }
+            writeRawArray(generator, "namePaths", nodeMetaData.getNamePaths(), false);
+            if (writeRawArray(generator, "parentAssocs", nodeMetaData.getParentAssocs(), true))
+            {
+                generator.writeFieldName("parentAssocsCrc");
+                if (nodeMetaData.getParentAssocsCrc() != null)
+                {
+                    generator.writeNumber(nodeMetaData.getParentAssocsCrc());
+                }
+                else
+                {
+                    generator.writeNull();
+                }
+            }
+            writeRawArray(generator, "childAssocs", nodeMetaData.getChildAssocs(), true);
+            if (nodeMetaData.getChildIds() != null && !nodeMetaData.getChildIds().isEmpty())
+            {
+                generator.writeArrayFieldStart("childIds");
+                for (Long childId : nodeMetaData.getChildIds())
+                {
+                    generator.writeNumber(childId);
+                }
+                generator.writeEndArray();
+            }
+            if (nodeMetaData.getOwner() != null)
+            {
+                generator.writeStringField("owner", nodeMetaData.getOwner());
+            }
+            generator.writeEndObject();
+        }
+
+        private boolean writeRawArray(JsonGenerator generator, String fieldName, List<String> values, boolean skipEmpty) throws IOException
+        {
+            if (values == null || (skipEmpty && values.isEmpty()))
+            {
+                return false;
+            }
+            generator.writeArrayFieldStart(fieldName);
+            for (String value : values)
+            {
+                generator.writeRawValue(value);
+            }
+            generator.writeEndArray();
+            return true;
+        }
+    }
+
     /**
      * Bean to store node meta data for use by FreeMarker templates
      * 
@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * Alfresco Remote API
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.web.util;
+
+import java.io.File;
+import java.io.IOException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.extensions.webscripts.WebScriptRequest;
+import org.springframework.extensions.webscripts.WebScriptResponse;
+import org.springframework.extensions.webscripts.WrappingWebScriptRequest;
+import org.springframework.extensions.webscripts.WrappingWebScriptResponse;
+import org.springframework.extensions.webscripts.servlet.WebScriptServletRequest;
+import org.springframework.extensions.webscripts.servlet.WebScriptServletResponse;
+
+import org.alfresco.repo.content.filestore.FileContentReader;
+import org.alfresco.repo.web.scripts.BufferedResponse;
+import org.alfresco.service.cmr.repository.ContentReader;
+
+/**
+ * Hands the sending of file-backed content over to the servlet container, so that the bytes go from the file to the socket with <code>FileChannel.transferTo</code> (sendfile) instead of being copied through heap buffers.
+ * <p>
+ * This uses the Tomcat sendfile request attributes and is only done when the container reports that sendfile is supported for the request, i.e. the connector has <code>useSendfile</code> enabled and the response is not being compressed. Only plain {@link FileContentReader}s qualify: readers that decrypt, transform or otherwise wrap the content are always streamed as before.
+ */
+public final class FileContentTransfer
+{
+    private static final Log logger = LogFactory.getLog(FileContentTransfer.class);
+
+    public static final String ATTR_SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    public static final String ATTR_SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    public static final String ATTR_SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    public static final String ATTR_SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private FileContentTransfer()
+    {}
+
+    /**
+     * @return Returns the file holding the content, or <tt>null</tt> if the reader is not a plain file reader onto an existing file
+     */
+    public static File getFile(ContentReader reader)
+    {
+        if (reader == null || reader.getClass() != FileContentReader.class)
+        {
+            return null;
+        }
+        File file = ((FileContentReader) reader).getFile();
+        return (file != null && file.isFile()) ? file : null;
+    }
+
+    /**
+     * @return Returns <tt>true</tt> if the container can send a file for this request
+     */
+    public static boolean isSendFileSupported(HttpServletRequest req)
+    {
+        return req != null && Boolean.TRUE.equals(req.getAttribute(ATTR_SENDFILE_SUPPORT));
+    }
+
+    /**
+     * Ask the container to send a range of the content once the request has been handled. Nothing must be written to the response body after this returns <tt>true</tt>.
+     * 
+     * @param req
+     *            the request, may be <tt>null</tt>
+     * @param res
+     *            the response, may be <tt>null</tt>
+     * @param reader
+     *            the content to send
+     * @param start
+     *            the offset of the first byte to send
+     * @param length
+     *            the number of bytes to send
+     * @return Returns <tt>true</tt> if the container will send the content, <tt>false</tt> if the caller must stream it
+     */
+    public static boolean sendFile(HttpServletRequest req, HttpServletResponse res, ContentReader reader, long start, long length) throws IOException
+    {
+        if (res == null || res.isCommitted() || length <= 0 || !isSendFileSupported(req))
+        {
+            return false;
+        }
+        File file = getFile(reader);
+        if (file == null || start + length > file.length())
+        {
+            return false;
+        }
+        res.setContentLengthLong(length);
+        req.setAttribute(ATTR_SENDFILE_FILENAME, file.getCanonicalPath());
+        req.setAttribute(ATTR_SENDFILE_START, start);
+        req.setAttribute(ATTR_SENDFILE_END, start + length);
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Sending " + length + " bytes of " + file + " from offset " + start + " with sendfile");
+        }
+        return true;
+    }
+
+    /**
+     * @return Returns the servlet request behind a web script request, or <tt>null</tt> if there is none
+     */
+    public static HttpServletRequest getHttpServletRequest(WebScriptRequest req)
+    {
+        while (req instanceof WrappingWebScriptRequest)
+        {
+            req = ((WrappingWebScriptRequest) req).getNext();
+        }
+        return (req instanceof WebScriptServletRequest) ? ((WebScriptServletRequest) req).getHttpServletRequest() : null;
+    }
+
+    /**
+     * @return Returns the servlet response behind a web script response, or <tt>null</tt> if there is none or if the output is buffered, in which case it must go through the buffer
+     */
+    public static HttpServletResponse getHttpServletResponse(WebScriptResponse res)
+    {
+        while (res instanceof WrappingWebScriptResponse)
+        {
+            if (res instanceof BufferedResponse)
+            {
+                return null;
+            }
+            res = ((WrappingWebScriptResponse) res).getNext();
+        }
+        return (res instanceof WebScriptServletResponse) ? ((WebScriptServletResponse) res).getHttpServletResponse() : null;
+    }
+}
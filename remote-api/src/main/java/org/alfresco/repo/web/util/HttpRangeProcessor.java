@@ -33,6 +33,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.StringTokenizer;
 import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import org.apache.commons.logging.Log;
@@ -60,6 +61,7 @@ public class HttpRangeProcessor
     /** size of a multi-part byte range output buffer */
     private static final int CHUNKSIZE = 64 * 1024;
     private ContentService contentService;
+    private HttpServletRequest request;
 
     /**
      * Constructor.
@@ -68,8 +70,22 @@ public class HttpRangeProcessor
      *            ContentService
      */
     public HttpRangeProcessor(ContentService contentService)
+    {
+        this(contentService, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param contentService
+     *            ContentService
+     * @param request
+     *            the HTTP servlet request, used to let the container send single ranges of file content directly. May be <tt>null</tt>.
+     */
+    public HttpRangeProcessor(ContentService contentService, HttpServletRequest request)
     {
         this.contentService = contentService;
+        this.request = request;
     }
 
     /**
@@ -228,6 +244,13 @@ public class HttpRangeProcessor
         if (getLogger().isDebugEnabled())
             getLogger().debug("Processing: Content-Range: " + contentRange);
 
+        // let the container send the range of file content directly if it can
+        HttpServletResponse sendFileResponse = (httpServletResponse != null) ? httpServletResponse : FileContentTransfer.getHttpServletResponse(webScriptResponse);
+        if (FileContentTransfer.sendFile(request, sendFileResponse, reader, r.start, (r.end - r.start) + 1L))
+        {
+            return true;
+        }
+
         InputStream is = null;
         try
         {
@@ -44,6 +44,7 @@ import org.alfresco.model.ContentModel;
 import org.alfresco.repo.content.ContentDownloadContext;
 import org.alfresco.repo.content.ContentDownloadPolicy;
 import org.alfresco.repo.content.filestore.FileContentReader;
+import org.alfresco.repo.web.util.FileContentTransfer;
 import org.alfresco.repo.web.util.HttpRangeProcessor;
 import org.alfresco.service.cmr.model.FileInfo;
 import org.alfresco.service.cmr.model.FileNotFoundException;
@@ -331,7 +332,7 @@ public class GetMethod extends WebDAVMethod
     {
         if (byteRanges != null && byteRanges.startsWith(RANGE_HEADER_UNIT_SPECIFIER))
         {
-            HttpRangeProcessor rangeProcessor = new HttpRangeProcessor(getContentService());
+            HttpRangeProcessor rangeProcessor = new HttpRangeProcessor(getContentService(), m_request);
             String userAgent = m_request.getHeader(WebDAV.HEADER_USER_AGENT);
 
             if (m_returnContent)
@@ -355,8 +356,11 @@ public class GetMethod extends WebDAVMethod
                 m_response.setHeader(WebDAV.HEADER_CONTENT_LENGTH, Long.toString(reader.getSize()));
                 m_response.setHeader(WebDAV.HEADER_CONTENT_TYPE, reader.getMimetype());
                 m_davHelper.publishReadEvent(realNodeInfo, reader.getMimetype(), reader.getSize(), null, reader.getEncoding());
-                // copy the content to the response output stream
-                reader.getContent(m_response.getOutputStream());
+                // let the container send file content directly, otherwise copy the content to the response output stream
+                if (!FileContentTransfer.sendFile(m_request, m_response, reader, 0L, reader.getSize()))
+                {
+                    reader.getContent(m_response.getOutputStream());
+                }
             }
         }
     }
@@ -67,6 +67,7 @@ import org.alfresco.repo.domain.node.AuditablePropertiesEntity;
 import org.alfresco.repo.lock.mem.Lifetime;
 import org.alfresco.repo.model.Repository;
 import org.alfresco.repo.model.filefolder.FileFolderServiceImpl;
+import org.alfresco.repo.node.NodeBulkLoader;
 import org.alfresco.repo.node.getchildren.FilterProp;
 import org.alfresco.repo.node.getchildren.FilterPropBoolean;
 import org.alfresco.repo.node.getchildren.GetChildrenCannedQuery;
@@ -79,6 +80,7 @@ import org.alfresco.repo.rule.RuleModel;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
 import org.alfresco.repo.security.permissions.AccessDeniedException;
+import org.alfresco.repo.security.permissions.PermissionServiceSPI;
 import org.alfresco.repo.site.SiteModel;
 import org.alfresco.repo.tenant.TenantUtil;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
@@ -221,6 +223,8 @@ public class NodesImpl implements Nodes
     private ClassDefinitionMapper classDefinitionMapper;
     private RuleService ruleService;
     private CheckOutCheckInService checkOutCheckInService;
+    private NodeBulkLoader nodeBulkLoader;
+    private PermissionServiceSPI permissionServiceSPI;
 
     private enum Activity_Type
     {
@@ -350,6 +354,29 @@ public class NodesImpl implements Nodes
         this.ruleService = ruleService;
     }
 
+    /**
+     * Optional: used to pre-load the nodes of a page of results in one go
+     */
+    public void setNodeBulkLoader(NodeBulkLoader nodeBulkLoader)
+    {
+        this.nodeBulkLoader = nodeBulkLoader;
+    }
+
+    /**
+     * Optional: used to check the permissions behind the allowable operations for a page of results in one go
+     */
+    public void setPermissionServiceSPI(PermissionServiceSPI permissionServiceSPI)
+    {
+        this.permissionServiceSPI = permissionServiceSPI;
+    }
+
+    // permissions checked for the allowable operations
+    private static final List<String> ALLOWABLE_OPERATIONS_PERMS = Arrays.asList(
+            PermissionService.DELETE,
+            PermissionService.ADD_CHILDREN,
+            PermissionService.WRITE,
+            PermissionService.CHANGE_PERMISSIONS);
+
     // excluded namespaces (aspects, properties, assoc types)
     private static final List<String> EXCLUDED_NS = Arrays.asList(NamespaceService.SYSTEM_MODEL_1_0_URI);
 
@@ -897,6 +924,16 @@ public class NodesImpl implements Nodes
 
     @Override
     public Node getFolderOrDocument(final NodeRef nodeRef, NodeRef parentNodeRef, QName nodeTypeQName, List<String> includeParam, Map<String, UserInfo> mapUserInfo)
+    {
+        return getFolderOrDocument(nodeRef, parentNodeRef, nodeTypeQName, includeParam, mapUserInfo, null);
+    }
+
+    /**
+     * @param grantedPerms
+     *            the permissions granted on the node, as returned by {@link #prefetchNodes(List, List)}, or <tt>null</tt> to check them for this node
+     */
+    private Node getFolderOrDocument(final NodeRef nodeRef, NodeRef parentNodeRef, QName nodeTypeQName, List<String> includeParam, Map<String, UserInfo> mapUserInfo,
+            Map<NodeRef, Set<String>> grantedPerms)
     {
         if (mapUserInfo == null)
         {
@@ -1006,7 +1043,7 @@ public class NodesImpl implements Nodes
                     // special case: do not return "delete" (as an allowable op) for specific system nodes
                     continue;
                 }
-                else if (permissionService.hasPermission(nodeRef, perm) == AccessStatus.ALLOWED)
+                else if (hasPermission(nodeRef, perm, grantedPerms))
                 {
                     allowableOperations.add(op);
                 }
@@ -1105,6 +1142,61 @@ public class NodesImpl implements Nodes
         return node;
     }
 
+    /**
+     * Pre-load a page of nodes (properties, aspects and parent associations) and, if the allowable operations are included, check the permissions behind them for the whole page at once.
+     *
+     * @return the permissions granted on each of the checked nodes, or <tt>null</tt> if the allowable operations are not included
+     */
+    private Map<NodeRef, Set<String>> prefetchNodes(List<NodeRef> nodeRefs, List<String> includeParam)
+    {
+        if (nodeBulkLoader != null)
+        {
+            nodeBulkLoader.cacheNodes(nodeRefs);
+        }
+
+        if ((permissionServiceSPI == null) || (includeParam == null) || (!includeParam.contains(PARAM_INCLUDE_ALLOWABLEOPERATIONS)))
+        {
+            return null;
+        }
+
+        // virtual nodes (smart folders) are left to the public permission service
+        List<NodeRef> toCheck = new ArrayList<>(nodeRefs.size());
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            if ((smartStore == null) || (!smartStore.isVirtual(nodeRef)))
+            {
+                toCheck.add(nodeRef);
+            }
+        }
+
+        Map<NodeRef, Set<String>> grantedPerms = new HashMap<>(toCheck.size() * 2);
+        for (NodeRef nodeRef : toCheck)
+        {
+            grantedPerms.put(nodeRef, new HashSet<>(ALLOWABLE_OPERATIONS_PERMS.size() * 2));
+        }
+        for (String perm : ALLOWABLE_OPERATIONS_PERMS)
+        {
+            for (Entry<NodeRef, AccessStatus> entry : permissionServiceSPI.hasPermissions(toCheck, perm).entrySet())
+            {
+                if (entry.getValue() == AccessStatus.ALLOWED)
+                {
+                    grantedPerms.get(entry.getKey()).add(perm);
+                }
+            }
+        }
+        return grantedPerms;
+    }
+
+    private boolean hasPermission(NodeRef nodeRef, String perm, Map<NodeRef, Set<String>> grantedPerms)
+    {
+        Set<String> granted = (grantedPerms != null) ? grantedPerms.get(nodeRef) : null;
+        if (granted != null)
+        {
+            return granted.contains(perm);
+        }
+        return permissionService.hasPermission(nodeRef, perm) == AccessStatus.ALLOWED;
+    }
+
     @Override
     public List<Node> getFoldersOrDocuments(final List<NodeRef> nodeRefs, List<String> includeParam, Map<String, UserInfo> mapUserInfo)
     {
@@ -1136,6 +1228,8 @@ public class NodesImpl implements Nodes
             includeParam = Collections.emptyList();
         }
 
+        Map<NodeRef, Set<String>> grantedPerms = prefetchNodes(nodeRefs, includeParam);
+
         if (logger.isDebugEnabled())
         {
             logger.debug("    Retrieving properties for node references");
@@ -1238,7 +1332,7 @@ public class NodesImpl implements Nodes
                 node.setProperties(mapFromNodeProperties(props, includeParam, mapUserInfo, EXCLUDED_NS, EXCLUDED_PROPS));
             }
 
-            // TODO: Optimize to batch get aspects for all nodes
+            // note: the aspects have been pre-loaded with the nodes
             Set<QName> aspects = null;
             if (includeParam.contains(PARAM_INCLUDE_ASPECTNAMES))
             {
@@ -1285,7 +1379,6 @@ public class NodesImpl implements Nodes
                 }
             }
 
-            // TODO: Optimize to batch get allowable operations for all nodes
             if (includeParam.contains(PARAM_INCLUDE_ALLOWABLEOPERATIONS))
             {
                 if (logger.isDebugEnabled())
@@ -1315,7 +1408,7 @@ public class NodesImpl implements Nodes
                         // special case: do not return "delete" (as an allowable op) for specific system nodes
                         continue;
                     }
-                    else if (permissionService.hasPermission(nodeRef, perm) == AccessStatus.ALLOWED)
+                    else if (hasPermission(nodeRef, perm, grantedPerms))
                     {
                         allowableOperations.add(op);
                     }
@@ -1770,9 +1863,18 @@ public class NodesImpl implements Nodes
             pagingResults = fileFolderService.list(parentNodeRef, assocTypeQNames, searchTypeQNames, ignoreAspectQNames, sortProps, filterProps, pagingRequest);
         }
 
+        // one user info lookup per distinct creator / modifier across the page
         final Map<String, UserInfo> mapUserInfo = new HashMap<>(10);
 
         final List<FileInfo> page = pagingResults.getPage();
+        List<NodeRef> pageNodeRefs = new ArrayList<>(page.size());
+        for (FileInfo fInfo : page)
+        {
+            pageNodeRefs.add(fInfo.getNodeRef());
+        }
+        final Map<NodeRef, Set<String>> grantedPerms = prefetchNodes(pageNodeRefs, includeParam);
+        final NodeRef rootNodeRef = ((includeParam != null) && includeParam.contains(PARAM_INCLUDE_PATH)) ? validateOrLookupNode(parentFolderNodeId) : null;
+
         List<Node> nodes = new AbstractList<Node>() {
             @Override
             public Node get(int index)
@@ -1782,17 +1884,16 @@ public class NodesImpl implements Nodes
                 // minimal info by default (unless "include"d otherwise)
                 // (pass in null as parentNodeRef to force loading of primary
                 // parent node as parentId)
-                Node node = getFolderOrDocument(fInfo.getNodeRef(), null, fInfo.getType(), includeParam, mapUserInfo);
+                Node node = getFolderOrDocument(fInfo.getNodeRef(), null, fInfo.getType(), includeParam, mapUserInfo, grantedPerms);
                 if (node.getPath() != null)
                 {
-                    calculateRelativePath(parentFolderNodeId, node);
+                    calculateRelativePath(node);
                 }
                 return node;
             }
 
-            private void calculateRelativePath(String parentFolderNodeId, Node node)
+            private void calculateRelativePath(Node node)
             {
-                NodeRef rootNodeRef = validateOrLookupNode(parentFolderNodeId);
                 try
                 {
                     // get the path elements
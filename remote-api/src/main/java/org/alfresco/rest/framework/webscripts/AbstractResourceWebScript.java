@@ -28,11 +28,11 @@ package org.alfresco.rest.framework.webscripts;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.springframework.extensions.webscripts.WebScriptException;
 import org.springframework.extensions.webscripts.WebScriptRequest;
 import org.springframework.extensions.webscripts.WebScriptResponse;
 import org.springframework.http.HttpMethod;
@@ -42,6 +42,7 @@ import org.alfresco.metrics.rest.RestMetricsReporter;
 import org.alfresco.repo.tenant.TenantUtil;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
 import org.alfresco.repo.web.scripts.BufferedRequest;
+import org.alfresco.repo.web.scripts.BufferedResponse;
 import org.alfresco.repo.web.scripts.content.ContentStreamer;
 import org.alfresco.rest.framework.Api;
 import org.alfresco.rest.framework.core.HttpMethodSupport;
@@ -49,7 +50,6 @@ import org.alfresco.rest.framework.core.ResourceInspector;
 import org.alfresco.rest.framework.core.ResourceLocator;
 import org.alfresco.rest.framework.core.ResourceOperation;
 import org.alfresco.rest.framework.core.ResourceWithMetadata;
-import org.alfresco.rest.framework.core.exceptions.ApiException;
 import org.alfresco.rest.framework.core.exceptions.ArchivedContentException;
 import org.alfresco.rest.framework.resource.actions.ActionExecutor;
 import org.alfresco.rest.framework.resource.actions.interfaces.BinaryResourceAction;
@@ -59,6 +59,7 @@ import org.alfresco.rest.framework.resource.content.CacheDirective;
 import org.alfresco.rest.framework.resource.content.ContentInfo;
 import org.alfresco.rest.framework.resource.content.FileBinaryResource;
 import org.alfresco.rest.framework.resource.content.NodeBinaryResource;
+import org.alfresco.rest.framework.resource.parameters.CollectionWithPagingInfo;
 import org.alfresco.rest.framework.resource.parameters.Params;
 import org.alfresco.rest.framework.tools.ResponseWriter;
 import org.alfresco.service.cmr.repository.ArchivedIOException;
@@ -83,6 +84,7 @@ public abstract class AbstractResourceWebScript extends ApiWebScript implements
     private ParamsExtractor paramsExtractor;
     private ContentStreamer streamer;
     protected ResourceWebScriptHelper helper;
+    private boolean streamCollections;
 
     private static final String HEADER_CONTENT_LENGTH = "Content-Length";
 
@@ -91,12 +93,14 @@ public abstract class AbstractResourceWebScript extends ApiWebScript implements
     public void execute(final Api api, final WebScriptRequest req, final WebScriptResponse res) throws IOException
     {
         long startTime = System.currentTimeMillis();
+        final AtomicBoolean streamingStarted = new AtomicBoolean(false);
 
         try
         {
             final Map<String, String> templateVars = req.getServiceMatch().getTemplateVars();
             final ResourceWithMetadata resource = locator.locateResource(api, templateVars, httpMethod);
             final boolean isReadOnly = HttpMethod.GET == httpMethod;
+            final boolean isStreamed = isReadOnly && streamCollections;
 
             // MNT-20308 - allow write transactions for authentication api
             RetryingTransactionHelper transHelper = getTransactionHelper(resource.getMetaData().getApi().getName());
@@ -106,9 +110,17 @@ public abstract class AbstractResourceWebScript extends ApiWebScript implements
                 @Override
                 public Object execute() throws Throwable
                 {
+                    if (streamingStarted.get())
+                    {
+                        throw new AlfrescoRuntimeException("Unable to retry a request once its response has been streamed");
+                    }
                     // Reset the request so that it can be read again in case of retry
                     resetRequest(req);
                     final Params params = paramsExtractor.extractParams(resource.getMetaData(), req);
+                    if (isStreamed)
+                    {
+                        return executeAndStream(resource, params, res, streamingStarted);
+                    }
                     return AbstractResourceWebScript.this.execute(resource, params, res, isReadOnly);
                 }
             };
@@ -161,17 +173,21 @@ public abstract class AbstractResourceWebScript extends ApiWebScript implements
             }
 
         }
-        catch (ContentIOException cioe)
-        {
-            handleContentIOException(res, req, cioe);
-        }
-        catch (AlfrescoRuntimeException | ApiException | WebScriptException xception)
-        {
-            renderException(xception, res, req, assistant);
-        }
         catch (RuntimeException runtimeException)
         {
-            renderException(runtimeException, res, req, assistant);
+            if (streamingStarted.get())
+            {
+                // part of the response has been sent, so it is too late to render the error
+                logger.error("Failed to stream the response to " + req.getURL(), runtimeException);
+            }
+            else if (runtimeException instanceof ContentIOException)
+            {
+                handleContentIOException(res, req, (ContentIOException) runtimeException);
+            }
+            else
+            {
+                renderException(runtimeException, res, req, assistant);
+            }
         }
         finally
         {
@@ -206,6 +222,39 @@ public abstract class AbstractResourceWebScript extends ApiWebScript implements
         return toReturn;
     }
 
+    /**
+     * Executes a read-only request in the current transaction. A collection is streamed straight to the response, one entry at a time, rather than being processed as a whole and buffered: the entries are only mapped as they are written.
+     *
+     * @return the result to render once the transaction has completed, or <tt>null</tt> if the result has been streamed
+     */
+    private Object executeAndStream(final ResourceWithMetadata resource, final Params params, final WebScriptResponse res, final AtomicBoolean streamingStarted)
+            throws Throwable
+    {
+        final String entityCollectionName = ResourceInspector.findEntityCollectionNameName(resource.getMetaData());
+        final ResourceOperation operation = resource.getMetaData().getOperation(getHttpMethod());
+        final WithResponse callBack = new WithResponse(operation.getSuccessStatus(), DEFAULT_JSON_CONTENT, CACHE_NEVER);
+
+        Object result = executeAction(resource, params, callBack);
+        if (!(result instanceof CollectionWithPagingInfo))
+        {
+            if (!(result instanceof BinaryResource))
+            {
+                result = helper.processAdditionsToTheResponse(res, resource.getMetaData().getApi(), entityCollectionName, params, result);
+            }
+            setResponse(res, callBack);
+            return result;
+        }
+
+        Object toStream = helper.processAdditionsToTheResponseLazily(res, resource.getMetaData().getApi(), entityCollectionName, params,
+                (CollectionWithPagingInfo<?>) result);
+        // no content length is set, so the response is sent with chunked transfer encoding
+        setResponse(res, callBack);
+        streamingStarted.set(true);
+        WebScriptResponse unbufferedRes = (res instanceof BufferedResponse) ? ((BufferedResponse) res).getNext() : res;
+        renderJsonResponse(unbufferedRes, toStream, assistant.getJsonHelper());
+        return null;
+    }
+
     private void handleContentIOException(final WebScriptResponse res, final WebScriptRequest req, ContentIOException exception) throws IOException
     {
         // If the Content-Length is not set back to -1 any client will expect to receive binary and will hang until it times out
@@ -311,6 +360,17 @@ public abstract class AbstractResourceWebScript extends ApiWebScript implements
         this.helper = helper;
     }
 
+    /**
+     * Stream the collections returned by read-only requests to the response from within the transaction, rather than buffering the whole response. This keeps the memory used by large pages flat, but an error part way through can only truncate the response.
+     *
+     * @param streamCollections
+     *            <tt>true</tt> to stream collections
+     */
+    public void setStreamCollections(boolean streamCollections)
+    {
+        this.streamCollections = streamCollections;
+    }
+
     public HttpMethod getHttpMethod()
     {
         return this.httpMethod;
@@ -29,9 +29,11 @@ package org.alfresco.rest.framework.webscripts;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -185,6 +187,45 @@ public class ResourceWebScriptHelper
         }
     }
 
+    /**
+     * Processes a collection in the same way as {@link #processAdditionsToTheResponse(WebScriptResponse, Api, String, Params, Object)}, but each entry is only processed as the returned collection is iterated. When serialized one entry at a time no more than one processed entry is held, so the result must be serialized within the transaction that produced the collection.
+     */
+    public CollectionWithPagingInfo<Object> processAdditionsToTheResponseLazily(final WebScriptResponse res, final Api api, final String entityCollectionName, final Params params,
+            final CollectionWithPagingInfo<?> collectionToWrap)
+    {
+        PropertyCheck.mandatory(this, null, params);
+        Object sourceEntity = executeIncludedSource(api, params, entityCollectionName, collectionToWrap);
+        final Collection<?> entries = collectionToWrap.getCollection();
+        Collection<Object> resultCollection = new AbstractCollection<Object>() {
+            @Override
+            public Iterator<Object> iterator()
+            {
+                final Iterator<?> iterator = entries.iterator();
+                return new Iterator<Object>() {
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Object next()
+                    {
+                        return processAdditionsToTheResponse(res, api, entityCollectionName, params, iterator.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return entries.size();
+            }
+        };
+        return CollectionWithPagingInfo.asPaged(collectionToWrap.getPaging(), resultCollection, collectionToWrap.hasMoreItems(),
+                collectionToWrap.getTotalItems(), sourceEntity, collectionToWrap.getContext());
+    }
+
     private Object executeIncludedSource(Api api, Params params, String entityCollectionName, CollectionWithPagingInfo<?> collectionToWrap)
     {
         if (params.includeSource())
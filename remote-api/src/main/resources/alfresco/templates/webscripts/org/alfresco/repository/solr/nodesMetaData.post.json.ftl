@@ -1,4 +1,7 @@
 <#import "solr.lib.ftl" as solrLib/>
+<#if nodesWriter??>
+<@nodesWriter/>
+<#else>
 {
    "nodes" :
    [
@@ -6,4 +9,5 @@
          <@solrLib.nodeMetaDataJSON nodeMetaData=nodeMetaData filter=filter/><#if nodeMetaData_has_next>,</#if>
       </#list>
    ]
-}
\ No newline at end of file
+}
+</#if>
\ No newline at end of file
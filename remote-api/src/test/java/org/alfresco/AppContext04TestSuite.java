@@ -77,6 +77,7 @@ import org.alfresco.util.testing.category.NonBuildTests;
         org.alfresco.repo.web.scripts.node.NodeWebScripTest.class,
         org.alfresco.rest.api.impl.CommentsImplUnitTest.class,
         org.alfresco.rest.api.impl.DownloadsImplCheckArchiveStatusUnitTest.class,
+        org.alfresco.rest.api.impl.NodesImplAllowableOperationsTest.class,
         org.alfresco.rest.api.impl.RestApiDirectUrlConfigUnitTest.class,
         org.alfresco.rest.api.impl.SizeDetailsImplTest.class,
         org.alfresco.rest.api.namespace.NamespacePrefixesEntityResourceTest.class})
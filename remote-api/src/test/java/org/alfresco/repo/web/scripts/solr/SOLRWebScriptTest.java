@@ -33,6 +33,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -689,6 +690,49 @@ public class SOLRWebScriptTest extends BaseWebScriptTest
         assertTrue("Expected author property", containsProperty(propertyMap, ContentModel.PROP_AUTHOR, "ste\"ve"));
     }
 
+    public void testNodeMetaDataStreaming() throws Exception
+    {
+        long fromCommitTime = System.currentTimeMillis();
+
+        buildTransactions6();
+
+        JSONArray transactions = getTransactions(fromCommitTime);
+        assertEquals("Number of transactions is incorrect", 1, transactions.length());
+
+        GetNodesParameters params = new GetNodesParameters();
+        params.setTransactionIds(getTransactionIds(transactions));
+        params.setStoreProtocol(storeRef.getProtocol());
+        params.setStoreIdentifier(storeRef.getIdentifier());
+        JSONArray nodes = getNodes(params, 0, 2);
+
+        List<Long> nodeIds = new ArrayList<Long>(nodes.length());
+        for (int i = 0; i < nodes.length(); i++)
+        {
+            nodeIds.add(nodes.getJSONObject(i).getLong("id"));
+        }
+
+        NodesMetaDataGet webScript = (NodesMetaDataGet) ctx.getBean("webscript.org.alfresco.repository.solr.nodesMetaData.post");
+        JSONArray rendered;
+        JSONArray streamed;
+        try
+        {
+            webScript.setStreaming(false);
+            rendered = getNodesMetaData(nodeIds, 0, 2);
+            webScript.setStreaming(true);
+            streamed = getNodesMetaData(nodeIds, 0, 2);
+        }
+        finally
+        {
+            webScript.setStreaming(Boolean.parseBoolean(((Properties) ctx.getBean("global-properties")).getProperty("solr.nodesMetaData.streaming")));
+        }
+
+        // The streamed nodes are the same as the nodes rendered by the template
+        for (int i = 0; i < rendered.length(); i++)
+        {
+            assertTrue("Streamed node " + i + " differs: " + streamed.getJSONObject(i), rendered.getJSONObject(i).similar(streamed.getJSONObject(i)));
+        }
+    }
+
     public void testNodeMetaDataManyNodes() throws Exception
     {
         long fromCommitTime = System.currentTimeMillis();
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * Alfresco Remote API
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.web.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import org.alfresco.repo.content.filestore.FileContentReader;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.util.TempFileProvider;
+
+/**
+ * Tests for the FileContentTransfer class.
+ */
+public class FileContentTransferTest
+{
+    private File file;
+    private FileContentReader reader;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        file = TempFileProvider.createTempFile(getClass().getSimpleName(), ".bin");
+        Files.write(file.toPath(), new byte[1000]);
+        reader = new FileContentReader(file);
+        request = new MockHttpServletRequest();
+        request.setAttribute(FileContentTransfer.ATTR_SENDFILE_SUPPORT, Boolean.TRUE);
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    public void sendFileSetsContainerAttributes() throws IOException
+    {
+        assertTrue(FileContentTransfer.sendFile(request, response, reader, 0L, 1000L));
+
+        assertEquals(file.getCanonicalPath(), request.getAttribute(FileContentTransfer.ATTR_SENDFILE_FILENAME));
+        assertEquals(0L, request.getAttribute(FileContentTransfer.ATTR_SENDFILE_START));
+        assertEquals(1000L, request.getAttribute(FileContentTransfer.ATTR_SENDFILE_END));
+        assertEquals(1000L, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void noSendFileWithoutContainerSupport() throws IOException
+    {
+        request.removeAttribute(FileContentTransfer.ATTR_SENDFILE_SUPPORT);
+
+        assertFalse(FileContentTransfer.sendFile(request, response, reader, 0L, 1000L));
+        assertNull(request.getAttribute(FileContentTransfer.ATTR_SENDFILE_FILENAME));
+    }
+
+    @Test
+    public void noSendFileForOtherReaders() throws IOException
+    {
+        ContentReader otherReader = mock(ContentReader.class);
+        when(otherReader.getSize()).thenReturn(1000L);
+
+        assertFalse(FileContentTransfer.sendFile(request, response, otherReader, 0L, 1000L));
+        assertFalse(FileContentTransfer.sendFile(null, response, reader, 0L, 1000L));
+        // Beyond the end of the file
+        assertFalse(FileContentTransfer.sendFile(request, response, reader, 500L, 1000L));
+    }
+
+    @Test
+    public void singleRangeIsSentByContainer() throws IOException
+    {
+        HttpRangeProcessor rangeProcessor = new HttpRangeProcessor(null, request);
+
+        assertTrue(rangeProcessor.processRange(response, reader, "100-199", null, null, "application/octet-stream", null));
+
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals(100L, request.getAttribute(FileContentTransfer.ATTR_SENDFILE_START));
+        assertEquals(200L, request.getAttribute(FileContentTransfer.ATTR_SENDFILE_END));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+}
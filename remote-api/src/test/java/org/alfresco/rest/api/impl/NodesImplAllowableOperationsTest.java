@@ -0,0 +1,256 @@
+/*
+ * #%L
+ * Alfresco Remote API
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.rest.api.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.model.Repository;
+import org.alfresco.repo.node.NodeBulkLoader;
+import org.alfresco.repo.policy.BehaviourFilter;
+import org.alfresco.repo.security.permissions.PermissionServiceSPI;
+import org.alfresco.repo.virtual.store.VirtualStore;
+import org.alfresco.rest.api.Nodes;
+import org.alfresco.rest.api.QuickShareLinks;
+import org.alfresco.rest.api.model.Node;
+import org.alfresco.service.ServiceRegistry;
+import org.alfresco.service.cmr.activities.ActivityPoster;
+import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.cmr.security.AccessStatus;
+import org.alfresco.service.cmr.security.PermissionService;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+
+/**
+ * Unit tests for the allowable operations of a page of nodes returned by {@link NodesImpl#getFoldersOrDocuments(List, List, Map)}, which checks the permissions for the whole page with {@link PermissionServiceSPI#hasPermissions(Collection, String)} and leaves virtual nodes to {@link PermissionService#hasPermission(NodeRef, String)}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class NodesImplAllowableOperationsTest
+{
+    private static final List<String> ALLOWABLE_OPERATIONS_PERMS = Arrays.asList(
+            PermissionService.DELETE,
+            PermissionService.ADD_CHILDREN,
+            PermissionService.WRITE,
+            PermissionService.CHANGE_PERMISSIONS);
+
+    private static final NodeRef COMPANY_HOME = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "company-home");
+    private static final NodeRef PARENT = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, "parent");
+
+    @Mock
+    private ServiceRegistry serviceRegistry;
+    @Mock
+    private NodeService nodeService;
+    @Mock
+    private NamespaceService namespaceService;
+    @Mock
+    private PermissionService permissionService;
+    @Mock
+    private PermissionServiceSPI permissionServiceSPI;
+    @Mock
+    private NodeBulkLoader nodeBulkLoader;
+    @Mock
+    private VirtualStore smartStore;
+    @Mock
+    private Repository repositoryHelper;
+    @Mock
+    private BehaviourFilter behaviourFilter;
+    @Mock
+    private QuickShareLinks quickShareLinks;
+    @Mock
+    private ActivityPoster poster;
+
+    private NodesImpl nodesImpl;
+
+    // the ACL of each node and the permissions granted by each ACL
+    private final Map<NodeRef, String> nodeAcls = new HashMap<>();
+    private final Map<String, Set<String>> aclPerms = new HashMap<>();
+    private final Map<NodeRef, Map<QName, Serializable>> nodeProps = new LinkedHashMap<>();
+
+    @Before
+    public void setUp()
+    {
+        when(serviceRegistry.getNodeService()).thenReturn(nodeService);
+        when(serviceRegistry.getNamespaceService()).thenReturn(namespaceService);
+        when(serviceRegistry.getPermissionService()).thenReturn(permissionService);
+        when(namespaceService.getNamespaceURI(NamespaceService.DEFAULT_PREFIX)).thenReturn(NamespaceService.DEFAULT_URI);
+        when(repositoryHelper.getCompanyHome()).thenReturn(COMPANY_HOME);
+
+        nodesImpl = new NodesImpl();
+        nodesImpl.setServiceRegistry(serviceRegistry);
+        nodesImpl.setBehaviourFilter(behaviourFilter);
+        nodesImpl.setRepositoryHelper(repositoryHelper);
+        nodesImpl.setQuickShareLinks(quickShareLinks);
+        nodesImpl.setPoster(poster);
+        nodesImpl.setSmartStore(smartStore);
+        nodesImpl.setNodeBulkLoader(nodeBulkLoader);
+        nodesImpl.setPermissionServiceSPI(permissionServiceSPI);
+        nodesImpl.init();
+
+        aclPerms.put("full", new HashSet<>(ALLOWABLE_OPERATIONS_PERMS));
+        aclPerms.put("readOnly", Collections.<String> emptySet());
+        aclPerms.put("write", Collections.singleton(PermissionService.WRITE));
+        aclPerms.put("addChildren", new HashSet<>(Arrays.asList(PermissionService.ADD_CHILDREN, PermissionService.DELETE)));
+
+        when(permissionService.hasPermission(any(NodeRef.class), anyString()))
+                .thenAnswer(call -> hasPermission(call.getArgument(0), call.getArgument(1)));
+        when(permissionServiceSPI.hasPermissions(anyCollection(), anyString())).thenAnswer(call -> {
+            Collection<NodeRef> nodeRefs = call.getArgument(0);
+            String perm = call.getArgument(1);
+            Map<NodeRef, AccessStatus> result = new HashMap<>();
+            for (NodeRef nodeRef : nodeRefs)
+            {
+                result.put(nodeRef, hasPermission(nodeRef, perm));
+            }
+            return result;
+        });
+    }
+
+    private AccessStatus hasPermission(NodeRef nodeRef, String perm)
+    {
+        return aclPerms.get(nodeAcls.get(nodeRef)).contains(perm) ? AccessStatus.ALLOWED : AccessStatus.DENIED;
+    }
+
+    private NodeRef createNode(String name, QName type, String acl, boolean virtual)
+    {
+        NodeRef nodeRef = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, name);
+        nodeAcls.put(nodeRef, acl);
+
+        Map<QName, Serializable> props = new HashMap<>();
+        props.put(ContentModel.PROP_NAME, name);
+        nodeProps.put(nodeRef, props);
+
+        when(nodeService.getType(nodeRef)).thenReturn(type);
+        when(nodeService.getPrimaryParent(nodeRef)).thenReturn(new ChildAssociationRef(ContentModel.ASSOC_CONTAINS, PARENT,
+                QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, name), nodeRef));
+        when(smartStore.isVirtual(nodeRef)).thenReturn(virtual);
+        return nodeRef;
+    }
+
+    /**
+     * The allowable operations of a node worked out from a permission check on that node alone
+     */
+    private Set<String> expectedAllowableOperations(NodeRef nodeRef, boolean isFolder)
+    {
+        Map<String, String> mapPermsToOps = new HashMap<>();
+        mapPermsToOps.put(PermissionService.DELETE, Nodes.OP_DELETE);
+        mapPermsToOps.put(PermissionService.ADD_CHILDREN, Nodes.OP_CREATE);
+        mapPermsToOps.put(PermissionService.WRITE, Nodes.OP_UPDATE);
+        mapPermsToOps.put(PermissionService.CHANGE_PERMISSIONS, Nodes.OP_UPDATE_PERMISSIONS);
+
+        Set<String> ops = new HashSet<>();
+        for (String perm : ALLOWABLE_OPERATIONS_PERMS)
+        {
+            if (perm.equals(PermissionService.ADD_CHILDREN) && !isFolder)
+            {
+                // files never allow "create"
+                continue;
+            }
+            if (permissionService.hasPermission(nodeRef, perm) == AccessStatus.ALLOWED)
+            {
+                ops.add(mapPermsToOps.get(perm));
+            }
+        }
+        return ops;
+    }
+
+    @Test
+    public void testAllowableOperationsForPageWithMixedAclsAndVirtualNode()
+    {
+        NodeRef fullFolder = createNode("full-folder", ContentModel.TYPE_FOLDER, "full", false);
+        NodeRef fullDoc = createNode("full-doc", ContentModel.TYPE_CONTENT, "full", false);
+        NodeRef readOnlyFolder = createNode("read-only-folder", ContentModel.TYPE_FOLDER, "readOnly", false);
+        NodeRef writeDoc = createNode("write-doc", ContentModel.TYPE_CONTENT, "write", false);
+        NodeRef writeFolder = createNode("write-folder", ContentModel.TYPE_FOLDER, "write", false);
+        NodeRef virtualFolder = createNode("virtual-folder", ContentModel.TYPE_FOLDER, "addChildren", true);
+
+        List<NodeRef> page = new ArrayList<>(nodeProps.keySet());
+        List<NodeRef> realNodes = Arrays.asList(fullFolder, fullDoc, readOnlyFolder, writeDoc, writeFolder);
+        when(nodeService.getPropertiesForNodeRefs(page)).thenReturn(nodeProps);
+
+        List<Node> nodes = nodesImpl.getFoldersOrDocuments(page, Collections.singletonList(Nodes.PARAM_INCLUDE_ALLOWABLEOPERATIONS), null);
+        assertEquals(page.size(), nodes.size());
+
+        // the page is loaded and checked in bulk, apart from the virtual node
+        verify(nodeBulkLoader).cacheNodes(page);
+        for (String perm : ALLOWABLE_OPERATIONS_PERMS)
+        {
+            verify(permissionServiceSPI).hasPermissions(realNodes, perm);
+        }
+        for (NodeRef nodeRef : realNodes)
+        {
+            verify(permissionService, never()).hasPermission(eq(nodeRef), anyString());
+        }
+        verify(permissionService).hasPermission(virtualFolder, PermissionService.DELETE);
+
+        for (Node node : nodes)
+        {
+            NodeRef nodeRef = node.getNodeRef();
+            Set<String> expected = expectedAllowableOperations(nodeRef, node.getIsFolder());
+            if (expected.isEmpty())
+            {
+                assertNull("Unexpected allowable operations for " + nodeRef, node.getAllowableOperations());
+            }
+            else
+            {
+                assertEquals("Wrong allowable operations for " + nodeRef, expected, new HashSet<>(node.getAllowableOperations()));
+            }
+        }
+
+        // check that the page has the expected mix
+        assertNull(nodes.get(2).getAllowableOperations());
+        assertEquals(Arrays.asList(Nodes.OP_UPDATE), nodes.get(3).getAllowableOperations());
+        assertEquals(new HashSet<>(Arrays.asList(Nodes.OP_DELETE, Nodes.OP_CREATE)), new HashSet<>(nodes.get(5).getAllowableOperations()));
+    }
+}
@@ -236,6 +236,22 @@ public class SerializeTests extends AbstractContextTest implements RecognizedPar
         assertTrue("There must 'source' json output", StringUtils.contains(out, "\"source\":{\"name\":\"Dolly\",\"age\":3,\"sheepGuid\":\"barbie\""));
     }
 
+    @Test
+    public void testSerializePagedCollectionLazily() throws IOException
+    {
+        Paging pageRequest = Paging.valueOf(1, 2);
+        Map<String, BeanPropertiesFilter> rFilter = getRelationFilter("blacksheep,baaahh");
+        CollectionWithPagingInfo<Farmer> paged = CollectionWithPagingInfo.asPaged(pageRequest, Arrays.asList(new Farmer("180"), new Farmer("190"), new Farmer("280")), true, 5000);
+
+        String expected = writeResponse(helper.processAdditionsToTheResponse(mock(WebScriptResponse.class), api, "sheep", ParamsExtender.valueOf(rFilter, "1"), paged));
+        String out = writeResponse(helper.processAdditionsToTheResponseLazily(mock(WebScriptResponse.class), api, "sheep", ParamsExtender.valueOf(rFilter, "1"), paged));
+        assertEquals("The streamed collection must be serialized as the processed one", expected, out);
+
+        CollectionWithPagingInfo<ExecutionResult> coll = CollectionWithPagingInfo.asPaged(null, Arrays.asList(new ExecutionResult(new Farmer("180"), null)));
+        out = writeResponse(helper.processAdditionsToTheResponseLazily(mock(WebScriptResponse.class), api, "sheep", ParamsExtender.valueOf(true, "1"), coll));
+        assertTrue("There must 'source' json output", StringUtils.contains(out, "\"source\":{\"name\":\"Dolly\",\"age\":3,\"sheepGuid\":\"1\"}"));
+    }
+
     @Test
     public void testExpandRecursiveRelations() throws IOException
     {
@@ -0,0 +1,551 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.attributes;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.domain.propval.PropertyValueDAO;
+import org.alfresco.repo.domain.propval.PropertyValueDAO.CleanupTable;
+import org.alfresco.repo.management.DynamicMBeanExportOperations;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.cmr.attributes.AttributeService;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.Pair;
+import org.alfresco.util.PropertyCheck;
+
+/**
+ * Removes unused values from the alf_prop_xxx tables one bounded ID range at a time.
+ * <p>
+ * Each range is cleaned in its own transaction with short, index-driven queries, so no table is locked for long. The tables are cleaned in {@link CleanupTable} order, each up to the highest ID it had when the cleaner reached it. Progress is kept in the {@link AttributeService}, so a run that is stopped, times out or fails is continued by the next run, on any server.
+ * <p>
+ * The cleaner throttles itself by the time the database takes to clean each range. The range shrinks when it takes longer than {@link #setTargetRangeTimeMs(long) the target} and grows when it takes less than half of it, and the cleaner pauses between ranges in proportion to the time taken.
+ * <p>
+ * The caller must hold the cleanup job lock and refresh it through the callback given to {@link #execute(Runnable, RangeLock)}. Locks that should only be held while the tables are being changed, rather than for the whole run, are taken for each range through the {@link RangeLock}.
+ *
+ * @since 26.3
+ */
+public class IncrementalPropTablesCleaner implements IncrementalPropTablesCleanerMBean
+{
+    private static final Log logger = LogFactory.getLog(IncrementalPropTablesCleaner.class);
+
+    static final String ATTR_KEY_CLEANER = ".propTablesCleaner";
+    static final String ATTR_KEY_PROGRESS = "progress";
+    static final String PROGRESS_TABLE = "table";
+    static final String PROGRESS_FROM_ID = "fromId";
+    static final String PROGRESS_MAX_ID = "maxId";
+
+    private static final long PROGRESS_SAVE_INTERVAL_MS = 60000L;
+    private static final long LOCK_REFRESH_INTERVAL_MS = 60000L;
+
+    private TransactionService transactionService;
+    private AttributeService attributeService;
+    private PropertyValueDAO propertyValueDAO;
+    private DynamicMBeanExportOperations mbeanExporter;
+    private String objectName = "Alfresco:Name=PropTablesCleaner";
+
+    private int minRangeSize = 1000;
+    private int maxRangeSize = 100000;
+    private long targetRangeTimeMs = 500L;
+    private double pauseRatio = 1.0;
+    private long maxRunTimeSeconds = 0L;
+
+    private static final RangeLock NO_RANGE_LOCK = new RangeLock() {
+        @Override
+        public void lock()
+        {}
+
+        @Override
+        public void unlock()
+        {}
+    };
+
+    /**
+     * A lock held only while a single ID range is cleaned, so that other jobs can take it between ranges
+     */
+    public interface RangeLock
+    {
+        /**
+         * Take the lock before a range is cleaned; an exception stops the run, which is continued by the next run
+         */
+        void lock();
+
+        /**
+         * Release the lock once the range has been cleaned
+         */
+        void unlock();
+    }
+
+    private volatile boolean running;
+    private volatile CleanupTable currentTable;
+    private volatile long currentId;
+    private volatile long currentMaxId;
+    private volatile int rangeSize = 10000;
+    private volatile long lastRangeTimeMs;
+    private final AtomicLong rowsScanned = new AtomicLong();
+    private final AtomicLong rowsDeleted = new AtomicLong();
+    private final AtomicLong rangesProcessed = new AtomicLong();
+    private final AtomicLong passesCompleted = new AtomicLong();
+
+    public void setTransactionService(TransactionService transactionService)
+    {
+        this.transactionService = transactionService;
+    }
+
+    public void setAttributeService(AttributeService attributeService)
+    {
+        this.attributeService = attributeService;
+    }
+
+    public void setPropertyValueDAO(PropertyValueDAO propertyValueDAO)
+    {
+        this.propertyValueDAO = propertyValueDAO;
+    }
+
+    /**
+     * @param mbeanExporter
+     *            used to make the cleaner's progress available through JMX (optional)
+     */
+    public void setMbeanExporter(DynamicMBeanExportOperations mbeanExporter)
+    {
+        this.mbeanExporter = mbeanExporter;
+    }
+
+    /**
+     * @param objectName
+     *            the JMX name of the cleaner (default <tt>Alfresco:Name=PropTablesCleaner</tt>)
+     */
+    public void setObjectName(String objectName)
+    {
+        this.objectName = objectName;
+    }
+
+    /**
+     * @param minRangeSize
+     *            the smallest number of IDs cleaned in one transaction (default 1000)
+     */
+    public void setMinRangeSize(int minRangeSize)
+    {
+        this.minRangeSize = minRangeSize;
+    }
+
+    /**
+     * @param maxRangeSize
+     *            the largest number of IDs cleaned in one transaction (default 100000)
+     */
+    public void setMaxRangeSize(int maxRangeSize)
+    {
+        this.maxRangeSize = maxRangeSize;
+    }
+
+    /**
+     * @param targetRangeTimeMs
+     *            the time that cleaning one ID range should take (default 500ms)
+     */
+    public void setTargetRangeTimeMs(long targetRangeTimeMs)
+    {
+        this.targetRangeTimeMs = targetRangeTimeMs;
+    }
+
+    /**
+     * @param pauseRatio
+     *            the pause after each range as a multiple of the time the range took; 1.0 (the default) keeps the database busy at most half of the time and 0 disables the pause
+     */
+    public void setPauseRatio(double pauseRatio)
+    {
+        this.pauseRatio = pauseRatio;
+    }
+
+    /**
+     * @param maxRunTimeSeconds
+     *            the time after which a run stops, to be continued by the next run; 0 (the default) for no limit
+     */
+    public void setMaxRunTimeSeconds(long maxRunTimeSeconds)
+    {
+        this.maxRunTimeSeconds = maxRunTimeSeconds;
+    }
+
+    public void init()
+    {
+        PropertyCheck.mandatory(this, "transactionService", transactionService);
+        PropertyCheck.mandatory(this, "attributeService", attributeService);
+        PropertyCheck.mandatory(this, "propertyValueDAO", propertyValueDAO);
+        if (minRangeSize < 1 || maxRangeSize < minRangeSize)
+        {
+            throw new AlfrescoRuntimeException("The cleanup range sizes must be at least 1 and minRangeSize must not exceed maxRangeSize");
+        }
+        rangeSize = Math.max(minRangeSize, Math.min(rangeSize, maxRangeSize));
+
+        if (mbeanExporter != null)
+        {
+            mbeanExporter.registerMBean(this, getObjectName());
+        }
+    }
+
+    public void destroy()
+    {
+        if (mbeanExporter != null)
+        {
+            mbeanExporter.unregisterMBean(getObjectName());
+        }
+    }
+
+    private ObjectName getObjectName()
+    {
+        try
+        {
+            return new ObjectName(objectName);
+        }
+        catch (MalformedObjectNameException e)
+        {
+            throw new AlfrescoRuntimeException("Invalid JMX name for the prop tables cleaner: " + objectName, e);
+        }
+    }
+
+    /**
+     * Clean ID ranges, continuing from where the last run stopped, until all the tables have been cleaned or the run time is used up.
+     *
+     * @param lockRefresher
+     *            called regularly to refresh the job locks held by the caller; it should throw an exception if a lock has been lost
+     */
+    public void execute(Runnable lockRefresher)
+    {
+        execute(lockRefresher, NO_RANGE_LOCK);
+    }
+
+    /**
+     * Clean ID ranges, continuing from where the last run stopped, until all the tables have been cleaned or the run time is used up.
+     *
+     * @param lockRefresher
+     *            called regularly to refresh the job locks held by the caller; it should throw an exception if a lock has been lost
+     * @param rangeLock
+     *            taken while each range is cleaned and released before the pause that follows it
+     */
+    public void execute(Runnable lockRefresher, RangeLock rangeLock)
+    {
+        long startTime = System.currentTimeMillis();
+        long endTime = maxRunTimeSeconds > 0 ? startTime + TimeUnit.SECONDS.toMillis(maxRunTimeSeconds) : Long.MAX_VALUE;
+        long lastSaved = startTime;
+        long lastRefreshed = startTime;
+        boolean passCompleted = false;
+        boolean progressChanged = false;
+        Map<String, Serializable> progress = null;
+
+        running = true;
+        try
+        {
+            progress = loadProgress();
+            if (progress == null)
+            {
+                progress = startTable(CleanupTable.values()[0]);
+                progressChanged = true;
+            }
+            while (true)
+            {
+                CleanupTable table = CleanupTable.valueOf((String) progress.get(PROGRESS_TABLE));
+                long fromId = (Long) progress.get(PROGRESS_FROM_ID);
+                long maxId = (Long) progress.get(PROGRESS_MAX_ID);
+                currentTable = table;
+                currentId = fromId;
+                currentMaxId = maxId;
+
+                if (fromId >= maxId)
+                {
+                    if (table.ordinal() + 1 < CleanupTable.values().length)
+                    {
+                        progress = startTable(CleanupTable.values()[table.ordinal() + 1]);
+                        progressChanged = true;
+                        continue;
+                    }
+                    passCompleted = true;
+                    break;
+                }
+                if (System.currentTimeMillis() >= endTime)
+                {
+                    if (logger.isDebugEnabled())
+                    {
+                        logger.debug("Stopping prop tables cleanup at " + table.getTableName() + " ID " + fromId + "; it will continue on the next run.");
+                    }
+                    break;
+                }
+
+                long toId = Math.min(fromId + rangeSize, maxId);
+                rangeLock.lock();
+                try
+                {
+                    cleanRange(table, fromId, toId);
+                }
+                finally
+                {
+                    rangeLock.unlock();
+                }
+                progress.put(PROGRESS_FROM_ID, toId);
+                progressChanged = true;
+                currentId = toId;
+
+                long now = System.currentTimeMillis();
+                if (now - lastSaved >= PROGRESS_SAVE_INTERVAL_MS)
+                {
+                    saveProgress(progress);
+                    progressChanged = false;
+                    lastSaved = now;
+                }
+                if (now - lastRefreshed >= LOCK_REFRESH_INTERVAL_MS)
+                {
+                    lockRefresher.run();
+                    lastRefreshed = now;
+                }
+                if (!pause())
+                {
+                    break;
+                }
+            }
+
+            if (passCompleted)
+            {
+                removeProgress();
+                passesCompleted.incrementAndGet();
+                currentTable = null;
+                currentId = 0L;
+                currentMaxId = 0L;
+                if (logger.isInfoEnabled())
+                {
+                    logger.info("Prop tables cleanup pass completed: " + rowsDeleted.get() + " of " + rowsScanned.get() + " rows deleted since startup.");
+                }
+            }
+        }
+        finally
+        {
+            // Keep the ranges cleaned so far even if the run failed
+            if (!passCompleted && progressChanged)
+            {
+                try
+                {
+                    saveProgress(progress);
+                }
+                catch (RuntimeException e)
+                {
+                    logger.error("Failed to save the prop tables cleanup progress: " + progress, e);
+                }
+            }
+            running = false;
+        }
+    }
+
+    private void cleanRange(final CleanupTable table, final long fromId, final long toId)
+    {
+        RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        long start = System.nanoTime();
+        Pair<Integer, Integer> result = txnHelper.doInTransaction(new RetryingTransactionCallback<Pair<Integer, Integer>>() {
+            @Override
+            public Pair<Integer, Integer> execute() throws Throwable
+            {
+                return propertyValueDAO.cleanupUnusedValues(table, fromId, toId);
+            }
+        }, false, true);
+        lastRangeTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        rowsScanned.addAndGet(result.getFirst());
+        rowsDeleted.addAndGet(result.getSecond());
+        rangesProcessed.incrementAndGet();
+
+        // Adjust the range to the time the database is taking
+        if (lastRangeTimeMs > targetRangeTimeMs)
+        {
+            rangeSize = Math.max(minRangeSize, rangeSize / 2);
+        }
+        else if (lastRangeTimeMs < targetRangeTimeMs / 2)
+        {
+            rangeSize = (int) Math.min(maxRangeSize, rangeSize * 2L);
+        }
+    }
+
+    /**
+     * Give the database time to catch up with other work
+     *
+     * @return <tt>false</tt> if the thread was interrupted
+     */
+    private boolean pause()
+    {
+        long pauseMs = (long) (lastRangeTimeMs * pauseRatio);
+        if (pauseMs <= 0)
+        {
+            return true;
+        }
+        try
+        {
+            Thread.sleep(pauseMs);
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Map<String, Serializable> startTable(final CleanupTable table)
+    {
+        long maxId = transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Long>() {
+            @Override
+            public Long execute() throws Throwable
+            {
+                return propertyValueDAO.getMaxCleanupId(table);
+            }
+        }, true, true);
+        Map<String, Serializable> progress = new HashMap<String, Serializable>(5);
+        progress.put(PROGRESS_TABLE, table.name());
+        progress.put(PROGRESS_FROM_ID, 0L);
+        progress.put(PROGRESS_MAX_ID, maxId);
+        return progress;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Serializable> loadProgress()
+    {
+        Serializable progress = transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Serializable>() {
+            @Override
+            public Serializable execute() throws Throwable
+            {
+                return attributeService.getAttribute(ATTR_KEY_CLEANER, ATTR_KEY_PROGRESS);
+            }
+        }, true, true);
+        if (!(progress instanceof Map))
+        {
+            return null;
+        }
+        Map<String, Serializable> progressMap = new HashMap<String, Serializable>((Map<String, Serializable>) progress);
+        try
+        {
+            CleanupTable.valueOf((String) progressMap.get(PROGRESS_TABLE));
+            if (progressMap.get(PROGRESS_FROM_ID) instanceof Long && progressMap.get(PROGRESS_MAX_ID) instanceof Long)
+            {
+                return progressMap;
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // Not recognized
+        }
+        logger.warn("Ignoring unrecognized prop tables cleanup progress: " + progress);
+        return null;
+    }
+
+    private void saveProgress(final Map<String, Serializable> progress)
+    {
+        transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>() {
+            @Override
+            public Void execute() throws Throwable
+            {
+                attributeService.setAttribute(new HashMap<String, Serializable>(progress), ATTR_KEY_CLEANER, ATTR_KEY_PROGRESS);
+                return null;
+            }
+        }, false, true);
+    }
+
+    private void removeProgress()
+    {
+        transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>() {
+            @Override
+            public Void execute() throws Throwable
+            {
+                attributeService.removeAttribute(ATTR_KEY_CLEANER, ATTR_KEY_PROGRESS);
+                return null;
+            }
+        }, false, true);
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    @Override
+    public String getCurrentTable()
+    {
+        CleanupTable table = currentTable;
+        return table == null ? null : table.getTableName();
+    }
+
+    @Override
+    public long getCurrentId()
+    {
+        return currentId;
+    }
+
+    @Override
+    public long getCurrentMaxId()
+    {
+        return currentMaxId;
+    }
+
+    @Override
+    public int getRangeSize()
+    {
+        return rangeSize;
+    }
+
+    @Override
+    public long getRowsScanned()
+    {
+        return rowsScanned.get();
+    }
+
+    @Override
+    public long getRowsDeleted()
+    {
+        return rowsDeleted.get();
+    }
+
+    @Override
+    public long getRangesProcessed()
+    {
+        return rangesProcessed.get();
+    }
+
+    @Override
+    public long getLastRangeTimeMs()
+    {
+        return lastRangeTimeMs;
+    }
+
+    @Override
+    public long getPassesCompleted()
+    {
+        return passesCompleted.get();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.attributes;
+
+/**
+ * Management interface of the {@link IncrementalPropTablesCleaner}.
+ *
+ * @since 26.3
+ */
+public interface IncrementalPropTablesCleanerMBean
+{
+    /**
+     * @return <tt>true</tt> if the cleaner is running on this server
+     */
+    boolean isRunning();
+
+    /**
+     * @return the table being cleaned, or the table the next run will continue with
+     */
+    String getCurrentTable();
+
+    /**
+     * @return the ID up to which the current table has been cleaned
+     */
+    long getCurrentId();
+
+    /**
+     * @return the highest ID of the current table that the current pass will clean
+     */
+    long getCurrentMaxId();
+
+    /**
+     * @return the number of IDs covered by the next range, as adjusted to the database response time
+     */
+    int getRangeSize();
+
+    /**
+     * @return the number of rows checked on this server since it started
+     */
+    long getRowsScanned();
+
+    /**
+     * @return the number of rows deleted on this server since it started
+     */
+    long getRowsDeleted();
+
+    /**
+     * @return the number of ID ranges cleaned on this server since it started
+     */
+    long getRangesProcessed();
+
+    /**
+     * @return the time taken to clean the last ID range (milliseconds)
+     */
+    long getLastRangeTimeMs();
+
+    /**
+     * @return the number of passes over all the tables completed on this server since it started
+     */
+    long getPassesCompleted();
+}
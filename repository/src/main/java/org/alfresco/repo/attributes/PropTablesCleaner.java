@@ -48,10 +48,12 @@ public class PropTablesCleaner
     private static final String PROPERTY_PROP_TABLE_CLEANER_ALG = "system.prop_table_cleaner.algorithm";
     private static final String PROP_TABLE_CLEANER_ALG_V2 = "V2";
     private static final String PROP_TABLE_CLEANER_ALG_V3 = "V3";
+    private static final String PROP_TABLE_CLEANER_ALG_V4 = "V4";
 
     private PropertyValueDAO propertyValueDAO;
     private JobLockService jobLockService;
     private Properties globalProperties;
+    private IncrementalPropTablesCleaner incrementalCleaner;
 
     /* 1 minute */
     private static final long LOCK_TTL = 360000L;
@@ -74,6 +76,15 @@ public class PropTablesCleaner
         this.globalProperties = globalProperties;
     }
 
+    /**
+     * @param incrementalCleaner
+     *            the cleaner used by algorithm V4
+     */
+    public void setIncrementalCleaner(IncrementalPropTablesCleaner incrementalCleaner)
+    {
+        this.incrementalCleaner = incrementalCleaner;
+    }
+
     public void checkProperties()
     {
         PropertyCheck.mandatory(this, "jobLockService", jobLockService);
@@ -94,20 +105,33 @@ public class PropTablesCleaner
         {
             // Get a lock for cleanup
             propCleanUplockToken = jobLockService.getLock(LOCK_QNAME, LOCK_TTL);
-            // Get a lock for LDAP sync as well, see REPO-4556
-            ldapSyncLockTocken = jobLockService.getLock(ChainingUserRegistrySynchronizer.LOCK_QNAME, LOCK_TTL);
 
-            if (PROP_TABLE_CLEANER_ALG_V2.equalsIgnoreCase(getAlgorithm()))
-            {
-                propertyValueDAO.cleanupUnusedValuesV2();
-            }
-            else if (PROP_TABLE_CLEANER_ALG_V3.equalsIgnoreCase(getAlgorithm()))
+            if (PROP_TABLE_CLEANER_ALG_V4.equalsIgnoreCase(getAlgorithm()))
             {
-                propertyValueDAO.cleanupUnusedValuesV3();
+                // The LDAP sync lock is only held while each range is cleaned, so a long run does not hold up the sync, see REPO-4556
+                PropertyCheck.mandatory(this, "incrementalCleaner", incrementalCleaner);
+                final String cleanupLockToken = propCleanUplockToken;
+                incrementalCleaner.execute(
+                        () -> jobLockService.refreshLock(cleanupLockToken, LOCK_QNAME, LOCK_TTL),
+                        new LdapSyncRangeLock());
             }
             else
             {
-                propertyValueDAO.cleanupUnusedValues();
+                // Get a lock for LDAP sync as well, see REPO-4556
+                ldapSyncLockTocken = jobLockService.getLock(ChainingUserRegistrySynchronizer.LOCK_QNAME, LOCK_TTL);
+
+                if (PROP_TABLE_CLEANER_ALG_V2.equalsIgnoreCase(getAlgorithm()))
+                {
+                    propertyValueDAO.cleanupUnusedValuesV2();
+                }
+                else if (PROP_TABLE_CLEANER_ALG_V3.equalsIgnoreCase(getAlgorithm()))
+                {
+                    propertyValueDAO.cleanupUnusedValuesV3();
+                }
+                else
+                {
+                    propertyValueDAO.cleanupUnusedValues();
+                }
             }
         }
         catch (LockAcquisitionException e)
@@ -144,6 +168,38 @@ public class PropTablesCleaner
         }
     }
 
+    /**
+     * Takes the LDAP sync lock for each range cleaned by the {@link IncrementalPropTablesCleaner}
+     */
+    private class LdapSyncRangeLock implements IncrementalPropTablesCleaner.RangeLock
+    {
+        private String lockToken;
+
+        @Override
+        public void lock()
+        {
+            lockToken = jobLockService.getLock(ChainingUserRegistrySynchronizer.LOCK_QNAME, LOCK_TTL);
+        }
+
+        @Override
+        public void unlock()
+        {
+            if (lockToken == null)
+            {
+                return;
+            }
+            try
+            {
+                jobLockService.releaseLock(lockToken, ChainingUserRegistrySynchronizer.LOCK_QNAME);
+            }
+            catch (LockAcquisitionException e)
+            {
+                // Ignore
+            }
+            lockToken = null;
+        }
+    }
+
     private String getAlgorithm()
     {
         return globalProperties.getProperty(PROPERTY_PROP_TABLE_CLEANER_ALG);
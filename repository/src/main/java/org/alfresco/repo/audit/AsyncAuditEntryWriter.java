@@ -0,0 +1,429 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.audit;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.SQLDataException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.extensions.surf.util.AbstractLifecycleBean;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.error.ExceptionStackUtil;
+import org.alfresco.repo.domain.audit.AuditDAO;
+import org.alfresco.repo.domain.audit.AuditDAO.NewAuditEntry;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.TransactionListenerAdapter;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.TraceableThreadFactory;
+
+/**
+ * Writes audit entries to the database in batches, in the background, after the transactions that recorded them have committed.
+ * <p>
+ * Entries queued during a transaction are appended to an {@link AuditEntryJournal} on disk when the transaction commits. Each server keeps its journal in a subdirectory of the {@link #setJournalDirectory(String) journal directory} named after its host name, so that servers sharing the directory do not share a journal. A single background thread reads the journal in order and writes each batch of entries in its own transaction, so entries reach the database in the order their transactions committed. Entries still in the journal when the server stops are written when it next starts.
+ * <p>
+ * Entries are written at least once: if the server stops after a batch is written but before the journal records it, the batch is written again on restart. Entries recorded by a transaction that is still committing when the server fails are lost.
+ * <p>
+ * If a batch fails to write it is retried after a delay. Once the same batch has failed {@link #setMaxBatchFailures(int) a number of times} its entries are written one at a time. An entry that the database rejects, for example because it breaks a constraint, is logged and dropped. Any other failure, such as a lost connection, stops the writer and the entries that are left are kept for the next attempt.
+ *
+ * @since 26.3
+ */
+public class AsyncAuditEntryWriter extends AbstractLifecycleBean
+{
+    private static final Log logger = LogFactory.getLog(AsyncAuditEntryWriter.class);
+
+    private static final String KEY_PENDING_ENTRIES = AsyncAuditEntryWriter.class.getName() + ".pendingEntries";
+
+    private TransactionService transactionService;
+    private AuditDAO auditDAO;
+    private String journalDirectory;
+    private boolean journalSync = true;
+    private int batchSize = 500;
+    private long idleWaitMs = 1000L;
+    private long failureWaitMs = 10000L;
+    private int maxBatchFailures = 10;
+
+    private AuditEntryJournal journal;
+    private final Object writeLock = new Object();
+    private final Object wakeUp = new Object();
+    private volatile boolean running;
+    private Thread writerThread;
+    private int batchFailures;
+
+    public void setTransactionService(TransactionService transactionService)
+    {
+        this.transactionService = transactionService;
+    }
+
+    public void setAuditDAO(AuditDAO auditDAO)
+    {
+        this.auditDAO = auditDAO;
+    }
+
+    /**
+     * Set the directory holding the journals of entries waiting to be written. Each server uses a subdirectory named after its host name.
+     */
+    public void setJournalDirectory(String journalDirectory)
+    {
+        this.journalDirectory = journalDirectory;
+    }
+
+    /**
+     * Set whether the journal is forced to disk after every commit (default <tt>true</tt>). Without it, entries recorded shortly before an operating system failure can be lost.
+     */
+    public void setJournalSync(boolean journalSync)
+    {
+        this.journalSync = journalSync;
+    }
+
+    /**
+     * Set the maximum number of entries written in one transaction
+     */
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set how long the writer waits for new entries when the journal is empty
+     */
+    public void setIdleWaitMs(long idleWaitMs)
+    {
+        this.idleWaitMs = idleWaitMs;
+    }
+
+    /**
+     * Set how long the writer waits before retrying a batch that failed
+     */
+    public void setFailureWaitMs(long failureWaitMs)
+    {
+        this.failureWaitMs = failureWaitMs;
+    }
+
+    /**
+     * Set the number of times a batch may fail before its entries are written one at a time
+     */
+    public void setMaxBatchFailures(int maxBatchFailures)
+    {
+        this.maxBatchFailures = maxBatchFailures;
+    }
+
+    /**
+     * Queue an entry to be written after the current transaction commits. The entry is discarded if the transaction rolls back.
+     */
+    public void queue(NewAuditEntry entry)
+    {
+        PendingEntriesListener pendingEntries = AlfrescoTransactionSupport.getResource(KEY_PENDING_ENTRIES);
+        if (pendingEntries == null)
+        {
+            pendingEntries = new PendingEntriesListener();
+            AlfrescoTransactionSupport.bindResource(KEY_PENDING_ENTRIES, pendingEntries);
+            AlfrescoTransactionSupport.bindListener(pendingEntries);
+        }
+        pendingEntries.entries.add(entry);
+    }
+
+    /**
+     * Write all entries in the journal to the database, in order. This is done by the background thread but can be called directly, for example to write any entries pending before a query.
+     *
+     * @return the number of entries written
+     */
+    public int writePending()
+    {
+        synchronized (writeLock)
+        {
+            return writePendingImpl();
+        }
+    }
+
+    private int writePendingImpl()
+    {
+        int written = 0;
+        while (true)
+        {
+            AuditEntryJournal.Batch batch;
+            try
+            {
+                batch = getJournal().read(batchSize);
+            }
+            catch (IOException e)
+            {
+                throw new AlfrescoRuntimeException("Failed to read the audit journal", e);
+            }
+            List<NewAuditEntry> entries = batch.getEntries();
+            if (entries.isEmpty())
+            {
+                return written;
+            }
+            try
+            {
+                writeInTransaction(entries);
+                batchFailures = 0;
+            }
+            catch (RuntimeException e)
+            {
+                batchFailures++;
+                if (batchFailures < maxBatchFailures)
+                {
+                    throw e;
+                }
+                logger.warn("Audit entries failed to write " + batchFailures + " times; writing them one at a time.", e);
+                written += writeIndividually(batch);
+                batchFailures = 0;
+                continue;
+            }
+            commitJournal(batch.getEndPosition());
+            written += entries.size();
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Wrote " + entries.size() + " audit entries from the journal");
+            }
+        }
+    }
+
+    private void writeInTransaction(final List<NewAuditEntry> entries)
+    {
+        RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        txnHelper.setForceWritable(true);
+        txnHelper.doInTransaction(() -> {
+            auditDAO.createAuditEntries(entries);
+            return null;
+        }, false, true);
+    }
+
+    /**
+     * Write the entries of the batch one at a time, moving the journal checkpoint past each entry that is written or rejected
+     *
+     * @return the number of entries written
+     */
+    private int writeIndividually(AuditEntryJournal.Batch batch)
+    {
+        List<NewAuditEntry> entries = batch.getEntries();
+        int written = 0;
+        for (int i = 0; i < entries.size(); i++)
+        {
+            NewAuditEntry entry = entries.get(i);
+            try
+            {
+                writeInTransaction(Collections.singletonList(entry));
+                written++;
+            }
+            catch (RuntimeException e)
+            {
+                if (!isRejected(e))
+                {
+                    // The failure may pass, so keep this entry and the ones after it
+                    throw e;
+                }
+                logger.error("Dropping audit entry that the database rejected: " + entry, e);
+            }
+            commitJournal(batch.getEndPosition(i));
+        }
+        return written;
+    }
+
+    /**
+     * @return <tt>true</tt> if the failure is caused by the data of the entry, so that writing it again would fail too
+     */
+    private static boolean isRejected(RuntimeException e)
+    {
+        return ExceptionStackUtil.getCause(e, DataIntegrityViolationException.class, SQLIntegrityConstraintViolationException.class, SQLDataException.class) != null;
+    }
+
+    private void commitJournal(long position)
+    {
+        try
+        {
+            getJournal().commit(position);
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoRuntimeException("Failed to update the audit journal checkpoint", e);
+        }
+    }
+
+    private synchronized AuditEntryJournal getJournal()
+    {
+        if (journal == null)
+        {
+            try
+            {
+                journal = new AuditEntryJournal(getServerJournalDirectory(), journalSync);
+            }
+            catch (IOException e)
+            {
+                throw new AlfrescoRuntimeException("Failed to open the audit journal in " + getServerJournalDirectory(), e);
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * @return the subdirectory of the journal directory that belongs to this server
+     */
+    private File getServerJournalDirectory()
+    {
+        String hostName;
+        try
+        {
+            hostName = InetAddress.getLocalHost().getHostName();
+        }
+        catch (UnknownHostException e)
+        {
+            throw new AlfrescoRuntimeException("Failed to find the host name that names the audit journal of this server", e);
+        }
+        return new File(journalDirectory, hostName.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    private void append(List<NewAuditEntry> entries)
+    {
+        try
+        {
+            getJournal().append(entries);
+        }
+        catch (IOException e)
+        {
+            // The transaction has committed, so this is all that can be done
+            logger.error("Failed to append " + entries.size() + " audit entries to the journal: " + entries, e);
+            return;
+        }
+        synchronized (wakeUp)
+        {
+            wakeUp.notifyAll();
+        }
+    }
+
+    private void runWriter()
+    {
+        while (running)
+        {
+            long waitMs = idleWaitMs;
+            try
+            {
+                if (writePending() > 0)
+                {
+                    continue;
+                }
+            }
+            catch (Throwable e)
+            {
+                logger.error("Failed to write audit entries; retrying in " + failureWaitMs + "ms", e);
+                waitMs = failureWaitMs;
+            }
+            synchronized (wakeUp)
+            {
+                try
+                {
+                    wakeUp.wait(waitMs);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void onBootstrap(ApplicationEvent event)
+    {
+        // Opening the journal recovers it and the writer replays anything left from the last run
+        getJournal();
+
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setThreadDaemon(true);
+        threadFactory.setNamePrefix("AuditEntryWriter");
+        running = true;
+        writerThread = threadFactory.newThread(this::runWriter);
+        writerThread.start();
+    }
+
+    @Override
+    protected void onShutdown(ApplicationEvent event)
+    {
+        running = false;
+        synchronized (wakeUp)
+        {
+            wakeUp.notifyAll();
+        }
+        if (writerThread != null)
+        {
+            try
+            {
+                writerThread.join(failureWaitMs);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            writerThread = null;
+        }
+        synchronized (this)
+        {
+            if (journal != null)
+            {
+                try
+                {
+                    journal.close();
+                }
+                catch (IOException e)
+                {
+                    logger.warn("Failed to close the audit journal", e);
+                }
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Collects the entries of one transaction and appends them to the journal once it commits
+     */
+    private class PendingEntriesListener extends TransactionListenerAdapter
+    {
+        private final List<NewAuditEntry> entries = new ArrayList<>();
+
+        @Override
+        public void afterCommit()
+        {
+            if (!entries.isEmpty())
+            {
+                append(entries);
+            }
+        }
+    }
+}
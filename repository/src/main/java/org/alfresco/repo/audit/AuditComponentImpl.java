@@ -47,6 +47,7 @@ import org.alfresco.repo.audit.model.AuditModelRegistry;
 import org.alfresco.repo.audit.model.AuditModelRegistryImpl;
 import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.domain.audit.AuditDAO;
+import org.alfresco.repo.domain.audit.AuditDAO.NewAuditEntry;
 import org.alfresco.repo.domain.propval.PropertyValueDAO;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
@@ -85,6 +86,9 @@ public class AuditComponentImpl implements AuditComponent
     private AuditRecordReporter auditRecordReporter;
     private SimpleCache<Long, Set<String>> disabledPathsCache;
     private boolean disabledPathsCacheEnabled;
+    private AsyncAuditEntryWriter asyncAuditEntryWriter;
+    private boolean asyncEnabled;
+    private Set<String> synchronousApplications = Collections.emptySet();
 
     /**
      * Default constructor
@@ -158,6 +162,59 @@ public class AuditComponentImpl implements AuditComponent
         this.disabledPathsCacheEnabled = disabledPathsCacheEnabled;
     }
 
+    /**
+     * Set the writer used to persist audit entries when {@link #setAsyncEnabled(boolean) asynchronous auditing} is on
+     *
+     * @since 26.3
+     */
+    public void setAsyncAuditEntryWriter(AsyncAuditEntryWriter asyncAuditEntryWriter)
+    {
+        this.asyncAuditEntryWriter = asyncAuditEntryWriter;
+    }
+
+    /**
+     * Set whether audit entries are written to the database in the background after the transaction commits, rather than within it. Entries are then not visible to queries until written, and the entry ID passed to the audit record reporter is <tt>null</tt>.
+     *
+     * @since 26.3
+     */
+    public void setAsyncEnabled(boolean asyncEnabled)
+    {
+        this.asyncEnabled = asyncEnabled;
+    }
+
+    /**
+     * Set the names of the audit applications that are always written within the transaction, even when asynchronous auditing is on
+     *
+     * @param synchronousApplications
+     *            a comma-separated list of application names
+     * @since 26.3
+     */
+    public void setSynchronousApplications(String synchronousApplications)
+    {
+        Set<String> applications = new HashSet<>();
+        if (synchronousApplications != null)
+        {
+            for (String application : synchronousApplications.split(","))
+            {
+                if (!application.isBlank())
+                {
+                    applications.add(application.trim());
+                }
+            }
+        }
+        this.synchronousApplications = applications;
+    }
+
+    private boolean isAsync()
+    {
+        return asyncEnabled && asyncAuditEntryWriter != null;
+    }
+
+    private boolean isAsync(AuditApplication application)
+    {
+        return isAsync() && !synchronousApplications.contains(application.getApplicationName());
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -627,6 +684,21 @@ public class AuditComponentImpl implements AuditComponent
 
         // We have something to record. Start a transaction, if necessary
         TxnReadState txnState = AlfrescoTransactionSupport.getTransactionReadState();
+        if (isAsync() && synchronousApplications.isEmpty())
+        {
+            // Entries are written after commit, so the transaction only has to read
+            switch (txnState)
+            {
+            case TXN_NONE:
+                RetryingTransactionCallback<Map<String, Serializable>> callback = () -> recordAuditValuesImpl(mappedValues);
+                return transactionService.getRetryingTransactionHelper().doInTransaction(callback, true, true);
+            case TXN_READ_ONLY:
+            case TXN_READ_WRITE:
+                return recordAuditValuesImpl(mappedValues);
+            default:
+                throw new IllegalStateException("Unknown txn state: " + txnState);
+            }
+        }
         switch (txnState)
         {
         case TXN_NONE:
@@ -783,7 +855,14 @@ public class AuditComponentImpl implements AuditComponent
             boolean justGatherPreCallData = application.isApplicationJustGeneratingPreCallData();
             if (!justGatherPreCallData && isAuditingToDatabaseEnabled())
             {
-                entryId = auditDAO.createAuditEntry(applicationId, time, username, auditData);
+                if (isAsync(application))
+                {
+                    asyncAuditEntryWriter.queue(new NewAuditEntry(applicationId, time, username, new HashMap<>(auditData)));
+                }
+                else
+                {
+                    entryId = auditDAO.createAuditEntry(applicationId, time, username, auditData);
+                }
             }
             if (isAuditingToAuditStorageEnabled())
             {
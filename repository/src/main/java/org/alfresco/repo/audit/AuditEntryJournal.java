@@ -0,0 +1,629 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.audit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.alfresco.repo.domain.audit.AuditDAO.NewAuditEntry;
+
+/**
+ * Append-only log of audit entries that have been recorded but not yet written to the database.
+ * <p>
+ * Each record is the serialized entry preceded by its length and CRC. Records are appended to the newest of a sequence of numbered segment files, and a new segment is started once the newest one has reached the segment size. A separate checkpoint file holds the position of the first record that has not been written to the database. Entries are read back in the order they were appended, starting at the checkpoint. A segment is deleted once the checkpoint has moved past it and the newest segment is emptied whenever the checkpoint catches up with its end, so the journal never holds much more than one segment of entries that have already been written. A record that was only partially written when the server stopped fails its CRC check and is dropped, along with anything after it, when the journal is opened.
+ * <p>
+ * A position holds the segment number in its upper bits and the offset within the segment in its lower 40 bits.
+ * <p>
+ * The journal belongs to a single server. An exclusive lock on a lock file in the directory is held while the journal is open, and opening a journal that another process has open fails. File locks are not reliable on network file systems, so the directory must not be shared between the servers of a cluster.
+ *
+ * @since 26.3
+ */
+public class AuditEntryJournal
+{
+    private static final Log logger = LogFactory.getLog(AuditEntryJournal.class);
+
+    static final String JOURNAL_FILE_PREFIX = "audit-entries.";
+    static final String JOURNAL_FILE_SUFFIX = ".journal";
+    static final String CHECKPOINT_FILE = "audit-entries.checkpoint";
+    static final String LOCK_FILE = "audit-entries.lock";
+
+    /** The size in bytes at which a new segment is started by default */
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024L * 1024L;
+
+    private static final int RECORD_HEADER_SIZE = 4 + 8;
+    private static final int SEGMENT_SHIFT = 40;
+    private static final long OFFSET_MASK = (1L << SEGMENT_SHIFT) - 1L;
+
+    private final File dir;
+    private final boolean sync;
+    private final long segmentSize;
+    private final FileChannel lockChannel;
+    /** The open segments, from the one holding the checkpoint to the newest */
+    private final TreeMap<Long, FileChannel> segments = new TreeMap<>();
+    private final RandomAccessFile checkpointFile;
+    private long checkpoint;
+
+    /**
+     * Open the journal in the given directory, creating it if necessary, with segments of the {@link #DEFAULT_SEGMENT_SIZE default size}
+     *
+     * @param dir
+     *            the directory holding the journal files
+     * @param sync
+     *            <tt>true</tt> to force every append to disk before returning
+     * @throws IOException
+     *             if the journal cannot be opened or is already open in another process
+     */
+    public AuditEntryJournal(File dir, boolean sync) throws IOException
+    {
+        this(dir, sync, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open the journal in the given directory, creating it if necessary
+     *
+     * @param dir
+     *            the directory holding the journal files
+     * @param sync
+     *            <tt>true</tt> to force every append to disk before returning
+     * @param segmentSize
+     *            the size in bytes at which a new segment file is started
+     * @throws IOException
+     *             if the journal cannot be opened or is already open in another process
+     */
+    @SuppressWarnings("resource")
+    public AuditEntryJournal(File dir, boolean sync, long segmentSize) throws IOException
+    {
+        if (!dir.exists() && !dir.mkdirs())
+        {
+            throw new IOException("Failed to create audit journal directory: " + dir);
+        }
+        this.dir = dir;
+        this.sync = sync;
+        this.segmentSize = segmentSize;
+        this.lockChannel = new RandomAccessFile(new File(dir, LOCK_FILE), "rw").getChannel();
+        lock(lockChannel, dir);
+        try
+        {
+            this.checkpointFile = new RandomAccessFile(new File(dir, CHECKPOINT_FILE), "rwd");
+            this.checkpoint = checkpointFile.length() >= 8 ? checkpointFile.readLong() : 0L;
+            openSegments();
+            recover();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            closeSegments();
+            // Closing the channel releases the lock
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Take the exclusive lock on the journal directory, which is held until the lock channel is closed
+     */
+    private static void lock(FileChannel lockChannel, File dir) throws IOException
+    {
+        FileLock lock;
+        try
+        {
+            lock = lockChannel.tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            // Already open in this JVM
+            lock = null;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            lockChannel.close();
+            throw e;
+        }
+        if (lock == null)
+        {
+            lockChannel.close();
+            throw new IOException(
+                    "The audit journal is already open, possibly by another server. Each server needs its own journal directory: \n" +
+                            "   Directory: " + dir);
+        }
+    }
+
+    /**
+     * Open the segments from the one holding the checkpoint onwards and delete any before it, which have been written
+     */
+    private void openSegments() throws IOException
+    {
+        long checkpointSegment = segment(checkpoint);
+        File[] files = dir.listFiles((parent, name) -> name.startsWith(JOURNAL_FILE_PREFIX) && name.endsWith(JOURNAL_FILE_SUFFIX));
+        for (File file : files == null ? new File[0] : files)
+        {
+            String name = file.getName();
+            long segment;
+            try
+            {
+                segment = Long.parseLong(name.substring(JOURNAL_FILE_PREFIX.length(), name.length() - JOURNAL_FILE_SUFFIX.length()));
+            }
+            catch (NumberFormatException e)
+            {
+                continue;
+            }
+            if (segment < checkpointSegment)
+            {
+                deleteSegmentFile(segment);
+            }
+            else
+            {
+                segments.put(segment, openSegment(segment));
+            }
+        }
+        if (segments.isEmpty())
+        {
+            segments.put(checkpointSegment, openSegment(checkpointSegment));
+        }
+        else if (segments.firstKey() != checkpointSegment)
+        {
+            // Only possible if the segment was removed by hand
+            logger.warn(
+                    "The audit journal segment holding the checkpoint is missing, continuing with the next one: \n" +
+                            "   Directory: " + dir + "\n" +
+                            "   Segment:   " + checkpointSegment);
+            writeCheckpoint(position(segments.firstKey(), 0L));
+        }
+    }
+
+    /**
+     * Check the records after the checkpoint and cut the journal at the first record that is incomplete
+     */
+    private void recover() throws IOException
+    {
+        long checkpointSegment = segment(checkpoint);
+        if (offset(checkpoint) > segments.get(checkpointSegment).size())
+        {
+            // The segment was emptied but the checkpoint was not reset
+            writeCheckpoint(position(checkpointSegment, 0L));
+        }
+        int count = 0;
+        Long lastGoodSegment = null;
+        for (Map.Entry<Long, FileChannel> entry : segments.entrySet())
+        {
+            long segment = entry.getKey();
+            FileChannel channel = entry.getValue();
+            long size = channel.size();
+            long offset = segment == checkpointSegment ? offset(checkpoint) : 0L;
+            while (offset < size)
+            {
+                byte[] bytes = readRecord(channel, offset, size);
+                if (bytes == null)
+                {
+                    logger.warn(
+                            "Discarding incomplete record at the end of the audit journal: \n" +
+                                    "   Journal:  " + segmentFile(segment) + "\n" +
+                                    "   Position: " + offset + "\n" +
+                                    "   Size:     " + size);
+                    channel.truncate(offset);
+                    channel.force(true);
+                    lastGoodSegment = segment;
+                    break;
+                }
+                offset += RECORD_HEADER_SIZE + bytes.length;
+                count++;
+            }
+            if (lastGoodSegment != null)
+            {
+                break;
+            }
+        }
+        if (lastGoodSegment != null)
+        {
+            // Anything after an incomplete record can not be trusted
+            Iterator<Long> later = segments.tailMap(lastGoodSegment, false).keySet().iterator();
+            while (later.hasNext())
+            {
+                long segment = later.next();
+                closeQuietly(segments.get(segment));
+                deleteSegmentFile(segment);
+                later.remove();
+            }
+        }
+        FileChannel head = segments.lastEntry().getValue();
+        head.position(head.size());
+        if (count > 0 && logger.isInfoEnabled())
+        {
+            logger.info("Found " + count + " audit entries to replay in journal " + dir);
+        }
+    }
+
+    /**
+     * Append entries to the end of the journal, in order
+     */
+    public synchronized void append(List<NewAuditEntry> entries) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(entries.size() * 1024);
+        DataOutputStream dos = new DataOutputStream(bos);
+        for (NewAuditEntry entry : entries)
+        {
+            byte[] bytes = serialize(entry);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            dos.writeInt(bytes.length);
+            dos.writeLong(crc.getValue());
+            dos.write(bytes);
+        }
+        dos.flush();
+        FileChannel head = segments.lastEntry().getValue();
+        if (head.size() >= segmentSize)
+        {
+            head = roll();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bos.toByteArray());
+        while (buffer.hasRemaining())
+        {
+            head.write(buffer);
+        }
+        if (sync)
+        {
+            head.force(false);
+        }
+    }
+
+    /**
+     * Start a new segment, so that the written part of the journal can be deleted while the writer is still behind
+     */
+    private FileChannel roll() throws IOException
+    {
+        long segment = segments.lastKey() + 1L;
+        FileChannel head = openSegment(segment);
+        segments.put(segment, head);
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Started audit journal segment " + segmentFile(segment));
+        }
+        return head;
+    }
+
+    /**
+     * Read the oldest entries that have not been written yet. The same entries are returned until {@link #commit(long)} moves the checkpoint past them.
+     *
+     * @param maxEntries
+     *            the maximum number of entries to read
+     * @return the entries and the positions of the records following them
+     */
+    public synchronized Batch read(int maxEntries) throws IOException
+    {
+        long position = checkpoint;
+        List<NewAuditEntry> entries = new ArrayList<>(Math.min(maxEntries, 1024));
+        long[] endPositions = new long[Math.min(maxEntries, 1024)];
+        while (entries.size() < maxEntries)
+        {
+            long segment = segment(position);
+            FileChannel channel = segments.get(segment);
+            long size = channel.size();
+            long offset = offset(position);
+            if (offset >= size)
+            {
+                Long next = segments.higherKey(segment);
+                if (next == null)
+                {
+                    break;
+                }
+                position = position(next, 0L);
+                continue;
+            }
+            byte[] bytes = readRecord(channel, offset, size);
+            if (bytes == null)
+            {
+                // Only possible if the file was changed underneath us
+                throw new IOException("Corrupt audit journal record at position " + offset + " in " + segmentFile(segment));
+            }
+            position = position(segment, offset + RECORD_HEADER_SIZE + bytes.length);
+            if (entries.size() == endPositions.length)
+            {
+                endPositions = Arrays.copyOf(endPositions, endPositions.length * 2);
+            }
+            endPositions[entries.size()] = position;
+            entries.add(deserialize(bytes, segment));
+        }
+        return new Batch(entries, endPositions, checkpoint);
+    }
+
+    /**
+     * Record that all entries before the given position have been written. Segments that have been fully written are deleted and the newest segment is emptied once everything in it has been written.
+     *
+     * @param position
+     *            an end position of a {@link Batch} whose entries up to that position have been written
+     */
+    public synchronized void commit(long position) throws IOException
+    {
+        long segment = segment(position);
+        FileChannel channel = segments.get(segment);
+        if (channel == null)
+        {
+            throw new IllegalArgumentException("Position " + position + " is not in the audit journal " + dir);
+        }
+        if (offset(position) == channel.size())
+        {
+            Long next = segments.higherKey(segment);
+            if (next == null)
+            {
+                // Empty the journal before resetting the checkpoint; a crash in between is handled when opening
+                channel.truncate(0L);
+                channel.position(0L);
+                channel.force(true);
+                writeCheckpoint(position(segment, 0L));
+            }
+            else
+            {
+                writeCheckpoint(position(next, 0L));
+            }
+        }
+        else
+        {
+            writeCheckpoint(position);
+        }
+        // The checkpoint is on disk, so the segments before it are no longer needed
+        Iterator<Map.Entry<Long, FileChannel>> written = segments.headMap(segment(checkpoint)).entrySet().iterator();
+        while (written.hasNext())
+        {
+            Map.Entry<Long, FileChannel> entry = written.next();
+            closeQuietly(entry.getValue());
+            deleteSegmentFile(entry.getKey());
+            written.remove();
+        }
+    }
+
+    /**
+     * @return <tt>true</tt> if there are entries that have not been written
+     */
+    public synchronized boolean hasPending() throws IOException
+    {
+        long segment = segment(checkpoint);
+        return segment < segments.lastKey() || offset(checkpoint) < segments.get(segment).size();
+    }
+
+    /**
+     * @return the number of segment files in the journal
+     */
+    public synchronized int getSegmentCount()
+    {
+        return segments.size();
+    }
+
+    /**
+     * Close the journal files
+     */
+    public synchronized void close() throws IOException
+    {
+        try
+        {
+            try
+            {
+                closeSegments();
+            }
+            finally
+            {
+                checkpointFile.close();
+            }
+        }
+        finally
+        {
+            // Closing the channel releases the lock
+            lockChannel.close();
+        }
+    }
+
+    private void closeSegments()
+    {
+        for (FileChannel channel : segments.values())
+        {
+            closeQuietly(channel);
+        }
+        segments.clear();
+    }
+
+    private static void closeQuietly(FileChannel channel)
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            logger.warn("Failed to close audit journal segment", e);
+        }
+    }
+
+    private void writeCheckpoint(long position) throws IOException
+    {
+        checkpointFile.seek(0L);
+        checkpointFile.writeLong(position);
+        checkpoint = position;
+    }
+
+    static String segmentFileName(long segment)
+    {
+        return JOURNAL_FILE_PREFIX + segment + JOURNAL_FILE_SUFFIX;
+    }
+
+    private File segmentFile(long segment)
+    {
+        return new File(dir, segmentFileName(segment));
+    }
+
+    @SuppressWarnings("resource")
+    private FileChannel openSegment(long segment) throws IOException
+    {
+        FileChannel channel = new RandomAccessFile(segmentFile(segment), "rw").getChannel();
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private void deleteSegmentFile(long segment)
+    {
+        File file = segmentFile(segment);
+        if (file.exists() && !file.delete())
+        {
+            logger.warn("Failed to delete written audit journal segment " + file);
+        }
+    }
+
+    private static long position(long segment, long offset)
+    {
+        return (segment << SEGMENT_SHIFT) | offset;
+    }
+
+    private static long segment(long position)
+    {
+        return position >>> SEGMENT_SHIFT;
+    }
+
+    private static long offset(long position)
+    {
+        return position & OFFSET_MASK;
+    }
+
+    /**
+     * @return the record bytes or <tt>null</tt> if the record is incomplete or fails the CRC check
+     */
+    private byte[] readRecord(FileChannel channel, long position, long size) throws IOException
+    {
+        if (position + RECORD_HEADER_SIZE > size)
+        {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(channel, header, position);
+        int length = header.getInt();
+        long expectedCrc = header.getLong();
+        if (length < 0 || position + RECORD_HEADER_SIZE + length > size)
+        {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        readFully(channel, body, position + RECORD_HEADER_SIZE);
+        byte[] bytes = body.array();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue() == expectedCrc ? bytes : null;
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+            {
+                throw new EOFException("Unexpected end of audit journal " + dir);
+            }
+        }
+        buffer.flip();
+    }
+
+    private static byte[] serialize(NewAuditEntry entry) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos))
+        {
+            oos.writeObject(entry);
+        }
+        return bos.toByteArray();
+    }
+
+    private NewAuditEntry deserialize(byte[] bytes, long segment) throws IOException
+    {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes)))
+        {
+            return (NewAuditEntry) ois.readObject();
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new IOException("Failed to read audit journal record from " + segmentFile(segment), e);
+        }
+    }
+
+    /**
+     * Entries read from the journal, with the positions to {@link AuditEntryJournal#commit(long) commit} once they have been written
+     */
+    public static class Batch
+    {
+        private final List<NewAuditEntry> entries;
+        private final long[] endPositions;
+        private final long startPosition;
+
+        private Batch(List<NewAuditEntry> entries, long[] endPositions, long startPosition)
+        {
+            this.entries = Collections.unmodifiableList(entries);
+            this.endPositions = endPositions;
+            this.startPosition = startPosition;
+        }
+
+        public List<NewAuditEntry> getEntries()
+        {
+            return entries;
+        }
+
+        /**
+         * @return the position following the last entry
+         */
+        public long getEndPosition()
+        {
+            return entries.isEmpty() ? startPosition : endPositions[entries.size() - 1];
+        }
+
+        /**
+         * @return the position following the entry at the given index, to commit once it and the entries before it have been written
+         */
+        public long getEndPosition(int index)
+        {
+            if (index < 0 || index >= entries.size())
+            {
+                throw new IndexOutOfBoundsException("No entry " + index + " in a batch of " + entries.size());
+            }
+            return endPositions[index];
+        }
+    }
+}
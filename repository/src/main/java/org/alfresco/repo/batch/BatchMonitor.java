@@ -140,4 +140,84 @@ public interface BatchMonitor
     {
         throw new UnsupportedOperationException("getSuccessfullyProcessedEntriesLong need to be implemented");
     }
+
+    /**
+     * Gets the number of entries that are put into a batch, which may change during the run if adaptive batch sizing is used.
+     *
+     * @return the current batch size, or 0 if not known
+     */
+    public default int getCurrentBatchSize()
+    {
+        return 0;
+    }
+
+    /**
+     * Gets the number of batches that have completed, successfully or not.
+     *
+     * @return the number of completed batches
+     */
+    public default long getCompletedBatchesLong()
+    {
+        return 0L;
+    }
+
+    /**
+     * Gets the number of completed batches that needed more than one transaction attempt.
+     *
+     * @return the number of retried batches
+     */
+    public default long getRetriedBatchesLong()
+    {
+        return 0L;
+    }
+
+    /**
+     * Gets the average time taken by a batch, including any retries.
+     *
+     * @return the average batch time in milliseconds
+     */
+    public default long getAverageBatchTimeMillis()
+    {
+        return 0L;
+    }
+
+    /**
+     * Gets the number of times work has been fetched from the work provider.
+     *
+     * @return the number of work provider calls
+     */
+    public default long getWorkProviderCallsLong()
+    {
+        return 0L;
+    }
+
+    /**
+     * Gets the average time taken to fetch work from the work provider.
+     *
+     * @return the average work provider time in milliseconds
+     */
+    public default long getAverageWorkProviderTimeMillis()
+    {
+        return 0L;
+    }
+
+    /**
+     * Gets the number of chunks of work that have been fetched ahead and are waiting to be batched.
+     *
+     * @return the number of prefetched chunks of work
+     */
+    public default int getPrefetchedWorkChunks()
+    {
+        return 0;
+    }
+
+    /**
+     * Gets an estimate of the time needed to process the remaining entries, based on the rate so far.
+     *
+     * @return the estimated remaining time in milliseconds, or -1 if not known
+     */
+    public default long getEstimatedTimeRemainingMillis()
+    {
+        return -1L;
+    }
 }
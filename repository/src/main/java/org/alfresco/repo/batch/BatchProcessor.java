@@ -39,6 +39,7 @@ import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -50,6 +51,8 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.alfresco.api.AlfrescoPublicApi;
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.repo.node.integrity.IntegrityException;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
@@ -58,6 +61,8 @@ import org.alfresco.util.transaction.TransactionListenerAdapter;
 
 /**
  * A <code>BatchProcessor</code> manages the running and monitoring of a potentially long-running transactional batch process. It iterates over a collection, and queues jobs that fire a worker on a batch of members. The queued jobs handle progress / error reporting, transaction delineation and retrying. They are processed in parallel by a pool of threads of a configurable size. The job processing is designed to be fault tolerant and will continue in the event of errors. When the batch is complete a summary of the number of errors and the last error stack trace will be logged at ERROR level. Each individual error is logged at WARN level and progress information is logged at INFO level. Through the {@link BatchMonitor} interface, it also supports the real-time monitoring of batch metrics (e.g. over JMX in the Enterprise Edition).
+ * <p>
+ * Optionally, the work can be {@link #setPrefetchDepth(int) prefetched} from the {@link BatchProcessWorkProvider} by a separate thread while the workers run, and the batch size can be {@link #setAdaptiveBatchSize(int, int, long) adapted} to the observed transaction times and retries.
  * 
  * @author dward
  */
@@ -103,17 +108,50 @@ public class BatchProcessor<T> implements BatchMonitor
     /** The last error entry id. */
     private String lastErrorEntryId;
 
-    /** The total number of errors. */
-    private long totalErrors;
+    /** The total number of errors. Volatile so that progress can be read without the monitor. */
+    private volatile long totalErrors;
 
-    /** The number of successfully processed entries. */
-    private long successfullyProcessedEntries;
+    /** The number of successfully processed entries. Volatile so that progress can be read without the monitor. */
+    private volatile long successfullyProcessedEntries;
 
     /** The start time. */
-    private Date startTime;
+    private volatile Date startTime;
 
     /** The end time. */
-    private Date endTime;
+    private volatile Date endTime;
+
+    /** The number of chunks of work to fetch ahead of the workers, or 0 to fetch work when it is needed. */
+    private int prefetchDepth;
+
+    /** The smallest batch size that adaptive sizing may use. */
+    private int minBatchSize;
+
+    /** The largest batch size that adaptive sizing may use. */
+    private int maxBatchSize;
+
+    /** The transaction time that adaptive sizing aims for, or 0 if the batch size is fixed. */
+    private long targetBatchTimeMillis;
+
+    /** The number of entries that will be put into the next batch. */
+    private volatile int currentBatchSize;
+
+    /** The prefetching work provider of the current run, if any. */
+    private volatile PrefetchingWorkProvider prefetchingWorkProvider;
+
+    /** The number of calls made to the work provider. */
+    private long workProviderCalls;
+
+    /** The total time spent in the work provider. */
+    private long workProviderTimeMillis;
+
+    /** The number of batches that have completed. */
+    private long completedBatches;
+
+    /** The number of completed batches that needed more than one attempt. */
+    private long retriedBatches;
+
+    /** The total time taken by the completed batches. */
+    private long batchTimeMillis;
 
     /**
      * Instantiates a new batch processor.
@@ -222,6 +260,7 @@ public class BatchProcessor<T> implements BatchMonitor
         this.workProvider = workProvider;
         this.workerThreads = workerThreads;
         this.batchSize = batchSize;
+        this.currentBatchSize = batchSize;
         if (logger == null)
         {
             this.logger = LogFactory.getLog(this.getClass());
@@ -239,6 +278,39 @@ public class BatchProcessor<T> implements BatchMonitor
         }
     }
 
+    /**
+     * Fetch work from the {@link BatchProcessWorkProvider} on a separate thread, keeping up to the given number of chunks of work ready while the worker threads run. This only applies when there is more than one worker thread and transactions are split. The work provider must not rely on the thread context of the caller apart from the run-as user, which is passed on.
+     * 
+     * @param prefetchDepth
+     *            the number of results of {@link BatchProcessWorkProvider#getNextWork()} to fetch ahead, or 0 (the default) to fetch work on the calling thread when it is needed
+     */
+    public void setPrefetchDepth(int prefetchDepth)
+    {
+        this.prefetchDepth = Math.max(0, prefetchDepth);
+    }
+
+    /**
+     * Adapt the batch size to the observed transaction times: batches that take longer than the target time or that had to be retried halve the size of the following batches, and batches that take less than half the target time grow it by a quarter. Only batches that run in their own transactions are taken into account.
+     * 
+     * @param minBatchSize
+     *            the smallest batch size to use
+     * @param maxBatchSize
+     *            the largest batch size to use
+     * @param targetBatchTimeMillis
+     *            the time a batch transaction should take, or 0 to use the fixed batch size
+     */
+    public synchronized void setAdaptiveBatchSize(int minBatchSize, int maxBatchSize, long targetBatchTimeMillis)
+    {
+        if (minBatchSize < 1 || maxBatchSize < minBatchSize)
+        {
+            throw new IllegalArgumentException("Invalid batch size range: " + minBatchSize + " - " + maxBatchSize);
+        }
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.targetBatchTimeMillis = targetBatchTimeMillis;
+        this.currentBatchSize = Math.min(maxBatchSize, Math.max(minBatchSize, this.batchSize));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -357,6 +429,89 @@ public class BatchProcessor<T> implements BatchMonitor
         return this.startTime;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public int getCurrentBatchSize()
+    {
+        return this.currentBatchSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized long getCompletedBatchesLong()
+    {
+        return this.completedBatches;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized long getRetriedBatchesLong()
+    {
+        return this.retriedBatches;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized long getAverageBatchTimeMillis()
+    {
+        return this.completedBatches == 0 ? 0L : this.batchTimeMillis / this.completedBatches;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized long getWorkProviderCallsLong()
+    {
+        return this.workProviderCalls;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized long getAverageWorkProviderTimeMillis()
+    {
+        return this.workProviderCalls == 0 ? 0L : this.workProviderTimeMillis / this.workProviderCalls;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getPrefetchedWorkChunks()
+    {
+        PrefetchingWorkProvider prefetcher = this.prefetchingWorkProvider;
+        return prefetcher == null ? 0 : prefetcher.getQueuedChunks();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getEstimatedTimeRemainingMillis()
+    {
+        // Work from snapshots rather than the monitor: the work provider's estimate may be slow and the workers must
+        // not wait for it to report their progress
+        Date start = this.startTime;
+        if (start == null)
+        {
+            return -1L;
+        }
+        if (this.endTime != null)
+        {
+            return 0L;
+        }
+        long processed = this.successfullyProcessedEntries + this.totalErrors;
+        long totalResults = this.workProvider.getTotalEstimatedWorkSizeLong();
+        if (processed == 0 || processed > totalResults)
+        {
+            return -1L;
+        }
+        long elapsed = System.currentTimeMillis() - start.getTime();
+        return (long) ((double) elapsed / processed * (totalResults - processed));
+    }
+
     /**
      * Invokes the worker for each entry in the collection, managing transactions and collating success / failure information.
      * 
@@ -398,6 +553,8 @@ public class BatchProcessor<T> implements BatchMonitor
         synchronized (this)
         {
             this.startTime = new Date();
+            // A processor reused for another pass is running again
+            this.endTime = null;
             if (this.logger.isInfoEnabled())
             {
                 if (count >= 0)
@@ -412,10 +569,15 @@ public class BatchProcessor<T> implements BatchMonitor
             }
         }
 
+        // Prefetched work is only useful when batches are executed in parallel with the fetching,
+        // in which case the executor queue is kept short so that the in-flight work stays bounded
+        boolean prefetch = splitTxns && this.workerThreads > 1 && this.prefetchDepth > 0;
+        int queueCapacity = prefetch ? this.workerThreads * 2 : this.workerThreads * this.batchSize * 10;
+
         // Create a thread pool executor with the specified number of threads and a finite blocking queue of jobs
         ExecutorService executorService = splitTxns && this.workerThreads > 1 ? new ThreadPoolExecutor(
                 this.workerThreads, this.workerThreads, 0L, TimeUnit.MILLISECONDS,
-                new ArrayBlockingQueue<Runnable>(this.workerThreads * this.batchSize * 10) {
+                new ArrayBlockingQueue<Runnable>(queueCapacity) {
                     // Add blocking behaviour to work queue
                     @Override
                     public boolean offer(Runnable o)
@@ -433,21 +595,30 @@ public class BatchProcessor<T> implements BatchMonitor
 
                 },
                 threadFactory) : null;
+        PrefetchingWorkProvider prefetcher = null;
         try
         {
-            Iterator<T> iterator = new WorkProviderIterator<T>(this.workProvider);
+            BatchProcessWorkProvider<T> provider = new TimedWorkProvider();
+            if (prefetch)
+            {
+                prefetcher = new PrefetchingWorkProvider(provider, this.prefetchDepth);
+                this.prefetchingWorkProvider = prefetcher;
+                prefetcher.start();
+                provider = prefetcher;
+            }
+            Iterator<T> iterator = new WorkProviderIterator<T>(provider);
             int id = 0;
-            List<T> batch = new ArrayList<T>(this.batchSize);
+            List<T> batch = new ArrayList<T>(this.currentBatchSize);
             while (iterator.hasNext())
             {
                 batch.add(iterator.next());
                 boolean hasNext = iterator.hasNext();
-                if (batch.size() >= this.batchSize || !hasNext)
+                if (batch.size() >= this.currentBatchSize || !hasNext)
                 {
                     final TxnCallback callback = new TxnCallback(id++, worker, batch, splitTxns);
                     if (hasNext)
                     {
-                        batch = new ArrayList<T>(this.batchSize);
+                        batch = new ArrayList<T>(this.currentBatchSize);
                     }
 
                     if (executorService == null)
@@ -464,6 +635,11 @@ public class BatchProcessor<T> implements BatchMonitor
         }
         finally
         {
+            if (prefetcher != null)
+            {
+                prefetcher.stop();
+                this.prefetchingWorkProvider = null;
+            }
             if (executorService != null)
             {
                 executorService.shutdown();
@@ -533,6 +709,10 @@ public class BatchProcessor<T> implements BatchMonitor
             if (duration > 0)
             {
                 message.append(". Rate: ").append(processed * 1000L / duration).append(" per second");
+                if (processed > 0 && totalResults >= processed)
+                {
+                    message.append(". Estimated time remaining: ").append((totalResults - processed) * duration / processed / 1000L).append(" s");
+                }
             }
             message.append(". " + this.totalErrors + " failures detected.");
             this.logger.info(message);
@@ -599,6 +779,203 @@ public class BatchProcessor<T> implements BatchMonitor
         {}
     }
 
+    /**
+     * Records the statistics of a completed batch and adapts the batch size if required.
+     * 
+     * @param timeMillis
+     *            the time taken by the batch, including any retries
+     * @param retried
+     *            whether the batch needed more than one attempt
+     * @param adapt
+     *            whether the batch ran in its own transaction, so may be used to adapt the batch size
+     */
+    private synchronized void batchCompleted(long timeMillis, boolean retried, boolean adapt)
+    {
+        this.completedBatches++;
+        this.batchTimeMillis += timeMillis;
+        if (retried)
+        {
+            this.retriedBatches++;
+        }
+        if (!adapt || this.targetBatchTimeMillis <= 0)
+        {
+            return;
+        }
+        int size = this.currentBatchSize;
+        if (retried || timeMillis > this.targetBatchTimeMillis)
+        {
+            size = Math.max(this.minBatchSize, size / 2);
+        }
+        else if (timeMillis < this.targetBatchTimeMillis / 2)
+        {
+            size = Math.min(this.maxBatchSize, size + Math.max(1, size / 4));
+        }
+        if (size != this.currentBatchSize && this.logger.isDebugEnabled())
+        {
+            this.logger.debug(getProcessName() + ": Batch size changed from " + this.currentBatchSize + " to " + size);
+        }
+        this.currentBatchSize = size;
+    }
+
+    /**
+     * Times the calls to the {@link BatchProcessWorkProvider}.
+     */
+    private class TimedWorkProvider implements BatchProcessWorkProvider<T>
+    {
+        @Override
+        public int getTotalEstimatedWorkSize()
+        {
+            return workProvider.getTotalEstimatedWorkSize();
+        }
+
+        @Override
+        public long getTotalEstimatedWorkSizeLong()
+        {
+            return workProvider.getTotalEstimatedWorkSizeLong();
+        }
+
+        @Override
+        public Collection<T> getNextWork()
+        {
+            long start = System.currentTimeMillis();
+            try
+            {
+                return workProvider.getNextWork();
+            }
+            finally
+            {
+                long time = System.currentTimeMillis() - start;
+                synchronized (BatchProcessor.this)
+                {
+                    workProviderCalls++;
+                    workProviderTimeMillis += time;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches work from another {@link BatchProcessWorkProvider} on a separate thread into a bounded queue. The thread blocks when the queue is full, so that the fetching is held back by the rate at which the work is processed.
+     */
+    private class PrefetchingWorkProvider implements BatchProcessWorkProvider<T>, Runnable
+    {
+        private final BatchProcessWorkProvider<T> provider;
+        private final BlockingQueue<Collection<T>> queue;
+        private final String runAsUser;
+        private Thread thread;
+        private volatile boolean stopped;
+        private volatile RuntimeException failure;
+
+        private PrefetchingWorkProvider(BatchProcessWorkProvider<T> provider, int depth)
+        {
+            this.provider = provider;
+            this.queue = new ArrayBlockingQueue<Collection<T>>(depth);
+            this.runAsUser = AuthenticationUtil.getRunAsUser();
+        }
+
+        private void start()
+        {
+            thread = threadFactory.newThread(this);
+            thread.start();
+        }
+
+        private void stop()
+        {
+            stopped = true;
+            thread.interrupt();
+        }
+
+        private int getQueuedChunks()
+        {
+            return queue.size();
+        }
+
+        @Override
+        public int getTotalEstimatedWorkSize()
+        {
+            return provider.getTotalEstimatedWorkSize();
+        }
+
+        @Override
+        public long getTotalEstimatedWorkSizeLong()
+        {
+            return provider.getTotalEstimatedWorkSizeLong();
+        }
+
+        @Override
+        public Collection<T> getNextWork()
+        {
+            Collection<T> work;
+            try
+            {
+                work = queue.take();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new AlfrescoRuntimeException("Interrupted while waiting for work during " + getProcessName(), e);
+            }
+            if (failure != null)
+            {
+                throw failure;
+            }
+            return work;
+        }
+
+        @Override
+        public void run()
+        {
+            if (runAsUser == null)
+            {
+                prefetch();
+            }
+            else
+            {
+                AuthenticationUtil.runAs(new RunAsWork<Void>() {
+                    @Override
+                    public Void doWork() throws Exception
+                    {
+                        prefetch();
+                        return null;
+                    }
+                }, runAsUser);
+            }
+        }
+
+        private void prefetch()
+        {
+            try
+            {
+                while (!stopped)
+                {
+                    Collection<T> work;
+                    try
+                    {
+                        work = provider.getNextWork();
+                        if (work == null)
+                        {
+                            throw new RuntimeException("BatchProcessWorkProvider returned 'null' work: " + workProvider);
+                        }
+                    }
+                    catch (RuntimeException e)
+                    {
+                        failure = e;
+                        work = Collections.emptyList();
+                    }
+                    queue.put(work);
+                    if (work.isEmpty())
+                    {
+                        break;
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // Stopped by the consumer
+            }
+        }
+    }
+
     /**
      * Small iterator that repeatedly gets the next batch of work from a {@link BatchProcessWorkProvider}
      * 
@@ -723,9 +1100,13 @@ public class BatchProcessor<T> implements BatchMonitor
         /** The last error entry id. */
         private String txnLastErrorEntryId;
 
+        /** The number of times the batch has been attempted. */
+        private int attempts;
+
         public Object execute() throws Throwable
         {
             reset();
+            this.attempts++;
             if (this.batch.isEmpty())
             {
                 return null;
@@ -803,6 +1184,7 @@ public class BatchProcessor<T> implements BatchMonitor
             }
 
             final BatchProcessor<T>.TxnCallback callback = this;
+            long start = System.currentTimeMillis();
             try
             {
                 Throwable tt = null;
@@ -854,6 +1236,7 @@ public class BatchProcessor<T> implements BatchMonitor
                 }
             }
 
+            batchCompleted(System.currentTimeMillis() - start, this.attempts > 1, this.splitTxns);
             commitProgress();
         }
 
@@ -27,6 +27,7 @@
 package org.alfresco.repo.bulkimport;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -44,6 +45,15 @@ public class AnalysedDirectory
     private Map<Path, ImportableItem> importableItems = null;
     private Map<Path, ImportableItem> importableDirectories = null;
 
+    /**
+     * Create an analysed directory that is filled as the directory listing is streamed, without keeping the listing
+     * itself. {@link #getOriginalPaths()} is empty in that case.
+     */
+    public AnalysedDirectory()
+    {
+        this(new ArrayList<Path>());
+    }
+
     public AnalysedDirectory(List<Path> paths)
     {
         originalPaths = paths;
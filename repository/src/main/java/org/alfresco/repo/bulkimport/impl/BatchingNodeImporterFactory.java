@@ -0,0 +1,356 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.bulkimport.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.extensions.surf.util.I18NUtil;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.bulkimport.BulkImportParameters;
+import org.alfresco.repo.bulkimport.ImportableItem;
+import org.alfresco.repo.bulkimport.MetadataLoader;
+import org.alfresco.repo.bulkimport.NodeImporter;
+import org.alfresco.repo.bulkimport.impl.BulkImportStatusImpl.NodeState;
+import org.alfresco.repo.domain.node.ChildAssocEntity;
+import org.alfresco.repo.domain.node.NodeDAO;
+import org.alfresco.repo.event2.EventGenerator;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.TransactionListener;
+import org.alfresco.repo.transaction.TransactionListenerAdapter;
+import org.alfresco.service.cmr.dictionary.ClassDefinition;
+import org.alfresco.service.cmr.dictionary.DictionaryService;
+import org.alfresco.service.cmr.dictionary.InvalidAspectException;
+import org.alfresco.service.cmr.dictionary.InvalidTypeException;
+import org.alfresco.service.cmr.dictionary.PropertyDefinition;
+import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentService;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.service.cmr.repository.InvalidNodeRefException;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+
+/**
+ * Fast path node importer factory for large imports into new folders.
+ * <p>
+ * New files and folders are created directly through the {@link NodeDAO}, so no policies are fired for them: in particular user quotas are not updated and no versionable behaviour runs. Their aspects and properties are held until the end of each batch transaction and then written for the whole batch using multi-row inserts. The nodes are recorded against the transaction as usual, so they are indexed, and the {@link EventGenerator} is told about them directly, so the same node created events are sent as for the {@link StreamingNodeImporterFactory streaming importer}.
+ * <p>
+ * Items that already exist in the repository, have version entries or have no content file are imported by the streaming importer, which honours the {@link BulkImportParameters.ExistingFileMode}.
+ */
+public class BatchingNodeImporterFactory extends StreamingNodeImporterFactory
+{
+    private NodeDAO nodeDAO;
+    private ContentService contentService;
+    private DictionaryService dictionaryService;
+    private EventGenerator eventGenerator;
+
+    public void setNodeDAO(NodeDAO nodeDAO)
+    {
+        this.nodeDAO = nodeDAO;
+    }
+
+    public void setContentService(ContentService contentService)
+    {
+        this.contentService = contentService;
+    }
+
+    public void setDictionaryService(DictionaryService dictionaryService)
+    {
+        this.dictionaryService = dictionaryService;
+    }
+
+    /**
+     * @param eventGenerator
+     *            the generator told about the new nodes, or <tt>null</tt> if no events are sent
+     */
+    public void setEventGenerator(EventGenerator eventGenerator)
+    {
+        this.eventGenerator = eventGenerator;
+    }
+
+    @Override
+    public NodeImporter getNodeImporter(File sourceFolder)
+    {
+        BatchingNodeImporter nodeImporter = new BatchingNodeImporter(nodeDAO, contentService, dictionaryService, eventGenerator);
+        nodeImporter.setNodeService(nodeService);
+        nodeImporter.setBehaviourFilter(behaviourFilter);
+        nodeImporter.setFileFolderService(fileFolderService);
+        nodeImporter.setMetadataLoader(metadataLoader);
+        nodeImporter.setVersionService(versionService);
+        nodeImporter.setImportStatus(importStatus);
+
+        nodeImporter.setSourceFolder(sourceFolder);
+
+        return nodeImporter;
+    }
+
+    /**
+     * The aspects, properties and child associations of the nodes created in the current transaction, and the items they were imported from
+     */
+    private static class PendingNodes
+    {
+        private final Map<Long, Set<QName>> aspects = new LinkedHashMap<Long, Set<QName>>(256);
+        private final Map<Long, Map<QName, Serializable>> properties = new LinkedHashMap<Long, Map<QName, Serializable>>(256);
+        private final Map<Long, ChildAssociationRef> childAssocRefs = new LinkedHashMap<Long, ChildAssociationRef>(256);
+        private final Map<Long, ImportableItem> importableItems = new LinkedHashMap<Long, ImportableItem>(256);
+    }
+
+    private static class BatchingNodeImporter extends StreamingNodeImporter
+    {
+        private static final String KEY_PENDING_NODES = BatchingNodeImporter.class.getName() + ".pendingNodes";
+
+        private final NodeDAO nodeDAO;
+        private final ContentService contentService;
+        private final DictionaryService dictionaryService;
+        private final EventGenerator eventGenerator;
+        private final TransactionListener flushListener = new TransactionListenerAdapter() {
+            @Override
+            public void beforeCommit(boolean readOnly)
+            {
+                flushPendingNodes();
+            }
+        };
+
+        private BatchingNodeImporter(NodeDAO nodeDAO, ContentService contentService, DictionaryService dictionaryService, EventGenerator eventGenerator)
+        {
+            this.nodeDAO = nodeDAO;
+            this.contentService = contentService;
+            this.dictionaryService = dictionaryService;
+            this.eventGenerator = eventGenerator;
+        }
+
+        @Override
+        protected NodeRef importImportableItemImpl(ImportableItem importableItem, BulkImportParameters.ExistingFileMode existingFileMode)
+        {
+            NodeRef target = importableItem.getParent().getNodeRef();
+            ImportableItem.ContentAndMetadata headRevision = importableItem.getHeadRevision();
+            if (target == null || !headRevision.contentFileExists() || importableItem.hasVersionEntries())
+            {
+                return super.importImportableItemImpl(importableItem, existingFileMode);
+            }
+            MetadataLoader.Metadata metadata = loadMetadata(headRevision);
+            String nodeName = getImportableItemName(importableItem, metadata);
+            if (nodeName == null || fileFolderService.searchSimple(target, nodeName) != null)
+            {
+                // Existing nodes are skipped, replaced or versioned as usual
+                return super.importImportableItemImpl(importableItem, existingFileMode);
+            }
+
+            Pair<Long, NodeRef> parentNodePair = nodeDAO.getNodePair(target);
+            if (parentNodePair == null)
+            {
+                throw new InvalidNodeRefException("The target node does not exist: " + target, target);
+            }
+            boolean isDirectory = ImportableItem.FileType.DIRECTORY.equals(headRevision.getContentFileType());
+            QName typeQName = metadata.getType();
+            ClassDefinition typeDef = dictionaryService.getType(typeQName);
+            if (typeDef == null)
+            {
+                throw new InvalidTypeException(typeQName);
+            }
+
+            Map<QName, Serializable> properties = new HashMap<QName, Serializable>(metadata.getProperties());
+            properties.put(ContentModel.PROP_NAME, nodeName);
+            if (!isDirectory)
+            {
+                properties.put(ContentModel.PROP_CONTENT, writeContent(headRevision, nodeName));
+            }
+            Set<QName> aspects = getAspectsAndDefaults(typeDef, metadata.getAspects(), properties);
+
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Creating new node of type '" + typeQName + "' with name '" + nodeName + "' within node '" + target + "'.");
+            }
+            QName assocQName = QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, QName.createValidLocalName(nodeName));
+            ChildAssocEntity assoc = nodeDAO.newNode(
+                    parentNodePair.getFirst(),
+                    ContentModel.ASSOC_CONTAINS,
+                    assocQName,
+                    target.getStoreRef(),
+                    null,
+                    typeQName,
+                    I18NUtil.getLocale(),
+                    nodeName,
+                    properties);
+            Pair<Long, NodeRef> nodePair = assoc.getChildNode().getNodePair();
+
+            // The aspects and properties are written for the whole batch when the transaction commits
+            PendingNodes pendingNodes = getPendingNodes();
+            pendingNodes.aspects.put(nodePair.getFirst(), aspects);
+            pendingNodes.properties.put(nodePair.getFirst(), properties);
+            pendingNodes.childAssocRefs.put(nodePair.getFirst(), new ChildAssociationRef(ContentModel.ASSOC_CONTAINS, target, assocQName, nodePair.getSecond(), true, -1));
+            pendingNodes.importableItems.put(nodePair.getFirst(), importableItem);
+
+            // The node is counted as written once its properties are, see flushPendingNodes
+            importStatus.incrementImportableItemsRead(importableItem, isDirectory);
+            importStatus.incrementContentBytesWritten(importableItem, isDirectory, NodeState.CREATED);
+
+            return nodePair.getSecond();
+        }
+
+        /**
+         * Write the content file into the content store without binding it to a node yet
+         */
+        private ContentData writeContent(ImportableItem.ContentAndMetadata contentAndMetadata, String nodeName)
+        {
+            ContentWriter writer = contentService.getWriter(null, null, false);
+            writer.guessMimetype(nodeName);
+            writer.guessEncoding();
+            try
+            {
+                writer.putContent(Files.newInputStream(contentAndMetadata.getContentFile()));
+            }
+            catch (IOException e)
+            {
+                throw new ContentIOException("Failed to copy content from file: \n" +
+                        "   writer: " + writer + "\n" +
+                        "   file: " + contentAndMetadata.getContentFile(),
+                        e);
+            }
+            return writer.getContentData();
+        }
+
+        /**
+         * Find the aspects required by the type, the given aspects and the given properties, adding the default values of the type and aspects to the properties as the node service would.
+         */
+        private Set<QName> getAspectsAndDefaults(ClassDefinition typeDef, Set<QName> aspectQNames, Map<QName, Serializable> properties)
+        {
+            Deque<QName> classQNames = new ArrayDeque<QName>();
+            if (aspectQNames != null)
+            {
+                for (QName aspectQName : aspectQNames)
+                {
+                    if (dictionaryService.getAspect(aspectQName) == null)
+                    {
+                        throw new InvalidAspectException(aspectQName);
+                    }
+                    classQNames.add(aspectQName);
+                }
+            }
+            for (QName propertyQName : properties.keySet())
+            {
+                PropertyDefinition propertyDef = dictionaryService.getProperty(propertyQName);
+                if (propertyDef != null && propertyDef.getContainerClass().isAspect())
+                {
+                    classQNames.add(propertyDef.getContainerClass().getName());
+                }
+            }
+            classQNames.addAll(typeDef.getDefaultAspectNames());
+            addDefaultValues(typeDef, properties);
+
+            Set<QName> aspects = new HashSet<QName>(13);
+            while (!classQNames.isEmpty())
+            {
+                QName aspectQName = classQNames.poll();
+                ClassDefinition aspectDef = dictionaryService.getAspect(aspectQName);
+                if (aspectDef == null || !aspects.add(aspectQName))
+                {
+                    continue;
+                }
+                classQNames.addAll(aspectDef.getDefaultAspectNames());
+                addDefaultValues(aspectDef, properties);
+            }
+            return aspects;
+        }
+
+        private void addDefaultValues(ClassDefinition classDef, Map<QName, Serializable> properties)
+        {
+            for (Map.Entry<QName, Serializable> entry : classDef.getDefaultValues().entrySet())
+            {
+                if (!properties.containsKey(entry.getKey()))
+                {
+                    properties.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        private PendingNodes getPendingNodes()
+        {
+            PendingNodes pendingNodes = AlfrescoTransactionSupport.getResource(KEY_PENDING_NODES);
+            if (pendingNodes == null)
+            {
+                pendingNodes = new PendingNodes();
+                AlfrescoTransactionSupport.bindResource(KEY_PENDING_NODES, pendingNodes);
+                AlfrescoTransactionSupport.bindListener(flushListener);
+            }
+            return pendingNodes;
+        }
+
+        private void flushPendingNodes()
+        {
+            PendingNodes pendingNodes = AlfrescoTransactionSupport.getResource(KEY_PENDING_NODES);
+            if (pendingNodes == null)
+            {
+                return;
+            }
+            AlfrescoTransactionSupport.unbindResource(KEY_PENDING_NODES);
+
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Writing aspects and properties of " + pendingNodes.childAssocRefs.size() + " new nodes.");
+            }
+            nodeDAO.addNewNodeAspects(pendingNodes.aspects);
+            nodeDAO.addNewNodeProperties(pendingNodes.properties);
+            for (Map.Entry<Long, ImportableItem> entry : pendingNodes.importableItems.entrySet())
+            {
+                ImportableItem importableItem = entry.getValue();
+                boolean isDirectory = ImportableItem.FileType.DIRECTORY.equals(importableItem.getHeadRevision().getContentFileType());
+                importStatus.incrementNodesWritten(importableItem, isDirectory, NodeState.CREATED, pendingNodes.properties.get(entry.getKey()).size(), 0);
+            }
+
+            if (eventGenerator == null || !eventGenerator.isEnabled())
+            {
+                return;
+            }
+            // Replay the policies that the node service would have fired for each new node
+            for (Map.Entry<Long, ChildAssociationRef> entry : pendingNodes.childAssocRefs.entrySet())
+            {
+                ChildAssociationRef childAssocRef = entry.getValue();
+                NodeRef nodeRef = childAssocRef.getChildRef();
+                for (QName aspectQName : pendingNodes.aspects.get(entry.getKey()))
+                {
+                    eventGenerator.onAddAspect(nodeRef, aspectQName);
+                }
+                eventGenerator.onCreateNode(childAssocRef);
+                eventGenerator.onCreateChildAssociation(childAssocRef, true);
+            }
+        }
+    }
+}
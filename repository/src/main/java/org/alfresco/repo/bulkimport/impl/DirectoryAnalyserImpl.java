@@ -33,6 +33,7 @@ import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -146,87 +147,39 @@ public class DirectoryAnalyserImpl implements DirectoryAnalyser
     public AnalysedDirectory analyseDirectory(ImportableItem directory, DirectoryStream.Filter<Path> filter)
     {
         Path directoryFile = directory.getHeadRevision().getContentFile();
-        AnalysedDirectory result = new AnalysedDirectory(listFiles(directoryFile, filter));
+        AnalysedDirectory result = new AnalysedDirectory();
 
         if (log.isDebugEnabled())
         {
             log.debug("Analysing directory " + FileUtils.getFileName(directoryFile) + "...");
         }
 
-        // Build up the list of ImportableItems from the directory listing
-        for (Path file : result.getOriginalPaths())
+        // Build up the list of ImportableItems from the directory listing as it is read. Version and metadata files
+        // are set aside and added once their content files have been seen, see ALF-17965.
+        List<Path> versionAndMetadataFiles = new ArrayList<Path>();
+        try (DirectoryStream<Path> paths = (filter != null) ? Files.newDirectoryStream(directoryFile, filter) : Files.newDirectoryStream(directoryFile))
         {
-            // MNT-9763 bulkimport fails when there is a very large LastModified timestamp.
-            String isoDate = null;
-            try
-            {
-                isoDate = ISO8601DateFormat.format(new Date(Files.getLastModifiedTime(file, LinkOption.NOFOLLOW_LINKS).toMillis()));
-                ISO8601DateFormat.parse(isoDate);
-            }
-            catch (PlatformRuntimeException | IOException e)
-            {
-                log.warn("Failed to convert date " + isoDate + " to string for " + file.getFileName(), e);
-                importStatus.incrementNumberOfUnreadableEntries();
-                continue;
-            }
-
-            if (log.isTraceEnabled())
-            {
-                log.trace("Scanning file " + FileUtils.getFileName(file) + "...");
-            }
-
-            if (Files.isReadable(file))
+            for (Path file : paths)
             {
-                try
-                {
-                    nameChecker.evaluate(file.getFileName().toString());
-                }
-                catch (ConstraintException e)
-                {
-                    if (log.isWarnEnabled())
-                    {
-                        log.warn("Skipping file with invalid name: '" + FileUtils.getFileName(file) + "'.");
-                    }
-                    // mark file with invalid name as unreadable
-                    importStatus.incrementNumberOfUnreadableEntries();
-
-                    continue;
-                }
-
-                if (isVersionFile(file))
-                {
-                    addVersionFile(directory, result, file);
-                    importStatus.incrementNumberOfFilesScanned();
-                }
-                else if (isMetadataFile(file))
+                if (isVersionFile(file) || isMetadataFile(file))
                 {
-                    addMetadataFile(directory, result, file);
-                    importStatus.incrementNumberOfFilesScanned();
+                    versionAndMetadataFiles.add(file);
                 }
                 else
                 {
-                    boolean isDirectory = addParentFile(directory, result, file);
-
-                    if (isDirectory)
-                    {
-                        importStatus.incrementNumberOfFoldersScanned();
-                    }
-                    else
-                    {
-                        importStatus.incrementNumberOfFilesScanned();
-                    }
-                }
-            }
-            else
-            {
-                if (log.isWarnEnabled())
-                {
-                    log.warn("Skipping unreadable file '" + FileUtils.getFileName(file) + "'.");
+                    analyseFile(directory, result, file);
                 }
-
-                importStatus.incrementNumberOfUnreadableEntries();
             }
         }
+        catch (IOException e)
+        {
+            log.error(e.getMessage());
+        }
+        Collections.sort(versionAndMetadataFiles);
+        for (Path file : versionAndMetadataFiles)
+        {
+            analyseFile(directory, result, file);
+        }
 
         // Finally, remove any items from the list that aren't valid (don't have either a
         // contentFile or a metadataFile)
@@ -261,21 +214,81 @@ public class DirectoryAnalyserImpl implements DirectoryAnalyser
         return result;
     }
 
-    private List<Path> listFiles(Path sourceDirectory, DirectoryStream.Filter<Path> filter)
+    /**
+     * Add a file of the directory listing to the analysed directory
+     */
+    private void analyseFile(ImportableItem directory, AnalysedDirectory result, Path file)
     {
-        List<Path> files = new ArrayList<Path>();
-        try (DirectoryStream<Path> paths = (filter != null) ? Files.newDirectoryStream(sourceDirectory, filter) : Files.newDirectoryStream(sourceDirectory))
+        // MNT-9763 bulkimport fails when there is a very large LastModified timestamp.
+        String isoDate = null;
+        try
+        {
+            isoDate = ISO8601DateFormat.format(new Date(Files.getLastModifiedTime(file, LinkOption.NOFOLLOW_LINKS).toMillis()));
+            ISO8601DateFormat.parse(isoDate);
+        }
+        catch (PlatformRuntimeException | IOException e)
+        {
+            log.warn("Failed to convert date " + isoDate + " to string for " + file.getFileName(), e);
+            importStatus.incrementNumberOfUnreadableEntries();
+            return;
+        }
+
+        if (log.isTraceEnabled())
+        {
+            log.trace("Scanning file " + FileUtils.getFileName(file) + "...");
+        }
+
+        if (Files.isReadable(file))
         {
-            for (Iterator<Path> it = paths.iterator(); it.hasNext();)
+            try
+            {
+                nameChecker.evaluate(file.getFileName().toString());
+            }
+            catch (ConstraintException e)
+            {
+                if (log.isWarnEnabled())
+                {
+                    log.warn("Skipping file with invalid name: '" + FileUtils.getFileName(file) + "'.");
+                }
+                // mark file with invalid name as unreadable
+                importStatus.incrementNumberOfUnreadableEntries();
+
+                return;
+            }
+
+            if (isVersionFile(file))
+            {
+                addVersionFile(directory, result, file);
+                importStatus.incrementNumberOfFilesScanned();
+            }
+            else if (isMetadataFile(file))
+            {
+                addMetadataFile(directory, result, file);
+                importStatus.incrementNumberOfFilesScanned();
+            }
+            else
             {
-                files.add(it.next());
+                boolean isDirectory = addParentFile(directory, result, file);
+
+                if (isDirectory)
+                {
+                    importStatus.incrementNumberOfFoldersScanned();
+                }
+                else
+                {
+                    importStatus.incrementNumberOfFilesScanned();
+                }
             }
         }
-        catch (IOException e)
+        else
         {
-            log.error(e.getMessage());
+            if (log.isWarnEnabled())
+            {
+                log.warn("Skipping unreadable file '" + FileUtils.getFileName(file) + "'.");
+            }
+
+            importStatus.incrementNumberOfUnreadableEntries();
         }
-        return files;
     }
 
     private boolean isMetadataValid(ImportableItem importableItem)
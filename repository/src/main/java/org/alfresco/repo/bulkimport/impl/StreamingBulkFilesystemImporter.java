@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.bulkimport.impl;
+
+import java.io.File;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.batch.BatchProcessor;
+import org.alfresco.repo.bulkimport.BulkImportParameters;
+import org.alfresco.repo.bulkimport.ImportableItem;
+import org.alfresco.repo.bulkimport.NodeImporter;
+
+/**
+ * A multi threaded bulk importer that streams the filesystem into the import using a {@link StreamingFilesystemTracker}, analysing directories in parallel with the import of their parents' siblings instead of level by level.
+ * 
+ * @since 26.3
+ */
+public class StreamingBulkFilesystemImporter extends MultiThreadedBulkFilesystemImporter
+{
+    private int analyserThreads = 4;
+    private int queueCapacity = 10000;
+    private int estimatedItemsPerDirectory = 100;
+
+    /**
+     * @param analyserThreads
+     *            the number of threads analysing directories
+     */
+    public void setAnalyserThreads(int analyserThreads)
+    {
+        this.analyserThreads = analyserThreads;
+    }
+
+    /**
+     * @param queueCapacity
+     *            the maximum number of analysed items waiting to be imported
+     */
+    public void setQueueCapacity(int queueCapacity)
+    {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @param estimatedItemsPerDirectory
+     *            the number of items assumed for a directory that has not been analysed yet, when estimating the work left
+     */
+    public void setEstimatedItemsPerDirectory(int estimatedItemsPerDirectory)
+    {
+        this.estimatedItemsPerDirectory = estimatedItemsPerDirectory;
+    }
+
+    /**
+     * Method that does the work of importing a filesystem using the BatchProcessor.
+     * 
+     * @param bulkImportParameters
+     *            The bulk import parameters to apply to this bulk import.
+     * @param nodeImporter
+     *            The node importer implementation that will import each node.
+     * @param lockToken
+     *            The lock token to use during the bulk import.
+     */
+    @Override
+    protected void bulkImportImpl(final BulkImportParameters bulkImportParameters, final NodeImporter nodeImporter, final String lockToken)
+    {
+        super.bulkImportImpl(bulkImportParameters, nodeImporter, lockToken);
+
+        final File sourceFolder = nodeImporter.getSourceFolder();
+        final int batchSize = getBatchSize(bulkImportParameters);
+        final int loggingInterval = getLoggingInterval(bulkImportParameters);
+        final StreamingFilesystemTracker tracker = new StreamingFilesystemTracker(directoryAnalyser, bulkImportParameters.getTarget(), sourceFolder, batchSize,
+                analyserThreads, queueCapacity, estimatedItemsPerDirectory);
+        try
+        {
+            final BatchProcessor<ImportableItem> batchProcessor = getBatchProcessor(bulkImportParameters, tracker.getWorkProvider(), loggingInterval);
+            final BatchProcessor.BatchProcessWorker<ImportableItem> worker = getWorker(bulkImportParameters, lockToken, nodeImporter, tracker);
+
+            // Each pass ends when the queue runs dry; directories committed by its last batches start the next one
+            do
+            {
+                batchProcessor.process(worker, true);
+                if (batchProcessor.getLastError() != null)
+                {
+                    throw new AlfrescoRuntimeException(batchProcessor.getLastError());
+                }
+            } while (tracker.moreWork());
+        }
+        finally
+        {
+            tracker.shutdown();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.bulkimport.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.batch.BatchProcessWorkProvider;
+import org.alfresco.repo.bulkimport.AnalysedDirectory;
+import org.alfresco.repo.bulkimport.DirectoryAnalyser;
+import org.alfresco.repo.bulkimport.ImportableItem;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.TransactionListenerAdapter;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.util.TraceableThreadFactory;
+
+/**
+ * A filesystem walker that streams directories and files to the importer as soon as they can be imported, rather than level by level.
+ * <p>
+ * Directories are analysed by a separate pool of threads. A directory is only analysed once the transaction that imported it has committed, so every item handed out has a parent node that already exists. The analysed items are passed to the work provider through a bounded queue, which holds back the analysis when the import falls behind, so the memory used does not grow with the size of the tree.
+ * <p>
+ * The work provider runs out of work when the queue is empty and no analysis is running; directories imported by batches that are still running are analysed once they commit, so the import is repeated while {@link #moreWork()} returns <tt>true</tt>.
+ * 
+ * @since 26.3
+ */
+public class StreamingFilesystemTracker extends AbstractFilesystemTracker
+{
+    private static final long POLL_INTERVAL_MS = 100L;
+
+    private final int batchSize;
+    private final int estimatedItemsPerDirectory;
+    private final BlockingQueue<ImportableItem> toProcess;
+    private final ExecutorService analyserPool;
+    private final String importedDirectoriesKey;
+
+    private int pendingAnalyses = 0;
+    private volatile RuntimeException analysisFailure;
+
+    public StreamingFilesystemTracker(DirectoryAnalyser directoryAnalyser, NodeRef target, File sourceFolder, int batchSize,
+            int analyserThreads, int queueCapacity, int estimatedItemsPerDirectory)
+    {
+        this.directoryAnalyser = directoryAnalyser;
+        this.batchSize = batchSize;
+        this.estimatedItemsPerDirectory = estimatedItemsPerDirectory;
+        this.toProcess = new ArrayBlockingQueue<ImportableItem>(queueCapacity);
+        this.importedDirectoriesKey = StreamingFilesystemTracker.class.getName() + ".importedDirectories." + System.identityHashCode(this);
+
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setThreadDaemon(true);
+        threadFactory.setNamePrefix("BulkImportAnalyser");
+        this.analyserPool = Executors.newFixedThreadPool(analyserThreads, threadFactory);
+
+        // not really an importable item but the interface requires it to be in this form
+        ImportableItem rootFolder = new ImportableItem();
+        rootFolder.getHeadRevision().setContentFile(sourceFolder.toPath());
+        rootFolder.setNodeRef(target);
+
+        // The target already exists, so it can be analysed straight away
+        analyseDirectory(rootFolder);
+    }
+
+    public int count()
+    {
+        // Note: this is an estimate of the number of directories and files still to be handed out
+        synchronized (this)
+        {
+            return toProcess.size() + pendingAnalyses * estimatedItemsPerDirectory;
+        }
+    }
+
+    /**
+     * @return <tt>true</tt> if there are items queued or directories being analysed
+     */
+    public boolean moreWork()
+    {
+        checkAnalysisFailure();
+        synchronized (this)
+        {
+            return pendingAnalyses > 0 || !toProcess.isEmpty();
+        }
+    }
+
+    /**
+     * Stop the analysis of any remaining directories.
+     */
+    public void shutdown()
+    {
+        analyserPool.shutdownNow();
+    }
+
+    public void itemImported(NodeRef nodeRef, ImportableItem importableItem)
+    {
+        if (nodeRef == null ||
+                !ImportableItem.FileType.DIRECTORY.equals(importableItem.getHeadRevision().getContentFileType()))
+        {
+            return;
+        }
+        // The contents of the directory can only be imported once the directory is visible to other transactions
+        List<ImportableItem> importedDirectories = AlfrescoTransactionSupport.getResource(importedDirectoriesKey);
+        if (importedDirectories == null)
+        {
+            final List<ImportableItem> directories = new ArrayList<ImportableItem>(batchSize);
+            AlfrescoTransactionSupport.bindResource(importedDirectoriesKey, directories);
+            AlfrescoTransactionSupport.bindListener(new TransactionListenerAdapter() {
+                @Override
+                public void afterCommit()
+                {
+                    for (ImportableItem directory : directories)
+                    {
+                        analyseDirectory(directory);
+                    }
+                }
+            });
+            importedDirectories = directories;
+        }
+        importedDirectories.add(importableItem);
+    }
+
+    protected void analyseDirectory(final ImportableItem directory)
+    {
+        synchronized (this)
+        {
+            pendingAnalyses++;
+        }
+        try
+        {
+            analyserPool.execute(new Runnable() {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        AnalysedDirectory analysedDirectory = getImportableItemsInDirectory(directory);
+                        // Blocks while the queue is full
+                        for (ImportableItem importableItem : analysedDirectory.getImportableDirectories())
+                        {
+                            toProcess.put(importableItem);
+                        }
+                        for (ImportableItem importableItem : analysedDirectory.getImportableItems())
+                        {
+                            toProcess.put(importableItem);
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // Shut down
+                        Thread.currentThread().interrupt();
+                    }
+                    catch (RuntimeException e)
+                    {
+                        logger.error("Failed to analyse directory " + directory, e);
+                        analysisFailure = e;
+                    }
+                    finally
+                    {
+                        analysisCompleted();
+                    }
+                }
+            });
+        }
+        catch (RuntimeException e)
+        {
+            analysisCompleted();
+            throw e;
+        }
+    }
+
+    private synchronized void analysisCompleted()
+    {
+        pendingAnalyses--;
+    }
+
+    private synchronized boolean isAnalysing()
+    {
+        return pendingAnalyses > 0;
+    }
+
+    private void checkAnalysisFailure()
+    {
+        RuntimeException e = analysisFailure;
+        if (e != null)
+        {
+            throw new AlfrescoRuntimeException("Bulk import directory analysis failed", e);
+        }
+    }
+
+    protected List<ImportableItem> getImportableItems(int count)
+    {
+        List<ImportableItem> result = new ArrayList<ImportableItem>(count);
+        try
+        {
+            while (true)
+            {
+                checkAnalysisFailure();
+                ImportableItem importableItem = toProcess.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (importableItem != null)
+                {
+                    result.add(importableItem);
+                    toProcess.drainTo(result, count - 1);
+                    break;
+                }
+                if (!isAnalysing())
+                {
+                    // Pick up anything queued by an analysis that finished after the poll
+                    toProcess.drainTo(result, count);
+                    break;
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new AlfrescoRuntimeException("Interrupted while waiting for directory analysis", e);
+        }
+        return result;
+    }
+
+    @Override
+    public BatchProcessWorkProvider<ImportableItem> getWorkProvider()
+    {
+        BatchProcessWorkProvider<ImportableItem> provider = new BatchProcessWorkProvider<ImportableItem>() {
+            @Override
+            public int getTotalEstimatedWorkSize()
+            {
+                return count();
+            }
+
+            @Override
+            public long getTotalEstimatedWorkSizeLong()
+            {
+                return count();
+            }
+
+            @Override
+            public Collection<ImportableItem> getNextWork()
+            {
+                return getImportableItems(batchSize * 10);
+            }
+        };
+
+        return provider;
+    }
+}
@@ -67,7 +67,7 @@ public class StreamingNodeImporterFactory extends AbstractNodeImporterFactory
      * @since 4.0
      *
      */
-    private static class StreamingNodeImporter extends AbstractNodeImporter
+    static class StreamingNodeImporter extends AbstractNodeImporter
     {
         private File sourceFolder;
 
@@ -25,6 +25,8 @@
  */
 package org.alfresco.repo.cache;
 
+import java.io.Serializable;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.InitializingBean;
@@ -78,6 +80,17 @@ public abstract class AbstractMTAsynchronouslyRefreshedCache<T>
         refresh(tenantId);
     }
 
+    /**
+     * Apply a change to the cache entry of the current tenant in place of a full refresh.
+     * 
+     * @see #update(String, Serializable)
+     */
+    public void update(Serializable update)
+    {
+        String tenantId = tenantService.getCurrentUserDomain();
+        update(tenantId, update);
+    }
+
     @Override
     public boolean isUpToDate()
     {
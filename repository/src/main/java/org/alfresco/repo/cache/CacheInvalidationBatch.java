@@ -0,0 +1,217 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The invalidations made by one cluster member, collected per cache region. A batch normally holds everything that a single transaction changed in the invalidating caches so that one message is sent per commit.
+ * <p>
+ * Only the hash codes of the keys are carried, together with the number of invalidating operations made on each region. The serialized form is written by hand to keep the messages small.
+ * <p>
+ * Instances are not thread-safe; they are filled by a single thread before being {@link CacheInvalidationTransport#send(CacheInvalidationBatch) sent}.
+ */
+public class CacheInvalidationBatch implements Serializable
+{
+    private static final long serialVersionUID = 4377905364106735781L;
+
+    private final String senderId;
+    private transient Map<String, Region> regions;
+
+    public CacheInvalidationBatch(String senderId)
+    {
+        this.senderId = senderId;
+        this.regions = new LinkedHashMap<>(7);
+    }
+
+    /**
+     * Record a put or remove of a key
+     * 
+     * @param cacheName
+     *            the cache region
+     * @param keyHash
+     *            the hash code of the key
+     */
+    public void addKeyHash(String cacheName, int keyHash)
+    {
+        Region region = getRegion(cacheName);
+        region.invalidationCount++;
+        if (!region.cleared)
+        {
+            region.keyHashes.add(keyHash);
+        }
+    }
+
+    /**
+     * Record a clear of a whole cache region. Key hashes already recorded for the region are dropped.
+     * 
+     * @param cacheName
+     *            the cache region
+     */
+    public void addClear(String cacheName)
+    {
+        Region region = getRegion(cacheName);
+        region.invalidationCount++;
+        region.cleared = true;
+        region.keyHashes.clear();
+    }
+
+    private Region getRegion(String cacheName)
+    {
+        Region region = regions.get(cacheName);
+        if (region == null)
+        {
+            region = new Region();
+            regions.put(cacheName, region);
+        }
+        return region;
+    }
+
+    public String getSenderId()
+    {
+        return senderId;
+    }
+
+    public boolean isEmpty()
+    {
+        return regions.isEmpty();
+    }
+
+    /**
+     * @return the names of the cache regions that have invalidations in this batch
+     */
+    public Set<String> getCacheNames()
+    {
+        return Collections.unmodifiableSet(regions.keySet());
+    }
+
+    /**
+     * @return the distinct key hashes recorded for the region, empty if the region was cleared or is not present
+     */
+    public int[] getKeyHashes(String cacheName)
+    {
+        Region region = regions.get(cacheName);
+        if (region == null)
+        {
+            return new int[0];
+        }
+        int[] keyHashes = new int[region.keyHashes.size()];
+        int i = 0;
+        for (Integer keyHash : region.keyHashes)
+        {
+            keyHashes[i++] = keyHash;
+        }
+        return keyHashes;
+    }
+
+    /**
+     * @return <tt>true</tt> if the whole region was cleared
+     */
+    public boolean isCleared(String cacheName)
+    {
+        Region region = regions.get(cacheName);
+        return region != null && region.cleared;
+    }
+
+    /**
+     * @return the number of puts, removes and clears that were recorded for the region, including those that were merged into an earlier invalidation
+     */
+    public int getInvalidationCount(String cacheName)
+    {
+        Region region = regions.get(cacheName);
+        return region == null ? 0 : region.invalidationCount;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        out.defaultWriteObject();
+        out.writeInt(regions.size());
+        for (Map.Entry<String, Region> entry : regions.entrySet())
+        {
+            Region region = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeBoolean(region.cleared);
+            out.writeInt(region.invalidationCount);
+            out.writeInt(region.keyHashes.size());
+            for (Integer keyHash : region.keyHashes)
+            {
+                out.writeInt(keyHash);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        int regionCount = in.readInt();
+        regions = new LinkedHashMap<>(regionCount * 2);
+        for (int i = 0; i < regionCount; i++)
+        {
+            String cacheName = in.readUTF();
+            Region region = new Region();
+            region.cleared = in.readBoolean();
+            region.invalidationCount = in.readInt();
+            int keyHashCount = in.readInt();
+            for (int j = 0; j < keyHashCount; j++)
+            {
+                region.keyHashes.add(in.readInt());
+            }
+            regions.put(cacheName, region);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append("CacheInvalidationBatch[senderId=").append(senderId);
+        for (Map.Entry<String, Region> entry : regions.entrySet())
+        {
+            Region region = entry.getValue();
+            sb.append(", ").append(entry.getKey())
+                    .append("=[invalidations=").append(region.invalidationCount)
+                    .append(", keys=").append(region.keyHashes.size())
+                    .append(", cleared=").append(region.cleared).append("]");
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    private static class Region
+    {
+        private final Set<Integer> keyHashes = new LinkedHashSet<>();
+        private boolean cleared;
+        private int invalidationCount;
+    }
+}
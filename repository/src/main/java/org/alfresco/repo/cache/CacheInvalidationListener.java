@@ -0,0 +1,47 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+/**
+ * Receives the invalidations that cluster peers have made to one cache region.
+ * 
+ * @see CacheInvalidationTransport#addListener(String, CacheInvalidationListener)
+ */
+public interface CacheInvalidationListener
+{
+    /**
+     * Invalidate the entries whose keys have the given hash codes
+     * 
+     * @param keyHashes
+     *            the {@link CacheKeyHash cluster-wide hash codes} of the keys that a peer put or removed
+     */
+    void invalidate(int[] keyHashes);
+
+    /**
+     * Invalidate all entries because a peer cleared the cache
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,60 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+/**
+ * Carries {@link CacheInvalidationBatch invalidation messages} between the members of a cluster for caches that run in invalidation-only mode.
+ * <p>
+ * Implementations must not deliver a batch back to the member that sent it.
+ * 
+ * @see InvalidatingSimpleCache
+ * @see LoopbackCacheInvalidationTransport
+ */
+public interface CacheInvalidationTransport
+{
+    /**
+     * @return an identifier of this cluster member that is unique within the cluster
+     */
+    String getMemberId();
+
+    /**
+     * Send the batch to all other members of the cluster
+     * 
+     * @param batch
+     *            the invalidations made by this member; the batch will not be modified afterwards
+     */
+    void send(CacheInvalidationBatch batch);
+
+    /**
+     * Register the listener that receives the invalidations sent by other members for the given cache
+     * 
+     * @param cacheName
+     *            the name of the cache region
+     * @param listener
+     *            the local listener
+     */
+    void addListener(String cacheName, CacheInvalidationListener listener);
+}
@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+
+/**
+ * Computes hash codes of cache keys that are the same on every cluster member, for use in {@link CacheInvalidationBatch invalidation messages}.
+ * <p>
+ * {@link Object#hashCode()} can not be used: enums and other identity-based objects have a different hash code in each JVM, and they are part of some keys, such as the keys of the permission service's access cache. Strings, boxed primitives, <tt>NodeRef</tt>s, <tt>StoreRef</tt>s and <tt>QName</tt>s use their own hash codes, which are defined on their content. Enums are hashed by class and constant name. Collections, maps, arrays and <tt>Pair</tt>s are hashed from their elements in a way that is consistent with their <tt>equals</tt>. Any other key is hashed from its serialized form, so equal keys of such types must serialize identically.
+ *
+ * @since 26.3
+ */
+public final class CacheKeyHash
+{
+    private CacheKeyHash()
+    {}
+
+    /**
+     * @return a hash code of the key that is the same on every cluster member
+     */
+    public static int of(Object key)
+    {
+        if (key == null)
+        {
+            return 0;
+        }
+        if (key instanceof String || key instanceof Number || key instanceof Boolean || key instanceof Character
+                || key instanceof NodeRef || key instanceof StoreRef || key instanceof QName)
+        {
+            return key.hashCode();
+        }
+        if (key instanceof Enum)
+        {
+            Enum<?> constant = (Enum<?>) key;
+            return 31 * constant.getDeclaringClass().getName().hashCode() + constant.name().hashCode();
+        }
+        if (key instanceof Set)
+        {
+            // Sets are equal regardless of order
+            int hash = 0;
+            for (Object element : (Set<?>) key)
+            {
+                hash += of(element);
+            }
+            return hash;
+        }
+        if (key instanceof List)
+        {
+            return ofElements((List<?>) key);
+        }
+        if (key instanceof Map)
+        {
+            int hash = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) key).entrySet())
+            {
+                hash += of(entry.getKey()) ^ of(entry.getValue());
+            }
+            return hash;
+        }
+        if (key instanceof Pair)
+        {
+            Pair<?, ?> pair = (Pair<?, ?>) key;
+            return 31 * of(pair.getFirst()) + of(pair.getSecond());
+        }
+        if (key instanceof Object[])
+        {
+            return ofElements(Arrays.asList((Object[]) key));
+        }
+        return ofSerializedForm(key);
+    }
+
+    private static int ofElements(Collection<?> elements)
+    {
+        int hash = 1;
+        for (Object element : elements)
+        {
+            hash = 31 * hash + of(element);
+        }
+        return hash;
+    }
+
+    private static int ofSerializedForm(Object key)
+    {
+        if (!(key instanceof Serializable))
+        {
+            throw new IllegalArgumentException("Cache key is not serializable: " + key.getClass().getName());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(key);
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoRuntimeException("Failed to serialize cache key: " + key, e);
+        }
+        return Arrays.hashCode(bytes.toByteArray());
+    }
+}
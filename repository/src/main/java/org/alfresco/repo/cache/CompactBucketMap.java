@@ -0,0 +1,365 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * A small, size-bounded open-addressing hash map used by the {@link TransactionalCache} to hold its transaction-local buckets.
+ * <p>
+ * Keys and values are held in flat arrays using linear probing with backward-shift deletion, and the access order is kept as a doubly-linked list of slot indexes in two <tt>int</tt> arrays, so there is no per-entry object and a lookup or an update of an existing key does not allocate. Once the map holds <tt>maxSize</tt> entries, adding another key evicts the least recently used entry. Iteration follows the same order, least recently used first.
+ * <p>
+ * Instances are not thread safe; they are bound to a single transaction.
+ *
+ * @since 26.3
+ */
+final class CompactBucketMap<K, V>
+{
+    private static final int MIN_CAPACITY = 16;
+    private static final int NONE = -1;
+
+    private final int maxSize;
+    private Object[] keys;
+    private Object[] values;
+    /** the slot of the previous entry in access order, for each occupied slot */
+    private int[] before;
+    /** the slot of the next entry in access order, for each occupied slot */
+    private int[] after;
+    private int mask;
+    private int size;
+    /** the slot of the least recently used entry */
+    private int head = NONE;
+    /** the slot of the most recently used entry */
+    private int tail = NONE;
+
+    /**
+     * @param maxSize
+     *            the maximum number of entries to hold
+     */
+    CompactBucketMap(int maxSize)
+    {
+        this.maxSize = maxSize;
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        before = new int[capacity];
+        after = new int[capacity];
+        mask = capacity - 1;
+        head = NONE;
+        tail = NONE;
+    }
+
+    private static int hash(Object key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    /**
+     * @return the slot holding the key or <tt>-1</tt> if the key is not present
+     */
+    private int indexOf(Object key)
+    {
+        int i = hash(key) & mask;
+        Object existing;
+        while ((existing = keys[i]) != null)
+        {
+            if (existing == key || existing.equals(key))
+            {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return NONE;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * @return <tt>true</tt> if the map holds its maximum number of entries
+     */
+    boolean hasHitSize()
+    {
+        return size >= maxSize;
+    }
+
+    /**
+     * Get the value for a key, marking the entry as the most recently used
+     */
+    @SuppressWarnings("unchecked")
+    V get(Object key)
+    {
+        int i = indexOf(key);
+        if (i < 0)
+        {
+            return null;
+        }
+        moveToTail(i);
+        return (V) values[i];
+    }
+
+    boolean containsKey(Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Add or replace an entry, evicting the least recently used entry if the map is full
+     */
+    void put(K key, V value)
+    {
+        if (key == null)
+        {
+            throw new IllegalArgumentException("Null keys are not supported");
+        }
+        int i = indexOf(key);
+        if (i >= 0)
+        {
+            values[i] = value;
+            moveToTail(i);
+            return;
+        }
+        if (size >= maxSize && size > 0)
+        {
+            removeAt(head);
+        }
+        if ((size + 1) * 2 > keys.length)
+        {
+            resize(keys.length * 2);
+        }
+        i = hash(key) & mask;
+        while (keys[i] != null)
+        {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        linkAtTail(i);
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(Object key)
+    {
+        int i = indexOf(key);
+        if (i < 0)
+        {
+            return null;
+        }
+        V value = (V) values[i];
+        removeAt(i);
+        return value;
+    }
+
+    void clear()
+    {
+        if (size == 0)
+        {
+            return;
+        }
+        if (keys.length > MIN_CAPACITY)
+        {
+            allocate(MIN_CAPACITY);
+        }
+        else
+        {
+            Arrays.fill(keys, null);
+            Arrays.fill(values, null);
+            head = NONE;
+            tail = NONE;
+        }
+        size = 0;
+    }
+
+    /**
+     * @return a snapshot of the keys, least recently used first, that is safe to use while the map is modified
+     */
+    @SuppressWarnings("unchecked")
+    List<K> keys()
+    {
+        List<K> result = new ArrayList<>(size);
+        for (int i = head; i != NONE; i = after[i])
+        {
+            result.add((K) keys[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Visit every entry, least recently used first. The map must not be modified by the action.
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action)
+    {
+        for (int i = head; i != NONE; i = after[i])
+        {
+            action.accept((K) keys[i], (V) values[i]);
+        }
+    }
+
+    private void linkAtTail(int i)
+    {
+        before[i] = tail;
+        after[i] = NONE;
+        if (tail == NONE)
+        {
+            head = i;
+        }
+        else
+        {
+            after[tail] = i;
+        }
+        tail = i;
+    }
+
+    private void unlink(int i)
+    {
+        int previous = before[i];
+        int next = after[i];
+        if (previous == NONE)
+        {
+            head = next;
+        }
+        else
+        {
+            after[previous] = next;
+        }
+        if (next == NONE)
+        {
+            tail = previous;
+        }
+        else
+        {
+            before[next] = previous;
+        }
+    }
+
+    private void moveToTail(int i)
+    {
+        if (i != tail)
+        {
+            unlink(i);
+            linkAtTail(i);
+        }
+    }
+
+    /**
+     * Move the access-order links of an entry that is being shifted from one slot to another
+     */
+    private void relink(int from, int to)
+    {
+        int previous = before[from];
+        int next = after[from];
+        before[to] = previous;
+        after[to] = next;
+        if (previous == NONE)
+        {
+            head = to;
+        }
+        else
+        {
+            after[previous] = to;
+        }
+        if (next == NONE)
+        {
+            tail = to;
+        }
+        else
+        {
+            before[next] = to;
+        }
+    }
+
+    /**
+     * Remove the entry at the given slot and shift back any following entries of the same probe sequence
+     */
+    private void removeAt(int i)
+    {
+        unlink(i);
+        size--;
+        int gap = i;
+        int j = i;
+        while (true)
+        {
+            j = (j + 1) & mask;
+            Object key = keys[j];
+            if (key == null)
+            {
+                break;
+            }
+            int home = hash(key) & mask;
+            // Move the entry into the gap unless its home slot lies cyclically in (gap, j]
+            if (((j - home) & mask) >= ((j - gap) & mask))
+            {
+                keys[gap] = key;
+                values[gap] = values[j];
+                relink(j, gap);
+                gap = j;
+            }
+        }
+        keys[gap] = null;
+        values[gap] = null;
+    }
+
+    private void resize(int capacity)
+    {
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int[] oldAfter = after;
+        int oldHead = head;
+        allocate(capacity);
+        // Re-insert in access order so that the order is kept
+        for (int k = oldHead; k != NONE; k = oldAfter[k])
+        {
+            Object key = oldKeys[k];
+            int i = hash(key) & mask;
+            while (keys[i] != null)
+            {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = oldValues[k];
+            linkAtTail(i);
+        }
+    }
+}
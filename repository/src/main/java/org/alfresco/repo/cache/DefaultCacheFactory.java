@@ -32,6 +32,10 @@ import org.apache.commons.logging.LogFactory;
 
 /**
  * {@link CacheFactory} implementation that creates {@link DefaultSimpleCache} instances. The caches are created with a capacity specified by the property {name}.maxItems. For example, a cache named <tt>cache.ticketsCache</tt> would have a capacity specified by the property <tt>cache.ticketsCache.maxItems</tt>
+ * <p>
+ * If {name}.offHeap.maxMemoryMB is greater than zero, an {@link OffHeapSimpleCache} of that size is placed underneath the on-heap cache using a {@link TieredSimpleCache}. The off-heap block size can be set with {name}.offHeap.blockSize.
+ * <p>
+ * If an {@link #setInvalidationTransport(CacheInvalidationTransport) invalidation transport} is set, caches whose {name}.cluster.type is <tt>invalidating</tt> are wrapped in an {@link InvalidatingSimpleCache} so that cluster members exchange only invalidations. Caches of that type that hold the only copy of their values opt out with {name}.invalidation.enabled=false. The number of invalidation stripes can be set with {name}.invalidation.stripes.
  * 
  * @author Matt Ward
  */
@@ -39,20 +43,64 @@ public class DefaultCacheFactory<K extends Serializable, V> extends AbstractCach
 {
     private static final Log log = LogFactory.getLog(DefaultCacheFactory.class);
     private static final String EVICT_NONE = "NONE";
+    private static final String CLUSTER_TYPE_LOCAL = "local";
+    private static final String CLUSTER_TYPE_INVALIDATING = "invalidating";
+
+    private CacheInvalidationTransport invalidationTransport;
+
+    /**
+     * @param invalidationTransport
+     *            the transport used to send invalidations to the other cluster members, or <tt>null</tt> (default) to create only local caches
+     */
+    public void setInvalidationTransport(CacheInvalidationTransport invalidationTransport)
+    {
+        this.invalidationTransport = invalidationTransport;
+    }
 
     @Override
     public SimpleCache<K, V> createCache(String cacheName)
     {
+        if (invalidationTransport != null && CLUSTER_TYPE_INVALIDATING.equals(clusterType(cacheName)) && invalidationEnabled(cacheName))
+        {
+            return createInvalidatingCache(cacheName);
+        }
         return createLocalCache(cacheName);
     }
 
-    private SimpleCache<K, V> createLocalCache(String cacheName)
+    private SimpleCache<K, V> createInvalidatingCache(String cacheName)
+    {
+        SimpleCache<K, InvalidatingSimpleCache.Entry<V>> localCache = createLocalCache(cacheName);
+        InvalidatingSimpleCache<K, V> cache = new InvalidatingSimpleCache<K, V>(localCache, invalidationTransport, cacheName, invalidationStripes(cacheName));
+        if (log.isDebugEnabled())
+        {
+            log.debug("Creating invalidating cache: " + cache);
+        }
+        return cache;
+    }
+
+    private <T> SimpleCache<K, T> createLocalCache(String cacheName)
+    {
+        DefaultSimpleCache<K, T> heapCache = createHeapCache(cacheName);
+        long offHeapMaxMemory = offHeapMaxMemoryMB(cacheName) * 1024L * 1024L;
+        if (offHeapMaxMemory <= 0)
+        {
+            return heapCache;
+        }
+        OffHeapSimpleCache<K, T> offHeapCache = new OffHeapSimpleCache<K, T>(offHeapMaxMemory, offHeapBlockSize(cacheName), cacheName);
+        if (log.isDebugEnabled())
+        {
+            log.debug("Creating off-heap cache tier: " + offHeapCache);
+        }
+        return new TieredSimpleCache<K, T>(heapCache, offHeapCache, cacheName);
+    }
+
+    private <T> DefaultSimpleCache<K, T> createHeapCache(String cacheName)
     {
         int maxItems = maxItems(cacheName);
         boolean useMaxItems = useMaxItems(cacheName);
         int ttlSecs = ttlSeconds(cacheName);
         int maxIdleSeconds = maxIdleSeconds(cacheName);
-        DefaultSimpleCache<K, V> cache = new DefaultSimpleCache<K, V>(maxItems, useMaxItems, ttlSecs, maxIdleSeconds, cacheName);
+        DefaultSimpleCache<K, T> cache = new DefaultSimpleCache<K, T>(maxItems, useMaxItems, ttlSecs, maxIdleSeconds, cacheName);
         if (log.isDebugEnabled())
         {
             log.debug("Creating cache: " + cache);
@@ -80,6 +128,34 @@ public class DefaultCacheFactory<K extends Serializable, V> extends AbstractCach
         return ttlSecs;
     }
 
+    private long offHeapMaxMemoryMB(String cacheName)
+    {
+        String maxMemoryStr = getProperty(cacheName, "offHeap.maxMemoryMB", "0");
+        return Long.parseLong(maxMemoryStr);
+    }
+
+    private int offHeapBlockSize(String cacheName)
+    {
+        String blockSizeStr = getProperty(cacheName, "offHeap.blockSize", String.valueOf(OffHeapSimpleCache.DEFAULT_BLOCK_SIZE));
+        return Integer.parseInt(blockSizeStr);
+    }
+
+    private String clusterType(String cacheName)
+    {
+        return getProperty(cacheName, "cluster.type", CLUSTER_TYPE_LOCAL);
+    }
+
+    private boolean invalidationEnabled(String cacheName)
+    {
+        return Boolean.parseBoolean(getProperty(cacheName, "invalidation.enabled", "true"));
+    }
+
+    private int invalidationStripes(String cacheName)
+    {
+        String stripesStr = getProperty(cacheName, "invalidation.stripes", String.valueOf(InvalidatingSimpleCache.DEFAULT_STRIPES));
+        return Integer.parseInt(stripesStr);
+    }
+
     private int maxIdleSeconds(String cacheName)
     {
         String maxIdleSecsStr = getProperty(cacheName, "maxIdleSeconds", "0");
@@ -0,0 +1,494 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.util.EqualsHelper;
+import org.alfresco.util.ParameterCheck;
+import org.alfresco.util.transaction.TransactionListenerAdapter;
+
+/**
+ * {@link SimpleCache} for clustered deployments in which values are never shipped between cluster members. Each member keeps a purely local near-cache and only tells its peers, through a {@link CacheInvalidationTransport}, the {@link CacheKeyHash cluster-wide hash codes} of the keys that it put or removed.
+ * <p>
+ * A received invalidation stamps the stripe that the key hash falls into; entries read before the stamp are treated as absent and dropped when they are next read. Unrelated keys that share the stripe are dropped too, so the number of stripes trades memory for fewer false invalidations.
+ * <p>
+ * An entry is stamped with the point at which its value was found to be missing rather than the point at which it is put: a value loaded after a miss may already be out of date if a peer invalidated the key in between, for example while the transaction that loaded it was committing. The miss is remembered for the current transaction, or for the next put by the same thread outside a transaction. Values put without a preceding miss are stamped when they are put.
+ * <p>
+ * This mode only suits caches whose values can be reloaded from the database. Caches that are the only copy of their values must not use it, as the values would stay on the member that put them.
+ * <p>
+ * When used as the shared cache of a {@link TransactionalCache}, the invalidations made while a transaction commits are sent to the peers as a single {@link CacheInvalidationBatch} once all the transactional caches have written to their shared caches. Outside a transaction each change is sent immediately.
+ */
+public class InvalidatingSimpleCache<K extends Serializable, V extends Object> implements SimpleCache<K, V>, CacheInvalidationListener
+{
+    public static final int DEFAULT_STRIPES = 4096;
+
+    private static final String RESOURCE_KEY_TXN_BATCH = "InvalidatingSimpleCache.TxnBatch";
+    private static final String RESOURCE_KEY_READ_STAMPS = "InvalidatingSimpleCache.ReadStamps";
+    private static final Log logger = LogFactory.getLog(InvalidatingSimpleCache.class);
+
+    private final SimpleCache<K, Entry<V>> localCache;
+    private final CacheInvalidationTransport transport;
+    private final String cacheName;
+    private final String resourceKeyTxnBatch;
+    private final String resourceKeyReadStamps;
+    private final ThreadLocal<ReadStamp<K>> lastReadStamp = new ThreadLocal<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLongArray invalidationStamps;
+    private final AtomicLong clearStamp = new AtomicLong();
+    private final int stripeMask;
+    private volatile boolean invalidateOnPut = true;
+
+    private final AtomicLong invalidationsSent = new AtomicLong();
+    private final AtomicLong invalidationsReceived = new AtomicLong();
+    private final AtomicLong clearsReceived = new AtomicLong();
+    private final AtomicLong staleEntries = new AtomicLong();
+
+    /**
+     * @param localCache
+     *            the cache that holds the values on this member
+     * @param transport
+     *            the transport shared by all invalidating caches of this member
+     * @param cacheName
+     *            the name of the cache region, which must be the same on all members
+     * @param stripes
+     *            the number of invalidation stripes, rounded up to a power of two
+     */
+    public InvalidatingSimpleCache(SimpleCache<K, Entry<V>> localCache, CacheInvalidationTransport transport, String cacheName, int stripes)
+    {
+        ParameterCheck.mandatory("localCache", localCache);
+        ParameterCheck.mandatory("transport", transport);
+        ParameterCheck.mandatoryString("cacheName", cacheName);
+        this.localCache = localCache;
+        this.transport = transport;
+        this.cacheName = cacheName;
+        this.resourceKeyTxnBatch = RESOURCE_KEY_TXN_BATCH + "." + transport.getMemberId();
+        this.resourceKeyReadStamps = RESOURCE_KEY_READ_STAMPS + "." + transport.getMemberId() + "." + cacheName;
+        int size = 1;
+        while (size < stripes)
+        {
+            size <<= 1;
+        }
+        this.invalidationStamps = new AtomicLongArray(size);
+        this.stripeMask = size - 1;
+        transport.addListener(cacheName, this);
+    }
+
+    /**
+     * Set whether a put that changes the locally held value invalidates the key on the peers (default <tt>true</tt>). Caches of immutable values do not need this, as a key can never be put with a different value.
+     */
+    public void setInvalidateOnPut(boolean invalidateOnPut)
+    {
+        this.invalidateOnPut = invalidateOnPut;
+    }
+
+    public boolean isInvalidateOnPut()
+    {
+        return invalidateOnPut;
+    }
+
+    @Override
+    public boolean contains(K key)
+    {
+        return getEntry(key) != null;
+    }
+
+    @Override
+    public Collection<K> getKeys()
+    {
+        Collection<K> localKeys = localCache.getKeys();
+        List<K> keys = new ArrayList<>(localKeys.size());
+        for (K key : localKeys)
+        {
+            Entry<V> entry = localCache.get(key);
+            if (entry != null && !isStale(entry))
+            {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public V get(K key)
+    {
+        Entry<V> entry = getEntry(key);
+        if (entry == null)
+        {
+            recordMiss(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private Entry<V> getEntry(K key)
+    {
+        Entry<V> entry = localCache.get(key);
+        if (entry == null)
+        {
+            return null;
+        }
+        if (isStale(entry))
+        {
+            localCache.remove(key);
+            staleEntries.incrementAndGet();
+            return null;
+        }
+        return entry;
+    }
+
+    @Override
+    public void put(K key, V value)
+    {
+        long readStamp = takeReadStamp(key);
+        int keyHash = CacheKeyHash.of(key);
+        if (invalidateOnPut)
+        {
+            Entry<V> existing = getEntry(key);
+            if (existing == null || !isSameValue(existing.value, value))
+            {
+                invalidatePeers(keyHash);
+            }
+        }
+        localCache.put(key, new Entry<V>(value, readStamp, keyHash));
+    }
+
+    @Override
+    public void remove(K key)
+    {
+        takeReadStamp(key);
+        localCache.remove(key);
+        invalidatePeers(CacheKeyHash.of(key));
+    }
+
+    @Override
+    public void clear()
+    {
+        localCache.clear();
+        invalidationsSent.incrementAndGet();
+        CacheInvalidationBatch batch = getTransactionBatch();
+        if (batch != null)
+        {
+            batch.addClear(cacheName);
+        }
+        else
+        {
+            batch = new CacheInvalidationBatch(transport.getMemberId());
+            batch.addClear(cacheName);
+            transport.send(batch);
+        }
+    }
+
+    @Override
+    public void invalidate(int[] keyHashes)
+    {
+        long stamp = sequence.incrementAndGet();
+        for (int keyHash : keyHashes)
+        {
+            invalidationStamps.accumulateAndGet(stripe(keyHash), stamp, Math::max);
+        }
+        invalidationsReceived.addAndGet(keyHashes.length);
+        if (logger.isTraceEnabled())
+        {
+            logger.trace("Received " + keyHashes.length + " invalidations for cache " + cacheName);
+        }
+    }
+
+    @Override
+    public void invalidateAll()
+    {
+        clearStamp.accumulateAndGet(sequence.incrementAndGet(), Math::max);
+        localCache.clear();
+        clearsReceived.incrementAndGet();
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Cleared cache " + cacheName + " on request of a peer");
+        }
+    }
+
+    /**
+     * Collect the invalidations made by the current transaction into one batch that is sent after the transaction completes. This has no effect outside a transaction or if the batch is already bound.
+     */
+    public void bindToTransaction()
+    {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || getTransactionBatch() != null)
+        {
+            return;
+        }
+        CacheInvalidationBatch batch = new CacheInvalidationBatch(transport.getMemberId());
+        AlfrescoTransactionSupport.bindResource(resourceKeyTxnBatch, batch);
+        // Listeners of the normal order complete after the transactional caches have written to the shared caches
+        AlfrescoTransactionSupport.bindListener(new BatchSender(transport, resourceKeyTxnBatch, batch));
+    }
+
+    private CacheInvalidationBatch getTransactionBatch()
+    {
+        return AlfrescoTransactionSupport.getResource(resourceKeyTxnBatch);
+    }
+
+    private void invalidatePeers(int keyHash)
+    {
+        invalidationsSent.incrementAndGet();
+        CacheInvalidationBatch batch = getTransactionBatch();
+        if (batch != null)
+        {
+            batch.addKeyHash(cacheName, keyHash);
+        }
+        else
+        {
+            batch = new CacheInvalidationBatch(transport.getMemberId());
+            batch.addKeyHash(cacheName, keyHash);
+            transport.send(batch);
+        }
+    }
+
+    /**
+     * Remember the point in the local sequence at which the key was found to be missing, so that the value loaded for it is stamped as of then
+     */
+    private void recordMiss(K key)
+    {
+        long stamp = sequence.get();
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            Map<K, Long> readStamps = AlfrescoTransactionSupport.getResource(resourceKeyReadStamps);
+            if (readStamps == null)
+            {
+                readStamps = new HashMap<>();
+                AlfrescoTransactionSupport.bindResource(resourceKeyReadStamps, readStamps);
+            }
+            // The first miss in the transaction is the earliest point the value can have been read
+            readStamps.putIfAbsent(key, stamp);
+        }
+        else
+        {
+            lastReadStamp.set(new ReadStamp<K>(key, stamp));
+        }
+    }
+
+    /**
+     * @return the stamp of the last miss of the key, or the current point in the local sequence if the key was not missed
+     */
+    private long takeReadStamp(K key)
+    {
+        Long stamp = null;
+        Map<K, Long> readStamps = AlfrescoTransactionSupport.getResource(resourceKeyReadStamps);
+        if (readStamps != null)
+        {
+            stamp = readStamps.remove(key);
+        }
+        ReadStamp<K> lastRead = lastReadStamp.get();
+        if (lastRead != null && lastRead.key.equals(key))
+        {
+            lastReadStamp.remove();
+            if (stamp == null)
+            {
+                stamp = lastRead.stamp;
+            }
+        }
+        return stamp == null ? sequence.get() : stamp;
+    }
+
+    private boolean isStale(Entry<V> entry)
+    {
+        long stamp = Math.max(clearStamp.get(), invalidationStamps.get(stripe(entry.keyHash)));
+        return entry.sequence < stamp;
+    }
+
+    private int stripe(int keyHash)
+    {
+        return (keyHash ^ (keyHash >>> 16)) & stripeMask;
+    }
+
+    private static boolean isSameValue(Object existing, Object value)
+    {
+        // The holders used by TransactionalCache are only equal to themselves
+        if (existing instanceof ValueHolder && value instanceof ValueHolder)
+        {
+            return EqualsHelper.nullSafeEquals(((ValueHolder<?>) existing).getValue(), ((ValueHolder<?>) value).getValue());
+        }
+        return EqualsHelper.nullSafeEquals(existing, value);
+    }
+
+    public SimpleCache<K, Entry<V>> getLocalCache()
+    {
+        return localCache;
+    }
+
+    public String getCacheName()
+    {
+        return cacheName;
+    }
+
+    /**
+     * @return the transport that carries the invalidations of this cache, for components that need to follow them too
+     */
+    public CacheInvalidationTransport getTransport()
+    {
+        return transport;
+    }
+
+    /**
+     * @return the number of key invalidations and clears made by this member
+     */
+    public long getInvalidationsSent()
+    {
+        return invalidationsSent.get();
+    }
+
+    /**
+     * @return the number of key invalidations received from peers
+     */
+    public long getInvalidationsReceived()
+    {
+        return invalidationsReceived.get();
+    }
+
+    /**
+     * @return the number of clears received from peers
+     */
+    public long getClearsReceived()
+    {
+        return clearsReceived.get();
+    }
+
+    /**
+     * @return the number of local entries that were dropped on read because a peer invalidated their stripe
+     */
+    public long getStaleEntries()
+    {
+        return staleEntries.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "InvalidatingSimpleCache[cacheName=" + cacheName +
+                ", sent=" + invalidationsSent +
+                ", received=" + invalidationsReceived +
+                ", clearsReceived=" + clearsReceived +
+                ", stale=" + staleEntries +
+                ", localCache=" + localCache + "]";
+    }
+
+    /**
+     * A locally cached value together with the point in the local sequence as of which it was read, and the cluster-wide hash of its key.
+     */
+    public static final class Entry<V> implements Serializable
+    {
+        private static final long serialVersionUID = -2871565437066402852L;
+
+        private final V value;
+        private final long sequence;
+        private final int keyHash;
+
+        private Entry(V value, long sequence, int keyHash)
+        {
+            this.value = value;
+            this.sequence = sequence;
+            this.keyHash = keyHash;
+        }
+
+        public V getValue()
+        {
+            return value;
+        }
+    }
+
+    /**
+     * The last miss of a thread outside a transaction
+     */
+    private static final class ReadStamp<K>
+    {
+        private final K key;
+        private final long stamp;
+
+        private ReadStamp(K key, long stamp)
+        {
+            this.key = key;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * Sends the invalidations collected during a transaction once it has completed. Changes made to the caches after this point are sent individually.
+     */
+    private static class BatchSender extends TransactionListenerAdapter
+    {
+        private final CacheInvalidationTransport transport;
+        private final String resourceKey;
+        private final CacheInvalidationBatch batch;
+
+        private BatchSender(CacheInvalidationTransport transport, String resourceKey, CacheInvalidationBatch batch)
+        {
+            this.transport = transport;
+            this.resourceKey = resourceKey;
+            this.batch = batch;
+        }
+
+        @Override
+        public void afterCommit()
+        {
+            send();
+        }
+
+        @Override
+        public void afterRollback()
+        {
+            // The transactional caches may still have removed entries from the shared caches
+            send();
+        }
+
+        private void send()
+        {
+            AlfrescoTransactionSupport.unbindResource(resourceKey);
+            if (batch.isEmpty())
+            {
+                return;
+            }
+            try
+            {
+                transport.send(batch);
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Failed to send cache invalidations; peers may hold stale entries: " + batch, e);
+            }
+        }
+    }
+}
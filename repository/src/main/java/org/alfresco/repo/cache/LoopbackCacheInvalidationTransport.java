@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+
+/**
+ * In-JVM {@link CacheInvalidationTransport} for tests. Members created with {@link #join(String)} form a group; each batch is serialized, as a network transport would, and delivered synchronously to every other member of the group.
+ */
+public class LoopbackCacheInvalidationTransport implements CacheInvalidationTransport
+{
+    private final String memberId;
+    private final List<LoopbackCacheInvalidationTransport> members;
+    private final Map<String, List<CacheInvalidationListener>> listeners = new ConcurrentHashMap<>();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    /**
+     * Create the first member of a new group
+     */
+    public LoopbackCacheInvalidationTransport(String memberId)
+    {
+        this(memberId, new CopyOnWriteArrayList<LoopbackCacheInvalidationTransport>());
+    }
+
+    private LoopbackCacheInvalidationTransport(String memberId, List<LoopbackCacheInvalidationTransport> members)
+    {
+        this.memberId = memberId;
+        this.members = members;
+        members.add(this);
+    }
+
+    /**
+     * @return a new member of the same group
+     */
+    public LoopbackCacheInvalidationTransport join(String memberId)
+    {
+        return new LoopbackCacheInvalidationTransport(memberId, members);
+    }
+
+    @Override
+    public String getMemberId()
+    {
+        return memberId;
+    }
+
+    @Override
+    public void send(CacheInvalidationBatch batch)
+    {
+        byte[] bytes = serialize(batch);
+        batchesSent.incrementAndGet();
+        bytesSent.addAndGet(bytes.length);
+        for (LoopbackCacheInvalidationTransport member : members)
+        {
+            if (member != this)
+            {
+                member.receive(deserialize(bytes));
+            }
+        }
+    }
+
+    @Override
+    public void addListener(String cacheName, CacheInvalidationListener listener)
+    {
+        listeners.computeIfAbsent(cacheName, name -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    private void receive(CacheInvalidationBatch batch)
+    {
+        for (String cacheName : batch.getCacheNames())
+        {
+            List<CacheInvalidationListener> cacheListeners = listeners.get(cacheName);
+            if (cacheListeners == null)
+            {
+                continue;
+            }
+            boolean cleared = batch.isCleared(cacheName);
+            int[] keyHashes = batch.getKeyHashes(cacheName);
+            for (CacheInvalidationListener listener : cacheListeners)
+            {
+                if (cleared)
+                {
+                    listener.invalidateAll();
+                }
+                else
+                {
+                    listener.invalidate(keyHashes);
+                }
+            }
+        }
+    }
+
+    private static byte[] serialize(CacheInvalidationBatch batch)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(batch);
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoRuntimeException("Failed to serialize cache invalidations: " + batch, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static CacheInvalidationBatch deserialize(byte[] bytes)
+    {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)))
+        {
+            return (CacheInvalidationBatch) in.readObject();
+        }
+        catch (IOException | ClassNotFoundException e)
+        {
+            throw new AlfrescoRuntimeException("Failed to deserialize cache invalidations", e);
+        }
+    }
+
+    /**
+     * @return the number of batches sent by this member
+     */
+    public long getBatchesSent()
+    {
+        return batchesSent.get();
+    }
+
+    /**
+     * @return the serialized size of all batches sent by this member
+     */
+    public long getBytesSent()
+    {
+        return bytesSent.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LoopbackCacheInvalidationTransport[memberId=" + memberId + ", members=" + members.size() + "]";
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * {@link SimpleCache} implementation that keeps its values in serialized form outside of the Java heap.
+ * <p>
+ * Only the keys and a small fixed-size record per entry stay on the heap; each value is encoded with a compact, QName-aware encoding and copied into direct memory, so that very large caches do not add to garbage collection pauses. The memory is split into segments, each with its own lock and LRU ordering. Each segment hands out fixed-size blocks from lazily allocated direct buffers; an entry occupies as many blocks as it needs, chained through a link at the start of each block, and the least recently used entries are evicted when a segment runs out of blocks. Free blocks are chained the same way, so the free list takes no heap either.
+ * <p>
+ * Values are copied on every {@link #get(Serializable) get}, so the cache is intended to sit underneath an on-heap cache, see {@link TieredSimpleCache}. Values that cannot be serialized are not cached.
+ */
+public class OffHeapSimpleCache<K extends Serializable, V extends Object> implements SimpleCache<K, V>
+{
+    private static final Log logger = LogFactory.getLog(OffHeapSimpleCache.class);
+
+    public static final int DEFAULT_BLOCK_SIZE = 128;
+    private static final int SEGMENT_COUNT = 16;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    /** Bytes at the start of each block holding the number of the next block of its chain */
+    private static final int LINK_SIZE = 4;
+    private static final int NO_BLOCK = -1;
+
+    private final String cacheName;
+    private final long maxMemory;
+    private final int blockSize;
+    private final OffHeapValueCodec codec;
+    private final Segment[] segments;
+
+    /**
+     * @param maxMemory
+     *            the maximum number of bytes of direct memory to use
+     * @param blockSize
+     *            the allocation unit in bytes; values use a whole number of blocks
+     * @param cacheName
+     *            the name of the cache, for logging
+     */
+    @SuppressWarnings("unchecked")
+    public OffHeapSimpleCache(long maxMemory, int blockSize, String cacheName)
+    {
+        if (blockSize < 16)
+        {
+            throw new IllegalArgumentException("blockSize must be at least 16 bytes, but was " + blockSize);
+        }
+        long blocksPerSegment = maxMemory / SEGMENT_COUNT / blockSize;
+        if (blocksPerSegment < 1)
+        {
+            throw new IllegalArgumentException("maxMemory is too small for cache " + cacheName + ": " + maxMemory);
+        }
+        if (blocksPerSegment > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("maxMemory is too large for block size " + blockSize + ": " + maxMemory);
+        }
+        this.cacheName = cacheName;
+        this.maxMemory = maxMemory;
+        this.blockSize = blockSize;
+        this.codec = new OffHeapValueCodec();
+        this.segments = new OffHeapSimpleCache.Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++)
+        {
+            segments[i] = new Segment((int) blocksPerSegment);
+        }
+    }
+
+    private Segment segmentFor(K key)
+    {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (SEGMENT_COUNT - 1)];
+    }
+
+    @Override
+    public boolean contains(K key)
+    {
+        return segmentFor(key).contains(key);
+    }
+
+    @Override
+    public Collection<K> getKeys()
+    {
+        List<K> keys = new ArrayList<>();
+        for (Segment segment : segments)
+        {
+            segment.addKeys(keys);
+        }
+        return keys;
+    }
+
+    @Override
+    public V get(K key)
+    {
+        byte[] encoded = segmentFor(key).get(key);
+        if (encoded == null)
+        {
+            return null;
+        }
+        try
+        {
+            @SuppressWarnings("unchecked")
+            V value = (V) codec.decode(encoded);
+            return value;
+        }
+        catch (IOException e)
+        {
+            logger.warn("Discarding unreadable entry " + key + " from cache " + cacheName, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(K key, V value)
+    {
+        Segment segment = segmentFor(key);
+        byte[] encoded;
+        try
+        {
+            encoded = codec.encode(value);
+        }
+        catch (IOException e)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Value for " + key + " cannot be stored in cache " + cacheName + ": " + e.getMessage());
+            }
+            // Don't leave a stale value behind
+            segment.remove(key);
+            return;
+        }
+        segment.put(key, encoded);
+    }
+
+    @Override
+    public void remove(K key)
+    {
+        segmentFor(key).remove(key);
+    }
+
+    @Override
+    public void clear()
+    {
+        for (Segment segment : segments)
+        {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return Returns the number of entries in the cache
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Segment segment : segments)
+        {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return Returns the number of bytes of direct memory held by the entries in the cache
+     */
+    public long getUsedMemory()
+    {
+        long usedBlocks = 0;
+        for (Segment segment : segments)
+        {
+            usedBlocks += segment.usedBlocks();
+        }
+        return usedBlocks * blockSize;
+    }
+
+    public long getMaxMemory()
+    {
+        return maxMemory;
+    }
+
+    public String getCacheName()
+    {
+        return cacheName;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "OffHeapSimpleCache[maxMemory=" + maxMemory + ", blockSize=" + blockSize + ", cacheName=" + cacheName + "]";
+    }
+
+    /**
+     * Heap record of one entry: the length of the encoded value and the first of the blocks holding it
+     */
+    private static final class Entry
+    {
+        private final int length;
+        private final int firstBlock;
+        private final int blockCount;
+
+        private Entry(int length, int firstBlock, int blockCount)
+        {
+            this.length = length;
+            this.firstBlock = firstBlock;
+            this.blockCount = blockCount;
+        }
+    }
+
+    /**
+     * One independently locked part of the cache. The index maps each key, in access order, to its {@link Entry}. The blocks of an entry, like the free blocks, are chained through the first bytes of each block, so the heap holds nothing per block.
+     */
+    private final class Segment
+    {
+        private final LinkedHashMap<K, Entry> index = new LinkedHashMap<>(64, 0.75f, true);
+        private final int totalBlocks;
+        private final int blocksPerChunk;
+        private final ByteBuffer[] chunks;
+        /** The first free block, or {@link #NO_BLOCK} */
+        private int freeHead = NO_BLOCK;
+        private int freeCount;
+        /** Blocks at or above this number have never been handed out */
+        private int nextUnusedBlock;
+
+        private Segment(int totalBlocks)
+        {
+            this.totalBlocks = totalBlocks;
+            this.blocksPerChunk = (int) Math.min(totalBlocks, Math.max(1, MAX_CHUNK_SIZE / blockSize));
+            this.chunks = new ByteBuffer[(totalBlocks + blocksPerChunk - 1) / blocksPerChunk];
+        }
+
+        private synchronized boolean contains(K key)
+        {
+            return index.containsKey(key);
+        }
+
+        private synchronized void addKeys(List<K> keys)
+        {
+            keys.addAll(index.keySet());
+        }
+
+        private synchronized int size()
+        {
+            return index.size();
+        }
+
+        private synchronized int usedBlocks()
+        {
+            return nextUnusedBlock - freeCount;
+        }
+
+        private synchronized byte[] get(K key)
+        {
+            Entry entry = index.get(key);
+            if (entry == null)
+            {
+                return null;
+            }
+            byte[] encoded = new byte[entry.length];
+            int offset = 0;
+            for (int block = entry.firstBlock; offset < encoded.length; block = next(block))
+            {
+                int length = Math.min(blockSize - LINK_SIZE, encoded.length - offset);
+                chunkOf(block).get(positionOf(block) + LINK_SIZE, encoded, offset, length);
+                offset += length;
+            }
+            return encoded;
+        }
+
+        private synchronized void put(K key, byte[] encoded)
+        {
+            release(index.remove(key));
+            int blocksNeeded = Math.max(1, (encoded.length + blockSize - LINK_SIZE - 1) / (blockSize - LINK_SIZE));
+            if (blocksNeeded > totalBlocks)
+            {
+                // Too big to ever fit
+                return;
+            }
+            // Make room by evicting the least recently used entries
+            Iterator<Entry> lru = index.values().iterator();
+            while (freeCount + (totalBlocks - nextUnusedBlock) < blocksNeeded)
+            {
+                Entry evicted = lru.next();
+                lru.remove();
+                release(evicted);
+            }
+            int firstBlock = NO_BLOCK;
+            int previousBlock = NO_BLOCK;
+            int offset = 0;
+            for (int i = 0; i < blocksNeeded; i++)
+            {
+                int block = allocate();
+                int length = Math.min(blockSize - LINK_SIZE, encoded.length - offset);
+                chunkOf(block).put(positionOf(block) + LINK_SIZE, encoded, offset, length);
+                offset += length;
+                if (previousBlock == NO_BLOCK)
+                {
+                    firstBlock = block;
+                }
+                else
+                {
+                    setNext(previousBlock, block);
+                }
+                previousBlock = block;
+            }
+            setNext(previousBlock, NO_BLOCK);
+            index.put(key, new Entry(encoded.length, firstBlock, blocksNeeded));
+        }
+
+        private synchronized void remove(K key)
+        {
+            release(index.remove(key));
+        }
+
+        /**
+         * Drops all entries but keeps the direct buffers for reuse
+         */
+        private synchronized void clear()
+        {
+            index.clear();
+            freeHead = NO_BLOCK;
+            freeCount = 0;
+            nextUnusedBlock = 0;
+        }
+
+        private int allocate()
+        {
+            if (freeHead != NO_BLOCK)
+            {
+                int block = freeHead;
+                freeHead = next(block);
+                freeCount--;
+                return block;
+            }
+            int block = nextUnusedBlock++;
+            int chunk = block / blocksPerChunk;
+            if (chunks[chunk] == null)
+            {
+                int chunkBlocks = Math.min(blocksPerChunk, totalBlocks - chunk * blocksPerChunk);
+                chunks[chunk] = ByteBuffer.allocateDirect(chunkBlocks * blockSize);
+            }
+            return block;
+        }
+
+        /**
+         * Puts the chain of blocks of the entry in front of the free list
+         */
+        private void release(Entry entry)
+        {
+            if (entry == null)
+            {
+                return;
+            }
+            int lastBlock = entry.firstBlock;
+            for (int i = 1; i < entry.blockCount; i++)
+            {
+                lastBlock = next(lastBlock);
+            }
+            setNext(lastBlock, freeHead);
+            freeHead = entry.firstBlock;
+            freeCount += entry.blockCount;
+        }
+
+        private int next(int block)
+        {
+            return chunkOf(block).getInt(positionOf(block));
+        }
+
+        private void setNext(int block, int nextBlock)
+        {
+            chunkOf(block).putInt(positionOf(block), nextBlock);
+        }
+
+        private ByteBuffer chunkOf(int block)
+        {
+            return chunks[block / blocksPerChunk];
+        }
+
+        private int positionOf(int block)
+        {
+            return (block % blocksPerChunk) * blockSize;
+        }
+    }
+}
@@ -0,0 +1,545 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.MLText;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.QName;
+
+/**
+ * Compact binary encoding of cache values for {@link OffHeapSimpleCache}.
+ * <p>
+ * The common building blocks of node properties and aspects (strings, numbers, dates, {@link NodeRef}s, {@link QName}s, {@link ContentData}, {@link MLText}, locales and the plain collections that hold them) are written with a one-byte type tag. QNames are written as small integer IDs from a dictionary held by the codec: the number of distinct QNames in a repository is small, so the dictionary stays tiny while each stored occurrence shrinks to one or two bytes. The {@link TransactionalCache.ValueHolder} wrapping each value of a shared cache is unwrapped and its value written the same way.
+ * <p>
+ * Any other {@link Serializable} value, such as the node and ACL entities, falls back to Java serialization, but with each class descriptor replaced by an ID from a second dictionary of the codec. The descriptors are most of the size of a serialized entity, and the encoded values never leave this JVM, so the IDs can be resolved when they are read back.
+ * <p>
+ * Unmodifiable maps and sets are decoded as unmodifiable, insertion-ordered copies; other collection types are serialized so that their exact type is preserved.
+ */
+final class OffHeapValueCodec
+{
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte DATE = 8;
+    private static final byte QNAME = 9;
+    private static final byte NODE_REF = 10;
+    private static final byte HASH_MAP = 11;
+    private static final byte UNMODIFIABLE_MAP = 12;
+    private static final byte HASH_SET = 13;
+    private static final byte UNMODIFIABLE_SET = 14;
+    private static final byte ARRAY_LIST = 15;
+    static final byte SERIALIZED = 16;
+    static final byte VALUE_HOLDER = 17;
+    private static final byte LOCALE = 18;
+    private static final byte ML_TEXT = 19;
+    private static final byte CONTENT_DATA = 20;
+
+    private static final Class<?> UNMODIFIABLE_MAP_CLASS = Collections.unmodifiableMap(new HashMap<>()).getClass();
+    private static final Class<?> UNMODIFIABLE_SET_CLASS = Collections.unmodifiableSet(new HashSet<>()).getClass();
+
+    private final Map<QName, Integer> qnameIds = new ConcurrentHashMap<>();
+    private final List<QName> qnames = new CopyOnWriteArrayList<>();
+    private final Map<Class<?>, Integer> classDescriptorIds = new ConcurrentHashMap<>();
+    private final List<ObjectStreamClass> classDescriptors = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return Returns the encoded value
+     * @throws NotSerializableException
+     *             if the value, or something it contains, cannot be serialized
+     */
+    byte[] encode(Object value) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        write(out, value);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    Object decode(byte[] encoded) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        return read(in);
+    }
+
+    private void write(DataOutputStream out, Object value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeByte(NULL);
+            return;
+        }
+        Class<?> clazz = value.getClass();
+        if (clazz == String.class)
+        {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        }
+        else if (clazz == Integer.class)
+        {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        }
+        else if (clazz == Long.class)
+        {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        }
+        else if (clazz == Boolean.class)
+        {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        }
+        else if (clazz == Double.class)
+        {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        }
+        else if (clazz == Float.class)
+        {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        }
+        else if (clazz == Date.class)
+        {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        }
+        else if (clazz == QName.class)
+        {
+            out.writeByte(QNAME);
+            writeVarInt(out, getQNameId((QName) value));
+        }
+        else if (clazz == NodeRef.class)
+        {
+            NodeRef nodeRef = (NodeRef) value;
+            out.writeByte(NODE_REF);
+            writeString(out, nodeRef.getStoreRef().getProtocol());
+            writeString(out, nodeRef.getStoreRef().getIdentifier());
+            writeString(out, nodeRef.getId());
+        }
+        else if (clazz == Locale.class && isPlainLocale((Locale) value))
+        {
+            out.writeByte(LOCALE);
+            writeLocale(out, (Locale) value);
+        }
+        else if (clazz == MLText.class)
+        {
+            MLText mlText = (MLText) value;
+            out.writeByte(ML_TEXT);
+            writeVarInt(out, mlText.size());
+            for (Map.Entry<Locale, String> entry : mlText.entrySet())
+            {
+                write(out, entry.getKey());
+                write(out, entry.getValue());
+            }
+        }
+        else if (clazz == ContentData.class && isPlainLocale(((ContentData) value).getLocale()))
+        {
+            ContentData contentData = (ContentData) value;
+            out.writeByte(CONTENT_DATA);
+            writeNullableString(out, contentData.getContentUrl());
+            writeNullableString(out, contentData.getMimetype());
+            out.writeLong(contentData.getSize());
+            writeNullableString(out, contentData.getEncoding());
+            writeLocale(out, contentData.getLocale());
+        }
+        else if (clazz == HashMap.class || clazz == UNMODIFIABLE_MAP_CLASS)
+        {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(clazz == HashMap.class ? HASH_MAP : UNMODIFIABLE_MAP);
+            writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet())
+            {
+                write(out, entry.getKey());
+                write(out, entry.getValue());
+            }
+        }
+        else if (clazz == HashSet.class || clazz == UNMODIFIABLE_SET_CLASS)
+        {
+            out.writeByte(clazz == HashSet.class ? HASH_SET : UNMODIFIABLE_SET);
+            writeCollection(out, (Collection<?>) value);
+        }
+        else if (clazz == ArrayList.class)
+        {
+            out.writeByte(ARRAY_LIST);
+            writeCollection(out, (Collection<?>) value);
+        }
+        else if (clazz == TransactionalCache.ValueHolder.class)
+        {
+            // The shared caches behind transactional caches hold their values wrapped
+            TransactionalCache.ValueHolder<?> holder = (TransactionalCache.ValueHolder<?>) value;
+            out.writeByte(VALUE_HOLDER);
+            out.writeInt(holder.getRand());
+            write(out, holder.getValue());
+        }
+        else if (value instanceof Serializable)
+        {
+            out.writeByte(SERIALIZED);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            try (ObjectOutputStream oos = new DictionaryObjectOutputStream(bytes))
+            {
+                oos.writeObject(value);
+            }
+            writeVarInt(out, bytes.size());
+            bytes.writeTo(out);
+        }
+        else
+        {
+            throw new NotSerializableException(clazz.getName());
+        }
+    }
+
+    private Object read(DataInputStream in) throws IOException
+    {
+        byte tag = in.readByte();
+        switch (tag)
+        {
+        case NULL:
+            return null;
+        case STRING:
+            return readString(in);
+        case INTEGER:
+            return in.readInt();
+        case LONG:
+            return in.readLong();
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case DOUBLE:
+            return in.readDouble();
+        case FLOAT:
+            return in.readFloat();
+        case DATE:
+            return new Date(in.readLong());
+        case QNAME:
+            return qnames.get(readVarInt(in));
+        case NODE_REF:
+            return new NodeRef(readString(in), readString(in), readString(in));
+        case LOCALE:
+            return readLocale(in);
+        case ML_TEXT:
+        {
+            int size = readVarInt(in);
+            MLText mlText = new MLText();
+            for (int i = 0; i < size; i++)
+            {
+                Locale locale = (Locale) read(in);
+                mlText.put(locale, (String) read(in));
+            }
+            return mlText;
+        }
+        case CONTENT_DATA:
+        {
+            String contentUrl = readNullableString(in);
+            String mimetype = readNullableString(in);
+            long size = in.readLong();
+            String encoding = readNullableString(in);
+            return new ContentData(contentUrl, mimetype, size, encoding, readLocale(in));
+        }
+        case HASH_MAP:
+        case UNMODIFIABLE_MAP:
+        {
+            int size = readVarInt(in);
+            Map<Object, Object> map = (tag == HASH_MAP) ? new HashMap<>(size * 2) : new LinkedHashMap<>(size * 2);
+            for (int i = 0; i < size; i++)
+            {
+                Object key = read(in);
+                map.put(key, read(in));
+            }
+            return (tag == HASH_MAP) ? map : Collections.unmodifiableMap(map);
+        }
+        case HASH_SET:
+        case UNMODIFIABLE_SET:
+        {
+            int size = readVarInt(in);
+            Set<Object> set = (tag == HASH_SET) ? new HashSet<>(size * 2) : new LinkedHashSet<>(size * 2);
+            for (int i = 0; i < size; i++)
+            {
+                set.add(read(in));
+            }
+            return (tag == HASH_SET) ? set : Collections.unmodifiableSet(set);
+        }
+        case ARRAY_LIST:
+        {
+            int size = readVarInt(in);
+            List<Object> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+            {
+                list.add(read(in));
+            }
+            return list;
+        }
+        case VALUE_HOLDER:
+        {
+            int rand = in.readInt();
+            return TransactionalCache.ValueHolder.restore(rand, read(in));
+        }
+        case SERIALIZED:
+        {
+            byte[] bytes = new byte[readVarInt(in)];
+            in.readFully(bytes);
+            try (ObjectInputStream ois = new DictionaryObjectInputStream(new ByteArrayInputStream(bytes)))
+            {
+                return ois.readObject();
+            }
+            catch (ClassNotFoundException e)
+            {
+                throw new IOException("Unable to deserialize cached value", e);
+            }
+        }
+        default:
+            throw new StreamCorruptedException("Unknown value type: " + tag);
+        }
+    }
+
+    private void writeCollection(DataOutputStream out, Collection<?> collection) throws IOException
+    {
+        writeVarInt(out, collection.size());
+        for (Object element : collection)
+        {
+            write(out, element);
+        }
+    }
+
+    private int getQNameId(QName qname)
+    {
+        Integer id = qnameIds.get(qname);
+        if (id == null)
+        {
+            synchronized (qnames)
+            {
+                id = qnameIds.get(qname);
+                if (id == null)
+                {
+                    // Publish the QName before its ID so that readers can always resolve an ID they have seen
+                    id = qnames.size();
+                    qnames.add(qname);
+                    qnameIds.put(qname, id);
+                }
+            }
+        }
+        return id;
+    }
+
+    private int getClassDescriptorId(ObjectStreamClass descriptor) throws NotSerializableException
+    {
+        Class<?> clazz = descriptor.forClass();
+        if (clazz == null)
+        {
+            throw new NotSerializableException(descriptor.getName());
+        }
+        Integer id = classDescriptorIds.get(clazz);
+        if (id == null)
+        {
+            synchronized (classDescriptors)
+            {
+                id = classDescriptorIds.get(clazz);
+                if (id == null)
+                {
+                    id = classDescriptors.size();
+                    classDescriptors.add(descriptor);
+                    classDescriptorIds.put(clazz, id);
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Locales are written as language, country and variant, which is all that most locales have
+     */
+    private static boolean isPlainLocale(Locale locale)
+    {
+        return locale != null && locale.getScript().isEmpty() && !locale.hasExtensions();
+    }
+
+    private static void writeLocale(DataOutputStream out, Locale locale) throws IOException
+    {
+        writeString(out, locale.getLanguage());
+        writeString(out, locale.getCountry());
+        writeString(out, locale.getVariant());
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Locale readLocale(DataInputStream in) throws IOException
+    {
+        return new Locale(readString(in), readString(in), readString(in));
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+        {
+            writeString(out, value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed length");
+    }
+
+    /**
+     * Java serialization that writes the ID of each class descriptor instead of the descriptor
+     */
+    private final class DictionaryObjectOutputStream extends ObjectOutputStream
+    {
+        private DictionaryObjectOutputStream(OutputStream out) throws IOException
+        {
+            super(out);
+        }
+
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass descriptor) throws IOException
+        {
+            int id = getClassDescriptorId(descriptor);
+            while ((id & ~0x7F) != 0)
+            {
+                write((id & 0x7F) | 0x80);
+                id >>>= 7;
+            }
+            write(id);
+        }
+    }
+
+    /**
+     * Reads what {@link DictionaryObjectOutputStream} wrote
+     */
+    private final class DictionaryObjectInputStream extends ObjectInputStream
+    {
+        private DictionaryObjectInputStream(InputStream in) throws IOException
+        {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException
+        {
+            int id = 0;
+            for (int shift = 0;; shift += 7)
+            {
+                int b = readUnsignedByte();
+                id |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                {
+                    break;
+                }
+                if (shift > 28)
+                {
+                    throw new StreamCorruptedException("Malformed class descriptor ID");
+                }
+            }
+            if (id >= classDescriptors.size())
+            {
+                throw new StreamCorruptedException("Unknown class descriptor ID: " + id);
+            }
+            return classDescriptors.get(id);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass descriptor) throws IOException, ClassNotFoundException
+        {
+            Class<?> clazz = descriptor.forClass();
+            return clazz != null ? clazz : super.resolveClass(descriptor);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.alfresco.util.ParameterCheck;
+
+/**
+ * {@link SimpleCache} that places a larger second-level cache, typically an {@link OffHeapSimpleCache}, underneath an on-heap cache.
+ * <p>
+ * Writes go to both levels. Reads are served from the on-heap cache where possible; values found only in the second level are copied back up into the on-heap cache.
+ */
+public class TieredSimpleCache<K extends Serializable, V extends Object> implements SimpleCache<K, V>
+{
+    private final SimpleCache<K, V> heapCache;
+    private final SimpleCache<K, V> secondLevelCache;
+    private final String cacheName;
+
+    public TieredSimpleCache(SimpleCache<K, V> heapCache, SimpleCache<K, V> secondLevelCache, String cacheName)
+    {
+        ParameterCheck.mandatory("heapCache", heapCache);
+        ParameterCheck.mandatory("secondLevelCache", secondLevelCache);
+        this.heapCache = heapCache;
+        this.secondLevelCache = secondLevelCache;
+        this.cacheName = cacheName;
+    }
+
+    @Override
+    public boolean contains(K key)
+    {
+        return heapCache.contains(key) || secondLevelCache.contains(key);
+    }
+
+    @Override
+    public Collection<K> getKeys()
+    {
+        Set<K> keys = new LinkedHashSet<>(secondLevelCache.getKeys());
+        keys.addAll(heapCache.getKeys());
+        return keys;
+    }
+
+    @Override
+    public V get(K key)
+    {
+        V value = heapCache.get(key);
+        if (value == null)
+        {
+            value = secondLevelCache.get(key);
+            if (value != null)
+            {
+                heapCache.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value)
+    {
+        secondLevelCache.put(key, value);
+        heapCache.put(key, value);
+    }
+
+    @Override
+    public void remove(K key)
+    {
+        heapCache.remove(key);
+        secondLevelCache.remove(key);
+    }
+
+    @Override
+    public void clear()
+    {
+        heapCache.clear();
+        secondLevelCache.clear();
+    }
+
+    public SimpleCache<K, V> getHeapCache()
+    {
+        return heapCache;
+    }
+
+    public SimpleCache<K, V> getSecondLevelCache()
+    {
+        return secondLevelCache;
+    }
+
+    public String getCacheName()
+    {
+        return cacheName;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TieredSimpleCache[heapCache=" + heapCache + ", secondLevelCache=" + secondLevelCache + "]";
+    }
+}
@@ -26,11 +26,8 @@
 package org.alfresco.repo.cache;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -60,6 +57,8 @@ import org.alfresco.util.PropertyCheck;
  * When the cache is {@link #clear() cleared}, a flag is set on the transaction. The shared cache, instead of being cleared itself, is just ignored for the remainder of the tranasaction. At the end of the transaction, if the flag is set, the shared transaction is cleared <i>before</i> updates are added back to it.
  * <p>
  * Because there is a limited amount of space available to the in-transaction caches, when either of these becomes full, the cleared flag is set. This ensures that the shared cache will not have stale data in the event of the transaction-local caches dropping items. It is therefore important to size the transactional caches correctly.
+ * <p>
+ * Values read from the shared cache are recorded in the transaction-local cache, in read-only transactions as well, so that repeated reads of a key within a transaction return the same value even if the shared cache is changed by another transaction in the meantime. The transaction-local cache holds its entries in flat arrays, so a repeated read does not allocate.
  * 
  * @author Derek Hulley
  */
@@ -232,6 +231,11 @@ public class TransactionalCache<K extends Serializable, V extends Object>
         {
             sharedCache = NullCache.getInstance();
         }
+        // Immutable values cannot go stale on the other cluster members
+        else if (sharedCache instanceof InvalidatingSimpleCache && !isMutable)
+        {
+            ((InvalidatingSimpleCache<?, ?>) sharedCache).setInvalidateOnPut(false);
+        }
     }
 
     /**
@@ -245,7 +249,7 @@ public class TransactionalCache<K extends Serializable, V extends Object>
         {
             data = new TransactionData();
             // create and initialize caches
-            data.updatedItemsCache = new LRULinkedHashMap<Serializable, CacheBucket<V>>(23);
+            data.updatedItemsCache = new CompactBucketMap<Serializable, CacheBucket<V>>(maxCacheSize);
             data.removedItemsCache = new HashSet<Serializable>(13);
             data.lockedItemsCache = new HashSet<Serializable>(13);
             data.isReadOnly = AlfrescoTransactionSupport.getTransactionReadState() == TxnReadState.TXN_READ_ONLY;
@@ -258,6 +262,11 @@ public class TransactionalCache<K extends Serializable, V extends Object>
             if (TransactionSynchronizationManager.isSynchronizationActive())
             {
                 AlfrescoTransactionSupport.bindListener(this);
+                // Send the invalidations of the commit to the cluster in one batch
+                if (sharedCache instanceof InvalidatingSimpleCache)
+                {
+                    ((InvalidatingSimpleCache<?, ?>) sharedCache).bindToTransaction();
+                }
             }
             AlfrescoTransactionSupport.bindResource(resourceKeyTxnData, data);
         }
@@ -301,10 +310,8 @@ public class TransactionalCache<K extends Serializable, V extends Object>
         {
             txnData.noSharedCacheRead = noSharedCacheRead;
             String currentCacheRegion = TenantUtil.getCurrentDomain();
-            for (Map.Entry<Serializable, CacheBucket<V>> entry : new ArrayList<Map.Entry<Serializable, CacheBucket<V>>>(
-                    txnData.updatedItemsCache.entrySet()))
+            for (Serializable cacheKey : txnData.updatedItemsCache.keys())
             {
-                Serializable cacheKey = entry.getKey();
                 K key = null;
                 if (cacheKey instanceof CacheRegionKey)
                 {
@@ -321,7 +328,7 @@ public class TransactionalCache<K extends Serializable, V extends Object>
 
                 if (key != null)
                 {
-                    CacheBucket<V> bucket = entry.getValue();
+                    CacheBucket<V> bucket = txnData.updatedItemsCache.get(cacheKey);
                     // Simply 'forget' reads
                     if (bucket instanceof ReadCacheBucket)
                     {
@@ -378,7 +385,7 @@ public class TransactionalCache<K extends Serializable, V extends Object>
                 keys.addAll(backingCacheKeys);
             }
             // add keys
-            keys.addAll(txnData.updatedItemsCache.keySet());
+            keys.addAll(txnData.updatedItemsCache.keys());
             // remove keys
             keys.removeAll(txnData.removedItemsCache);
         }
@@ -624,6 +631,7 @@ public class TransactionalCache<K extends Serializable, V extends Object>
                         // No stats tracking, pass in null TransactionStats
                         value = TransactionalCache.getSharedCacheValue(sharedCache, key, null);
                     }
+                    // Keep the read so that the transaction sees the same value if it reads the key again
                     bucket = new ReadCacheBucket<V>(value);
                     txnData.updatedItemsCache.put(key, bucket);
                     return value;
@@ -965,18 +973,12 @@ public class TransactionalCache<K extends Serializable, V extends Object>
             }
 
             // transfer updates
-            Set<Serializable> keys = (Set<Serializable>) txnData.updatedItemsCache.keySet();
-            for (Map.Entry<Serializable, CacheBucket<V>> entry : (Set<Map.Entry<Serializable, CacheBucket<V>>>) txnData.updatedItemsCache.entrySet())
-            {
-                Serializable key = entry.getKey();
-                CacheBucket<V> bucket = entry.getValue();
-                bucket.doPreCommit(
-                        sharedCache,
-                        key, this.isMutable, this.allowEqualsChecks, txnData.isReadOnly);
-            }
+            txnData.updatedItemsCache.forEach((key, bucket) -> bucket.doPreCommit(
+                    sharedCache,
+                    key, this.isMutable, this.allowEqualsChecks, txnData.isReadOnly));
             if (isDebugEnabled)
             {
-                logger.debug("Pre-commit called for " + keys.size() + " values.");
+                logger.debug("Pre-commit called for " + txnData.updatedItemsCache.size() + " values.");
             }
         }
         catch (Throwable e)
@@ -1037,11 +1039,7 @@ public class TransactionalCache<K extends Serializable, V extends Object>
             }
 
             // transfer updates
-            Set<Serializable> keys = (Set<Serializable>) txnData.updatedItemsCache.keySet();
-            for (Map.Entry<Serializable, CacheBucket<V>> entry : (Set<Map.Entry<Serializable, CacheBucket<V>>>) txnData.updatedItemsCache.entrySet())
-            {
-                Serializable key = entry.getKey();
-                CacheBucket<V> bucket = entry.getValue();
+            txnData.updatedItemsCache.forEach((key, bucket) -> {
                 try
                 {
                     bucket.doPostCommit(
@@ -1062,10 +1060,10 @@ public class TransactionalCache<K extends Serializable, V extends Object>
                                     "   Cache Value:" + sharedCache.get(key),
                             e);
                 }
-            }
+            });
             if (isDebugEnabled)
             {
-                logger.debug("Post-commit called for " + keys.size() + " values.");
+                logger.debug("Post-commit called for " + txnData.updatedItemsCache.size() + " values.");
             }
         }
         catch (Throwable e)
@@ -1353,7 +1351,7 @@ public class TransactionalCache<K extends Serializable, V extends Object>
     /** Data holder to bind data to the transaction */
     private class TransactionData
     {
-        private LRULinkedHashMap<Serializable, CacheBucket<V>> updatedItemsCache;
+        private CompactBucketMap<Serializable, CacheBucket<V>> updatedItemsCache;
         private Set<Serializable> removedItemsCache;
         private Set<Serializable> lockedItemsCache;
         private boolean haveIssuedFullWarning;
@@ -1364,36 +1362,6 @@ public class TransactionalCache<K extends Serializable, V extends Object>
         private TransactionStats stats;
     }
 
-    /**
-     * Simple LRU based on {@link LinkedHashMap}
-     * 
-     * @author Derek Hulley
-     * @since 3.4
-     */
-    private class LRULinkedHashMap<K1, V1> extends LinkedHashMap<K1, V1>
-    {
-        private static final long serialVersionUID = -4874684348174271106L;
-
-        private LRULinkedHashMap(int initialSize)
-        {
-            super(initialSize);
-        }
-
-        private boolean hasHitSize()
-        {
-            return size() >= maxCacheSize;
-        }
-
-        /**
-         * Remove the eldest entry if the size has reached the maximum cache size
-         */
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<K1, V1> eldest)
-        {
-            return (size() > maxCacheSize);
-        }
-    }
-
     /**
      * Convert the key to a tenant-specific key if the cache is tenant-aware and the current thread is running in the context of a tenant.
      * 
@@ -1491,6 +1459,30 @@ public class TransactionalCache<K extends Serializable, V extends Object>
             this.value = value;
         }
 
+        private ValueHolder(int rand, V2 value)
+        {
+            this.rand = rand;
+            this.value = value;
+        }
+
+        /**
+         * Recreate a holder that was taken apart by a cache that stores values in its own encoding, keeping its identity
+         * 
+         * @since 26.3
+         */
+        static <V2> ValueHolder<V2> restore(int rand, V2 value)
+        {
+            return new ValueHolder<V2>(rand, value);
+        }
+
+        /**
+         * @return the random number that identifies this holder
+         */
+        int getRand()
+        {
+            return rand;
+        }
+
         public final V2 getValue()
         {
             return value;
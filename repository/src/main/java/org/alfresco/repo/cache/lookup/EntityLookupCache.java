@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -62,6 +63,11 @@ import org.alfresco.util.Pair;
  */
 public class EntityLookupCache<K extends Serializable, V extends Object, VK extends Serializable>
 {
+    /**
+     * The default maximum number of keys or values passed to a single bulk lookup, which keeps SQL <tt>IN</tt> clauses well within the limits of all supported databases.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
     /**
      * Interface to support lookups of the entities using keys and values.
      */
@@ -111,6 +117,16 @@ public class EntityLookupCache<K extends Serializable, V extends Object, VK exte
          */
         List<Pair<K1, V1>> findByKeys(List<K1> keys);
 
+        /**
+         * The maximum number of keys or values that the cache will pass to a single {@link #findByKeys(List)} or {@link #findByValues(List)} call. Bulk lookups for more entities are split into chunks of this size so that implementations can resolve each chunk with a single <tt>IN</tt> query.
+         * 
+         * @return Returns the maximum size of a bulk lookup (defaults to {@link EntityLookupCache#DEFAULT_BATCH_SIZE})
+         */
+        default int getBatchSize()
+        {
+            return DEFAULT_BATCH_SIZE;
+        }
+
         /**
          * Find and entity using the given value key. The <code>equals</code> and <code>hashCode</code> methods of the value object should respect case-sensitivity in the same way that this lookup treats case-sensitivity i.e. if the <code>equals</code> method is <b>case-sensitive</b> then this method should look the entity up using a <b>case-sensitive</b> search.
          * <p/>
@@ -436,11 +452,11 @@ public class EntityLookupCache<K extends Serializable, V extends Object, VK exte
         // Handle missing cache
         if (cache == null)
         {
-            return entityLookup.findByKeys(filteredKeys);
+            return findByKeysInBatches(filteredKeys);
         }
 
         List<Pair<K, V>> results = new ArrayList<>(filteredKeys.size());
-        Map<K, CacheRegionKey> keysToResolve = new HashMap<>();
+        Map<K, CacheRegionKey> keysToResolve = new LinkedHashMap<>();
 
         for (K key : filteredKeys)
         {
@@ -470,13 +486,23 @@ public class EntityLookupCache<K extends Serializable, V extends Object, VK exte
             }
         }
 
+        if (keysToResolve.isEmpty())
+        {
+            return results;
+        }
+
         // Resolve any missing keys
-        List<Pair<K, V>> entityPairs = entityLookup.findByKeys(new ArrayList<>(keysToResolve.keySet()));
+        List<Pair<K, V>> entityPairs = findByKeysInBatches(new ArrayList<>(keysToResolve.keySet()));
 
         if (entityPairs != null && !entityPairs.isEmpty())
         {
             for (Pair<K, V> entityPair : entityPairs)
             {
+                if (keysToResolve.remove(entityPair.getFirst()) == null)
+                {
+                    // Duplicate or unrequested entity
+                    continue;
+                }
                 V value = entityPair.getSecond();
                 // Get the value key
                 VK valueKey = (value == null) ? (VK) VALUE_NULL : entityLookup.getValueKey(value);
@@ -494,10 +520,61 @@ public class EntityLookupCache<K extends Serializable, V extends Object, VK exte
                 results.add(entityPair);
             }
         }
+        // Cache "not found" for the keys that could not be resolved, as getByKey does
+        for (CacheRegionKey keyCacheKey : keysToResolve.values())
+        {
+            cache.put(keyCacheKey, VALUE_NOT_FOUND);
+        }
         // Done
         return results;
     }
 
+    /**
+     * Pass the keys to the {@link EntityLookupCallbackDAO#findByKeys(List) DAO} in chunks no larger than its {@link EntityLookupCallbackDAO#getBatchSize() batch size}
+     */
+    private List<Pair<K, V>> findByKeysInBatches(List<K> keys)
+    {
+        int batchSize = Math.max(1, entityLookup.getBatchSize());
+        if (keys.size() <= batchSize)
+        {
+            return entityLookup.findByKeys(keys);
+        }
+        List<Pair<K, V>> results = new ArrayList<>(keys.size());
+        for (int start = 0; start < keys.size(); start += batchSize)
+        {
+            List<K> batch = new ArrayList<>(keys.subList(start, Math.min(start + batchSize, keys.size())));
+            List<Pair<K, V>> batchResults = entityLookup.findByKeys(batch);
+            if (batchResults != null)
+            {
+                results.addAll(batchResults);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Pass the values to the {@link EntityLookupCallbackDAO#findByValues(List) DAO} in chunks no larger than its {@link EntityLookupCallbackDAO#getBatchSize() batch size}
+     */
+    private List<Pair<K, V>> findByValuesInBatches(List<V> values)
+    {
+        int batchSize = Math.max(1, entityLookup.getBatchSize());
+        if (values.size() <= batchSize)
+        {
+            return entityLookup.findByValues(values);
+        }
+        List<Pair<K, V>> results = new ArrayList<>(values.size());
+        for (int start = 0; start < values.size(); start += batchSize)
+        {
+            List<V> batch = new ArrayList<>(values.subList(start, Math.min(start + batchSize, values.size())));
+            List<Pair<K, V>> batchResults = entityLookup.findByValues(batch);
+            if (batchResults != null)
+            {
+                results.addAll(batchResults);
+            }
+        }
+        return results;
+    }
+
     /**
      * Find the entity associated with the given value. The {@link EntityLookupCallbackDAO#findByValue(Object) entity callback} will be used if no entry exists in the cache. >>>>>>> d9c56bbc79 ([MNT-25404] [LFG] Query Performance - High performance cost in retrieving nodes/node properties for large result sets)
      * <p/>
@@ -594,13 +671,13 @@ public class EntityLookupCache<K extends Serializable, V extends Object, VK exte
         // Handle missing cache
         if (cache == null)
         {
-            return entityLookup.findByValues(filteredValues);
+            return findByValuesInBatches(filteredValues);
         }
 
         List<Pair<K, V>> results = new ArrayList<>(filteredValues.size());
         List<V> valuesToFind = new ArrayList<>(filteredValues.size());
         List<Pair<VK, V>> lookInCache = new ArrayList<>(filteredValues.size());
-        List<V> valuesToResolve = new ArrayList<>(filteredValues.size());
+        Map<VK, V> valuesToResolve = new LinkedHashMap<>();
         List<K> keysToGet = new ArrayList<>(filteredValues.size());
 
         // Get the value key.
@@ -623,7 +700,7 @@ public class EntityLookupCache<K extends Serializable, V extends Object, VK exte
 
         if (!valuesToFind.isEmpty())
         {
-            results.addAll(entityLookup.findByValues(valuesToFind));
+            results.addAll(findByValuesInBatches(valuesToFind));
         }
 
         for (Pair<VK, V> valuePair : lookInCache)
@@ -650,7 +727,7 @@ public class EntityLookupCache<K extends Serializable, V extends Object, VK exte
                 }
             }
 
-            valuesToResolve.add(valuePair.getSecond());
+            valuesToResolve.put(valuePair.getFirst(), valuePair.getSecond());
         }
 
         if (!keysToGet.isEmpty())
@@ -661,7 +738,7 @@ public class EntityLookupCache<K extends Serializable, V extends Object, VK exte
         // Resolve it
         if (!valuesToResolve.isEmpty())
         {
-            List<Pair<K, V>> entityPairs = entityLookup.findByValues(valuesToResolve);
+            List<Pair<K, V>> entityPairs = findByValuesInBatches(new ArrayList<>(valuesToResolve.values()));
 
             for (Pair<K, V> entityPair : entityPairs)
             {
@@ -673,15 +750,26 @@ public class EntityLookupCache<K extends Serializable, V extends Object, VK exte
                 else
                 {
                     K key = entityPair.getFirst();
-                    // Cache the Key
-                    cache.put(new CacheRegionValueKey(cacheRegion, (VK) entityPair.getSecond()), key);
+                    V value = entityPair.getSecond();
+                    // Cache the key against the value key, just as getByValue does
+                    VK valueKey = (value == null) ? (VK) VALUE_NULL : entityLookup.getValueKey(value);
+                    if (valueKey != null)
+                    {
+                        cache.put(new CacheRegionValueKey(cacheRegion, valueKey), key);
+                        valuesToResolve.remove(valueKey);
+                    }
                     cache.put(
                             new CacheRegionKey(cacheRegion, key),
-                            entityPair.getSecond() == null ? VALUE_NULL : entityPair.getSecond());
+                            value == null ? VALUE_NULL : value);
 
                     results.add(entityPair);
                 }
             }
+            // Cache "not found" for the values that could not be resolved
+            for (VK valueKey : valuesToResolve.keySet())
+            {
+                cache.put(new CacheRegionValueKey(cacheRegion, valueKey), VALUE_NOT_FOUND);
+            }
         }
 
         // Done
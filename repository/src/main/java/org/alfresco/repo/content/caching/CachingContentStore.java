@@ -27,6 +27,10 @@ package org.alfresco.repo.content.caching;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
@@ -57,6 +61,8 @@ import org.alfresco.service.cmr.repository.DirectAccessUrl;
  * It is important that cacheOnInbound is set to true for exceptionally slow backing stores.
  * <p>
  * This store handles the {@link FileContentStore#SPOOF_PROTOCOL} and can be used to wrap stores that do not handle the protocol out of the box e.g. the S3 connector's store.
+ * <p>
+ * If a {@link #setCacheFillExecutor(Executor) cache fill executor} is set, a cache miss does not wait for the whole content item to be copied into the cache. The copy is done in the background and the reader returned streams the content as it arrives; range reads beyond the {@link #setRangeReadThreshold(long) range read threshold} are served directly by the backing store.
  * 
  * @author Matt Ward
  */
@@ -73,6 +79,11 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
     private int maxCacheTries = 2;
     private ApplicationEventPublisher eventPublisher;
     private String beanName;
+    private Executor cacheFillExecutor;
+    private long rangeReadThreshold = DEFAULT_RANGE_READ_THRESHOLD;
+    private final ConcurrentMap<String, StreamingCacheFill> cacheFills = new ConcurrentHashMap<>();
+
+    public static final long DEFAULT_RANGE_READ_THRESHOLD = 1024L * 1024L;
 
     static
     {
@@ -184,9 +195,138 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
             readLock.unlock();
         }
 
+        if (cacheFillExecutor != null)
+        {
+            ContentReader reader = streamingRead(contentUrl);
+            if (reader != null)
+            {
+                return reader;
+            }
+        }
         return cacheAndRead(contentUrl);
     }
 
+    /**
+     * Start copying the content into the cache in the background, or join a copy that is already in progress, and return a reader that streams the content as it is copied.
+     * 
+     * @return A reader onto the content being cached, or <code>null</code> if the content cannot be cached in the background.
+     */
+    private ContentReader streamingRead(String url)
+    {
+        StreamingCacheFill fill = cacheFills.get(url);
+        if (fill != null)
+        {
+            return fill.newReader();
+        }
+
+        StreamingCacheFill newFill;
+        WriteLock writeLock = readWriteLock(url).writeLock();
+        writeLock.lock();
+        try
+        {
+            fill = cacheFills.get(url);
+            if (fill != null)
+            {
+                return fill.newReader();
+            }
+            if (cache.contains(url))
+            {
+                // Cached while waiting for the lock
+                return null;
+            }
+            ContentReader backingStoreReader = backingStore.getReader(url);
+            long contentSize = backingStoreReader.getSize();
+            if (contentSize <= 0)
+            {
+                // Either missing or empty; nothing is gained by streaming it
+                return null;
+            }
+            if (!quota.beforeWritingCacheFile(contentSize))
+            {
+                return backingStoreReader;
+            }
+            ContentWriter cacheWriter = cache.getWriter(url);
+            if (StreamingCacheFill.getCacheFile(cacheWriter) == null)
+            {
+                return null;
+            }
+            newFill = new StreamingCacheFill(this, url, backingStoreReader, cacheWriter, rangeReadThreshold);
+            cacheFills.put(url, newFill);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+
+        ContentReader reader = newFill.newReader();
+        try
+        {
+            cacheFillExecutor.execute(newFill);
+        }
+        catch (RejectedExecutionException e)
+        {
+            if (log.isDebugEnabled())
+            {
+                log.debug("Cache fill rejected by the executor, caching in the calling thread: " + url);
+            }
+            newFill.run();
+        }
+        return reader;
+    }
+
+    /**
+     * Called when a background cache fill has copied the whole content item, or has given up.
+     */
+    void cacheFillFinished(StreamingCacheFill fill, boolean success)
+    {
+        String url = fill.getUrl();
+        WriteLock writeLock = readWriteLock(url).writeLock();
+        writeLock.lock();
+        try
+        {
+            if (success)
+            {
+                if (!quota.afterWritingCacheFile(fill.getSize()))
+                {
+                    // Quota strategy has requested cache file not to be kept.
+                    cache.deleteFile(url);
+                    cache.remove(url);
+                }
+            }
+            else if (cache.contains(url))
+            {
+                cache.deleteFile(url);
+                cache.remove(url);
+            }
+        }
+        finally
+        {
+            cacheFills.remove(url, fill);
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return A reader onto the cached content, or <code>null</code> if it is not in the cache.
+     */
+    ContentReader getCachedReader(String url)
+    {
+        ReadLock readLock = readWriteLock(url).readLock();
+        readLock.lock();
+        try
+        {
+            return cache.contains(url) ? cache.getReader(url) : null;
+        }
+        catch (CacheMissException e)
+        {
+            return null;
+        }
+        finally
+        {
+            readLock.unlock();
+        }
+    }
+
     private ContentReader cacheAndRead(String url)
     {
         WriteLock writeLock = readWriteLock(url).writeLock();
@@ -421,6 +561,11 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
         this.backingStore = backingStore;
     }
 
+    ContentStore getBackingStore()
+    {
+        return backingStore;
+    }
+
     public String getBackingStoreType()
     {
         return backingStore.getClass().getName();
@@ -477,6 +622,33 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
         return this.quota;
     }
 
+    /**
+     * Sets the executor used to copy content into the cache in the background. When not set (the default), a cache miss copies the whole content item into the cache before the reader is returned.
+     * 
+     * @param cacheFillExecutor
+     *            Executor
+     */
+    public void setCacheFillExecutor(Executor cacheFillExecutor)
+    {
+        this.cacheFillExecutor = cacheFillExecutor;
+    }
+
+    /**
+     * Sets how far, in bytes, a reader may seek beyond the content copied into the cache so far before it reads from the backing store instead of waiting for the background copy.
+     * 
+     * @param rangeReadThreshold
+     *            long
+     */
+    public void setRangeReadThreshold(long rangeReadThreshold)
+    {
+        this.rangeReadThreshold = rangeReadThreshold;
+    }
+
+    public long getRangeReadThreshold()
+    {
+        return this.rangeReadThreshold;
+    }
+
     @Override
     public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher)
     {
@@ -0,0 +1,436 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.caching;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.alfresco.repo.content.AbstractContentReader;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+
+/**
+ * Copies one content item from the backing store into a cache file in the background, while any number of {@link #newReader() readers} are served from the part of the file that has already arrived.
+ * <p>
+ * Readers block only until the bytes they need have been copied. A reader that jumps further ahead than the {@link CachingContentStore#setRangeReadThreshold(long) range read threshold}, e.g. for an HTTP range request, reads that range straight from the backing store instead of waiting for the fill to reach it. Readers also switch to the finished cache file, or to the backing store if the fill fails, once the fill has ended.
+ */
+class StreamingCacheFill implements Runnable
+{
+    private static final Log log = LogFactory.getLog(StreamingCacheFill.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Returned by {@link #read(ByteBuffer, long)} when the caller must read elsewhere */
+    private static final int READ_ELSEWHERE = -2;
+
+    private final CachingContentStore store;
+    private final String url;
+    private final ContentReader source;
+    private final ContentWriter cacheWriter;
+    private final long size;
+    private final long rangeReadThreshold;
+    /** Shared, positional reads of the partly written cache file; guarded by {@link #fileLock} */
+    private final FileChannel fileChannel;
+    private final ReentrantReadWriteLock fileLock = new ReentrantReadWriteLock();
+
+    private long filled;
+    private boolean finished;
+    private boolean succeeded;
+
+    /**
+     * @param cacheWriter
+     *            a writer onto a cache file, as provided by {@link ContentCache#getWriter(String)}
+     * @throws ContentIOException
+     *             if the cache file cannot be read while it is being written
+     */
+    StreamingCacheFill(CachingContentStore store, String url, ContentReader source, ContentWriter cacheWriter, long rangeReadThreshold)
+    {
+        this.store = store;
+        this.url = url;
+        this.source = source;
+        this.cacheWriter = cacheWriter;
+        this.size = source.getSize();
+        this.rangeReadThreshold = rangeReadThreshold;
+        File file = getCacheFile(cacheWriter);
+        try
+        {
+            file.createNewFile();
+            this.fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        catch (IOException e)
+        {
+            throw new ContentIOException("Unable to open cache file for reading: " + file, e);
+        }
+    }
+
+    /**
+     * @return Returns the file that a cache writer writes to, or <tt>null</tt> if it is not file based
+     */
+    static File getCacheFile(ContentWriter cacheWriter)
+    {
+        return (cacheWriter instanceof ContentCacheImpl.CacheWriter) ? ((ContentCacheImpl.CacheWriter) cacheWriter).getFile() : null;
+    }
+
+    String getUrl()
+    {
+        return url;
+    }
+
+    long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return Returns a new reader that is served by this fill
+     */
+    ContentReader newReader()
+    {
+        return new StreamingCacheFillReader();
+    }
+
+    @Override
+    public void run()
+    {
+        boolean success = false;
+        long position = 0L;
+        try
+        {
+            try (ReadableByteChannel in = source.getReadableChannel();
+                    WritableByteChannel out = cacheWriter.getWritableChannel())
+            {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (in.read(buffer) != -1)
+                {
+                    buffer.flip();
+                    while (buffer.hasRemaining())
+                    {
+                        position += out.write(buffer);
+                    }
+                    buffer.clear();
+                    synchronized (this)
+                    {
+                        filled = position;
+                        notifyAll();
+                    }
+                }
+            }
+            // Only now has the writer been closed and the file moved into the cache
+            success = (position == size);
+            if (!success)
+            {
+                log.warn("Content size changed while caching content: " + url + " (expected " + size + " bytes, read " + position + ")");
+            }
+        }
+        catch (Throwable e)
+        {
+            log.warn("Failed to cache content: " + url, e);
+        }
+        finally
+        {
+            finish(success);
+        }
+    }
+
+    /**
+     * Stop serving readers from the partial file and let the store record or discard the cache file
+     */
+    private void finish(boolean success)
+    {
+        fileLock.writeLock().lock();
+        try
+        {
+            fileChannel.close();
+        }
+        catch (IOException e)
+        {
+            // Only reads were done on it
+        }
+        finally
+        {
+            fileLock.writeLock().unlock();
+        }
+        if (!success && !cacheWriter.isClosed())
+        {
+            // The copy never started, so the temporary file was not moved into the cache
+            getCacheFile(cacheWriter).delete();
+        }
+        synchronized (this)
+        {
+            finished = true;
+            succeeded = success;
+            notifyAll();
+        }
+        store.cacheFillFinished(this, success);
+    }
+
+    /**
+     * Read from the cache file as it is being filled, waiting for the fill to reach the position if necessary
+     * 
+     * @return Returns the number of bytes read, or {@link #READ_ELSEWHERE} if the data must be read from another channel
+     */
+    private int read(ByteBuffer dst, long position) throws IOException
+    {
+        synchronized (this)
+        {
+            while (filled <= position && !finished)
+            {
+                if (position - filled > rangeReadThreshold)
+                {
+                    // Too far ahead to wait for
+                    return READ_ELSEWHERE;
+                }
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for content to be cached: " + url, e);
+                }
+            }
+            if (finished)
+            {
+                return READ_ELSEWHERE;
+            }
+        }
+        fileLock.readLock().lock();
+        try
+        {
+            if (!fileChannel.isOpen())
+            {
+                return READ_ELSEWHERE;
+            }
+            return fileChannel.read(dst, position);
+        }
+        finally
+        {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Open a channel onto the content, positioned at the given offset. The finished cache file is used if it is available, otherwise the backing store.
+     */
+    private ReadableByteChannel openChannel(long position) throws IOException
+    {
+        ContentReader reader = null;
+        boolean cached;
+        synchronized (this)
+        {
+            cached = finished && succeeded;
+        }
+        if (cached)
+        {
+            reader = store.getCachedReader(url);
+        }
+        if (reader == null)
+        {
+            reader = store.getBackingStore().getReader(url);
+        }
+        ReadableByteChannel channel = reader.getReadableChannel();
+        if (channel instanceof SeekableByteChannel)
+        {
+            ((SeekableByteChannel) channel).position(position);
+        }
+        else
+        {
+            // Skip to the position
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long skipped = 0L;
+            while (skipped < position)
+            {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, position - skipped));
+                int read = channel.read(buffer);
+                if (read < 0)
+                {
+                    break;
+                }
+                skipped += read;
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * A reader onto the content being filled
+     */
+    private class StreamingCacheFillReader extends AbstractContentReader
+    {
+        private StreamingCacheFillReader()
+        {
+            super(url);
+            setMimetype(source.getMimetype());
+            setEncoding(source.getEncoding());
+            setLocale(source.getLocale());
+        }
+
+        @Override
+        protected ContentReader createReader() throws ContentIOException
+        {
+            return new StreamingCacheFillReader();
+        }
+
+        @Override
+        protected ReadableByteChannel getDirectReadableChannel() throws ContentIOException
+        {
+            return new StreamingCacheFillChannel();
+        }
+
+        @Override
+        public boolean exists()
+        {
+            return true;
+        }
+
+        @Override
+        public long getSize()
+        {
+            return size;
+        }
+
+        @Override
+        public long getLastModified()
+        {
+            return source.getLastModified();
+        }
+    }
+
+    /**
+     * A seekable channel that reads from the partly filled cache file, and from another channel when that is not possible
+     */
+    private class StreamingCacheFillChannel implements SeekableByteChannel
+    {
+        private boolean open = true;
+        private long position;
+        /** Used for reads that cannot be served by the partly filled cache file */
+        private ReadableByteChannel otherChannel;
+        private long otherChannelPosition;
+
+        @Override
+        public synchronized int read(ByteBuffer dst) throws IOException
+        {
+            if (!open)
+            {
+                throw new ClosedChannelException();
+            }
+            if (position >= size)
+            {
+                return -1;
+            }
+            int read = (otherChannel == null) ? StreamingCacheFill.this.read(dst, position) : READ_ELSEWHERE;
+            if (read == READ_ELSEWHERE)
+            {
+                if (otherChannel == null || otherChannelPosition != position)
+                {
+                    closeOtherChannel();
+                    otherChannel = openChannel(position);
+                    otherChannelPosition = position;
+                }
+                read = otherChannel.read(dst);
+                if (read > 0)
+                {
+                    otherChannelPosition += read;
+                }
+            }
+            if (read > 0)
+            {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public int write(ByteBuffer src)
+        {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public synchronized long position()
+        {
+            return position;
+        }
+
+        @Override
+        public synchronized SeekableByteChannel position(long newPosition) throws IOException
+        {
+            if (newPosition < 0)
+            {
+                throw new IllegalArgumentException("Negative position: " + newPosition);
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size()
+        {
+            return size;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long newSize)
+        {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public synchronized boolean isOpen()
+        {
+            return open;
+        }
+
+        @Override
+        public synchronized void close() throws IOException
+        {
+            open = false;
+            closeOtherChannel();
+        }
+
+        private void closeOtherChannel() throws IOException
+        {
+            if (otherChannel != null)
+            {
+                otherChannel.close();
+                otherChannel = null;
+            }
+        }
+    }
+}
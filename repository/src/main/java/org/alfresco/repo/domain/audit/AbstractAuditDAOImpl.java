@@ -31,6 +31,7 @@ import java.io.Serializable;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -318,6 +319,48 @@ public abstract class AbstractAuditDAOImpl implements AuditDAO
         return entity.getId();
     }
 
+    @Override
+    public void createAuditEntries(List<NewAuditEntry> entries)
+    {
+        if (entries.isEmpty())
+        {
+            return;
+        }
+        // Batches tend to come from a small number of users
+        Map<String, Long> usernameIds = new HashMap<String, Long>(17);
+        List<AuditEntryEntity> entities = new ArrayList<AuditEntryEntity>(entries.size());
+        for (NewAuditEntry entry : entries)
+        {
+            String username = entry.getUsername();
+            Long usernameId = null;
+            if (username != null)
+            {
+                usernameId = usernameIds.computeIfAbsent(username, u -> propertyValueDAO.getOrCreatePropertyValue(u).getFirst());
+            }
+            Map<String, Serializable> values = entry.getValues();
+            Long valuesId = null;
+            if (values != null && values.size() > 0)
+            {
+                valuesId = propertyValueDAO.createProperty((Serializable) values);
+            }
+            AuditEntryEntity entity = new AuditEntryEntity();
+            entity.setAuditApplicationId(entry.getApplicationId());
+            entity.setAuditTime(entry.getTime());
+            entity.setAuditUserId(usernameId);
+            entity.setAuditValuesId(valuesId);
+            entities.add(entity);
+        }
+
+        // Create the audit entries
+        insertAuditEntries(entities);
+
+        // Done
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Created " + entities.size() + " new audit entries");
+        }
+    }
+
     public int deleteAuditEntries(List<Long> auditEntryIds)
     {
         // Ensure that we don't have duplicates
@@ -351,6 +394,11 @@ public abstract class AbstractAuditDAOImpl implements AuditDAO
 
     protected abstract AuditEntryEntity createAuditEntry(Long applicationId, long time, Long usernameId, Long valuesId);
 
+    /**
+     * Insert the given audit entries in order, without retrieving their generated IDs
+     */
+    protected abstract void insertAuditEntries(List<AuditEntryEntity> entities);
+
     protected abstract int deleteAuditEntriesImpl(List<Long> auditEntryIds);
 
     /* Searches */
@@ -228,6 +228,72 @@ public interface AuditDAO
      */
     Long createAuditEntry(Long applicationId, long time, String username, Map<String, Serializable> values);
 
+    /**
+     * An audit entry that has been recorded but not yet persisted; used to hand entries to a deferred writer.
+     *
+     * @since 26.3
+     */
+    public static class NewAuditEntry implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Long applicationId;
+        private final long time;
+        private final String username;
+        private final Map<String, Serializable> values;
+
+        public NewAuditEntry(Long applicationId, long time, String username, Map<String, Serializable> values)
+        {
+            this.applicationId = applicationId;
+            this.time = time;
+            this.username = username;
+            this.values = values;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append("NewAuditEntry ")
+                    .append("[ applicationId=").append(applicationId)
+                    .append(", time=").append(time)
+                    .append(", username=").append(username)
+                    .append(", values=").append(values)
+                    .append("]");
+            return sb.toString();
+        }
+
+        public Long getApplicationId()
+        {
+            return applicationId;
+        }
+
+        public long getTime()
+        {
+            return time;
+        }
+
+        public String getUsername()
+        {
+            return username;
+        }
+
+        public Map<String, Serializable> getValues()
+        {
+            return values;
+        }
+    }
+
+    /**
+     * Create a batch of audit entries. The entries are written in list order using multi-row inserts and the generated entry IDs are not returned.
+     *
+     * @param entries
+     *            the entries to create
+     *
+     * @since 26.3
+     */
+    void createAuditEntries(List<NewAuditEntry> entries);
+
     /**
      * Find audit entries using the given parameters, any of which may be null
      * 
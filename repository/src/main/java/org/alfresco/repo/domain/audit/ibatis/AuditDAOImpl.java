@@ -65,6 +65,7 @@ public class AuditDAOImpl extends AbstractAuditDAOImpl
     private static final String DELETE_ENTRIES = "alfresco.audit.delete_AuditEntries";
     private static final String DELETE_ENTRIES_BY_ID = "alfresco.audit.delete_AuditEntriesById";
     private static final String INSERT_ENTRY = "alfresco.audit.insert.insert_AuditEntry";
+    private static final String INSERT_ENTRIES = "alfresco.audit.insert.insert_AuditEntries";
     private static final String SELECT_MINMAX_ENTRY_FOR_APP = "alfresco.audit.select_MinMaxAuditEntryId";
     private static final String SELECT_COUNT_ENTRIES_FOR_APP = "alfresco.audit.select_CountAuditEntryId";
     private static final String SELECT_COUNT_ENTRIES_FOR_APP_WITH_PROPERTIES = "select_CountAuditEntryIdWithWhereClause";
@@ -74,6 +75,9 @@ public class AuditDAOImpl extends AbstractAuditDAOImpl
     private static final String SELECT_ENTRIES_WITH_VALUES = "alfresco.audit.select_AuditEntriesWithValues";
     private static final String SELECT_ENTRIES_WITHOUT_VALUES = "alfresco.audit.select_AuditEntriesWithoutValues";
 
+    /** Rows per multi-row insert, keeping the statement well under the bind parameter limits */
+    private static final int AUDIT_ENTRY_ROWS_PER_INSERT = 500;
+
     private SqlSessionTemplate template;
 
     public final void setSqlSessionTemplate(SqlSessionTemplate sqlSessionTemplate)
@@ -215,6 +219,17 @@ public class AuditDAOImpl extends AbstractAuditDAOImpl
         return entity;
     }
 
+    @Override
+    protected void insertAuditEntries(List<AuditEntryEntity> entities)
+    {
+        for (int i = 0; i < entities.size(); i += AUDIT_ENTRY_ROWS_PER_INSERT)
+        {
+            Map<String, Object> params = new HashMap<String, Object>(3);
+            params.put("rows", entities.subList(i, Math.min(i + AUDIT_ENTRY_ROWS_PER_INSERT, entities.size())));
+            template.insert(INSERT_ENTRIES, params);
+        }
+    }
+
     public HashMap<String, Long> getAuditMinMaxByApp(long appId, List<String> extremes)
     {
         // Build parameters to be used in the query. Filter the duplicates when inserting into map
@@ -71,6 +71,7 @@ import org.alfresco.repo.policy.BehaviourFilter;
 import org.alfresco.repo.security.permissions.AccessControlListProperties;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
+import org.alfresco.repo.transaction.KeyedConcurrencyFailureException;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.repo.transaction.TransactionalDao;
 import org.alfresco.repo.transaction.TransactionalResourceHelper;
@@ -119,6 +120,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
 
     private static final String KEY_LOST_NODE_PAIRS = AbstractNodeDAOImpl.class.getName() + ".lostNodePairs";
     private static final String KEY_DELETED_ASSOCS = AbstractNodeDAOImpl.class.getName() + ".deletedAssocs";
+    private static final String KEY_VALIDATED_PATHS = AbstractNodeDAOImpl.class.getName() + ".validatedPaths";
 
     protected Log logger = LogFactory.getLog(AbstractNodeDAOImpl.class);
     private Log loggerPaths = LogFactory.getLog(AbstractNodeDAOImpl.class.getName() + ".paths");
@@ -191,6 +193,13 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
     private int parentAssocsCacheSize;
     private int parentAssocsCacheLimitFactor;
     private int parentAssocsCacheConcurrencyLevel;
+    /**
+     * Non-clustered cache for the paths of nodes, built from the paths of their parents:<br/>
+     * KEY: (nodeId, txnId, primaryOnly) triple <br/>
+     * VALUE: CachedPaths
+     */
+    private PathsCache pathsCache;
+    private int pathsCacheSize;
 
     /**
      * Cache for fast lookups of child nodes by <b>cm:name</b>.
@@ -412,6 +421,17 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         this.parentAssocsCacheConcurrencyLevel = parentAssocsCacheConcurrencyLevel;
     }
 
+    /**
+     * Sets the maximum number of paths held by the paths cache. The paths of a node are built by appending one element to each of the cached paths of its parents, so siblings sharing the same ancestry do not walk up to the root again. Use <tt>0</tt> to disable the cache.
+     *
+     * @param pathsCacheSize
+     *            the cache size
+     */
+    public void setPathsCacheSize(int pathsCacheSize)
+    {
+        this.pathsCacheSize = pathsCacheSize;
+    }
+
     /**
      * Set the cache that maintains lookups by child <b>cm:name</b>
      * 
@@ -468,6 +488,10 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
 
         this.nodePropertyHelper = new NodePropertyHelper(dictionaryService, qnameDAO, localeDAO, contentDataDAO);
         this.parentAssocsCache = new ParentAssocsCache(this.parentAssocsCacheSize, this.parentAssocsCacheLimitFactor, this.parentAssocsCacheConcurrencyLevel);
+        if (this.pathsCacheSize > 0)
+        {
+            this.pathsCache = new PathsCache(this.pathsCacheSize, this.parentAssocsCacheConcurrencyLevel);
+        }
     }
 
     /* Cache helpers */
@@ -478,6 +502,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         aspectsCache.clear();
         propertiesCache.clear();
         parentAssocsCache.clear();
+        clearPathsCached();
     }
 
     /**
@@ -801,7 +826,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         Long aclId = aclDAO.createAccessControlList();
 
         // Create a root node
-        Long nodeTypeQNameId = qnameDAO.getOrCreateQName(ContentModel.TYPE_STOREROOT).getFirst();
+        Long nodeTypeQNameId = qnameDAO.getOrCreateQNameId(ContentModel.TYPE_STOREROOT);
         NodeEntity rootNode = newNodeImpl(store, null, nodeTypeQNameId, null, aclId, null, true);
         Long rootNodeId = rootNode.getId();
         addNodeAspects(rootNodeId, Collections.singleton(ContentModel.ASPECT_ROOT));
@@ -967,6 +992,12 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             return results;
         }
 
+        @Override
+        public int getBatchSize()
+        {
+            return batchSize;
+        }
+
         /**
          * @return Returns the Node's NodeRef
          */
@@ -1474,6 +1505,26 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         return results;
     }
 
+    /**
+     * @return the key under which retries that collided on the node are tracked
+     */
+    private static Serializable getContentionKey(Long nodeId)
+    {
+        return "node-" + nodeId;
+    }
+
+    /**
+     * Look up the primary parent of a node in the cache only, so that nothing is read from the database while handling a failure
+     * 
+     * @return the key under which retries that collided on the node's primary parent are tracked, or <tt>null</tt> if the parent is not cached
+     */
+    private Serializable getParentContentionKey(Node node)
+    {
+        ParentAssocsInfo parentAssocs = parentAssocsCache.get(new Pair<Long, String>(node.getId(), node.getTransaction().getChangeTxnId()));
+        ChildAssocEntity primaryParentAssoc = parentAssocs == null ? null : parentAssocs.getPrimaryParentAssoc();
+        return primaryParentAssoc == null ? null : getContentionKey(primaryParentAssoc.getParentNode().getId());
+    }
+
     /**
      * Get a node instance regardless of whether it is considered <b>live</b> or <b>deleted</b>
      * 
@@ -1494,10 +1545,11 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             // The node has no entry in the database
             NodeEntity dbNode = selectNodeById(nodeId);
             nodesCache.removeByKey(nodeId);
-            throw new ConcurrencyFailureException(
+            throw new KeyedConcurrencyFailureException(
                     "No node row exists: \n" +
                             "   ID:        " + nodeId + "\n" +
-                            "   DB row:    " + dbNode);
+                            "   DB row:    " + dbNode,
+                    getContentionKey(nodeId));
         }
         else if (pair.getSecond().getDeleted(qnameDAO) && liveOnly)
         {
@@ -1507,10 +1559,11 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             // Make absolutely sure that the node is not referenced by any associations
             pruneDanglingAssocs(nodeId);
             // Force a retry on the transaction
-            throw new ConcurrencyFailureException(
+            throw new KeyedConcurrencyFailureException(
                     "No live node exists: \n" +
                             "   ID:        " + nodeId + "\n" +
-                            "   DB row:    " + dbNode);
+                            "   DB row:    " + dbNode,
+                    getContentionKey(nodeId));
         }
         else
         {
@@ -1598,7 +1651,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
     {
         Node node = getNodeNotNull(nodeId, false);
         Long nodeTypeQNameId = node.getTypeQNameId();
-        return qnameDAO.getQName(nodeTypeQNameId).getSecond();
+        return qnameDAO.getQNameById(nodeTypeQNameId);
     }
 
     @Override
@@ -1673,7 +1726,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         // Get the store
         StoreEntity store = getStoreNotNull(storeRef);
         // Create the node (it is not a root node)
-        Long nodeTypeQNameId = qnameDAO.getOrCreateQName(nodeTypeQName).getFirst();
+        Long nodeTypeQNameId = qnameDAO.getOrCreateQNameId(nodeTypeQName);
         Long nodeLocaleId = localeDAO.getOrCreateLocalePair(nodeLocale).getFirst();
         NodeEntity node = newNodeImpl(store, uuid, nodeTypeQNameId, nodeLocaleId, childAclId, auditableProps, true);
         Long nodeId = node.getId();
@@ -1748,7 +1801,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         }
         // QName
         node.setTypeQNameId(nodeTypeQNameId);
-        QName nodeTypeQName = qnameDAO.getQName(nodeTypeQNameId).getSecond();
+        QName nodeTypeQName = qnameDAO.getQNameById(nodeTypeQNameId);
         // Locale
         if (nodeLocaleId == null)
         {
@@ -1787,7 +1840,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         Set<QName> nodeAspects = null;
         if (addAuditableAspect)
         {
-            Long auditableAspectQNameId = qnameDAO.getOrCreateQName(ContentModel.ASPECT_AUDITABLE).getFirst();
+            Long auditableAspectQNameId = qnameDAO.getOrCreateQNameId(ContentModel.ASPECT_AUDITABLE);
             insertNodeAspect(id, auditableAspectQNameId);
             nodeAspects = Collections.<QName> singleton(ContentModel.ASPECT_AUDITABLE);
         }
@@ -2048,7 +2101,11 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             String lowerMsg = e.getMessage().toLowerCase();
             if (lowerMsg.contains("fk_alf_cass_"))
             {
-                throw new ConcurrencyFailureException("FK violation updating primary parent association for " + childNodeId, e);
+                throw new KeyedConcurrencyFailureException(
+                        "FK violation updating primary parent association for " + childNodeId,
+                        getContentionKey(childNodeId),
+                        getContentionKey(newParentNodeId),
+                        e);
             }
             // We assume that this is from the child cm:name constraint violation
             throw new DuplicateChildNodeNameException(
@@ -2071,7 +2128,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         }
         else
         {
-            nodeTypeQNameId = qnameDAO.getOrCreateQName(nodeTypeQName).getFirst();
+            nodeTypeQNameId = qnameDAO.getOrCreateQNameId(nodeTypeQName);
         }
         final Long nodeLocaleId;
         if (nodeLocale == null)
@@ -2349,7 +2406,11 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             nodesCache.removeByKey(nodeId);
             nodesCache.removeByValue(nodeUpdate);
 
-            throw new ConcurrencyFailureException("Failed to update node " + nodeId, concurrencyException);
+            throw new KeyedConcurrencyFailureException(
+                    "Failed to update node " + nodeId,
+                    getContentionKey(nodeId),
+                    getParentContentionKey(oldNode),
+                    concurrencyException);
         }
         else
         {
@@ -2361,6 +2422,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
                 propertiesCache.clear();
                 aspectsCache.clear();
                 parentAssocsCache.clear();
+                clearPathsCached();
             }
             // Update the caches
             nodeUpdate.lock();
@@ -2461,6 +2523,8 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         // a list of nodes deleted in the transaction. We store that information against a
         // new node of type 'sys:deleted'. This means that 'deleted' nodes are really just
         // orphaned (read standalone) nodes that remain invisible outside of the DAO.
+        // Name the parent before its cached associations are dropped with the node
+        Serializable parentContentionKey = getParentContentionKey(node);
         int deleted = deleteNodeById(nodeId);
         // We will always have to invalidate the cache for the node
         invalidateNodeCaches(nodeId);
@@ -2468,9 +2532,12 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         if (deleted != 1)
         {
             // We thought that the row existed
-            throw new ConcurrencyFailureException(
+            throw new KeyedConcurrencyFailureException(
                     "Failed to delete node: \n" +
-                            "   Node: " + node);
+                            "   Node: " + node,
+                    getContentionKey(nodeId),
+                    parentContentionKey,
+                    null);
         }
 
         // Remove ACLs
@@ -2483,7 +2550,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         // Use a 'deleted' type QName
         StoreEntity store = node.getStore();
         String uuid = node.getUuid();
-        Long deletedQNameId = qnameDAO.getOrCreateQName(ContentModel.TYPE_DELETED).getFirst();
+        Long deletedQNameId = qnameDAO.getOrCreateQNameId(ContentModel.TYPE_DELETED);
         Long defaultLocaleId = localeDAO.getOrCreateDefaultLocalePair().getFirst();
         Node deletedNode = newNodeImpl(store, uuid, deletedQNameId, defaultLocaleId, null, null, true);
         Long deletedNodeId = deletedNode.getId();
@@ -2929,6 +2996,80 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         return modified;
     }
 
+    @Override
+    public void addNewNodeProperties(Map<Long, Map<QName, Serializable>> propertiesByNodeId)
+    {
+        Long txnId = getCurrentTransaction().getId();
+
+        Map<Long, Map<NodePropertyKey, NodePropertyValue>> newPropsRawByNodeId = new HashMap<Long, Map<NodePropertyKey, NodePropertyValue>>(propertiesByNodeId.size() * 2);
+        Map<Long, Map<QName, Serializable>> newPropsByNodeId = new HashMap<Long, Map<QName, Serializable>>(propertiesByNodeId.size() * 2);
+        for (Map.Entry<Long, Map<QName, Serializable>> entry : propertiesByNodeId.entrySet())
+        {
+            Long nodeId = entry.getKey();
+            Map<QName, Serializable> newProps = entry.getValue();
+            if (newProps.isEmpty())
+            {
+                continue;
+            }
+            Node node = getNodeNotNull(nodeId, false);
+            // Only nodes created in this transaction without any properties can skip the differencing
+            if (!txnId.equals(node.getTransaction().getId())
+                    || !getNodePropertiesCached(nodeId).isEmpty()
+                    || newProps.containsKey(ContentModel.PROP_LOCALE))
+            {
+                addNodeProperties(nodeId, newProps);
+                continue;
+            }
+
+            // Copy inbound values and remove the properties held on the node itself
+            newProps = new HashMap<QName, Serializable>(newProps);
+            newProps.keySet().removeAll(AuditablePropertiesEntity.getAuditablePropertyQNames());
+            LocalizedPropertiesEntity.removeLocalizedProperties(node, newProps);
+            ReferenceablePropertiesEntity.removeReferenceableProperties(node, newProps);
+
+            // Convert to the model-compliant format and store any content data
+            newProps = nodePropertyHelper.convertToPublicProperties(nodePropertyHelper.convertToPersistentProperties(newProps));
+            for (Map.Entry<QName, Serializable> propEntry : newProps.entrySet())
+            {
+                PropertyDefinition propDef = dictionaryService.getProperty(propEntry.getKey());
+                boolean isContent = (propDef != null &&
+                        propDef.getDataType().getName().equals(DataTypeDefinition.CONTENT));
+                if (isContent && propEntry.getValue() != null)
+                {
+                    ContentData newContentData = (ContentData) propEntry.getValue();
+                    Long newContentDataId = contentDataDAO.createContentData(newContentData).getFirst();
+                    propEntry.setValue(new ContentDataWithId(newContentData, newContentDataId));
+                }
+            }
+            newPropsRawByNodeId.put(nodeId, nodePropertyHelper.convertToPersistentProperties(newProps));
+            newPropsByNodeId.put(nodeId, newProps);
+        }
+        if (newPropsRawByNodeId.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            insertNodeProperties(newPropsRawByNodeId);
+        }
+        catch (RuntimeException e)
+        {
+            // Don't trust the caches for any of the nodes
+            for (Long nodeId : newPropsRawByNodeId.keySet())
+            {
+                invalidateNodeCaches(nodeId);
+            }
+            throw e;
+        }
+
+        // The nodes are already in the current transaction, so there is nothing to touch
+        for (Map.Entry<Long, Map<QName, Serializable>> entry : newPropsByNodeId.entrySet())
+        {
+            setNodePropertiesCached(entry.getKey(), entry.getValue());
+        }
+    }
+
     @Override
     public boolean removeNodeProperties(Long nodeId, Set<QName> propertyQNames)
     {
@@ -3133,6 +3274,9 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
 
             // Load all properties for the node IDs
             Map<NodeVersionKey, Map<NodePropertyKey, NodePropertyValue>> propsRawByNodeVersionKey = selectNodeProperties(nodeIds);
+            Set<Long> nodeIdsWithProps = propsRawByNodeVersionKey.keySet().stream()
+                    .map(NodeVersionKey::getNodeId)
+                    .collect(Collectors.toSet());
 
             // Now build up the results
             List<Pair<NodeVersionKey, Map<QName, Serializable>>> results = new ArrayList<>(keys.size());
@@ -3142,19 +3286,22 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
                 Map<NodePropertyKey, NodePropertyValue> propsRaw = propsRawByNodeVersionKey.get(nodeVersionKey);
                 if (propsRaw == null)
                 {
-                    // Didn't find a match. Is this because there are none?
-                    if (propsRawByNodeVersionKey.isEmpty())
+                    // Didn't find a match. Is this because there are none for this node?
+                    if (!nodeIdsWithProps.contains(nodeId))
                     {
                         // This is OK. The node has no properties
                         propsRaw = Collections.emptyMap();
                     }
                     else
                     {
-                        // We found properties associated with a different node ID and version
+                        // We found properties associated with a different node version. Drop the stale node and
+                        // leave it out of the results, so that the rest of the batch is still cached
                         invalidateNodeCaches(nodeId);
-                        throw new DataIntegrityViolationException(
-                                "Detected stale node entry: " + nodeVersionKey +
-                                        " (now " + propsRawByNodeVersionKey.keySet() + ")");
+                        if (logger.isDebugEnabled())
+                        {
+                            logger.debug("Detected stale node entry: " + nodeVersionKey);
+                        }
+                        continue;
                     }
                 }
                 // Convert to public properties
@@ -3165,6 +3312,12 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             return results;
         }
 
+        @Override
+        public int getBatchSize()
+        {
+            return batchSize;
+        }
+
         /**
          * Batch lookup is not supported
          * 
@@ -3287,6 +3440,66 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         return true;
     }
 
+    @Override
+    public void addNewNodeAspects(Map<Long, Set<QName>> aspectQNamesByNodeId)
+    {
+        Long txnId = getCurrentTransaction().getId();
+
+        Map<Long, Set<Long>> aspectQNameIdsByNodeId = new HashMap<Long, Set<Long>>(aspectQNamesByNodeId.size() * 2);
+        Map<Long, Set<QName>> newAspectQNamesByNodeId = new HashMap<Long, Set<QName>>(aspectQNamesByNodeId.size() * 2);
+        for (Map.Entry<Long, Set<QName>> entry : aspectQNamesByNodeId.entrySet())
+        {
+            Long nodeId = entry.getKey();
+            Node node = getNodeNotNull(nodeId, false);
+            // Find out what needs adding
+            Set<QName> existingAspectQNames = getNodeAspectsCached(nodeId);
+            Set<QName> aspectQNamesToAdd = new HashSet<QName>(entry.getValue());
+            aspectQNamesToAdd.removeAll(existingAspectQNames);
+            aspectQNamesToAdd.remove(ContentModel.ASPECT_REFERENCEABLE); // Implicit
+            aspectQNamesToAdd.remove(ContentModel.ASPECT_LOCALIZED); // Implicit
+            if (aspectQNamesToAdd.isEmpty())
+            {
+                continue;
+            }
+            // Aspects that touch the node or other caches go through the single-node path
+            if (!txnId.equals(node.getTransaction().getId())
+                    || aspectQNamesToAdd.contains(ContentModel.ASPECT_AUDITABLE)
+                    || aspectQNamesToAdd.contains(ContentModel.ASPECT_ROOT))
+            {
+                addNodeAspects(nodeId, aspectQNamesToAdd);
+                continue;
+            }
+            aspectQNameIdsByNodeId.put(nodeId, qnameDAO.convertQNamesToIds(aspectQNamesToAdd, true));
+            Set<QName> newAspectQNames = new HashSet<QName>(existingAspectQNames);
+            newAspectQNames.addAll(aspectQNamesToAdd);
+            newAspectQNamesByNodeId.put(nodeId, newAspectQNames);
+        }
+        if (aspectQNameIdsByNodeId.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            insertNodeAspects(aspectQNameIdsByNodeId);
+        }
+        catch (RuntimeException e)
+        {
+            // This could be because the caches are out of date
+            for (Long nodeId : aspectQNameIdsByNodeId.keySet())
+            {
+                invalidateNodeCaches(nodeId);
+            }
+            throw e;
+        }
+
+        // Manually update the cache
+        for (Map.Entry<Long, Set<QName>> entry : newAspectQNamesByNodeId.entrySet())
+        {
+            setNodeAspectsCached(entry.getKey(), entry.getValue());
+        }
+    }
+
     public boolean removeNodeAspects(Long nodeId)
     {
         Set<QName> newAspectQNames = Collections.<QName> emptySet();
@@ -3458,24 +3671,6 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         return result;
     }
 
-    /**
-     * Update the node aspects cache. The incoming set will be wrapped to be unmodifiable.
-     */
-    private void setNodeAspectsCached(Map<Long, Set<QName>> nodeAspects)
-    {
-        List<Long> nodeIds = nodeAspects.keySet().stream().collect(Collectors.toList());
-
-        List<NodeVersionKey> nodeVersionKeys = getNodesNotNull(nodeIds, false).stream()
-                .map(Node::getNodeVersionKey)
-                .collect(Collectors.toList());
-
-        // Should have mimimal impact
-        for (NodeVersionKey nodeVersionKey : nodeVersionKeys)
-        {
-            aspectsCache.setValue(nodeVersionKey, Collections.unmodifiableSet(nodeAspects.get(nodeVersionKey.getNodeId())));
-        }
-    }
-
     /**
      * Helper method to copy cache values from one key to another
      */
@@ -3528,15 +3723,55 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             return new Pair<NodeVersionKey, Set<QName>>(nodeVersionKey, Collections.unmodifiableSet(nodeAspectQNames));
         }
 
-        /**
-         * Batch lookup is not supported
-         * 
-         * @throws UnsupportedOperationException
-         */
         @Override
         public List<Pair<NodeVersionKey, Set<QName>>> findByKeys(List<NodeVersionKey> keys)
         {
-            throw new UnsupportedOperationException("Batch lookup not supported for node aspects.");
+            // Gather all node IDs
+            Set<Long> nodeIds = keys.stream()
+                    .map(NodeVersionKey::getNodeId)
+                    .collect(Collectors.toSet());
+
+            // Load all aspects for the node IDs
+            Map<NodeVersionKey, Set<QName>> nodeAspectQNameIdsByVersionKey = selectNodeAspects(nodeIds);
+            Set<Long> nodeIdsWithAspects = nodeAspectQNameIdsByVersionKey.keySet().stream()
+                    .map(NodeVersionKey::getNodeId)
+                    .collect(Collectors.toSet());
+
+            // Now build up the results
+            List<Pair<NodeVersionKey, Set<QName>>> results = new ArrayList<>(keys.size());
+            for (NodeVersionKey nodeVersionKey : keys)
+            {
+                Long nodeId = nodeVersionKey.getNodeId();
+                Set<QName> nodeAspectQNames = nodeAspectQNameIdsByVersionKey.get(nodeVersionKey);
+                if (nodeAspectQNames == null)
+                {
+                    // Didn't find a match. Is this because there are none for this node?
+                    if (!nodeIdsWithAspects.contains(nodeId))
+                    {
+                        // This is OK. The node has no aspects
+                        nodeAspectQNames = Collections.emptySet();
+                    }
+                    else
+                    {
+                        // We found aspects associated with a different node version. Drop the stale node and
+                        // leave it out of the results, so that the rest of the batch is still cached
+                        invalidateNodeCaches(nodeId);
+                        if (logger.isDebugEnabled())
+                        {
+                            logger.debug("Detected stale node entry: " + nodeVersionKey);
+                        }
+                        continue;
+                    }
+                }
+                results.add(new Pair<>(nodeVersionKey, Collections.unmodifiableSet(nodeAspectQNames)));
+            }
+            return results;
+        }
+
+        @Override
+        public int getBatchSize()
+        {
+            return batchSize;
         }
 
         /**
@@ -3565,7 +3800,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         touchNode(sourceNodeId, null, null, false, false, false);
 
         // Resolve type QName
-        Long assocTypeQNameId = qnameDAO.getOrCreateQName(assocTypeQName).getFirst();
+        Long assocTypeQNameId = qnameDAO.getOrCreateQNameId(assocTypeQName);
 
         // Get the current max; we will need this no matter what
         if (assocIndex <= 0)
@@ -3883,10 +4118,15 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             controlDAO.rollbackToSavepoint(savepoint);
             // DuplicateChildNodeNameException implements DoNotRetryException.
 
-            // Allow real DB concurrency issues (e.g. DeadlockLoserDataAccessException) straight through for a retry
+            // Allow real DB concurrency issues (e.g. DeadlockLoserDataAccessException) through for a retry, naming
+            // the parent that concurrent transactions are adding children to
             if (e instanceof ConcurrencyFailureException)
             {
-                throw e;
+                throw new KeyedConcurrencyFailureException(
+                        e.getMessage(),
+                        getContentionKey(childNodeId),
+                        getContentionKey(parentNodeId),
+                        e);
             }
 
             // There are some cases - FK violations, specifically - where we DO actually want to retry.
@@ -3894,7 +4134,11 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             String lowerMsg = e.getMessage().toLowerCase();
             if (lowerMsg.contains("fk_alf_cass_"))
             {
-                throw new ConcurrencyFailureException("FK violation updating primary parent association:" + assoc, e);
+                throw new KeyedConcurrencyFailureException(
+                        "FK violation updating primary parent association:" + assoc,
+                        getContentionKey(childNodeId),
+                        getContentionKey(parentNodeId),
+                        e);
             }
 
             // We assume that this is from the child cm:name constraint violation
@@ -4527,15 +4771,29 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
     @Override
     public List<Path> getPaths(Pair<Long, NodeRef> nodePair, boolean primaryOnly) throws InvalidNodeRefException
     {
-        // create storage for the paths - only need 1 bucket if we are looking for the primary path
-        List<Path> paths = new ArrayList<Path>(primaryOnly ? 1 : 10);
-        // create an empty current path to start from
-        Path currentPath = new Path();
-        // create storage for touched associations
-        Stack<Long> assocIdStack = new Stack<Long>();
+        List<Path> paths;
+        if (pathsCache != null)
+        {
+            List<Path> cachedPaths = getPathsCached(nodePair, primaryOnly, new HashSet<Long>()).getPaths();
+            // the cached paths are shared, so hand out copies
+            paths = new ArrayList<Path>(cachedPaths.size());
+            for (Path cachedPath : cachedPaths)
+            {
+                paths.add(new Path().append(cachedPath));
+            }
+        }
+        else
+        {
+            // create storage for the paths - only need 1 bucket if we are looking for the primary path
+            paths = new ArrayList<Path>(primaryOnly ? 1 : 10);
+            // create an empty current path to start from
+            Path currentPath = new Path();
+            // create storage for touched associations
+            Stack<Long> assocIdStack = new Stack<Long>();
 
-        // call recursive method to sort it out
-        prependPaths(nodePair, null, currentPath, paths, assocIdStack, primaryOnly);
+            // call recursive method to sort it out
+            prependPaths(nodePair, null, currentPath, paths, assocIdStack, primaryOnly);
+        }
 
         // check that for the primary only case we have exactly one path
         if (primaryOnly && paths.size() != 1)
@@ -4880,6 +5138,182 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         // done
     }
 
+    /**
+     * Get the paths of a node from the {@link PathsCache paths cache}, building them from the paths of its parents when there is no valid entry.
+     * <p>
+     * A cached entry is reused only if it was built from the node's current parent associations and from the current entries of all of its parents. The entries that have been checked are remembered for the rest of the transaction, so that siblings sharing an ancestry only check it once. That record is dropped whenever parent associations are changed.
+     *
+     * @param nodePair
+     *            the node to get the paths for
+     * @param primaryOnly
+     *            <tt>true</tt> to follow only primary parent associations
+     * @param nodeIdsInProgress
+     *            the nodes being visited further down the current path, to detect cyclic relationships
+     * @throws CyclicChildRelationshipException
+     */
+    private PathsCache.CachedPaths getPathsCached(
+            Pair<Long, NodeRef> nodePair,
+            boolean primaryOnly,
+            Set<Long> nodeIdsInProgress) throws CyclicChildRelationshipException
+    {
+        Long nodeId = nodePair.getFirst();
+        Pair<Long, Boolean> validatedKey = new Pair<Long, Boolean>(nodeId, primaryOnly);
+        Map<Pair<Long, Boolean>, PathsCache.CachedPaths> validatedPaths = null;
+        if (AlfrescoTransactionSupport.getTransactionReadState() != TxnReadState.TXN_NONE)
+        {
+            validatedPaths = TransactionalResourceHelper.getMap(KEY_VALIDATED_PATHS);
+            PathsCache.CachedPaths validated = validatedPaths.get(validatedKey);
+            if (validated != null)
+            {
+                return validated;
+            }
+        }
+
+        Node node = getNodeNotNull(nodeId, false);
+        Pair<Long, String> cacheKey = new Pair<Long, String>(nodeId, node.getTransaction().getChangeTxnId());
+        ParentAssocsInfo parentAssocInfo = getParentAssocsCached(nodeId); // note: currently may throw NotLiveNodeException
+
+        // Collect the parent associations to follow and bulk load the parents
+        List<ChildAssocEntity> assocs = new ArrayList<ChildAssocEntity>(parentAssocInfo.getParentAssocs().size());
+        List<Long> toLoad = new ArrayList<Long>(parentAssocInfo.getParentAssocs().size());
+        for (ChildAssocEntity assoc : parentAssocInfo.getParentAssocs().values())
+        {
+            if (primaryOnly && !assoc.isPrimary())
+            {
+                continue;
+            }
+            assocs.add(assoc);
+            toLoad.add(assoc.getParentNode().getId());
+        }
+        cacheNodesById(toLoad);
+
+        // Get the paths of the parents
+        nodeIdsInProgress.add(nodeId);
+        List<PathsCache.CachedPaths> parents = new ArrayList<PathsCache.CachedPaths>(assocs.size());
+        for (ChildAssocEntity assoc : assocs)
+        {
+            Long parentNodeId = assoc.getParentNode().getId();
+            if (nodeIdsInProgress.contains(parentNodeId))
+            {
+                logger.error(
+                        "Cyclic parent-child relationship detected: \n" +
+                                "   current node: " + nodeId + "\n" +
+                                "   next assoc: " + assoc.getId());
+                throw new CyclicChildRelationshipException("Node has been pasted into its own tree.", assoc.getRef(qnameDAO));
+            }
+            Pair<Long, NodeRef> parentNodePair = new Pair<Long, NodeRef>(parentNodeId, assoc.getParentNode().getNodeRef());
+            parents.add(getPathsCached(parentNodePair, primaryOnly, nodeIdsInProgress));
+        }
+        nodeIdsInProgress.remove(nodeId);
+
+        PathsCache.CachedPaths cachedPaths = pathsCache.get(cacheKey, primaryOnly);
+        if (cachedPaths == null || cachedPaths.getParentAssocs() != parentAssocInfo || !isSameInstances(cachedPaths.getParents(), parents))
+        {
+            cachedPaths = buildPaths(nodePair, primaryOnly, parentAssocInfo, assocs, parents);
+            pathsCache.put(cacheKey, primaryOnly, cachedPaths);
+        }
+        if (validatedPaths != null)
+        {
+            validatedPaths.put(validatedKey, cachedPaths);
+        }
+        return cachedPaths;
+    }
+
+    private static boolean isSameInstances(List<?> list1, List<?> list2)
+    {
+        if (list1.size() != list2.size())
+        {
+            return false;
+        }
+        for (int i = 0; i < list1.size(); i++)
+        {
+            if (list1.get(i) != list2.get(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Build the paths of a node by appending the association to the node to each path of its parents. This gives the same paths, in the same order, as {@link #prependPaths(Pair, Pair, Path, Collection, Stack, boolean)}.
+     */
+    private PathsCache.CachedPaths buildPaths(
+            Pair<Long, NodeRef> nodePair,
+            boolean primaryOnly,
+            ParentAssocsInfo parentAssocInfo,
+            List<ChildAssocEntity> assocs,
+            List<PathsCache.CachedPaths> parents)
+    {
+        NodeRef rootNodeRef = getRootNode(nodePair.getSecond().getStoreRef()).getSecond();
+        List<Path> paths = new ArrayList<Path>(primaryOnly ? 1 : 10);
+
+        // look for a root. If we only want the primary root, then ignore all but the top-level root.
+        if (!(primaryOnly && !parentAssocInfo.getParentAssocs().isEmpty()) && parentAssocInfo.isRoot())
+        {
+            // the first assoc in the path must be a one-sided reference pointing to the root node
+            Path path = new Path();
+            path.append(new Path.ChildAssocElement(new ChildAssociationRef(null, null, null, rootNodeRef)));
+            paths.add(path);
+        }
+
+        for (int i = 0; i < assocs.size(); i++)
+        {
+            ChildAssociationRef assocRef = assocs.get(i).getRef(qnameDAO);
+            // Ordering is meaningless here as we are constructing a path upwards
+            assocRef.setNthSibling(-1);
+            Path.Element element = new Path.ChildAssocElement(assocRef);
+            PathsCache.CachedPaths parent = parents.get(i);
+            for (Path parentPath : parent.getPaths())
+            {
+                Path path = new Path();
+                path.append(parentPath);
+                if (parentPath.size() == 1)
+                {
+                    // the parent is a root: mimic an association that would appear if the node was below the root node
+                    // or if the parent is the root node it will make the real thing
+                    ChildAssociationRef updateAssocRef = new ChildAssociationRef(
+                            parent.getParentAssocs().isStoreRoot() ? ContentModel.ASSOC_CHILDREN : assocRef.getTypeQName(),
+                            parent.getRootNodeRef(),
+                            assocRef.getQName(),
+                            assocRef.getChildRef());
+                    path.append(new Path.ChildAssocElement(updateAssocRef));
+                }
+                else
+                {
+                    path.append(element);
+                }
+                paths.add(path);
+            }
+        }
+        return new PathsCache.CachedPaths(parentAssocInfo, parents, rootNodeRef, paths);
+    }
+
+    /**
+     * Drop the paths built on the parent associations of a node, as well as the record of paths checked in the current transaction.
+     */
+    private void invalidatePathsCached(Long nodeId, String transactionId)
+    {
+        if (pathsCache == null)
+        {
+            return;
+        }
+        pathsCache.remove(new Pair<Long, String>(nodeId, transactionId));
+        Map<?, ?> validatedPaths = AlfrescoTransactionSupport.getResource(KEY_VALIDATED_PATHS);
+        if (validatedPaths != null)
+        {
+            validatedPaths.clear();
+        }
+    }
+
+    private void clearPathsCached()
+    {
+        if (pathsCache != null)
+        {
+            pathsCache.clear();
+        }
+    }
+
     /**
      * @return Returns a node's parent associations
      */
@@ -4912,6 +5346,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         Node node = getNodeNotNull(nodeId, false);
         Pair<Long, String> cacheKey = new Pair<Long, String>(nodeId, node.getTransaction().getChangeTxnId());
         parentAssocsCache.put(cacheKey, parentAssocs);
+        invalidatePathsCached(nodeId, cacheKey.getSecond());
     }
 
     /**
@@ -4943,12 +5378,14 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         Long nodeId = node.getId();
         String nodeTransactionId = node.getTransaction().getChangeTxnId();
         parentAssocsCache.remove(new Pair<Long, String>(nodeId, nodeTransactionId));
+        invalidatePathsCached(nodeId, nodeTransactionId);
         if (AlfrescoTransactionSupport.getTransactionReadState() == TxnReadState.TXN_READ_WRITE)
         {
             String currentTransactionId = getCurrentTransaction().getChangeTxnId();
             if (!currentTransactionId.equals(nodeTransactionId))
             {
                 parentAssocsCache.remove(new Pair<Long, String>(nodeId, currentTransactionId));
+                invalidatePathsCached(nodeId, currentTransactionId);
             }
         }
     }
@@ -5195,47 +5632,36 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         StoreEntity store = getStoreNotNull(storeRef);
         Long storeId = store.getId();
 
-        SortedSet<String> batch = new TreeSet<String>();
-        for (String uuid : uuids)
+        for (int start = 0; start < uuids.size(); start += batchSize)
         {
-            batch.add(uuid);
-            if (batch.size() >= batchSize)
+            SortedSet<String> batch = new TreeSet<String>(uuids.subList(start, Math.min(start + batchSize, uuids.size())));
+            List<Node> nodes = selectNodesByUuids(storeId, batch);
+            for (Node node : nodes)
             {
-                // Preload
-                List<Node> nodes = selectNodesByUuids(storeId, batch);
-                cacheNodesNoBatch(nodes);
-                batch.clear();
+                node.lock(); // Prevent unexpected edits of values going into the cache
+                nodesCache.setValue(node.getId(), node);
             }
-        }
-        // Load any remaining nodes
-        if (batch.size() > 0)
-        {
-            List<Node> nodes = selectNodesByUuids(storeId, batch);
             cacheNodesNoBatch(nodes);
-            logger.info("Batch size may be too small " + batch.size() + " nodes.");
         }
     }
 
+    /**
+     * Loads the nodes into cache using batching. The nodes cache only selects the nodes it does not hold yet.
+     */
     private void cacheNodesBatch(List<Long> nodeIds)
     {
-        SortedSet<Long> batch = new TreeSet<Long>();
-        for (Long nodeId : nodeIds)
+        for (int start = 0; start < nodeIds.size(); start += batchSize)
         {
-            batch.add(nodeId);
-            if (batch.size() >= batchSize)
+            List<Pair<Long, Node>> nodePairs = nodesCache.getByKeys(nodeIds.subList(start, Math.min(start + batchSize, nodeIds.size())));
+            List<Node> nodes = new ArrayList<>(nodePairs.size());
+            for (Pair<Long, Node> nodePair : nodePairs)
             {
-                // Preload
-                List<Node> nodes = selectNodesByIds(batch);
-                cacheNodesNoBatch(nodes);
-                batch.clear();
+                if (nodePair.getSecond() != null)
+                {
+                    nodes.add(nodePair.getSecond());
+                }
             }
-        }
-        // Load any remaining nodes
-        if (batch.size() > 0)
-        {
-            List<Node> nodes = selectNodesByIds(batch);
             cacheNodesNoBatch(nodes);
-            logger.info("Batch size may be too small " + batch.size() + " nodes.");
         }
     }
 
@@ -5253,8 +5679,6 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         {
             Long nodeId = node.getId();
             NodeVersionKey nodeVersionKey = node.getNodeVersionKey();
-            node.lock(); // Prevent unexpected edits of values going into the cache
-            nodesCache.setValue(nodeId, node);
             if (propertiesCache.getValue(nodeVersionKey) == null)
             {
                 propertiesNodeIds.add(nodeId);
@@ -5283,35 +5707,8 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             logger.debug("Pre-loaded " + propertiesNodeIds.size() + " aspects");
         }
 
-        Map<NodeVersionKey, Set<QName>> nodeAspects = selectNodeAspects(aspectNodeIds);
-        Map<Long, Set<QName>> aspectsMappedByNodeId = new HashMap<>(aspectNodeIds.size());
-        Map<Long, Set<QName>> nodesWithNoAspects = new HashMap<>(aspectNodeIds.size());
-
-        for (Map.Entry<NodeVersionKey, Set<QName>> entry : nodeAspects.entrySet())
-        {
-            NodeVersionKey oldKey = entry.getKey();
-            Long newKey = oldKey.getNodeId();
-            Set<QName> value = entry.getValue();
-            aspectsMappedByNodeId.put(newKey, value);
-            // Remove the nodeIds from the original Set
-            aspectNodeIds.remove(newKey);
-        }
-
-        if (!aspectsMappedByNodeId.isEmpty())
-        {
-            setNodeAspectsCached(aspectsMappedByNodeId);
-        }
-
-        // Cache the absence of aspects too!
-        for (Long nodeId : aspectNodeIds)
-        {
-            nodesWithNoAspects.put(nodeId, Collections.<QName> emptySet());
-        }
-
-        if (!nodesWithNoAspects.isEmpty())
-        {
-            setNodeAspectsCached(nodesWithNoAspects);
-        }
+        // Bulk load the aspects; nodes without aspects are cached with an empty set
+        preloadNodeCache(aspectsCache, aspectNodeIds, nodeVersionKeysFromCache);
 
         // First ensure all content data are pre-cached, so we don't have to load them individually when converting properties
         if (!propertiesNodeIds.isEmpty())
@@ -5320,14 +5717,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         }
 
         // Now bulk load the properties
-        Map<NodeVersionKey, Map<NodePropertyKey, NodePropertyValue>> propsByNodeId = selectNodeProperties(propertiesNodeIds);
-        for (Map.Entry<NodeVersionKey, Map<NodePropertyKey, NodePropertyValue>> entry : propsByNodeId.entrySet())
-        {
-            Long nodeId = entry.getKey().getNodeId();
-            Map<NodePropertyKey, NodePropertyValue> propertyValues = entry.getValue();
-            Map<QName, Serializable> props = nodePropertyHelper.convertToPublicProperties(propertyValues);
-            setNodePropertiesCached(nodeId, props);
-        }
+        preloadNodeCache(propertiesCache, propertiesNodeIds, nodeVersionKeysFromCache);
 
         // Bulk load the parent associations
         List<ChildAssocEntity> assocs = selectParentAssocsOfChildren(childAssocsNodeIds);
@@ -5339,6 +5729,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
 
         // Sort the associations into per-child lists
         Map<Long, List<ChildAssocEntity>> assocsByChildId = new HashMap<>();
+        Set<Long> parentNodeIds = new HashSet<>();
 
         for (ChildAssocEntity assoc : assocs)
         {
@@ -5350,29 +5741,34 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
                 assocsByChildId.put(childNodeId, childAssocs);
             }
             childAssocs.add(assoc);
+            parentNodeIds.add(assoc.getParentNode().getId());
         }
 
-        // Now set the cache entries
-        for (Map.Entry<Long, List<ChildAssocEntity>> entry : assocsByChildId.entrySet())
+        // Now set the cache entries. The nodes, aspects and types come from the caches filled above.
+        for (Long childNodeId : childAssocsNodeIds)
         {
-            Long childNodeId = entry.getKey();
-            List<ChildAssocEntity> childAssocs = entry.getValue();
-
-            if (childAssocs.isEmpty())
+            Node childNode = getNodeNotNull(childNodeId, false);
+            if (childNode.getTransaction() == null)
             {
-                // Should not happen - skip
-                logger.warn("Child node ID " + childNodeId + " has no parent associations - cannot cache parent associations");
+                // The node was reloaded without its transaction; it is loaded again when used
                 continue;
             }
-
-            Node childNode = getNodeNotNull(childNodeId, false);
             boolean isRoot = hasNodeAspect(childNodeId, ContentModel.ASPECT_ROOT);
             boolean isStoreRoot = getNodeType(childNodeId).equals(ContentModel.TYPE_STOREROOT);
 
-            if (childNode.getTransaction() == null)
+            List<ChildAssocEntity> childAssocs = assocsByChildId.get(childNodeId);
+            if (childAssocs == null)
             {
-                // Should not happen - skip
-                logger.warn("Child node " + childNode + " has no transaction - cannot cache parent associations");
+                if (!isRoot && !isStoreRoot)
+                {
+                    // Only roots have no parents. Leave any other node to the checks made when it is loaded on its own.
+                    continue;
+                }
+                childAssocs = Collections.emptyList();
+            }
+            else if (!childAssocs.get(0).getChildNode().getNodeVersionKey().equals(childNode.getNodeVersionKey()))
+            {
+                // The node changed while it was being loaded; it is loaded again when used
                 continue;
             }
 
@@ -5386,6 +5782,31 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
 
             parentAssocsCache.put(cacheKey, parentAssocsInfo);
         }
+
+        // Bring in the parent nodes through the bulk lookup, rather than one at a time when the paths are walked
+        if (!parentNodeIds.isEmpty())
+        {
+            nodesCache.getByKeys(new ArrayList<>(parentNodeIds));
+        }
+    }
+
+    /**
+     * Load the entries of a node version cache through its {@link EntityLookupCache#getByKeys(List) bulk lookup}, which selects the missing entries in bounded IN-queries.
+     * <p/>
+     * A node that changed while it was being loaded has its caches invalidated and is left out by the lookup; the rest of the batch is cached.
+     */
+    private void preloadNodeCache(EntityLookupCache<NodeVersionKey, ?, ?> cache, Set<Long> nodeIds, Map<Long, NodeVersionKey> nodeVersionKeys)
+    {
+        if (nodeIds.isEmpty())
+        {
+            return;
+        }
+        List<NodeVersionKey> keys = new ArrayList<>(nodeIds.size());
+        for (Long nodeId : nodeIds)
+        {
+            keys.add(nodeVersionKeys.get(nodeId));
+        }
+        cache.getByKeys(keys);
     }
 
     /**
@@ -5576,10 +5997,14 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
 
     protected abstract void insertNodeProperties(Long nodeId, Map<NodePropertyKey, NodePropertyValue> persistableProps);
 
+    protected abstract void insertNodeProperties(Map<Long, Map<NodePropertyKey, NodePropertyValue>> persistablePropsByNodeId);
+
     protected abstract Map<NodeVersionKey, Set<QName>> selectNodeAspects(Set<Long> nodeIds);
 
     protected abstract void insertNodeAspect(Long nodeId, Long qnameId);
 
+    protected abstract void insertNodeAspects(Map<Long, Set<Long>> qnameIdsByNodeId);
+
     protected abstract int deleteNodeAspects(Long nodeId, Set<Long> qnameIds);
 
     protected abstract void selectNodesWithAspects(
@@ -223,8 +223,8 @@ public class ChildAssocEntity implements Serializable
 
     public ChildAssociationRef getRef(QNameDAO qnameDAO)
     {
-        QName typeQName = qnameDAO.getQName(typeQNameId).getSecond();
-        QName qname = QName.createQName(qnameDAO.getNamespace(qnameNamespaceId).getSecond(), qnameLocalName);
+        QName typeQName = qnameDAO.getQNameById(typeQNameId);
+        QName qname = QName.createQName(qnameDAO.getNamespaceUriById(qnameNamespaceId), qnameLocalName);
         return new ChildAssociationRef(
                 typeQName,
                 parentNode.getNodeRef(),
@@ -294,19 +294,19 @@ public class ChildAssocEntity implements Serializable
     {
         if (forUpdate)
         {
-            typeQNameId = qnameDAO.getOrCreateQName(typeQName).getFirst();
+            typeQNameId = qnameDAO.getOrCreateQNameId(typeQName);
             return true;
         }
         else
         {
-            Pair<Long, QName> qnamePair = qnameDAO.getQName(typeQName);
-            if (qnamePair == null)
+            long qnameId = qnameDAO.getQNameId(typeQName);
+            if (qnameId == QNameDAO.NO_ID)
             {
                 return false;
             }
             else
             {
-                typeQNameId = qnamePair.getFirst();
+                typeQNameId = qnameId;
                 return true;
             }
         }
@@ -396,23 +396,19 @@ public class ChildAssocEntity implements Serializable
     {
         String assocQNameNamespace = qname.getNamespaceURI();
         String assocQNameLocalName = qname.getLocalName();
-        Long assocQNameNamespaceId = null;
+        long assocQNameNamespaceId;
         if (forUpdate)
         {
-            assocQNameNamespaceId = qnameDAO.getOrCreateNamespace(assocQNameNamespace).getFirst();
+            assocQNameNamespaceId = qnameDAO.getOrCreateNamespaceId(assocQNameNamespace);
         }
         else
         {
-            Pair<Long, String> nsPair = qnameDAO.getNamespace(assocQNameNamespace);
-            if (nsPair == null)
+            assocQNameNamespaceId = qnameDAO.getNamespaceId(assocQNameNamespace);
+            if (assocQNameNamespaceId == QNameDAO.NO_ID)
             {
                 // We can't set anything
                 return false;
             }
-            else
-            {
-                assocQNameNamespaceId = nsPair.getFirst();
-            }
         }
         Long assocQNameCrc = getQNameCrc(qname);
 
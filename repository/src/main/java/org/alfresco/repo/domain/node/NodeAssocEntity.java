@@ -77,7 +77,7 @@ public class NodeAssocEntity
      */
     public AssociationRef getAssociationRef(QNameDAO qnameDAO)
     {
-        QName assocTypeQName = qnameDAO.getQName(typeQNameId).getSecond();
+        QName assocTypeQName = qnameDAO.getQNameById(typeQNameId);
         AssociationRef assocRef = new AssociationRef(
                 id,
                 sourceNode.getNodeRef(),
@@ -395,6 +395,16 @@ public interface NodeDAO extends NodeBulkLoader
 
     public boolean addNodeProperties(Long nodeId, Map<QName, Serializable> properties);
 
+    /**
+     * Add properties to a batch of nodes that were created in the current transaction. The property rows of all the nodes are written using multi-row inserts; nodes that already carry properties, were not created in the current transaction or are given <b>sys:locale</b> fall back to {@link #addNodeProperties(Long, Map)}. Any <b>cm:auditable</b> values are ignored; they must be given when the node is {@link #newNode created}.
+     * <p>
+     * Like the other DAO methods, no policies are fired.
+     * 
+     * @param propertiesByNodeId
+     *            the properties to add, keyed by node ID
+     */
+    public void addNewNodeProperties(Map<Long, Map<QName, Serializable>> propertiesByNodeId);
+
     public boolean removeNodeProperties(Long nodeId, Set<QName> propertyQNames);
 
     /**
@@ -432,6 +442,14 @@ public interface NodeDAO extends NodeBulkLoader
 
     public boolean addNodeAspects(Long nodeId, Set<QName> aspectQNames);
 
+    /**
+     * Add aspects to a batch of nodes that were created in the current transaction. The aspect rows of all the nodes are written using multi-row inserts; <b>cm:auditable</b>, <b>sys:aspect_root</b> and nodes not created in the current transaction fall back to {@link #addNodeAspects(Long, Set)}.
+     * 
+     * @param aspectQNamesByNodeId
+     *            the aspects to add, keyed by node ID
+     */
+    public void addNewNodeAspects(Map<Long, Set<QName>> aspectQNamesByNodeId);
+
     public boolean removeNodeAspects(Long nodeId);
 
     public boolean removeNodeAspects(Long nodeId, Set<QName> aspectQNames);
@@ -32,7 +32,6 @@ import org.alfresco.repo.domain.qname.QNameDAO;
 import org.alfresco.repo.security.permissions.PermissionCheckValue;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.StoreRef;
-import org.alfresco.service.namespace.QName;
 import org.alfresco.util.Pair;
 
 /**
@@ -227,9 +226,9 @@ public class NodeEntity implements Node, PermissionCheckValue, Serializable, Clo
             return true;
         }
         // Now check the type
-        Pair<Long, QName> deletedTypeQNamePair = qnameDAO.getQName(ContentModel.TYPE_DELETED);
-        return deletedTypeQNamePair != null &&
-                deletedTypeQNamePair.getFirst().equals(typeQNameId);
+        long deletedTypeQNameId = qnameDAO.getQNameId(ContentModel.TYPE_DELETED);
+        return deletedTypeQNameId != QNameDAO.NO_ID && typeQNameId != null &&
+                deletedTypeQNameId == typeQNameId.longValue();
     }
 
     @Override
@@ -95,7 +95,7 @@ public class NodePropertyHelper
             Serializable value = entry.getValue();
             // Get the qname ID
             QName propertyQName = entry.getKey();
-            Long propertyQNameId = qnameDAO.getOrCreateQName(propertyQName).getFirst();
+            Long propertyQNameId = qnameDAO.getOrCreateQNameId(propertyQName);
             // Get the property definition, if available
             PropertyDefinition propertyDef = dictionaryService.getProperty(propertyQName);
 
@@ -340,19 +340,18 @@ public class NodePropertyHelper
             QName propertyQName)
     {
         // Get the qname ID
-        Pair<Long, QName> qnamePair = qnameDAO.getQName(propertyQName);
-        if (qnamePair == null)
+        long qnameId = qnameDAO.getQNameId(propertyQName);
+        if (qnameId == QNameDAO.NO_ID)
         {
             // There is no persisted property with that QName, so we can't match anything
             return null;
         }
-        Long qnameId = qnamePair.getFirst();
         // Now loop over the properties and extract those with the given qname ID
         SortedMap<NodePropertyKey, NodePropertyValue> scratch = new TreeMap<NodePropertyKey, NodePropertyValue>();
         for (Map.Entry<NodePropertyKey, NodePropertyValue> entry : propertyValues.entrySet())
         {
             NodePropertyKey propertyKey = entry.getKey();
-            if (propertyKey.getQnameId().equals(qnameId))
+            if (propertyKey.getQnameId().longValue() == qnameId)
             {
                 scratch.put(propertyKey, entry.getValue());
             }
@@ -402,7 +401,7 @@ public class NodePropertyHelper
             // If the QName is going to change, and we have some entries to process, then process them.
             if (scratch.size() > 0 && (nextQNameId == null || !nextQNameId.equals(currentQNameId)))
             {
-                QName currentQName = qnameDAO.getQName(currentQNameId).getSecond();
+                QName currentQName = qnameDAO.getQNameById(currentQNameId);
                 PropertyDefinition currentPropertyDef = dictionaryService.getProperty(currentQName);
                 // We have added something to the scratch properties but the qname has just changed
                 Serializable collapsedValue = null;
@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.node;
+
+import java.util.List;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.Path;
+import org.alfresco.util.Pair;
+import org.alfresco.util.Triple;
+
+/**
+ * A size-bounded cache of the paths computed for a node, backed by a Google {@link Cache} implementation.
+ * <p>
+ * Entries are keyed by node ID, node transaction ID and whether only primary paths are included. An entry records the {@link ParentAssocsInfo} instance and the parent entries that it was built from, so that an entry can be reused only as long as the node's parent associations and the paths of all of its ancestors are unchanged.
+ */
+class PathsCache
+{
+    private final Cache<Triple<Long, String, Boolean>, CachedPaths> cache;
+
+    /**
+     * @param size
+     *            the maximum number of paths to cache
+     * @param concurrencyLevel
+     *            int
+     */
+    PathsCache(int size, int concurrencyLevel)
+    {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(size)
+                .concurrencyLevel(concurrencyLevel)
+                .weigher((Triple<Long, String, Boolean> key, CachedPaths value) -> Math.max(1, value.getPaths().size()))
+                .build();
+    }
+
+    CachedPaths get(Pair<Long, String> nodeKey, boolean primaryOnly)
+    {
+        return cache.getIfPresent(new Triple<>(nodeKey.getFirst(), nodeKey.getSecond(), primaryOnly));
+    }
+
+    void put(Pair<Long, String> nodeKey, boolean primaryOnly, CachedPaths paths)
+    {
+        cache.put(new Triple<>(nodeKey.getFirst(), nodeKey.getSecond(), primaryOnly), paths);
+    }
+
+    void remove(Pair<Long, String> nodeKey)
+    {
+        cache.invalidate(new Triple<>(nodeKey.getFirst(), nodeKey.getSecond(), Boolean.TRUE));
+        cache.invalidate(new Triple<>(nodeKey.getFirst(), nodeKey.getSecond(), Boolean.FALSE));
+    }
+
+    void clear()
+    {
+        cache.invalidateAll();
+    }
+
+    /**
+     * The paths of a node together with the state they were derived from. Instances and their paths must not be modified once cached.
+     */
+    static class CachedPaths
+    {
+        private final ParentAssocsInfo parentAssocs;
+        private final List<CachedPaths> parents;
+        private final NodeRef rootNodeRef;
+        private final List<Path> paths;
+
+        CachedPaths(ParentAssocsInfo parentAssocs, List<CachedPaths> parents, NodeRef rootNodeRef, List<Path> paths)
+        {
+            this.parentAssocs = parentAssocs;
+            this.parents = parents;
+            this.rootNodeRef = rootNodeRef;
+            this.paths = paths;
+        }
+
+        /**
+         * @return the parent associations of the node when the paths were built
+         */
+        ParentAssocsInfo getParentAssocs()
+        {
+            return parentAssocs;
+        }
+
+        /**
+         * @return the entries of the parents followed, in parent association order
+         */
+        List<CachedPaths> getParents()
+        {
+            return parents;
+        }
+
+        /**
+         * @return the root node of the node's store
+         */
+        NodeRef getRootNodeRef()
+        {
+            return rootNodeRef;
+        }
+
+        List<Path> getPaths()
+        {
+            return paths;
+        }
+    }
+}
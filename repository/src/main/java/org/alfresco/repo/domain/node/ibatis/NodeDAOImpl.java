@@ -109,8 +109,10 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
     private static final String SELECT_PROPERTIES_BY_ACTUAL_TYPE = "alfresco.node.select_PropertiesByActualType";
     private static final String SELECT_NODE_ASPECTS = "alfresco.node.select_NodeAspects";
     private static final String INSERT_NODE_PROPERTY = "alfresco.node.insert_NodeProperty";
+    private static final String INSERT_NODE_PROPERTIES = "alfresco.node.insert_NodeProperties";
     private static final String UPDATE_PRIMARY_CHILDREN_SHARED_ACL = "alfresco.node.update.update_PrimaryChildrenSharedAcl";
     private static final String INSERT_NODE_ASPECT = "alfresco.node.insert_NodeAspect";
+    private static final String INSERT_NODE_ASPECTS = "alfresco.node.insert_NodeAspects";
     private static final String DELETE_NODE_ASPECTS = "alfresco.node.delete_NodeAspects";
     private static final String DELETE_NODE_PROPERTIES = "alfresco.node.delete_NodeProperties";
     private static final String SELECT_NODE_MIN_ID = "alfresco.node.select_NodeMinId";
@@ -177,6 +179,10 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
     private static final String SELECT_TXNS_UNUSED_BY_TXN_COMMIT_TIME = "alfresco.node.select.select_Txns_UnusedByTxnCommitTime";
     private static final String DELETE_TXNS_UNUSED_BY_ID = "alfresco.node.delete_Txns_UnusedById";
 
+    /** 12 bind parameters per property row; SQL Server allows up to 2100 per statement */
+    private static final int NODE_PROPERTY_ROWS_PER_INSERT = 100;
+    private static final int NODE_ASPECT_ROWS_PER_INSERT = 500;
+
     protected QNameDAO qnameDAO;
     protected DictionaryService dictionaryService;
 
@@ -703,6 +709,17 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
         }
     }
 
+    @Override
+    protected void insertNodeProperties(Map<Long, Map<NodePropertyKey, NodePropertyValue>> persistablePropsByNodeId)
+    {
+        List<NodePropertyEntity> rows = new ArrayList<NodePropertyEntity>(persistablePropsByNodeId.size() * 8);
+        for (Map.Entry<Long, Map<NodePropertyKey, NodePropertyValue>> entry : persistablePropsByNodeId.entrySet())
+        {
+            rows.addAll(makePersistentRows(entry.getKey(), entry.getValue()));
+        }
+        insertRows(INSERT_NODE_PROPERTIES, rows, NODE_PROPERTY_ROWS_PER_INSERT);
+    }
+
     @Override
     protected Map<NodeVersionKey, Set<QName>> selectNodeAspects(Set<Long> nodeIds)
     {
@@ -741,6 +758,36 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
         template.insert(INSERT_NODE_ASPECT, aspectParameters);
     }
 
+    @Override
+    protected void insertNodeAspects(Map<Long, Set<Long>> qnameIdsByNodeId)
+    {
+        List<Map<String, Long>> rows = new ArrayList<Map<String, Long>>(qnameIdsByNodeId.size() * 4);
+        for (Map.Entry<Long, Set<Long>> entry : qnameIdsByNodeId.entrySet())
+        {
+            for (Long qnameId : entry.getValue())
+            {
+                Map<String, Long> aspectParameters = new HashMap<String, Long>(5);
+                aspectParameters.put("nodeId", entry.getKey());
+                aspectParameters.put("qnameId", qnameId);
+                rows.add(aspectParameters);
+            }
+        }
+        insertRows(INSERT_NODE_ASPECTS, rows, NODE_ASPECT_ROWS_PER_INSERT);
+    }
+
+    /**
+     * Write rows using multi-row inserts, keeping each statement under the bind parameter limits of the databases.
+     */
+    private void insertRows(String statement, List<?> rows, int rowsPerInsert)
+    {
+        for (int i = 0; i < rows.size(); i += rowsPerInsert)
+        {
+            Map<String, Object> params = new HashMap<String, Object>(3);
+            params.put("rows", rows.subList(i, Math.min(i + rowsPerInsert, rows.size())));
+            template.insert(statement, params);
+        }
+    }
+
     @Override
     protected int deleteNodeAspects(Long nodeId, Set<Long> qnameIds)
     {
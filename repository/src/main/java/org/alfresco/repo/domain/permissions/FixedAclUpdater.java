@@ -102,6 +102,7 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
     private boolean forceSharedACL = false;
     private int maxItems = DEFAULT_MAX_ITEMS;
     private boolean orderNodes = true;
+    private long nodeIdRangeSize = 0;
 
     private ClassPolicyDelegate<OnInheritPermissionsDisabled> onInheritPermissionsDisabledDelegate;
     private PolicyComponent policyComponent;
@@ -153,6 +154,23 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
         this.orderNodes = orderNodes;
     }
 
+    /**
+     * @param nodeIdRangeSize
+     *            the range of node ids searched by each query for pending nodes when the nodes are ordered, so that each query only orders the nodes of one range. Zero or less searches all the remaining nodes in each query.
+     */
+    public void setNodeIdRangeSize(long nodeIdRangeSize)
+    {
+        this.nodeIdRangeSize = nodeIdRangeSize;
+    }
+
+    /**
+     * @return the range of node ids searched by each query for pending nodes, or zero or less if each query searches all the remaining nodes
+     */
+    public long getNodeIdRangeSize()
+    {
+        return nodeIdRangeSize;
+    }
+
     public void setLockTimeToLive(long lockTimeToLive)
     {
         this.lockTimeToLive = lockTimeToLive;
@@ -197,6 +215,7 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
         private Set<QName> aspects;
         private int workSize;
         private GetNodesWithAspectCallback getNodesCallback;
+        private long maxNodeId;
 
         GetNodesWithAspects(Set<QName> aspects)
         {
@@ -204,6 +223,22 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
 
             this.getNodesCallback = new GetNodesWithAspectCallback();
             this.workSize = countNodesWithAspects();
+            if (orderNodes && nodeIdRangeSize > 0)
+            {
+                this.maxNodeId = getMaxNodeId();
+            }
+        }
+
+        private long getMaxNodeId()
+        {
+            return transactionService.getRetryingTransactionHelper()
+                    .doInTransaction(new RetryingTransactionCallback<Long>() {
+                        @Override
+                        public Long execute() throws Throwable
+                        {
+                            return nodeDAO.getMaxNodeId();
+                        }
+                    }, true, true);
         }
 
         int getWorkSize()
@@ -219,15 +254,53 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
                         public List<NodeRef> execute() throws Throwable
                         {
                             getNodesCallback.init();
-                            nodeDAO.getNodesWithAspects(aspects, getNodesCallback.getMinNodeId(), null, orderNodes, maxItemBatchSize, getNodesCallback);
-                            getNodesCallback.done();
-
-                            return getNodesCallback.getNodes();
+                            if (orderNodes && nodeIdRangeSize > 0)
+                            {
+                                getNodesInRanges();
+                            }
+                            else
+                            {
+                                nodeDAO.getNodesWithAspects(aspects, getNodesCallback.getMinNodeId(), null, orderNodes, maxItemBatchSize, getNodesCallback);
+                                getNodesCallback.done();
+                            }
+
+                            // Load the batch in bulk rather than node by node in the workers
+                            nodeDAO.cacheNodesById(getNodesCallback.getNodeIds());
+                            return new ArrayList<>(getNodesCallback.getNodes());
                         }
                     }, false, true);
             return nodes;
         }
 
+        /**
+         * Fills the batch by walking the node ids a range at a time, so that the ordering is only applied to the nodes of one range.
+         */
+        private void getNodesInRanges()
+        {
+            while (getNodesCallback.getNodes().size() < maxItemBatchSize)
+            {
+                long minNodeId = getNodesCallback.getMinNodeId();
+                if (minNodeId > maxNodeId)
+                {
+                    // Pick up any nodes created since the run started
+                    long currentMaxNodeId = nodeDAO.getMaxNodeId();
+                    if (currentMaxNodeId <= maxNodeId)
+                    {
+                        return;
+                    }
+                    maxNodeId = currentMaxNodeId;
+                }
+                long rangeEnd = minNodeId + nodeIdRangeSize;
+                nodeDAO.getNodesWithAspects(aspects, minNodeId, rangeEnd, true, maxItemBatchSize, getNodesCallback);
+                if (getNodesCallback.getNodes().size() < maxItemBatchSize)
+                {
+                    // The batch is not full, so there are no more nodes in this range
+                    getNodesCallback.rangeDone(rangeEnd);
+                }
+                getNodesCallback.done();
+            }
+        }
+
         int countNodesWithAspects()
         {
             if (maxItems < DEFAULT_MAX_ITEMS)
@@ -406,12 +479,22 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
     class GetNodesWithAspectCallback implements NodeRefQueryCallback
     {
         private List<NodeRef> nodes = new ArrayList<>();
+        private List<Long> nodeIds = new ArrayList<>();
         private long minNodeId;
         private long maxNodeId;
 
         void init()
         {
             nodes.clear();
+            nodeIds.clear();
+        }
+
+        void rangeDone(long rangeEnd)
+        {
+            if (rangeEnd - 1 > maxNodeId)
+            {
+                maxNodeId = rangeEnd - 1;
+            }
         }
 
         void done()
@@ -425,6 +508,7 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
             if (nodes.size() < maxItemBatchSize)
             {
                 nodes.add(nodePair.getSecond());
+                nodeIds.add(nodePair.getFirst());
                 if (nodePair.getFirst() > maxNodeId)
                 {
                     maxNodeId = nodePair.getFirst();
@@ -443,6 +527,11 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
         {
             return nodes;
         }
+
+        List<Long> getNodeIds()
+        {
+            return nodeIds;
+        }
     }
 
     private class CountNodesWithAspectCallback implements NodeRefQueryCallback
@@ -494,7 +583,7 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
 
         try
         {
-            log.info("Running FixedAclUpdater. Max Items: " + maxItems + ", Impose order: " + orderNodes);
+            log.info("Running FixedAclUpdater. Max Items: " + maxItems + ", Impose order: " + orderNodes + ", Node id range: " + nodeIdRangeSize);
             lockToken = jobLockService.getLock(LOCK_Q_NAME, lockTimeToLive, 0, 1);
             jobLockService.refreshLock(lockToken, LOCK_Q_NAME, lockRefreshTime, jobLockRefreshCallback);
 
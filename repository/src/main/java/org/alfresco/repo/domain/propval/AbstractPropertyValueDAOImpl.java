@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.Supplier;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -137,6 +138,11 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
 
     private SimpleCache<CachePucKey, PropertyUniqueContextEntity> propertyUniqueContextCache; // cluster-aware
 
+    private int inFlightLockStripes = 64;
+    private long inFlightWaitMs = 2000L;
+    private InFlightValueCreations stringValueCreations;
+    private InFlightValueCreations propertyValueCreations;
+
     /**
      * Flag to throw exception if type of the key doesn't guarantee uniqueness, @see MNT-11895
      */
@@ -150,6 +156,31 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
         this.uniquenessCheckEnabled = uniquenessCheckEnabled;
     }
 
+    /**
+     * Set the number of locks shared by the shared values being created (default 64)
+     */
+    public void setInFlightLockStripes(int inFlightLockStripes)
+    {
+        this.inFlightLockStripes = inFlightLockStripes;
+        initInFlightCreations();
+    }
+
+    /**
+     * Set the longest time to wait for another transaction creating the same shared value (default 2s)
+     */
+    public void setInFlightWaitMs(long inFlightWaitMs)
+    {
+        this.inFlightWaitMs = inFlightWaitMs;
+        initInFlightCreations();
+    }
+
+    private void initInFlightCreations()
+    {
+        // String values are created while creating property values, so each needs its own locks
+        this.stringValueCreations = new InFlightValueCreations(inFlightLockStripes, inFlightWaitMs);
+        this.propertyValueCreations = new InFlightValueCreations(inFlightLockStripes, inFlightWaitMs);
+    }
+
     /**
      * Set the cache to use for unique property lookups
      */
@@ -183,6 +214,8 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
         this.propertyCache = new EntityLookupCache<Long, Serializable, Serializable>(propertyCallback);
 
         this.propertyUniqueContextCache = (SimpleCache<CachePucKey, PropertyUniqueContextEntity>) new NullCache();
+
+        initInFlightCreations();
     }
 
     /**
@@ -571,10 +604,15 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
             return getPropertyStringCaseSensitiveSearchParameters(value);
         }
 
-        public Pair<Long, String> createValue(String value)
+        public Pair<Long, String> createValue(final String value)
         {
-            Long key = createStringValue(value);
-            return new Pair<Long, String>(key, value);
+            return stringValueCreations.findOrCreate(
+                    getValueKey(value),
+                    () -> findByValue(value),
+                    () -> createWithSavepoint(
+                            "createStringValue",
+                            () -> new Pair<Long, String>(createStringValue(value), value),
+                            () -> findByValue(value)));
         }
 
         public Pair<Long, String> findByKey(Long key)
@@ -823,6 +861,61 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
         return (Pair<Long, Serializable>) entityPair;
     }
 
+    public List<Pair<Long, Serializable>> getOrCreatePropertyValues(List<Serializable> values)
+    {
+        prefetchPropertyValues(values);
+        List<Pair<Long, Serializable>> entityPairs = new ArrayList<Pair<Long, Serializable>>(values.size());
+        for (Serializable value : values)
+        {
+            entityPairs.add(getOrCreatePropertyValue(value));
+        }
+        return entityPairs;
+    }
+
+    /**
+     * Look up all the existing values in one query so that they are cached for the individual calls that follow
+     */
+    private void prefetchPropertyValues(List<Serializable> values)
+    {
+        if (values.size() < 2)
+        {
+            return;
+        }
+        propertyValueCache.getByValues(values);
+    }
+
+    /**
+     * Create a shared value within a savepoint. If it fails, typically because another transaction committed the same value first, the savepoint is rolled back and the value that is now there is returned.
+     */
+    private <T> T createWithSavepoint(String name, Supplier<T> creator, Supplier<T> finder)
+    {
+        if (controlDAO == null)
+        {
+            return creator.get();
+        }
+        Savepoint savepoint = controlDAO.createSavepoint(name);
+        try
+        {
+            T value = creator.get();
+            controlDAO.releaseSavepoint(savepoint);
+            return value;
+        }
+        catch (RuntimeException e)
+        {
+            controlDAO.rollbackToSavepoint(savepoint);
+            T value = finder.get();
+            if (value == null)
+            {
+                throw e;
+            }
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Found shared value created concurrently by another transaction: " + value);
+            }
+            return value;
+        }
+    }
+
     /**
      * Callback for <b>alf_prop_value</b> DAO.
      */
@@ -886,11 +979,19 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
             }
         }
 
-        public Pair<Long, Serializable> createValue(Serializable value)
+        public Pair<Long, Serializable> createValue(final Serializable value)
         {
-            PropertyValueEntity entity = createPropertyValue(value);
-            // Done
-            return new Pair<Long, Serializable>(entity.getId(), value);
+            Supplier<Pair<Long, Serializable>> creator = () -> new Pair<Long, Serializable>(createPropertyValue(value).getId(), value);
+            Serializable valueKey = getValueKey(value);
+            if (valueKey == null)
+            {
+                // Nothing to look it up by, so it is never shared
+                return creator.get();
+            }
+            return propertyValueCreations.findOrCreate(
+                    new Pair<String, Serializable>(value.getClass().getName(), valueKey),
+                    () -> findByValue(value),
+                    () -> createWithSavepoint("createPropertyValue", creator, () -> findByValue(value)));
         }
 
         public Pair<Long, Serializable> findByKey(Long key)
@@ -914,7 +1015,13 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
         @Override
         public List<Pair<Long, Serializable>> findByValues(List<Serializable> values)
         {
-            throw new UnsupportedOperationException("Batch lookup not supported for property values.");
+            List<PropertyValueEntity> entities = findPropertyValuesByValues(values);
+            List<Pair<Long, Serializable>> results = new ArrayList<Pair<Long, Serializable>>(entities.size());
+            for (PropertyValueEntity entity : entities)
+            {
+                results.add(convertEntityToPair(entity));
+            }
+            return results;
         }
 
         /**
@@ -933,6 +1040,11 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
 
     protected abstract PropertyValueEntity findPropertyValueByValue(Serializable value);
 
+    /**
+     * Find the property values that exist for the given values, in any order. Values that cannot be searched for, such as serialized values, are left out.
+     */
+    protected abstract List<PropertyValueEntity> findPropertyValuesByValues(List<Serializable> values);
+
     protected abstract PropertyValueEntity createPropertyValue(Serializable value);
 
     // ================================
@@ -991,7 +1103,7 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
         {
             // We will need a new root
             Long rootPropId = createPropertyRoot();
-            createPropertyImpl(rootPropId, 0L, 0L, null, value);
+            createPropertyLinks(rootPropId, value);
             // Done
             if (logger.isDebugEnabled())
             {
@@ -1044,7 +1156,7 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
             // Remove all links using the root
             deletePropertyLinks(key);
             // Create the new properties and update the cache
-            createPropertyImpl(key, 0L, 0L, null, value);
+            createPropertyLinks(key, value);
             // Update the property root to detect concurrent modification
             updatePropertyRoot(entity);
             // Done
@@ -1073,9 +1185,55 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
         }
     }
 
+    /**
+     * Create all the links for a property value, resolving the values it contains up front and inserting the links together
+     */
+    private void createPropertyLinks(Long rootPropId, Serializable value)
+    {
+        List<Serializable> values = new ArrayList<Serializable>();
+        collectPropertyValues(value, values);
+        prefetchPropertyValues(values);
+
+        List<PropertyLinkEntity> links = new ArrayList<PropertyLinkEntity>(values.size());
+        createPropertyImpl(rootPropId, 0L, 0L, null, value, links);
+        createPropertyLinks(links);
+    }
+
+    /**
+     * Collect the values that {@link #createPropertyImpl(Long, long, long, Long, Serializable, List)} will look up
+     */
+    @SuppressWarnings("unchecked")
+    private void collectPropertyValues(Serializable value, List<Serializable> values)
+    {
+        Serializable emptyInstance = (value instanceof Map<?, ?> || value instanceof Collection<?>) ? constructEmptyContainer(value.getClass()) : null;
+        if (emptyInstance == null)
+        {
+            values.add(value);
+        }
+        else if (value instanceof Map<?, ?>)
+        {
+            values.add(emptyInstance);
+            for (Map.Entry<Serializable, Serializable> entry : ((Map<Serializable, Serializable>) value).entrySet())
+            {
+                values.add(entry.getKey());
+                collectPropertyValues(entry.getValue(), values);
+            }
+        }
+        else
+        {
+            values.add(emptyInstance);
+            for (Serializable collectionValue : (Collection<Serializable>) value)
+            {
+                collectPropertyValues(collectionValue, values);
+            }
+        }
+    }
+
     /**
      * @param propIndex
      *            a unique index within the context of the current property root
+     * @param links
+     *            the list to add the links to
      */
     @SuppressWarnings("unchecked")
     private long createPropertyImpl(
@@ -1083,7 +1241,8 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
             long propIndex,
             long containedIn,
             Long keyPropId,
-            Serializable value)
+            Serializable value,
+            List<PropertyLinkEntity> links)
     {
         // Keep track of the index for this property. It gets used later when making the link entry.
         long thisPropIndex = propIndex;
@@ -1121,7 +1280,8 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
                             propIndex + 1L,
                             thisPropIndex,
                             mapKeyId,
-                            mapValue);
+                            mapValue,
+                            links);
                 }
             }
         }
@@ -1148,7 +1308,8 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
                             propIndex + 1L,
                             thisPropIndex,
                             null,
-                            collectionValue);
+                            collectionValue,
+                            links);
                 }
             }
         }
@@ -1164,7 +1325,13 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
             // If the key matches the value then it is the root
             keyPropId = valuePropId;
         }
-        createPropertyLink(rootPropId, thisPropIndex, containedIn, keyPropId, valuePropId);
+        PropertyLinkEntity link = new PropertyLinkEntity();
+        link.setRootPropId(rootPropId);
+        link.setPropIndex(thisPropIndex);
+        link.setContainedIn(containedIn);
+        link.setKeyPropId(keyPropId);
+        link.setValuePropId(valuePropId);
+        links.add(link);
 
         // Done
         return propIndex;
@@ -1223,25 +1390,12 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
     protected abstract void deletePropertyRoot(Long id);
 
     /**
-     * Create an entry for the map or collection link.
+     * Create the entries for the map or collection links of a property. Each link holds the root (entry-point) property ID, the property number within the root property, the property that contains the current value, the map key entity ID or collection position count and the ID of the entity storing the value (may be another map or collection).
      * 
-     * @param rootPropId
-     *            the root (entry-point) property ID
-     * @param propIndex
-     *            the property number within the root property
-     * @param containedIn
-     *            the property that contains the current value
-     * @param keyPropId
-     *            the map key entity ID or collection position count
-     * @param valuePropId
-     *            the ID of the entity storing the value (may be another map or collection)
+     * @param links
+     *            the links to create
      */
-    protected abstract void createPropertyLink(
-            Long rootPropId,
-            Long propIndex,
-            Long containedIn,
-            Long keyPropId,
-            Long valuePropId);
+    protected abstract void createPropertyLinks(List<PropertyLinkEntity> links);
 
     /**
      * Remove all property links for a given property root.
@@ -1751,6 +1905,73 @@ public abstract class AbstractPropertyValueDAOImpl implements PropertyValueDAO
         return result;
     }
 
+    // ================================
+    // Incremental cleanup
+    // ================================
+
+    public Pair<Integer, Integer> cleanupUnusedValues(CleanupTable table, long fromId, long toId)
+    {
+        int scanned = countCleanupRows(table, fromId, toId);
+        if (scanned == 0)
+        {
+            return new Pair<Integer, Integer>(0, 0);
+        }
+        List<Long> ids = findUnusedValueIds(table, fromId, toId);
+        if (ids.isEmpty())
+        {
+            return new Pair<Integer, Integer>(scanned, 0);
+        }
+        int deleted = deleteUnusedValues(table, ids);
+        // Some of the rows might have been kept, but none of them can be used from the caches any more
+        removeCachedValues(table, ids);
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Deleted " + deleted + " of " + scanned + " rows from " + table.getTableName() + " with IDs in (" + fromId + ", " + toId + "]");
+        }
+        return new Pair<Integer, Integer>(scanned, deleted);
+    }
+
+    private void removeCachedValues(CleanupTable table, List<Long> ids)
+    {
+        switch (table)
+        {
+        case PROP_ROOT:
+            propertyCache.removeByKeys(ids);
+            break;
+        case PROP_VALUE:
+            propertyValueCache.removeByKeys(ids);
+            break;
+        case STRING_VALUE:
+            propertyStringValueCache.removeByKeys(ids);
+            break;
+        case SERIALIZABLE_VALUE:
+            propertySerializableValueCache.removeByKeys(ids);
+            break;
+        case DOUBLE_VALUE:
+            propertyDoubleValueCache.removeByKeys(ids);
+            break;
+        default:
+            throw new IllegalStateException("Unhandled CleanupTable value: " + table);
+        }
+    }
+
+    /**
+     * @return Returns the number of rows in the table with IDs in the range
+     */
+    protected abstract int countCleanupRows(CleanupTable table, long fromId, long toId);
+
+    /**
+     * @return Returns the IDs in the range of the rows that nothing references
+     */
+    protected abstract List<Long> findUnusedValueIds(CleanupTable table, long fromId, long toId);
+
+    /**
+     * Delete the given rows, keeping any that have been referenced since they were found
+     * 
+     * @return Returns the number of rows deleted
+     */
+    protected abstract int deleteUnusedValues(CleanupTable table, List<Long> ids);
+
     protected void clearCaches()
     {
         propertyClassCache.clear();
@@ -0,0 +1,263 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.propval;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
+import org.alfresco.repo.transaction.TransactionListenerAdapter;
+
+/**
+ * Keeps concurrent transactions on this server from creating the same shared value at the same time.
+ * <p>
+ * Values such as <b>alf_prop_string_value</b> rows are shared by everything that uses them and are protected by unique constraints. When two transactions miss the same value and both insert it, one of them fails on the constraint and has to be retried. Here, the first transaction to create a value registers it as in flight until it commits or rolls back; other transactions wanting the same value wait for that and then find the committed row instead of inserting their own. A value is claimed under a striped lock, so only one thread at a time can register it; the lock is released before the value is looked up or created, so the database work of one value never holds up others that share the stripe.
+ * <p>
+ * Waits are bounded. A thread that times out goes ahead and creates the value itself, leaving the database constraints and the caller's savepoint to resolve any conflict. This only deduplicates within one server; other cluster members still rely on the constraints.
+ *
+ * @since 26.3
+ */
+public class InFlightValueCreations
+{
+    private static final Log logger = LogFactory.getLog(InFlightValueCreations.class);
+
+    private final String resourceKey = InFlightValueCreations.class.getName() + ".created." + System.identityHashCode(this);
+    private final ReentrantLock[] locks;
+    private final long waitMs;
+    private final ConcurrentMap<Serializable, CountDownLatch> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param lockStripes
+     *            the number of locks shared by the value keys
+     * @param waitMs
+     *            the longest time to wait for a lock or for another transaction creating the same value
+     */
+    public InFlightValueCreations(int lockStripes, long waitMs)
+    {
+        this.locks = new ReentrantLock[Math.max(1, lockStripes)];
+        for (int i = 0; i < locks.length; i++)
+        {
+            locks[i] = new ReentrantLock();
+        }
+        this.waitMs = waitMs;
+    }
+
+    /**
+     * Find a value or, if it does not exist and no other transaction is creating it, create it
+     *
+     * @param key
+     *            a key that identifies the value
+     * @param finder
+     *            looks the value up in the database after waiting for another transaction, returning <tt>null</tt> if it is not there
+     * @param creator
+     *            creates the value, resolving a concurrent insert of the same value itself
+     * @return the found or created value
+     */
+    public <T> T findOrCreate(Serializable key, Supplier<T> finder, Supplier<T> creator)
+    {
+        Map<Serializable, CountDownLatch> created = getTransactionCreations();
+        if (created == null)
+        {
+            // Nothing can be held in flight without a transaction to release it
+            return creator.get();
+        }
+        boolean waited = false;
+        while (true)
+        {
+            CountDownLatch latch;
+            boolean claimed = false;
+            ReentrantLock lock = locks[Math.floorMod(key.hashCode(), locks.length)];
+            if (!tryLock(lock))
+            {
+                return creator.get();
+            }
+            try
+            {
+                latch = inFlight.get(key);
+                if (latch == null)
+                {
+                    // Claim the value so that other transactions wait for this one
+                    latch = new CountDownLatch(1);
+                    inFlight.put(key, latch);
+                    created.put(key, latch);
+                    claimed = true;
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+            if (claimed || latch == created.get(key))
+            {
+                // The value belongs to this transaction: go to the database without holding the lock
+                return findOrCreateClaimed(key, latch, claimed, waited ? finder : null, creator, created);
+            }
+            // Another transaction is creating it, so wait for that to finish and look again
+            if (!await(latch))
+            {
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("Timed out waiting for another transaction to create value " + key);
+                }
+                return creator.get();
+            }
+            waited = true;
+        }
+    }
+
+    /**
+     * Find or create a value that the current transaction holds in flight. A claim made by this call is given up again if the value is found or if it could not be created, so that other transactions don't wait for it.
+     *
+     * @param finder
+     *            looks the value up in the database, or <tt>null</tt> to create it straight away
+     */
+    private <T> T findOrCreateClaimed(
+            Serializable key,
+            CountDownLatch latch,
+            boolean claimed,
+            Supplier<T> finder,
+            Supplier<T> creator,
+            Map<Serializable, CountDownLatch> created)
+    {
+        boolean keepClaim = false;
+        try
+        {
+            if (finder != null)
+            {
+                // The other transaction has finished, so look for what it committed
+                T value = finder.get();
+                if (value != null)
+                {
+                    return value;
+                }
+            }
+            T value = creator.get();
+            keepClaim = true;
+            return value;
+        }
+        finally
+        {
+            if (claimed && !keepClaim)
+            {
+                created.remove(key);
+                inFlight.remove(key, latch);
+                latch.countDown();
+            }
+        }
+    }
+
+    /**
+     * @return the number of values that are currently held by uncommitted transactions
+     */
+    public int getInFlightCount()
+    {
+        return inFlight.size();
+    }
+
+    /**
+     * Get the values created by the current transaction, binding the listener that releases them on the first call
+     *
+     * @return the values created by the current transaction, or <tt>null</tt> if there is no transaction
+     */
+    protected Map<Serializable, CountDownLatch> getTransactionCreations()
+    {
+        if (AlfrescoTransactionSupport.getTransactionReadState() == TxnReadState.TXN_NONE)
+        {
+            return null;
+        }
+        Map<Serializable, CountDownLatch> created = AlfrescoTransactionSupport.getResource(resourceKey);
+        if (created == null)
+        {
+            final Map<Serializable, CountDownLatch> createdInTxn = new HashMap<>();
+            created = createdInTxn;
+            AlfrescoTransactionSupport.bindResource(resourceKey, created);
+            AlfrescoTransactionSupport.bindListener(new TransactionListenerAdapter() {
+                @Override
+                public void afterCommit()
+                {
+                    release(createdInTxn);
+                }
+
+                @Override
+                public void afterRollback()
+                {
+                    release(createdInTxn);
+                }
+            });
+        }
+        return created;
+    }
+
+    /**
+     * Release the values created by a transaction that has completed
+     */
+    protected void release(Map<Serializable, CountDownLatch> created)
+    {
+        for (Map.Entry<Serializable, CountDownLatch> entry : created.entrySet())
+        {
+            inFlight.remove(entry.getKey(), entry.getValue());
+            entry.getValue().countDown();
+        }
+        created.clear();
+    }
+
+    private boolean tryLock(ReentrantLock lock)
+    {
+        try
+        {
+            return lock.tryLock(waitMs, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean await(CountDownLatch latch)
+    {
+        try
+        {
+            return latch.await(waitMs, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
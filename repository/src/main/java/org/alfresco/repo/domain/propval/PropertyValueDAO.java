@@ -239,6 +239,17 @@ public interface PropertyValueDAO
      */
     Pair<Long, Serializable> getOrCreatePropertyValue(Serializable value);
 
+    /**
+     * <b>alf_prop_value</b> accessor: find or create properties for a list of values. The existing values are looked up together rather than one at a time; otherwise this behaves like {@link #getOrCreatePropertyValue(Serializable)}.
+     * 
+     * @param values
+     *            the values to find the IDs for (may contain <tt>null</tt>)
+     * @return Returns the ID-value pairs in the same order as the values given
+     * 
+     * @since 26.3
+     */
+    List<Pair<Long, Serializable>> getOrCreatePropertyValues(List<Serializable> values);
+
     // ================================
     // 'alf_prop_root' accessors
     // ================================
@@ -428,4 +439,56 @@ public interface PropertyValueDAO
     void cleanupUnusedValuesV2();
 
     void cleanupUnusedValuesV3();
+
+    /**
+     * The <b>alf_prop_XXX</b> tables that can be cleaned one ID range at a time, in the order in which they must be cleaned: removing roots frees values and removing values frees the rows that hold them.
+     * 
+     * @since 26.3
+     */
+    enum CleanupTable
+    {
+        PROP_ROOT("alf_prop_root"),
+        PROP_VALUE("alf_prop_value"),
+        STRING_VALUE("alf_prop_string_value"),
+        SERIALIZABLE_VALUE("alf_prop_serializable_value"),
+        DOUBLE_VALUE("alf_prop_double_value");
+
+        private final String tableName;
+
+        CleanupTable(String tableName)
+        {
+            this.tableName = tableName;
+        }
+
+        public String getTableName()
+        {
+            return tableName;
+        }
+    }
+
+    /**
+     * Get the highest ID currently in a table that can be cleaned.
+     * 
+     * @param table
+     *            the table to check
+     * @return Returns the highest ID or <tt>0</tt> if the table is empty
+     * 
+     * @since 26.3
+     */
+    long getMaxCleanupId(CleanupTable table);
+
+    /**
+     * Remove the orphaned rows of a table within an ID range. Each row is checked for references again as it is deleted, so rows that are referenced concurrently are kept.
+     * 
+     * @param table
+     *            the table to clean
+     * @param fromId
+     *            the lower bound of the range (exclusive)
+     * @param toId
+     *            the upper bound of the range (inclusive)
+     * @return Returns the number of rows in the range and the number of those rows that were deleted
+     * 
+     * @since 26.3
+     */
+    Pair<Integer, Integer> cleanupUnusedValues(CleanupTable table, long fromId, long toId);
 }
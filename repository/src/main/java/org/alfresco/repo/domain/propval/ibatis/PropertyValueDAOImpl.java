@@ -26,8 +26,11 @@
 package org.alfresco.repo.domain.propval.ibatis;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
@@ -89,6 +92,7 @@ public class PropertyValueDAOImpl extends AbstractPropertyValueDAOImpl
     private static final String SELECT_PROPERTY_VALUE_BY_LOCAL_VALUE = "alfresco.propval.select_PropertyValueByLocalValue";
     private static final String SELECT_PROPERTY_VALUE_BY_DOUBLE_VALUE = "alfresco.propval.select_PropertyValueByDoubleValue";
     private static final String SELECT_PROPERTY_VALUE_BY_STRING_VALUE = "alfresco.propval.select_PropertyValueByStringValue";
+    private static final String SELECT_PROPERTY_VALUES_BY_STRING_VALUES = "alfresco.propval.select_PropertyValuesByStringValues";
     private static final String INSERT_PROPERTY_VALUE = "alfresco.propval.insert.insert_PropertyValue";
 
     private static final String SELECT_PROPERTY_BY_ID = "alfresco.propval.select_PropertyById";
@@ -105,9 +109,26 @@ public class PropertyValueDAOImpl extends AbstractPropertyValueDAOImpl
     private static final String DELETE_PROPERTY_UNIQUE_CTX_BY_ID = "alfresco.propval.delete_PropertyUniqueContextById";
     private static final String DELETE_PROPERTY_UNIQUE_CTX_BY_VALUES = "alfresco.propval.delete_PropertyUniqueContextByValues";
 
-    private static final String INSERT_PROPERTY_LINK = "alfresco.propval.insert_PropertyLink";
+    private static final String INSERT_PROPERTY_LINKS = "alfresco.propval.insert_PropertyLinks";
     private static final String DELETE_PROPERTY_LINKS_BY_ROOT_ID = "alfresco.propval.delete_PropertyLinksByRootId";
 
+    private static final String SELECT_CLEANUP_MAX_ID = "alfresco.propval.select_CleanupMaxId";
+    private static final String SELECT_CLEANUP_ROW_COUNT = "alfresco.propval.select_CleanupRowCount";
+    private static final String SELECT_UNUSED_PROPERTY_ROOT_IDS = "alfresco.propval.select_UnusedPropertyRootIds";
+    private static final String SELECT_UNUSED_PROPERTY_VALUE_IDS = "alfresco.propval.select_UnusedPropertyValueIds";
+    private static final String SELECT_UNUSED_PROPERTY_STRING_VALUE_IDS = "alfresco.propval.select_UnusedPropertyStringValueIds";
+    private static final String SELECT_UNUSED_PROPERTY_SERIALIZABLE_VALUE_IDS = "alfresco.propval.select_UnusedPropertySerializableValueIds";
+    private static final String SELECT_UNUSED_PROPERTY_DOUBLE_VALUE_IDS = "alfresco.propval.select_UnusedPropertyDoubleValueIds";
+    private static final String DELETE_UNUSED_PROPERTY_ROOTS = "alfresco.propval.delete_UnusedPropertyRoots";
+    private static final String DELETE_UNUSED_PROPERTY_VALUES = "alfresco.propval.delete_UnusedPropertyValues";
+    private static final String DELETE_UNUSED_PROPERTY_STRING_VALUES = "alfresco.propval.delete_UnusedPropertyStringValues";
+    private static final String DELETE_UNUSED_PROPERTY_SERIALIZABLE_VALUES = "alfresco.propval.delete_UnusedPropertySerializableValues";
+    private static final String DELETE_UNUSED_PROPERTY_DOUBLE_VALUES = "alfresco.propval.delete_UnusedPropertyDoubleValues";
+
+    private static final int PROPERTY_VALUE_VALUES_PER_SELECT = 100;
+    private static final int PROPERTY_LINK_ROWS_PER_INSERT = 500;
+    private static final int UNUSED_VALUE_IDS_PER_DELETE = 1000;
+
     private SqlSessionTemplate template;
 
     private ScriptBundleExecutor scriptExecutor;
@@ -411,6 +432,55 @@ public class PropertyValueDAOImpl extends AbstractPropertyValueDAOImpl
         return result;
     }
 
+    @Override
+    protected List<PropertyValueEntity> findPropertyValuesByValues(List<Serializable> values)
+    {
+        List<PropertyValueEntity> results = new ArrayList<PropertyValueEntity>(values.size());
+        List<PropertyStringQueryEntity> stringQueries = new ArrayList<PropertyStringQueryEntity>(values.size());
+        for (Serializable value : values)
+        {
+            Class<?> clazz = (value == null ? Object.class : value.getClass());
+            Pair<Long, Class<?>> clazzPair = getPropertyClass(clazz);
+            if (clazzPair == null)
+            {
+                // There are no properties of this type
+                continue;
+            }
+            PropertyValueEntity queryEntity = new PropertyValueEntity();
+            queryEntity.setValue(value, converter);
+            switch (queryEntity.getPersistedTypeEnum())
+            {
+            case CONSTRUCTABLE:
+            case ENUM:
+            case STRING:
+                // These are the shared values worth gathering into one query
+                stringQueries.add(new PropertyStringQueryEntity(
+                        queryEntity.getPersistedType(),
+                        clazzPair.getFirst(),
+                        queryEntity.getStringValue()));
+                break;
+            case SERIALIZABLE:
+                // No query
+                break;
+            default:
+                PropertyValueEntity result = findPropertyValueByValue(value);
+                if (result != null)
+                {
+                    results.add(result);
+                }
+            }
+        }
+        for (int i = 0; i < stringQueries.size(); i += PROPERTY_VALUE_VALUES_PER_SELECT)
+        {
+            Map<String, Object> params = new HashMap<String, Object>(3);
+            params.put("values", stringQueries.subList(i, Math.min(i + PROPERTY_VALUE_VALUES_PER_SELECT, stringQueries.size())));
+            List<PropertyValueEntity> rows = template.selectList(SELECT_PROPERTY_VALUES_BY_STRING_VALUES, params);
+            results.addAll(rows);
+        }
+        // Done
+        return results;
+    }
+
     @Override
     protected PropertyValueEntity createPropertyValue(Serializable value)
     {
@@ -684,20 +754,14 @@ public class PropertyValueDAOImpl extends AbstractPropertyValueDAOImpl
     }
 
     @Override
-    protected void createPropertyLink(
-            Long rootPropId,
-            Long propIndex,
-            Long containedIn,
-            Long keyPropId,
-            Long valuePropId)
+    protected void createPropertyLinks(List<PropertyLinkEntity> links)
     {
-        PropertyLinkEntity insertEntity = new PropertyLinkEntity();
-        insertEntity.setRootPropId(rootPropId);
-        insertEntity.setPropIndex(propIndex);
-        insertEntity.setContainedIn(containedIn);
-        insertEntity.setKeyPropId(keyPropId);
-        insertEntity.setValuePropId(valuePropId);
-        template.insert(INSERT_PROPERTY_LINK, insertEntity);
+        for (int i = 0; i < links.size(); i += PROPERTY_LINK_ROWS_PER_INSERT)
+        {
+            Map<String, Object> params = new HashMap<String, Object>(3);
+            params.put("rows", links.subList(i, Math.min(i + PROPERTY_LINK_ROWS_PER_INSERT, links.size())));
+            template.insert(INSERT_PROPERTY_LINKS, params);
+        }
         // Done
     }
 
@@ -784,4 +848,89 @@ public class PropertyValueDAOImpl extends AbstractPropertyValueDAOImpl
             clearCaches();
         }
     }
+
+    @Override
+    public long getMaxCleanupId(CleanupTable table)
+    {
+        Map<String, Object> params = new HashMap<String, Object>(3);
+        params.put("tableName", table.getTableName());
+        Long maxId = template.selectOne(SELECT_CLEANUP_MAX_ID, params);
+        return maxId == null ? 0L : maxId;
+    }
+
+    @Override
+    protected int countCleanupRows(CleanupTable table, long fromId, long toId)
+    {
+        Map<String, Object> params = new HashMap<String, Object>(5);
+        params.put("tableName", table.getTableName());
+        params.put("fromId", fromId);
+        params.put("toId", toId);
+        Integer count = template.selectOne(SELECT_CLEANUP_ROW_COUNT, params);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    protected List<Long> findUnusedValueIds(CleanupTable table, long fromId, long toId)
+    {
+        String query;
+        switch (table)
+        {
+        case PROP_ROOT:
+            query = SELECT_UNUSED_PROPERTY_ROOT_IDS;
+            break;
+        case PROP_VALUE:
+            query = SELECT_UNUSED_PROPERTY_VALUE_IDS;
+            break;
+        case STRING_VALUE:
+            query = SELECT_UNUSED_PROPERTY_STRING_VALUE_IDS;
+            break;
+        case SERIALIZABLE_VALUE:
+            query = SELECT_UNUSED_PROPERTY_SERIALIZABLE_VALUE_IDS;
+            break;
+        case DOUBLE_VALUE:
+            query = SELECT_UNUSED_PROPERTY_DOUBLE_VALUE_IDS;
+            break;
+        default:
+            throw new IllegalStateException("Unhandled CleanupTable value: " + table);
+        }
+        Map<String, Object> params = new HashMap<String, Object>(3);
+        params.put("fromId", fromId);
+        params.put("toId", toId);
+        return template.selectList(query, params);
+    }
+
+    @Override
+    protected int deleteUnusedValues(CleanupTable table, List<Long> ids)
+    {
+        String statement;
+        switch (table)
+        {
+        case PROP_ROOT:
+            // The links are deleted with their root
+            statement = DELETE_UNUSED_PROPERTY_ROOTS;
+            break;
+        case PROP_VALUE:
+            statement = DELETE_UNUSED_PROPERTY_VALUES;
+            break;
+        case STRING_VALUE:
+            statement = DELETE_UNUSED_PROPERTY_STRING_VALUES;
+            break;
+        case SERIALIZABLE_VALUE:
+            statement = DELETE_UNUSED_PROPERTY_SERIALIZABLE_VALUES;
+            break;
+        case DOUBLE_VALUE:
+            statement = DELETE_UNUSED_PROPERTY_DOUBLE_VALUES;
+            break;
+        default:
+            throw new IllegalStateException("Unhandled CleanupTable value: " + table);
+        }
+        int deleted = 0;
+        for (int i = 0; i < ids.size(); i += UNUSED_VALUE_IDS_PER_DELETE)
+        {
+            Map<String, Object> params = new HashMap<String, Object>(3);
+            params.put("ids", ids.subList(i, Math.min(i + UNUSED_VALUE_IDS_PER_DELETE, ids.size())));
+            deleted += template.delete(statement, params);
+        }
+        return deleted;
+    }
 }
@@ -35,14 +35,24 @@ import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.extensions.surf.util.ParameterCheck;
 
+import org.alfresco.repo.cache.CacheInvalidationListener;
+import org.alfresco.repo.cache.CacheKeyHash;
+import org.alfresco.repo.cache.InvalidatingSimpleCache;
 import org.alfresco.repo.cache.SimpleCache;
+import org.alfresco.repo.cache.lookup.CacheRegionKey;
 import org.alfresco.repo.cache.lookup.EntityLookupCache;
 import org.alfresco.repo.cache.lookup.EntityLookupCache.EntityLookupCallbackDAOAdaptor;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
+import org.alfresco.repo.transaction.TransactionalResourceHelper;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.util.Pair;
+import org.alfresco.util.transaction.TransactionListenerAdapter;
 
 /**
  * Abstract implementation of the QName and Namespace DAO interface.
+ * <p>
+ * Besides the entity caches, the DAO keeps immutable {@link IdSnapshotIndex snapshot indexes} of the QNames and namespaces it has resolved, which serve the primitive lookups such as {@link #getQNameById(long)} without boxing or cache lookups. The snapshots are extended lazily, in bulk, as new entities are seen. Entities created or changed by a transaction are only added once it has committed, and renaming or deleting an entity resets the snapshots, both locally and, when the entity cache is an {@link InvalidatingSimpleCache}, on the cluster peers that receive its invalidations.
  * 
  * @author Derek Hulley
  * @since 3.4
@@ -51,6 +61,7 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
 {
     private static final String CACHE_REGION_NAMESPACE = "Namespace";
     private static final String CACHE_REGION_QNAME = "QName";
+    private static final String KEY_TXN_CHANGED_ENTITIES = "AbstractQNameDAOImpl.changedEntities";
 
     /**
      * Cache for the Namespace values:<br/>
@@ -67,6 +78,9 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
      */
     private EntityLookupCache<Long, QName, QName> qnameCache;
 
+    private final IdSnapshotIndex.Publisher<String> namespaceIndex = new IdSnapshotIndex.Publisher<>();
+    private final IdSnapshotIndex.Publisher<QName> qnameIndex = new IdSnapshotIndex.Publisher<>();
+
     /**
      * Default constructor.
      * <p>
@@ -106,6 +120,21 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
                 new QNameCallbackDAO());
     }
 
+    /**
+     * Set the shared cache behind the namespace and QName caches so that the snapshot indexes follow the invalidations it receives from the cluster peers. Only {@link InvalidatingSimpleCache invalidating caches} send such invalidations; any other cache is ignored.
+     * 
+     * @param sharedCache
+     *            the shared entity cache
+     */
+    public void setSharedCache(SimpleCache<?, ?> sharedCache)
+    {
+        if (sharedCache instanceof InvalidatingSimpleCache)
+        {
+            InvalidatingSimpleCache<?, ?> invalidatingCache = (InvalidatingSimpleCache<?, ?>) sharedCache;
+            invalidatingCache.getTransport().addListener(invalidatingCache.getCacheName(), new IndexInvalidationListener());
+        }
+    }
+
     // ================================
     // 'alf_namespace' accessors
     // ================================
@@ -144,9 +173,63 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
         return entityPair;
     }
 
+    @Override
+    public String getNamespaceUriById(long id)
+    {
+        String namespaceUri = namespaceIndex.get().get(id);
+        if (namespaceUri == null)
+        {
+            long generation = namespaceIndex.getGeneration();
+            namespaceUri = getNamespace(Long.valueOf(id)).getSecond();
+            indexNamespace(id, namespaceUri, generation);
+        }
+        return namespaceUri;
+    }
+
+    @Override
+    public long getNamespaceId(String namespaceUri)
+    {
+        if (namespaceUri == null)
+        {
+            throw new IllegalArgumentException("Namespace URI cannot be null");
+        }
+        long id = namespaceIndex.get().getId(namespaceUri);
+        if (id == NO_ID)
+        {
+            long generation = namespaceIndex.getGeneration();
+            Pair<Long, String> entityPair = namespaceCache.getByValue(namespaceUri);
+            if (entityPair == null)
+            {
+                return NO_ID;
+            }
+            id = entityPair.getFirst();
+            indexNamespace(id, entityPair.getSecond(), generation);
+        }
+        return id;
+    }
+
+    @Override
+    public long getOrCreateNamespaceId(String namespaceUri)
+    {
+        if (namespaceUri == null)
+        {
+            throw new IllegalArgumentException("Namespace URI cannot be null");
+        }
+        long id = namespaceIndex.get().getId(namespaceUri);
+        if (id == NO_ID)
+        {
+            long generation = namespaceIndex.getGeneration();
+            Pair<Long, String> entityPair = namespaceCache.getOrCreateByValue(namespaceUri);
+            id = entityPair.getFirst();
+            indexNamespace(id, entityPair.getSecond(), generation);
+        }
+        return id;
+    }
+
     public void updateNamespace(String oldNamespaceUri, String newNamespaceUri)
     {
         ParameterCheck.mandatory("newNamespaceUri", newNamespaceUri);
+        invalidateIndexes(oldNamespaceUri, newNamespaceUri);
 
         Pair<Long, String> oldEntityPair = getNamespace(oldNamespaceUri); // incl. null check
         if (oldEntityPair == null)
@@ -220,6 +303,7 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
 
         public Pair<Long, String> createValue(String uri)
         {
+            recordChangedEntity(uri);
             NamespaceEntity entity = createNamespaceEntity(uri);
             return new Pair<Long, String>(entity.getId(), uri);
         }
@@ -283,6 +367,59 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
         return entityPair;
     }
 
+    @Override
+    public QName getQNameById(long id)
+    {
+        QName qname = qnameIndex.get().get(id);
+        if (qname == null)
+        {
+            long generation = qnameIndex.getGeneration();
+            qname = getQName(Long.valueOf(id)).getSecond();
+            indexQName(id, qname, generation);
+        }
+        return qname;
+    }
+
+    @Override
+    public long getQNameId(QName qname)
+    {
+        if (qname == null)
+        {
+            throw new IllegalArgumentException("QName cannot be null");
+        }
+        long id = qnameIndex.get().getId(qname);
+        if (id == NO_ID)
+        {
+            long generation = qnameIndex.getGeneration();
+            Pair<Long, QName> entityPair = qnameCache.getByValue(qname);
+            if (entityPair == null)
+            {
+                return NO_ID;
+            }
+            id = entityPair.getFirst();
+            indexQName(id, entityPair.getSecond(), generation);
+        }
+        return id;
+    }
+
+    @Override
+    public long getOrCreateQNameId(QName qname)
+    {
+        if (qname == null)
+        {
+            throw new IllegalArgumentException("QName cannot be null");
+        }
+        long id = qnameIndex.get().getId(qname);
+        if (id == NO_ID)
+        {
+            long generation = qnameIndex.getGeneration();
+            Pair<Long, QName> entityPair = qnameCache.getOrCreateByValue(qname);
+            id = entityPair.getFirst();
+            indexQName(id, entityPair.getSecond(), generation);
+        }
+        return id;
+    }
+
     public Pair<Long, QName> updateQName(QName qnameOld, QName qnameNew)
     {
         if (qnameOld == null || qnameNew == null)
@@ -305,6 +442,7 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
             throw new IllegalArgumentException("Cannot rename QName.  QName " + qnameNew + " already exists");
         }
         // Update
+        invalidateIndexes(qnameOld, qnameNew);
         Long qnameId = qnameOldPair.getFirst();
         int updated = qnameCache.updateValue(qnameId, qnameNew);
         if (updated != 1)
@@ -328,6 +466,7 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
             throw new IllegalArgumentException("Cannot delete QName.  QName " + qname + " does not exist");
         }
         // Delete
+        invalidateIndexes(qname);
         Long qnameId = qnamePair.getFirst();
         int deleted = qnameCache.deleteByKey(qnameId);
         if (deleted != 1)
@@ -407,6 +546,7 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
             Pair<Long, String> namespaceEntity = getOrCreateNamespace(uri);
             Long nsId = namespaceEntity.getFirst();
             // Create QName
+            recordChangedEntity(qname);
             QNameEntity entity = createQNameEntity(nsId, localName);
             return new Pair<Long, QName>(entity.getId(), qname);
         }
@@ -453,6 +593,92 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
 
     protected abstract int deleteQNameEntity(QNameEntity entity);
 
+    // ================================
+    // Snapshot indexes
+    // ================================
+
+    /**
+     * Note an entity that the current transaction has created or changed, so that it is kept out of the snapshot indexes until the transaction has committed
+     */
+    private void recordChangedEntity(Object entity)
+    {
+        TransactionalResourceHelper.<Object> getSet(KEY_TXN_CHANGED_ENTITIES).add(entity);
+    }
+
+    private boolean isChangedInTransaction(Object entity)
+    {
+        Set<Object> changedEntities = AlfrescoTransactionSupport.getResource(KEY_TXN_CHANGED_ENTITIES);
+        return changedEntities != null && changedEntities.contains(entity);
+    }
+
+    private void indexNamespace(long id, String namespaceUri, long generation)
+    {
+        if (!isChangedInTransaction(namespaceUri))
+        {
+            int keyHash = CacheKeyHash.of(new CacheRegionKey(CACHE_REGION_NAMESPACE, Long.valueOf(id)));
+            namespaceIndex.add(id, namespaceUri, keyHash, generation);
+        }
+    }
+
+    private void indexQName(long id, QName qname, long generation)
+    {
+        if (!isChangedInTransaction(qname) && !isChangedInTransaction(qname.getNamespaceURI()))
+        {
+            int keyHash = CacheKeyHash.of(new CacheRegionKey(CACHE_REGION_QNAME, Long.valueOf(id)));
+            qnameIndex.add(id, qname, keyHash, generation);
+        }
+    }
+
+    private void resetIndexes()
+    {
+        namespaceIndex.clear();
+        qnameIndex.clear();
+    }
+
+    /**
+     * Resets the snapshot indexes when a cluster peer changes or removes one of their entities in the shared cache
+     */
+    private class IndexInvalidationListener implements CacheInvalidationListener
+    {
+        @Override
+        public void invalidate(int[] keyHashes)
+        {
+            if (namespaceIndex.isAffectedBy(keyHashes) || qnameIndex.isAffectedBy(keyHashes))
+            {
+                resetIndexes();
+            }
+        }
+
+        @Override
+        public void invalidateAll()
+        {
+            resetIndexes();
+        }
+    }
+
+    /**
+     * Drop the snapshot indexes now and again once the current transaction has committed, keeping the given entities out of them in the meantime
+     */
+    private void invalidateIndexes(Object... entities)
+    {
+        resetIndexes();
+        if (AlfrescoTransactionSupport.getTransactionReadState() == TxnReadState.TXN_NONE)
+        {
+            return;
+        }
+        for (Object entity : entities)
+        {
+            recordChangedEntity(entity);
+        }
+        AlfrescoTransactionSupport.bindListener(new TransactionListenerAdapter() {
+            @Override
+            public void afterCommit()
+            {
+                resetIndexes();
+            }
+        });
+    }
+
     // ================================
     // Utility method implementations
     // ================================
@@ -462,7 +688,7 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
         Set<QName> qnames = new HashSet<QName>(ids.size() * 2 + 1);
         for (Long id : ids)
         {
-            QName qname = getQName(id).getSecond(); // getQName(id) is never null
+            QName qname = getQNameById(id); // getQNameById(id) is never null
             qnames.add(qname);
         }
         return qnames;
@@ -473,7 +699,7 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
         Map<QName, Object> qnameMap = new HashMap<QName, Object>(idMap.size() + 3);
         for (Map.Entry<Long, ? extends Object> entry : idMap.entrySet())
         {
-            QName qname = getQName(entry.getKey()).getSecond(); // getQName(id) is never null
+            QName qname = getQNameById(entry.getKey()); // getQNameById(id) is never null
             qnameMap.put(qname, entry.getValue());
         }
         return qnameMap;
@@ -487,28 +713,13 @@ public abstract class AbstractQNameDAOImpl implements QNameDAO
         Set<Long> qnameIds = new HashSet<Long>(qnames.size(), 1.0F);
         for (QName qname : qnames)
         {
-            Long qnameEntityId = null;
-            if (create)
-            {
-                qnameEntityId = getOrCreateQName(qname).getFirst(); // getOrCreateQName(qname) is never null
-            }
-            else
-            {
-                Pair<Long, QName> qnamePair = getQName(qname);
-                if (qnamePair == null)
-                {
-                    // No such qname and we are not creating one
-                    continue;
-                }
-                else
-                {
-                    qnameEntityId = qnamePair.getFirst();
-                }
-            }
-            if (qnameEntityId != null)
+            long qnameEntityId = create ? getOrCreateQNameId(qname) : getQNameId(qname);
+            if (qnameEntityId == NO_ID)
             {
-                qnameIds.add(qnameEntityId);
+                // No such qname and we are not creating one
+                continue;
             }
+            qnameIds.add(qnameEntityId);
         }
         // Done
         return qnameIds;
@@ -0,0 +1,361 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.qname;
+
+import java.util.Arrays;
+
+/**
+ * Immutable two-way index between positive <code>long</code> IDs and values, using open-addressed primitive tables so that neither direction of lookup boxes the ID or allocates.
+ * <p>
+ * Additions create a new snapshot, leaving the original untouched, so readers can use a snapshot without locking. Entries are added in bulk through a {@link Publisher}, which keeps the cost of filling an index linear in its size. This suits small, rarely changing sets of entities such as QNames and namespaces.
+ * 
+ * @param <V>
+ *            the value type, which must have good <code>equals</code> and <code>hashCode</code> implementations
+ */
+final class IdSnapshotIndex<V>
+{
+    /** Returned by {@link #getId(Object)} when there is no entry for the value */
+    static final long NO_ID = -1L;
+
+    private static final IdSnapshotIndex<?> EMPTY = new IdSnapshotIndex<>(1);
+
+    /** Slots hashed by ID; an ID of zero marks an empty slot */
+    private final long[] ids;
+    private final Object[] valuesById;
+    /** Slots hashed by value; a <tt>null</tt> value marks an empty slot */
+    private final Object[] values;
+    private final long[] idsByValue;
+    private final int mask;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    static <V> IdSnapshotIndex<V> empty()
+    {
+        return (IdSnapshotIndex<V>) EMPTY;
+    }
+
+    private IdSnapshotIndex(int capacity)
+    {
+        this.ids = new long[capacity];
+        this.valuesById = new Object[capacity];
+        this.values = new Object[capacity];
+        this.idsByValue = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return Returns the value with the given ID or <tt>null</tt> if it is not in the index
+     */
+    @SuppressWarnings("unchecked")
+    V get(long id)
+    {
+        for (int i = hash(id) & mask;; i = (i + 1) & mask)
+        {
+            long slotId = ids[i];
+            if (slotId == id)
+            {
+                return (V) valuesById[i];
+            }
+            else if (slotId == 0L)
+            {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return Returns the ID of the value or {@link #NO_ID} if it is not in the index
+     */
+    long getId(V value)
+    {
+        for (int i = hash(value.hashCode()) & mask;; i = (i + 1) & mask)
+        {
+            Object slotValue = values[i];
+            if (slotValue == null)
+            {
+                return NO_ID;
+            }
+            else if (slotValue.equals(value))
+            {
+                return idsByValue[i];
+            }
+        }
+    }
+
+    /**
+     * Get a snapshot with an additional entry. Any existing entries for the same ID or the same value are dropped.
+     * 
+     * @param id
+     *            the ID, which must be greater than zero
+     * @param value
+     *            the value, which may not be <tt>null</tt>
+     * @return Returns a new index, or this index if the entry is already present
+     */
+    IdSnapshotIndex<V> with(long id, V value)
+    {
+        if (value != null && value.equals(get(id)) && getId(value) == id)
+        {
+            return this;
+        }
+        return withAll(new long[]{id}, new Object[]{value}, 1);
+    }
+
+    /**
+     * Get a snapshot with additional entries, copying this index once. Where entries share an ID or a value, the later entry wins and entries of this index lose to the new ones.
+     * 
+     * @param newIds
+     *            the IDs, which must be greater than zero
+     * @param newValues
+     *            the values, which may not be <tt>null</tt>
+     * @param count
+     *            the number of entries to take from the arrays
+     * @return Returns a new index
+     */
+    @SuppressWarnings("unchecked")
+    IdSnapshotIndex<V> withAll(long[] newIds, Object[] newValues, int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            if (newIds[i] <= 0L || newValues[i] == null)
+            {
+                throw new IllegalArgumentException("Invalid index entry: " + newIds[i] + "=" + newValues[i]);
+            }
+        }
+        // Keep the tables at most half full
+        int capacity = Integer.highestOneBit(Math.max(8, (size + count) * 4 - 1));
+        IdSnapshotIndex<V> index = new IdSnapshotIndex<>(capacity);
+        for (int i = count - 1; i >= 0; i--)
+        {
+            index.insertIfAbsent(newIds[i], (V) newValues[i]);
+        }
+        for (int i = 0; i < ids.length; i++)
+        {
+            long slotId = ids[i];
+            if (slotId != 0L)
+            {
+                index.insertIfAbsent(slotId, (V) valuesById[i]);
+            }
+        }
+        return index;
+    }
+
+    private void insertIfAbsent(long id, V value)
+    {
+        if (get(id) != null || getId(value) != NO_ID)
+        {
+            return;
+        }
+        int i = hash(id) & mask;
+        while (ids[i] != 0L)
+        {
+            i = (i + 1) & mask;
+        }
+        ids[i] = id;
+        valuesById[i] = value;
+
+        i = hash(value.hashCode()) & mask;
+        while (values[i] != null)
+        {
+            i = (i + 1) & mask;
+        }
+        values[i] = value;
+        idsByValue[i] = id;
+        size++;
+    }
+
+    private static int hash(long id)
+    {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int hash(int hashCode)
+    {
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    /**
+     * Holds the current snapshot of an index and collects the entries to add to it. New entries are published together once they amount to a quarter of the snapshot, so filling an index of <i>n</i> entries copies O(<i>n</i>) entries in all; until then, lookups of the new entries miss and fall back to the caller's cache.
+     * <p>
+     * Each entry is added with the cluster-wide hash code of its cache key, so that an invalidation received from a cluster peer can be {@link #isAffectedBy(int[]) checked} against the index.
+     * 
+     * @param <V>
+     *            the value type
+     */
+    static final class Publisher<V>
+    {
+        private static final int INITIAL_PENDING = 16;
+
+        private volatile IdSnapshotIndex<V> index = empty();
+        private volatile long generation;
+        private long[] pendingIds = new long[INITIAL_PENDING];
+        private Object[] pendingValues = new Object[INITIAL_PENDING];
+        private int pendingCount;
+        /** Open-addressed set of the cache key hashes of the published and pending entries; zero marks an empty slot and is tracked apart */
+        private int[] keyHashes = new int[INITIAL_PENDING];
+        private int keyHashCount;
+        private boolean zeroKeyHash;
+
+        /**
+         * @return Returns the current snapshot
+         */
+        IdSnapshotIndex<V> get()
+        {
+            return index;
+        }
+
+        /**
+         * @return Returns a counter that changes whenever the index is cleared. Read it before looking up a value to {@link #add(long, Object, int, long) add}, so that values read before a clear are not added after it.
+         */
+        long getGeneration()
+        {
+            return generation;
+        }
+
+        /**
+         * Add an entry, unless the index has been cleared since the given generation
+         * 
+         * @param id
+         *            the ID, which must be greater than zero
+         * @param value
+         *            the value, which may not be <tt>null</tt>
+         * @param keyHash
+         *            the cluster-wide hash code of the cache key of the entry
+         * @param expectedGeneration
+         *            the {@link #getGeneration() generation} read before the value was looked up
+         */
+        synchronized void add(long id, V value, int keyHash, long expectedGeneration)
+        {
+            if (expectedGeneration != generation)
+            {
+                return;
+            }
+            if (pendingCount == pendingIds.length)
+            {
+                pendingIds = Arrays.copyOf(pendingIds, pendingCount * 2);
+                pendingValues = Arrays.copyOf(pendingValues, pendingCount * 2);
+            }
+            pendingIds[pendingCount] = id;
+            pendingValues[pendingCount] = value;
+            pendingCount++;
+            addKeyHash(keyHash);
+            if (pendingCount > index.size() / 4)
+            {
+                index = index.withAll(pendingIds, pendingValues, pendingCount);
+                Arrays.fill(pendingValues, 0, pendingCount, null);
+                pendingCount = 0;
+            }
+        }
+
+        /**
+         * Drop all entries, published or pending
+         */
+        synchronized void clear()
+        {
+            generation++;
+            index = empty();
+            Arrays.fill(pendingValues, 0, pendingCount, null);
+            pendingCount = 0;
+            keyHashes = new int[INITIAL_PENDING];
+            keyHashCount = 0;
+            zeroKeyHash = false;
+        }
+
+        /**
+         * @return Returns <tt>true</tt> if any of the cache key hashes belongs to an entry of the index
+         */
+        synchronized boolean isAffectedBy(int[] hashes)
+        {
+            for (int hash : hashes)
+            {
+                if (hash == 0 ? zeroKeyHash : containsKeyHash(hash))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean containsKeyHash(int keyHash)
+        {
+            int mask = keyHashes.length - 1;
+            for (int i = hash(keyHash) & mask;; i = (i + 1) & mask)
+            {
+                if (keyHashes[i] == keyHash)
+                {
+                    return true;
+                }
+                else if (keyHashes[i] == 0)
+                {
+                    return false;
+                }
+            }
+        }
+
+        private void addKeyHash(int keyHash)
+        {
+            if (keyHash == 0)
+            {
+                zeroKeyHash = true;
+                return;
+            }
+            if (containsKeyHash(keyHash))
+            {
+                return;
+            }
+            if ((keyHashCount + 1) * 2 > keyHashes.length)
+            {
+                int[] oldKeyHashes = keyHashes;
+                keyHashes = new int[oldKeyHashes.length * 2];
+                for (int oldKeyHash : oldKeyHashes)
+                {
+                    if (oldKeyHash != 0)
+                    {
+                        insertKeyHash(oldKeyHash);
+                    }
+                }
+            }
+            insertKeyHash(keyHash);
+            keyHashCount++;
+        }
+
+        private void insertKeyHash(int keyHash)
+        {
+            int mask = keyHashes.length - 1;
+            int i = hash(keyHash) & mask;
+            while (keyHashes[i] != 0)
+            {
+                i = (i + 1) & mask;
+            }
+            keyHashes[i] = keyHash;
+        }
+    }
+}
@@ -40,6 +40,11 @@ import org.alfresco.util.Pair;
  */
 public interface QNameDAO
 {
+    /**
+     * Returned by the primitive lookups when there is no entity
+     */
+    long NO_ID = -1L;
+
     /**
      * @param id
      *            the unique ID of the entity
@@ -77,6 +82,45 @@ public interface QNameDAO
      */
     void updateNamespace(String oldNamespaceUri, String newNamespaceUri);
 
+    /**
+     * Primitive equivalent of {@link #getNamespace(Long)} for hot paths
+     * 
+     * @param id
+     *            the unique ID of the entity
+     * @return the namespace URI (never null)
+     * @throws AlfrescoRuntimeException
+     *             if the ID provided is invalid
+     */
+    default String getNamespaceUriById(long id)
+    {
+        return getNamespace(id).getSecond();
+    }
+
+    /**
+     * Primitive equivalent of {@link #getNamespace(String)} for hot paths
+     * 
+     * @param namespaceUri
+     *            the namespace URI to query for
+     * @return the ID of the namespace or {@link #NO_ID} if it doesn't exist
+     */
+    default long getNamespaceId(String namespaceUri)
+    {
+        Pair<Long, String> namespacePair = getNamespace(namespaceUri);
+        return namespacePair == null ? NO_ID : namespacePair.getFirst();
+    }
+
+    /**
+     * Primitive equivalent of {@link #getOrCreateNamespace(String)} for hot paths. This should be treated as a write method.
+     * 
+     * @param namespaceUri
+     *            the namespace URI to query for
+     * @return the ID of the existing or new namespace
+     */
+    default long getOrCreateNamespaceId(String namespaceUri)
+    {
+        return getOrCreateNamespace(namespaceUri).getFirst();
+    }
+
     /**
      * @param id
      *            the unique ID of the entity
@@ -102,6 +146,45 @@ public interface QNameDAO
      */
     Pair<Long, QName> getOrCreateQName(QName qname);
 
+    /**
+     * Primitive equivalent of {@link #getQName(Long)} for hot paths
+     * 
+     * @param id
+     *            the unique ID of the entity
+     * @return the QName (never null)
+     * @throws AlfrescoRuntimeException
+     *             if the ID provided is invalid
+     */
+    default QName getQNameById(long id)
+    {
+        return getQName(id).getSecond();
+    }
+
+    /**
+     * Primitive equivalent of {@link #getQName(QName)} for hot paths
+     * 
+     * @param qname
+     *            the QName to query for
+     * @return the ID of the QName or {@link #NO_ID} if it doesn't exist
+     */
+    default long getQNameId(QName qname)
+    {
+        Pair<Long, QName> qnamePair = getQName(qname);
+        return qnamePair == null ? NO_ID : qnamePair.getFirst();
+    }
+
+    /**
+     * Primitive equivalent of {@link #getOrCreateQName(QName)} for hot paths. This should be treated as a write method.
+     * 
+     * @param qname
+     *            the QName to query for
+     * @return the ID of the existing or new QName
+     */
+    default long getOrCreateQNameId(QName qname)
+    {
+        return getOrCreateQName(qname).getFirst();
+    }
+
     /**
      * Modify an existing QName. The ID of the new QName will be the same as the old one i.e. the old QName will cease to exist and will become the new QName. This allows QName modification without affecting tables that reference the old QName.
      * 
@@ -25,6 +25,10 @@
  */
 package org.alfresco.repo.event2;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
@@ -32,6 +36,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -41,6 +46,10 @@ import org.alfresco.util.PropertyCheck;
 
 /**
  * Enqueuing event sender allows to create asynchronously the RepoEvent offloading the work to a ThreadPool but at the same time it preserves the order of the events.
+ * <p>
+ * The listener takes the events off the queue in batches of up to {@link #setMaxBatchSize(int) maxBatchSize}, optionally waiting up to {@link #setMaxBatchDelay(long) maxBatchDelay} milliseconds for a batch to fill, and sends each batch with one {@link Event2MessageProducer#sendBatch(List) producer call}. If the batch cannot be sent as a whole, its events are sent one at a time so that only the failing events are lost.
+ * <p>
+ * If a maximum queue size is given, callers wait up to {@link #setQueueOfferTimeout(long) queueOfferTimeout} milliseconds when the queue is full and then apply the {@link #setOverflowPolicy(OverflowPolicy) overflow policy}.
  */
 public class EnqueuingEventSender extends DirectEventSender
 {
@@ -48,16 +57,143 @@ public class EnqueuingEventSender extends DirectEventSender
 
     protected final Executor enqueueThreadPoolExecutor;
     protected final Executor dequeueThreadPoolExecutor;
-    protected BlockingQueue<EventInMaking> queue = new LinkedBlockingQueue<>();
+    protected final BlockingQueue<EventInMaking> queue;
     protected Runnable listener = createListener();
 
+    /** Events taken off the queue that have not been sent yet; only used by the listener */
+    private final Deque<EventInMaking> batch = new ArrayDeque<>();
+    /** Whether the current batch failed to send as a whole; only used by the listener */
+    private boolean sendingOneByOne;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private long maxBatchDelay;
+    private long queueOfferTimeout = DEFAULT_QUEUE_OFFER_TIMEOUT;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DIRECT;
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong batchedCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong sendTimeNanos = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private volatile int lastBatchSize;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final long DEFAULT_QUEUE_OFFER_TIMEOUT = 10000L;
+
+    /**
+     * What to do with an event that does not fit into the full queue
+     */
+    public enum OverflowPolicy
+    {
+        /** Send the event from the caller's thread, ahead of the events that are still queued */
+        DIRECT,
+        /** Log and discard the event */
+        DROP
+    }
+
     public EnqueuingEventSender(Event2MessageProducer event2MessageProducer, Executor enqueueThreadPoolExecutor, Executor dequeueThreadPoolExecutor)
+    {
+        this(event2MessageProducer, enqueueThreadPoolExecutor, dequeueThreadPoolExecutor, 0);
+    }
+
+    /**
+     * @param maxQueueSize
+     *            the maximum number of events waiting to be sent, or 0 or less for no limit
+     */
+    public EnqueuingEventSender(Event2MessageProducer event2MessageProducer, Executor enqueueThreadPoolExecutor, Executor dequeueThreadPoolExecutor, int maxQueueSize)
     {
         super(event2MessageProducer);
         PropertyCheck.mandatory(this, "enqueueThreadPoolExecutor", enqueueThreadPoolExecutor);
         PropertyCheck.mandatory(this, "dequeueThreadPoolExecutor", dequeueThreadPoolExecutor);
         this.enqueueThreadPoolExecutor = enqueueThreadPoolExecutor;
         this.dequeueThreadPoolExecutor = dequeueThreadPoolExecutor;
+        this.queue = maxQueueSize > 0 ? new LinkedBlockingQueue<>(maxQueueSize) : new LinkedBlockingQueue<>();
+    }
+
+    /**
+     * @param queueOfferTimeout
+     *            the time in milliseconds a caller waits for space in a full queue before the overflow policy applies
+     */
+    public void setQueueOfferTimeout(long queueOfferTimeout)
+    {
+        this.queueOfferTimeout = Math.max(0L, queueOfferTimeout);
+    }
+
+    /**
+     * @param overflowPolicy
+     *            what to do with an event that does not fit into the full queue in time (default {@link OverflowPolicy#DIRECT})
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+    {
+        PropertyCheck.mandatory(this, "overflowPolicy", overflowPolicy);
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @param maxBatchSize
+     *            the maximum number of events taken off the queue at once
+     */
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    /**
+     * @param maxBatchDelay
+     *            the time in milliseconds to wait for more events before sending a batch that is not full, or 0 to send the events that are queued straight away
+     */
+    public void setMaxBatchDelay(long maxBatchDelay)
+    {
+        this.maxBatchDelay = Math.max(0L, maxBatchDelay);
+    }
+
+    /**
+     * @return the number of events waiting to be sent
+     */
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of events in the last batch
+     */
+    public int getLastBatchSize()
+    {
+        return lastBatchSize;
+    }
+
+    /**
+     * @return the average number of events in a batch
+     */
+    public double getAverageBatchSize()
+    {
+        long batches = batchCount.get();
+        return batches == 0 ? 0.0 : (double) batchedCount.get() / batches;
+    }
+
+    /**
+     * @return the number of events sent
+     */
+    public long getSentCount()
+    {
+        return sentCount.get();
+    }
+
+    /**
+     * @return the number of events that did not fit into the queue and were handled by the overflow policy
+     */
+    public long getOverflowCount()
+    {
+        return overflowCount.get();
+    }
+
+    /**
+     * @return the average time in milliseconds taken to send an event
+     */
+    public double getAverageSendTimeMillis()
+    {
+        long sent = sentCount.get();
+        return sent == 0 ? 0.0 : sendTimeNanos.get() / (sent * 1_000_000.0);
     }
 
     /**
@@ -70,7 +206,10 @@ public class EnqueuingEventSender extends DirectEventSender
     public void accept(Callable<Optional<RepoEvent<?>>> eventProducer)
     {
         EventInMaking eventInMaking = new EventInMaking(eventProducer);
-        queue.offer(eventInMaking);
+        if (!queue.offer(eventInMaking) && !offerWhenFull(eventInMaking))
+        {
+            return;
+        }
         enqueueThreadPoolExecutor.execute(() -> {
             try
             {
@@ -83,6 +222,41 @@ public class EnqueuingEventSender extends DirectEventSender
         });
     }
 
+    /**
+     * Hold the caller back for a while to let the listener catch up, then apply the overflow policy
+     * 
+     * @return <tt>true</tt> if the event was queued
+     */
+    private boolean offerWhenFull(EventInMaking eventInMaking)
+    {
+        if (LOGGER.isDebugEnabled())
+        {
+            LOGGER.debug("Event queue is full, waiting to enqueue repository event");
+        }
+        try
+        {
+            if (queue.offer(eventInMaking, queueOfferTimeout, TimeUnit.MILLISECONDS))
+            {
+                return true;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        overflowCount.incrementAndGet();
+        if (overflowPolicy == OverflowPolicy.DROP)
+        {
+            LOGGER.error("Event queue is full, the repository event is lost: " + eventInMaking);
+        }
+        else
+        {
+            LOGGER.warn("Event queue is full, sending repository event out of order: " + eventInMaking);
+            super.accept(eventInMaking.maker);
+        }
+        return false;
+    }
+
     @Override
     public void initialize()
     {
@@ -103,7 +277,11 @@ public class EnqueuingEventSender extends DirectEventSender
                 {
                     try
                     {
-                        queue.take().getEventWhenReady().ifPresent(event -> event2MessageProducer.send(event));
+                        if (batch.isEmpty())
+                        {
+                            takeBatch();
+                        }
+                        sendBatch();
                     }
                     catch (Exception e)
                     {
@@ -120,6 +298,118 @@ public class EnqueuingEventSender extends DirectEventSender
 
     }
 
+    /**
+     * Wait for at least one event and take off the queue as many as are allowed in a batch
+     */
+    private void takeBatch() throws InterruptedException
+    {
+        batch.add(queue.take());
+        queue.drainTo(batch, maxBatchSize - 1);
+        if (maxBatchDelay > 0)
+        {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBatchDelay);
+            while (batch.size() < maxBatchSize)
+            {
+                EventInMaking next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (next == null)
+                {
+                    break;
+                }
+                batch.add(next);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+            }
+        }
+        lastBatchSize = batch.size();
+        batchedCount.addAndGet(batch.size());
+        batchCount.incrementAndGet();
+    }
+
+    /**
+     * Send the events of the current batch in order, in one producer call. If that fails the events are sent one at a time, and an event that cannot be made or sent is skipped. If an error is thrown, the remaining events are kept for the rescheduled listener.
+     */
+    private void sendBatch()
+    {
+        if (!sendingOneByOne && batch.size() > 1)
+        {
+            // Set first, so that the rescheduled listener does not retry the whole batch after an error
+            sendingOneByOne = true;
+            try
+            {
+                if (sendTogether())
+                {
+                    batch.clear();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                sendingOneByOne = false;
+                LOGGER.error("Interrupted while waiting for a batch of repository events");
+                return;
+            }
+        }
+        sendOneByOne();
+        sendingOneByOne = false;
+    }
+
+    /**
+     * @return <tt>true</tt> if the events of the batch were sent
+     */
+    private boolean sendTogether() throws InterruptedException
+    {
+        List<RepoEvent<?>> events = new ArrayList<>(batch.size());
+        for (EventInMaking eventInMaking : batch)
+        {
+            eventInMaking.getEventWhenReady().ifPresent(events::add);
+        }
+        if (events.isEmpty())
+        {
+            return true;
+        }
+        try
+        {
+            long start = System.nanoTime();
+            event2MessageProducer.sendBatch(events);
+            sendTimeNanos.addAndGet(System.nanoTime() - start);
+            sentCount.addAndGet(events.size());
+            return true;
+        }
+        catch (Exception e)
+        {
+            LOGGER.warn("Failed to send a batch of " + events.size() + " repository events, sending them one at a time: " + e);
+            return false;
+        }
+    }
+
+    private void sendOneByOne()
+    {
+        EventInMaking eventInMaking;
+        while ((eventInMaking = batch.poll()) != null)
+        {
+            try
+            {
+                Optional<RepoEvent<?>> event = eventInMaking.getEventWhenReady();
+                if (event.isPresent())
+                {
+                    long start = System.nanoTime();
+                    event2MessageProducer.send(event.get());
+                    sendTimeNanos.addAndGet(System.nanoTime() - start);
+                    sentCount.incrementAndGet();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Interrupted while waiting for repository event " + eventInMaking);
+                return;
+            }
+            catch (Exception e)
+            {
+                LOGGER.error("Unexpected error while dequeuing and sending repository event " + e);
+            }
+        }
+    }
+
     /**
      * Simple class that makes events and allows to retrieve them when ready
      */
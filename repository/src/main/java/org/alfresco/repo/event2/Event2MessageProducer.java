@@ -25,11 +25,14 @@
  */
 package org.alfresco.repo.event2;
 
+import java.util.List;
 import java.util.Map;
 
 import org.apache.camel.ExchangePattern;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.repo.rawevents.AbstractEventProducer;
@@ -42,6 +45,16 @@ import org.alfresco.util.PropertyCheck;
  */
 public class Event2MessageProducer extends AbstractEventProducer implements InitializingBean
 {
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * @param transactionManager
+     *            the transaction manager of the messaging connections, used to send a list of events in one transaction, or <tt>null</tt> to send them one by one
+     */
+    public void setTransactionManager(PlatformTransactionManager transactionManager)
+    {
+        this.transactionManager = transactionManager;
+    }
 
     @Override
     public void afterPropertiesSet() throws Exception
@@ -61,6 +74,19 @@ public class Event2MessageProducer extends AbstractEventProducer implements Init
         send(this.endpoint, null, event, null);
     }
 
+    /**
+     * Send the events in order in one messaging transaction, so that either all or none of them are delivered. Without a {@link #setTransactionManager(PlatformTransactionManager) transaction manager} the events are sent one by one and a failure can leave the earlier ones sent.
+     */
+    public void sendBatch(List<?> events)
+    {
+        if (transactionManager == null)
+        {
+            events.forEach(this::send);
+            return;
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> events.forEach(this::send));
+    }
+
     @Override
     public void send(String endpointUri, ExchangePattern exchangePattern, Object event, Map<String, Object> headers)
     {
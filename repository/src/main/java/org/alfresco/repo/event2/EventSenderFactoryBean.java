@@ -43,6 +43,11 @@ public class EventSenderFactoryBean extends AbstractFactoryBean<EventSender> imp
 {
     static final String LEGACY_SKIP_QUEUE_PROPERTY = "repo.event2.queue.skip";
     static final String EVENT_SEND_STRATEGY_PROPERTY = "repo.event2.send.strategy";
+    static final String QUEUE_MAX_SIZE_PROPERTY = "repo.event2.queue.maxSize";
+    static final String QUEUE_OFFER_TIMEOUT_PROPERTY = "repo.event2.queue.offerTimeout";
+    static final String QUEUE_OVERFLOW_POLICY_PROPERTY = "repo.event2.queue.overflowPolicy";
+    static final String BATCH_MAX_SIZE_PROPERTY = "repo.event2.queue.batch.maxSize";
+    static final String BATCH_MAX_DELAY_PROPERTY = "repo.event2.queue.batch.maxDelay";
     private static final String DIRECT_EVENT_SENDER_NAME = "direct";
     private static final String ASYNC_EVENT_SENDER_NAME = "async";
 
@@ -126,7 +131,16 @@ public class EventSenderFactoryBean extends AbstractFactoryBean<EventSender> imp
 
     private EnqueuingEventSender instantiateAsyncSender()
     {
-        return new EnqueuingEventSender(getEvent2MessageProducer(), enqueueThreadPoolExecutor, dequeueThreadPoolExecutor);
+        int maxQueueSize = Optional.ofNullable(resolveProperty(QUEUE_MAX_SIZE_PROPERTY, Integer.class)).orElse(0);
+        EnqueuingEventSender sender = new EnqueuingEventSender(getEvent2MessageProducer(), enqueueThreadPoolExecutor, dequeueThreadPoolExecutor, maxQueueSize);
+        Optional.ofNullable(resolveProperty(QUEUE_OFFER_TIMEOUT_PROPERTY, Long.class)).ifPresent(sender::setQueueOfferTimeout);
+        Optional.ofNullable(resolveProperty(QUEUE_OVERFLOW_POLICY_PROPERTY, String.class))
+                .filter(policy -> !policy.isBlank())
+                .map(policy -> EnqueuingEventSender.OverflowPolicy.valueOf(policy.trim().toUpperCase()))
+                .ifPresent(sender::setOverflowPolicy);
+        Optional.ofNullable(resolveProperty(BATCH_MAX_SIZE_PROPERTY, Integer.class)).ifPresent(sender::setMaxBatchSize);
+        Optional.ofNullable(resolveProperty(BATCH_MAX_DELAY_PROPERTY, Long.class)).ifPresent(sender::setMaxBatchDelay);
+        return sender;
     }
 
     private boolean isSenderNameConfigured()
@@ -963,11 +963,7 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
             Long nodeTypeQNameId = row.getTypeQNameId();
             if (nodeTypeQNameId != null)
             {
-                Pair<Long, QName> pair = qnameDAO.getQName(nodeTypeQNameId);
-                if (pair != null)
-                {
-                    propVals.put(SORT_QNAME_NODE_TYPE, pair.getSecond());
-                }
+                propVals.put(SORT_QNAME_NODE_TYPE, qnameDAO.getQNameById(nodeTypeQNameId));
             }
         }
     }
@@ -68,6 +68,7 @@ public class LocalTransformClient implements TransformClient, InitializingBean
     private RenditionService2Impl renditionService2;
     private boolean directAccessUrlEnabled;
     private int threadPoolSize;
+    private boolean virtualThreads;
 
     private ExecutorService executorService;
     private ThreadLocal<LocalTransform> transform = new ThreadLocal<>();
@@ -102,6 +103,15 @@ public class LocalTransformClient implements TransformClient, InitializingBean
         this.threadPoolSize = threadPoolSize;
     }
 
+    /**
+     * @param virtualThreads
+     *            <tt>true</tt> to run the transforms on virtual threads when the executor service is not set. The thread pool size still limits the number of transforms that run at once.
+     */
+    public void setVirtualThreads(boolean virtualThreads)
+    {
+        this.virtualThreads = virtualThreads;
+    }
+
     public void setExecutorService(ExecutorService executorService)
     {
         this.executorService = executorService;
@@ -118,7 +128,9 @@ public class LocalTransformClient implements TransformClient, InitializingBean
         PropertyCheck.mandatory(this, "threadPoolSize", threadPoolSize);
         if (executorService == null)
         {
-            var threadFactory = new ThreadFactoryBuilder().setNameFormat("local-transform-%d").build();
+            var threadFactory = virtualThreads
+                    ? Thread.ofVirtual().name("local-transform-", 0).factory()
+                    : new ThreadFactoryBuilder().setNameFormat("local-transform-%d").build();
             executorService = Executors.newFixedThreadPool(threadPoolSize, threadFactory);
         }
     }
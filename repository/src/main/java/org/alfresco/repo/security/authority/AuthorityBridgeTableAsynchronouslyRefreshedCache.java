@@ -25,7 +25,7 @@
  */
 package org.alfresco.repo.security.authority;
 
-import java.util.ConcurrentModificationException;
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -91,6 +91,74 @@ public class AuthorityBridgeTableAsynchronouslyRefreshedCache extends AbstractMT
         this.tenantAdminService = tenantAdminService;
     }
 
+    /**
+     * Add a link between a group and a contained group to the table of the current tenant after the transaction commits.
+     * 
+     * @param parentName
+     *            the containing authority
+     * @param childName
+     *            the contained authority
+     */
+    public void addLink(String parentName, String childName)
+    {
+        update(new AuthorityLinkChange(parentName, childName, true));
+    }
+
+    /**
+     * Remove a link between a group and a contained group from the table of the current tenant after the transaction commits.
+     * 
+     * @param parentName
+     *            the containing authority
+     * @param childName
+     *            the contained authority
+     */
+    public void removeLink(String parentName, String childName)
+    {
+        update(new AuthorityLinkChange(parentName, childName, false));
+    }
+
+    /**
+     * Rebuild the tables of all tenants that are in use on this instance from the database.
+     */
+    public void refreshAllLocally()
+    {
+        for (String tenantId : getKeys())
+        {
+            refreshLocally(tenantId);
+        }
+    }
+
+    @Override
+    protected boolean applyUpdate(String tenantId, BridgeTable<String> bridgeTable, Serializable update)
+    {
+        if (!(update instanceof AuthorityLinkChange))
+        {
+            return false;
+        }
+        AuthorityLinkChange change = (AuthorityLinkChange) update;
+        // The changes are idempotent as the table may have been built after the change was committed
+        if (change.isAdd())
+        {
+            if (!bridgeTable.hasLink(change.getParentName(), change.getChildName()))
+            {
+                try
+                {
+                    bridgeTable.addLink(change.getParentName(), change.getChildName());
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // A cycle - rebuild so that it is reported and fixed
+                    return false;
+                }
+            }
+        }
+        else if (bridgeTable.hasLink(change.getParentName(), change.getChildName()))
+        {
+            bridgeTable.removeLink(change.getParentName(), change.getChildName());
+        }
+        return true;
+    }
+
     @Override
     protected BridgeTable<String> buildCache(final String tenantId)
     {
@@ -120,7 +188,7 @@ public class AuthorityBridgeTableAsynchronouslyRefreshedCache extends AbstractMT
                 bridgeTable.addLink(link.getParentName(), link.getChildName());
             }
         }
-        catch (ConcurrentModificationException e)
+        catch (IllegalArgumentException e)
         {
             // Explain exception
             checkCyclic(links);
@@ -234,6 +302,67 @@ public class AuthorityBridgeTableAsynchronouslyRefreshedCache extends AbstractMT
         }, false, true);
     }
 
+    /**
+     * A link added or removed between a group and a contained group.
+     */
+    public static class AuthorityLinkChange implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String parentName;
+        private final String childName;
+        private final boolean add;
+
+        public AuthorityLinkChange(String parentName, String childName, boolean add)
+        {
+            this.parentName = parentName;
+            this.childName = childName;
+            this.add = add;
+        }
+
+        public String getParentName()
+        {
+            return parentName;
+        }
+
+        public String getChildName()
+        {
+            return childName;
+        }
+
+        public boolean isAdd()
+        {
+            return add;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (31 * parentName.hashCode() + childName.hashCode()) * 2 + (add ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+            if (!(obj instanceof AuthorityLinkChange))
+            {
+                return false;
+            }
+            AuthorityLinkChange other = (AuthorityLinkChange) obj;
+            return add == other.add && parentName.equals(other.parentName) && childName.equals(other.childName);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "AuthorityLinkChange [parentName=" + parentName + ", childName=" + childName + ", add=" + add + "]";
+        }
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception
     {
@@ -373,7 +373,12 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
         else
         {
             userAuthorityCache.clear();
-            authorityBridgeTableCache.refresh();
+            // Apply the new links to the bridge table rather than rebuilding it
+            for (NodeRef parentRef : parentRefs)
+            {
+                String parentAuthorityName = (String) nodeService.getProperty(parentRef, ContentModel.PROP_AUTHORITY_NAME);
+                authorityBridgeTableCache.addLink(parentAuthorityName, childName);
+            }
         }
     }
 
@@ -822,9 +827,23 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
         {
             throw new UnknownAuthorityException("An authority was not found for " + childName);
         }
+        boolean isUser = AuthorityType.getAuthorityType(childName) == AuthorityType.USER;
+        List<String> linkNames = Collections.emptyList();
+        if (cacheRefresh && !isUser)
+        {
+            // The bridge table is keyed by the association names
+            linkNames = new ArrayList<String>(1);
+            for (ChildAssociationRef assocRef : nodeService.getParentAssocs(childRef, ContentModel.ASSOC_MEMBER, RegexQNamePattern.MATCH_ALL))
+            {
+                if (assocRef.getParentRef().equals(parentRef))
+                {
+                    linkNames.add(assocRef.getQName().getLocalName());
+                }
+            }
+        }
         nodeService.removeChild(parentRef, childRef);
         childAuthorityCache.remove(parentRef);
-        if (AuthorityType.getAuthorityType(childName) == AuthorityType.USER)
+        if (isUser)
         {
             // Normalize the user name
             childName = (String) nodeService.getProperty(childRef, ContentModel.PROP_USERNAME);
@@ -835,7 +854,11 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
             userAuthorityCache.clear();
             if (cacheRefresh)
             {
-                authorityBridgeTableCache.refresh();
+                String parentAuthorityName = (String) nodeService.getProperty(parentRef, ContentModel.PROP_AUTHORITY_NAME);
+                for (String linkName : linkNames)
+                {
+                    authorityBridgeTableCache.removeLink(parentAuthorityName, linkName);
+                }
             }
         }
     }
@@ -25,6 +25,9 @@
  */
 package org.alfresco.repo.security.permissions;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 import org.alfresco.service.cmr.repository.NodeRef;
@@ -87,6 +90,42 @@ public interface PermissionServiceSPI extends PermissionService
      */
     public AccessStatus hasPermission(NodeRef nodeRef, PermissionReference perm);
 
+    /**
+     * Check a permission for the current authentication on a batch of nodes. The result for each node is the same as {@link #hasPermission(NodeRef, String)}, but an implementation may share the evaluation of nodes with the same ACL.
+     * 
+     * @param nodeRefs
+     *            the nodes to check
+     * @param perm
+     *            the permission name
+     * @return the access status of each node
+     */
+    default Map<NodeRef, AccessStatus> hasPermissions(Collection<NodeRef> nodeRefs, String perm)
+    {
+        Map<NodeRef, AccessStatus> statuses = new HashMap<>(nodeRefs.size() * 2);
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            statuses.put(nodeRef, hasPermission(nodeRef, perm));
+        }
+        return statuses;
+    }
+
+    /**
+     * Check the read permission for the current authentication on a batch of nodes. The result for each node is the same as {@link #hasReadPermission(NodeRef)}, but an implementation may share the evaluation of nodes with the same ACL.
+     * 
+     * @param nodeRefs
+     *            the nodes to check
+     * @return the access status of each node
+     */
+    default Map<NodeRef, AccessStatus> hasReadPermissions(Collection<NodeRef> nodeRefs)
+    {
+        Map<NodeRef, AccessStatus> statuses = new HashMap<>(nodeRefs.size() * 2);
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            statuses.put(nodeRef, hasReadPermission(nodeRef));
+        }
+        return statuses;
+    }
+
     /**
      * Where is the permission set that controls the behaviour for the given permission for the given authentication to access the specified name.
      * 
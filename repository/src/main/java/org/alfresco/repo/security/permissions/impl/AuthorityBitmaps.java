@@ -0,0 +1,421 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.permissions.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps authorities to integer ids so that a set of authorities can be held as a compact bitmap and two sets can be tested for a common authority without comparing names.
+ * <p>
+ * The ids are only meaningful within this JVM, so bitmaps built from them must only be held in local caches. Ids are handed out from an id space that is bounded by {@link #setMaxIds(int) maxIds}. When it is full a new id space, with a new generation, is started and the old ids are recycled. Bitmaps from different generations cannot be compared, so callers must rebuild any bitmap that is no longer {@link #isCurrent(Bitmap) current}.
+ */
+public class AuthorityBitmaps
+{
+    public static final int DEFAULT_MAX_IDS = 500000;
+
+    private volatile int maxIds = DEFAULT_MAX_IDS;
+    private volatile IdSpace idSpace = new IdSpace(0);
+
+    /**
+     * @param maxIds
+     *            the number of authority ids to hand out before the id space is recycled
+     */
+    public void setMaxIds(int maxIds)
+    {
+        if (maxIds < 1)
+        {
+            throw new IllegalArgumentException("maxIds must be at least 1: " + maxIds);
+        }
+        this.maxIds = maxIds;
+    }
+
+    /**
+     * Get the id of an authority in the current id space, assigning the next free id if the authority has not been seen before
+     * 
+     * @param authority
+     *            the authority name
+     * @return the id of the authority
+     */
+    public int getId(String authority)
+    {
+        return currentIdSpace().getId(authority);
+    }
+
+    /**
+     * Build the bitmap of a set of authorities. All the ids of a bitmap come from the same id space.
+     * 
+     * @param authorities
+     *            the authority names
+     * @return an immutable bitmap holding the id of each authority
+     */
+    public Bitmap toBitmap(Collection<String> authorities)
+    {
+        return toBitmap(currentIdSpace(), authorities);
+    }
+
+    /**
+     * Build the reader bitmaps of an ACL. Both bitmaps come from the same id space.
+     * 
+     * @param readers
+     *            the authorities that may read
+     * @param readersDenied
+     *            the authorities that are denied read
+     * @return the readers as bitmaps
+     */
+    public AclReaders toAclReaders(Collection<String> readers, Collection<String> readersDenied)
+    {
+        IdSpace space = currentIdSpace();
+        return new AclReaders(toBitmap(space, readers), toBitmap(space, readersDenied));
+    }
+
+    private Bitmap toBitmap(IdSpace space, Collection<String> authorities)
+    {
+        int[] ids = new int[authorities.size()];
+        int count = 0;
+        for (String authority : authorities)
+        {
+            if (authority != null)
+            {
+                ids[count++] = space.getId(authority);
+            }
+        }
+        return Bitmap.of(space.generation, Arrays.copyOf(ids, count));
+    }
+
+    /**
+     * @return true if the bitmap was built from the current id space
+     */
+    public boolean isCurrent(Bitmap bitmap)
+    {
+        return bitmap.getGeneration() == idSpace.generation;
+    }
+
+    /**
+     * @return the generation of the current id space
+     */
+    public int getGeneration()
+    {
+        return idSpace.generation;
+    }
+
+    /**
+     * @return the number of authorities that have an id in the current id space
+     */
+    public int size()
+    {
+        return idSpace.authorityIds.size();
+    }
+
+    private IdSpace currentIdSpace()
+    {
+        IdSpace space = idSpace;
+        if (space.nextId.get() >= maxIds)
+        {
+            synchronized (this)
+            {
+                if (idSpace == space)
+                {
+                    idSpace = new IdSpace(space.generation + 1);
+                }
+                space = idSpace;
+            }
+        }
+        return space;
+    }
+
+    private static class IdSpace
+    {
+        private final int generation;
+        private final ConcurrentMap<String, Integer> authorityIds = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger();
+
+        private IdSpace(int generation)
+        {
+            this.generation = generation;
+        }
+
+        private int getId(String authority)
+        {
+            Integer id = authorityIds.get(authority);
+            if (id == null)
+            {
+                id = authorityIds.computeIfAbsent(authority, key -> nextId.getAndIncrement());
+            }
+            return id;
+        }
+    }
+
+    /**
+     * An immutable set of authority ids. Small or scattered sets are held as a sorted array of ids and sets that are dense over their range as words of bits starting at the lowest id, so the size depends on the members rather than on the highest id handed out.
+     */
+    public static final class Bitmap implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private static final int[] NO_IDS = new int[0];
+
+        private final int generation;
+        /** The sorted ids, or null if the set is held as words */
+        private final int[] ids;
+        /** The bits of the set, relative to the base, or null if the set is held as ids */
+        private final long[] words;
+        /** The id of the first bit of the words, a multiple of 64 */
+        private final int base;
+        private final int cardinality;
+
+        private Bitmap(int generation, int[] ids, long[] words, int base, int cardinality)
+        {
+            this.generation = generation;
+            this.ids = ids;
+            this.words = words;
+            this.base = base;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * Build a bitmap, choosing the smaller of the two representations
+         * 
+         * @param generation
+         *            the generation of the id space the ids belong to
+         * @param ids
+         *            the ids, in any order and possibly repeated. The array may be reordered.
+         */
+        static Bitmap of(int generation, int[] ids)
+        {
+            if (ids.length == 0)
+            {
+                return new Bitmap(generation, NO_IDS, null, 0, 0);
+            }
+            Arrays.sort(ids);
+            int count = 1;
+            for (int i = 1; i < ids.length; i++)
+            {
+                if (ids[i] != ids[count - 1])
+                {
+                    ids[count++] = ids[i];
+                }
+            }
+            int base = ids[0] & ~63;
+            int wordCount = ((ids[count - 1] - base) >>> 6) + 1;
+            // A word costs the same as two ids
+            if (wordCount * 2 < count)
+            {
+                long[] words = new long[wordCount];
+                for (int i = 0; i < count; i++)
+                {
+                    int bit = ids[i] - base;
+                    words[bit >>> 6] |= 1L << bit;
+                }
+                return new Bitmap(generation, null, words, base, count);
+            }
+            return new Bitmap(generation, count == ids.length ? ids : Arrays.copyOf(ids, count), null, 0, count);
+        }
+
+        /**
+         * @return the generation of the id space the ids belong to
+         */
+        public int getGeneration()
+        {
+            return generation;
+        }
+
+        /**
+         * @return the number of ids in the set
+         */
+        public int size()
+        {
+            return cardinality;
+        }
+
+        /**
+         * @return true if the set holds its ids as words of bits rather than as an array of ids
+         */
+        boolean isDense()
+        {
+            return words != null;
+        }
+
+        /**
+         * @return true if the id is in the set
+         */
+        public boolean contains(int id)
+        {
+            if (words == null)
+            {
+                return Arrays.binarySearch(ids, id) >= 0;
+            }
+            if (id < base)
+            {
+                return false;
+            }
+            int bit = id - base;
+            int word = bit >>> 6;
+            return word < words.length && (words[word] & (1L << bit)) != 0;
+        }
+
+        /**
+         * @return true if the two sets have an id in common
+         * @throws IllegalArgumentException
+         *             if the sets come from different id spaces
+         */
+        public boolean intersects(Bitmap other)
+        {
+            if (generation != other.generation)
+            {
+                throw new IllegalArgumentException("Bitmaps from id space generations " + generation + " and " + other.generation + " cannot be compared");
+            }
+            if (cardinality == 0 || other.cardinality == 0)
+            {
+                return false;
+            }
+            if (words != null && other.words != null)
+            {
+                return intersectsWords(other);
+            }
+            if (words != null)
+            {
+                return other.containsAnyOf(this);
+            }
+            if (other.words != null)
+            {
+                return containsAnyOf(other);
+            }
+            return ids.length <= other.ids.length ? intersectsIds(ids, other.ids) : intersectsIds(other.ids, ids);
+        }
+
+        /**
+         * Probe the dense set for each of the ids of this set, which is held as ids
+         */
+        private boolean containsAnyOf(Bitmap dense)
+        {
+            for (int id : ids)
+            {
+                if (dense.contains(id))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean intersectsWords(Bitmap other)
+        {
+            int from = Math.max(base, other.base);
+            int to = Math.min(base + (words.length << 6), other.base + (other.words.length << 6));
+            for (int id = from; id < to; id += 64)
+            {
+                if ((words[(id - base) >>> 6] & other.words[(id - other.base) >>> 6]) != 0)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean intersectsIds(int[] smaller, int[] larger)
+        {
+            if (larger.length > smaller.length * 8)
+            {
+                for (int id : smaller)
+                {
+                    if (Arrays.binarySearch(larger, id) >= 0)
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int i = 0;
+            int j = 0;
+            while (i < smaller.length && j < larger.length)
+            {
+                if (smaller[i] == larger[j])
+                {
+                    return true;
+                }
+                else if (smaller[i] < larger[j])
+                {
+                    i++;
+                }
+                else
+                {
+                    j++;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The readers and denied readers of an ACL as authority bitmaps from the same id space.
+     */
+    public static class AclReaders implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Bitmap readers;
+        private final Bitmap readersDenied;
+
+        public AclReaders(Bitmap readers, Bitmap readersDenied)
+        {
+            if (readers.getGeneration() != readersDenied.getGeneration())
+            {
+                throw new IllegalArgumentException("The readers and denied readers must come from the same id space");
+            }
+            this.readers = readers;
+            this.readersDenied = readersDenied;
+        }
+
+        /**
+         * @return the generation of the id space the bitmaps belong to
+         */
+        public int getGeneration()
+        {
+            return readers.getGeneration();
+        }
+
+        /**
+         * @return true if any of the authorities may read
+         */
+        public boolean canRead(Bitmap authorities)
+        {
+            return readers.intersects(authorities);
+        }
+
+        /**
+         * @return true if any of the authorities is denied read
+         */
+        public boolean isReadDenied(Bitmap authorities)
+        {
+            return readersDenied.intersects(authorities);
+        }
+    }
+}
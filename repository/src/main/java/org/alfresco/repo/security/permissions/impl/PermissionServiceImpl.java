@@ -28,7 +28,10 @@ package org.alfresco.repo.security.permissions.impl;
 import static org.apache.commons.lang3.BooleanUtils.toBoolean;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -47,6 +50,7 @@ import org.alfresco.model.ContentModel;
 import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.domain.permissions.AclDAO;
 import org.alfresco.repo.domain.permissions.FixedAclUpdater;
+import org.alfresco.repo.node.NodeBulkLoader;
 import org.alfresco.repo.policy.ClassPolicyDelegate;
 import org.alfresco.repo.policy.JavaBehaviour;
 import org.alfresco.repo.policy.PolicyComponent;
@@ -117,6 +121,10 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
 
     protected SimpleCache<Serializable, Set<String>> readersDeniedCache;
 
+    protected SimpleCache<Serializable, AuthorityBitmaps.AclReaders> readerBitmapsCache;
+
+    protected final AuthorityBitmaps authorityBitmaps = new AuthorityBitmaps();
+
     /* Access to the model */
     protected ModelDAO modelDAO;
 
@@ -153,6 +161,8 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
 
     protected FixedAclUpdater fixedAclUpdater;
 
+    protected NodeBulkLoader nodeBulkLoader;
+
     protected boolean anyDenyDenies = false;
 
     private final ExtendedTrait<PermissionServiceTrait> permissionServiceTrait;
@@ -198,6 +208,10 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
         accessCache.clear();
         readersCache.clear();
         readersDeniedCache.clear();
+        if (readerBitmapsCache != null)
+        {
+            readerBitmapsCache.clear();
+        }
     }
 
     public boolean getAnyDenyDenies()
@@ -296,6 +310,17 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
         this.fixedAclUpdater = fixedAclUpdater;
     }
 
+    /**
+     * Set the bulk loader used to preload the nodes of a batch permission check (optional)
+     * 
+     * @param nodeBulkLoader
+     *            NodeBulkLoader
+     */
+    public void setNodeBulkLoader(NodeBulkLoader nodeBulkLoader)
+    {
+        this.nodeBulkLoader = nodeBulkLoader;
+    }
+
     /**
      * Set the permissions access cache.
      * 
@@ -325,6 +350,26 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
         this.readersDeniedCache = readersDeniedCache;
     }
 
+    /**
+     * Set the cache of ACL readers held as authority bitmaps (optional). This must be a local cache as the authority ids are only valid in this JVM. When it is not set read checks intersect the reader sets.
+     * 
+     * @param readerBitmapsCache
+     *            the readerBitmapsCache to set
+     */
+    public void setReaderBitmapsCache(SimpleCache<Serializable, AuthorityBitmaps.AclReaders> readerBitmapsCache)
+    {
+        this.readerBitmapsCache = readerBitmapsCache;
+    }
+
+    /**
+     * @param readerBitmapsMaxAuthorityIds
+     *            the number of authority ids handed out for reader bitmaps before the ids are recycled
+     */
+    public void setReaderBitmapsMaxAuthorityIds(int readerBitmapsMaxAuthorityIds)
+    {
+        authorityBitmaps.setMaxIds(readerBitmapsMaxAuthorityIds);
+    }
+
     /**
      * Set the policy component
      * 
@@ -674,6 +719,176 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
 
     }
 
+    /**
+     * Checks the permission on each node in the same way as {@link #hasPermission(NodeRef, PermissionReference)}. The nodes are preloaded in bulk and nodes that share an ACL, type, aspects and dynamic authorities are evaluated once.
+     * <p>
+     * Like the single check, nodes with new style ACLs are evaluated against their ACL and nodes with old style ACLs fall back to the single check, and so to the access cache. The batch is extensible so that trait extensions, such as the virtual folder one, see every node.
+     */
+    @Override
+    @Extend(traitAPI = PermissionServiceTrait.class, extensionAPI = PermissionServiceExtension.class)
+    public Map<NodeRef, AccessStatus> hasPermissions(Collection<NodeRef> nodeRefs, String perm)
+    {
+        Map<NodeRef, AccessStatus> statuses = new HashMap<>(nodeRefs.size() * 2);
+        if (AuthenticationUtil.getRunAsUser() == null || AuthenticationUtil.isRunAsUserTheSystemUser())
+        {
+            for (NodeRef nodeRef : nodeRefs)
+            {
+                statuses.put(nodeRef, hasPermission(nodeRef, perm));
+            }
+            return statuses;
+        }
+
+        PermissionReference permissionReference = getPermissionReference(perm);
+        if (permissionReference != null && permissionReference.equals(OLD_ALL_PERMISSIONS_REFERENCE))
+        {
+            permissionReference = getAllPermissionReference();
+        }
+
+        preloadNodes(nodeRefs);
+
+        Map<AclEvaluationKey, AccessStatus> evaluated = new HashMap<>();
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            if (!statuses.containsKey(nodeRef))
+            {
+                statuses.put(nodeRef, hasPermission(nodeRef, permissionReference, evaluated));
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Checks the permission on a node, sharing the result of the ACL evaluation with other nodes of the same batch.
+     */
+    private AccessStatus hasPermission(NodeRef passedNodeRef, PermissionReference perm, Map<AclEvaluationKey, AccessStatus> evaluated)
+    {
+        if (passedNodeRef == null || perm == null || isVersionNodeRef(passedNodeRef) || !nodeService.exists(passedNodeRef))
+        {
+            return hasPermission(passedNodeRef, perm);
+        }
+
+        NodeRef nodeRef = tenantService.getName(passedNodeRef);
+        AccessControlListProperties properties = permissionsDaoComponent.getAccessControlListProperties(nodeRef);
+        if ((properties == null) || (properties.getAclType() == null) || (properties.getAclType() == ACLType.OLD))
+        {
+            return hasPermission(passedNodeRef, perm);
+        }
+
+        PermissionContext context = new PermissionContext(nodeService.getType(nodeRef));
+        context.getAspects().addAll(nodeService.getAspects(nodeRef));
+        Authentication auth = AuthenticationUtil.getRunAsAuthentication();
+        if (auth != null)
+        {
+            String user = AuthenticationUtil.getRunAsUser();
+            for (String dynamicAuthority : getDynamicAuthorities(auth, nodeRef, perm))
+            {
+                context.addDynamicAuthorityAssignment(user, dynamicAuthority);
+            }
+        }
+
+        AclEvaluationKey key = new AclEvaluationKey(properties.getId(), context.getType(), context.getAspects(), context.getDynamicAuthorityAssignment());
+        AccessStatus status = evaluated.get(key);
+        if (status == null)
+        {
+            status = hasPermission(properties.getId(), context, perm);
+            evaluated.put(key, status);
+        }
+        return status;
+    }
+
+    /**
+     * Checks read permission on each node in the same way as {@link #hasReadPermission(NodeRef)}. The nodes are preloaded in bulk and the readers of each ACL are tested once.
+     */
+    @Override
+    @Extend(traitAPI = PermissionServiceTrait.class, extensionAPI = PermissionServiceExtension.class)
+    public Map<NodeRef, AccessStatus> hasReadPermissions(Collection<NodeRef> nodeRefs)
+    {
+        Map<NodeRef, AccessStatus> statuses = new HashMap<>(nodeRefs.size() * 2);
+        String runAsUser = AuthenticationUtil.getRunAsUser();
+        if (runAsUser == null || AuthenticationUtil.isRunAsUserTheSystemUser())
+        {
+            for (NodeRef nodeRef : nodeRefs)
+            {
+                statuses.put(nodeRef, hasReadPermission(nodeRef));
+            }
+            return statuses;
+        }
+        if (isReadPermissionForced())
+        {
+            return hasPermissions(nodeRefs, PermissionService.READ);
+        }
+
+        preloadNodes(nodeRefs);
+
+        Boolean adminRead = null;
+        Map<Long, AccessStatus> aclStatuses = new HashMap<>();
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            if (statuses.containsKey(nodeRef))
+            {
+                continue;
+            }
+            if (nodeRef == null || !nodeService.exists(nodeRef))
+            {
+                statuses.put(nodeRef, AccessStatus.ALLOWED);
+                continue;
+            }
+
+            Long aclID = nodeService.getNodeAclId(nodeRef);
+            AccessStatus status;
+            if (aclID == null)
+            {
+                status = hasPermission(nodeRef, readPermissionReference);
+            }
+            else
+            {
+                status = aclStatuses.get(aclID);
+                if (status == null)
+                {
+                    status = canRead(aclID);
+                    aclStatuses.put(aclID, status);
+                }
+                if (status != AccessStatus.ALLOWED)
+                {
+                    if (adminRead == null)
+                    {
+                        adminRead = adminRead() == AccessStatus.ALLOWED;
+                    }
+                    if (!adminRead && ownerRead(runAsUser, nodeRef) != AccessStatus.ALLOWED)
+                    {
+                        status = AccessStatus.DENIED;
+                    }
+                    else
+                    {
+                        status = AccessStatus.ALLOWED;
+                    }
+                }
+            }
+            statuses.put(nodeRef, status);
+        }
+        return statuses;
+    }
+
+    /**
+     * Load the nodes of a batch permission check into the node caches with as few queries as possible.
+     */
+    private void preloadNodes(Collection<NodeRef> nodeRefs)
+    {
+        if (nodeBulkLoader == null || nodeRefs.size() < 2)
+        {
+            return;
+        }
+        List<NodeRef> toLoad = new ArrayList<>(nodeRefs.size());
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            if (nodeRef != null && !isVersionNodeRef(nodeRef))
+            {
+                toLoad.add(tenantService.getName(nodeRef));
+            }
+        }
+        nodeBulkLoader.cacheNodes(toLoad);
+    }
+
     @Override
     @Extend(traitAPI = PermissionServiceTrait.class, extensionAPI = PermissionServiceExtension.class)
     public AccessStatus hasPermission(Long aclID, PermissionContext context, String permission)
@@ -795,6 +1010,12 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
 
     }
 
+    /**
+     * Everything that an ACL based permission evaluation of a node depends on, used to share the evaluation between the nodes of a batch check.
+     */
+    private record AclEvaluationKey(Long aclId, QName type, Set<QName> aspects, Map<String, Set<String>> dynamicAuthorityAssignment)
+    {}
+
     /**
      * Control permissions cache - only used when we do old style permission evaluations - which should only be in DM stores where no permissions have been set
      * 
@@ -1264,8 +1485,33 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
             return AccessStatus.ALLOWED;
         }
 
-        // any dynamic authorities other than those defined in the default permissions model with full
-        // control or read permission force hasPermission check
+        if (isReadPermissionForced())
+        {
+            return hasPermission(nodeRef, readPermissionReference);
+        }
+
+        Long aclID = nodeService.getNodeAclId(nodeRef);
+        if (aclID == null)
+        {
+            // ACLID is null - need to call default permissions evaluation
+            // This will end up calling the old-style ACL code that walks up the ACL tree
+            status = hasPermission(nodeRef, readPermissionReference);
+        }
+        else
+        {
+            status = (canRead(aclID) == AccessStatus.ALLOWED ||
+                    adminRead() == AccessStatus.ALLOWED ||
+                    ownerRead(runAsUser, nodeRef) == AccessStatus.ALLOWED) ? AccessStatus.ALLOWED : AccessStatus.DENIED;
+        }
+
+        return status;
+    }
+
+    /**
+     * Any dynamic authorities other than those defined in the default permissions model with full control or read permission force a full hasPermission check for read.
+     */
+    private boolean isReadPermissionForced()
+    {
         Boolean forceHasPermission = (Boolean) AlfrescoTransactionSupport.getResource("forceHasPermission");
         if (forceHasPermission == null)
         {
@@ -1286,27 +1532,7 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
             }
             AlfrescoTransactionSupport.bindResource("forceHasPermission", forceHasPermission);
         }
-
-        if (forceHasPermission == Boolean.TRUE)
-        {
-            return hasPermission(nodeRef, readPermissionReference);
-        }
-
-        Long aclID = nodeService.getNodeAclId(nodeRef);
-        if (aclID == null)
-        {
-            // ACLID is null - need to call default permissions evaluation
-            // This will end up calling the old-style ACL code that walks up the ACL tree
-            status = hasPermission(nodeRef, readPermissionReference);
-        }
-        else
-        {
-            status = (canRead(aclID) == AccessStatus.ALLOWED ||
-                    adminRead() == AccessStatus.ALLOWED ||
-                    ownerRead(runAsUser, nodeRef) == AccessStatus.ALLOWED) ? AccessStatus.ALLOWED : AccessStatus.DENIED;
-        }
-
-        return status;
+        return forceHasPermission == Boolean.TRUE;
     }
 
     protected AccessStatus adminRead()
@@ -1437,6 +1663,15 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
     {
         Set<String> authorities = getAuthorisations();
 
+        if (readerBitmapsCache != null)
+        {
+            AccessStatus status = canReadByBitmaps(aclId, authorities);
+            if (status != null)
+            {
+                return status;
+            }
+        }
+
         // test denied
 
         if (anyDenyDenies)
@@ -1468,6 +1703,62 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
         return AccessStatus.DENIED;
     }
 
+    /**
+     * Check read access by intersecting the authority bitmaps of the current user and of the ACL readers.
+     * 
+     * @return the access status, or null if the authority ids were recycled during the check and the bitmaps cannot be compared
+     */
+    private AccessStatus canReadByBitmaps(Long aclId, Set<String> authorities)
+    {
+        AccessControlListProperties properties = aclDaoComponent.getAccessControlListProperties(aclId);
+        if (properties == null)
+        {
+            return AccessStatus.DENIED;
+        }
+        AuthorityBitmaps.Bitmap authorityBitmap = getAuthorisationsBitmap(authorities);
+        AuthorityBitmaps.AclReaders aclReaders = getReaderBitmaps(aclId, properties, authorityBitmap.getGeneration());
+        if (aclReaders.getGeneration() != authorityBitmap.getGeneration())
+        {
+            return null;
+        }
+        if (anyDenyDenies && aclReaders.isReadDenied(authorityBitmap))
+        {
+            return AccessStatus.DENIED;
+        }
+        return aclReaders.canRead(authorityBitmap) ? AccessStatus.ALLOWED : AccessStatus.DENIED;
+    }
+
+    /**
+     * Get the readers of an ACL as authority bitmaps. The cache is keyed on the ACL properties, which include the ACL version, so any change to the ACL in a change set leads to a new entry. An entry from another generation of authority ids is rebuilt.
+     */
+    private AuthorityBitmaps.AclReaders getReaderBitmaps(Long aclId, AccessControlListProperties properties, int generation)
+    {
+        AuthorityBitmaps.AclReaders aclReaders = readerBitmapsCache.get((Serializable) properties);
+        if (aclReaders == null || aclReaders.getGeneration() != generation)
+        {
+            aclReaders = authorityBitmaps.toAclReaders(getReaders(aclId), getReadersDenied(aclId));
+            readerBitmapsCache.put((Serializable) properties, aclReaders);
+        }
+        return aclReaders;
+    }
+
+    /**
+     * Get the bitmap of the current authorisations, built once per transaction and user and again if the authority ids are recycled.
+     */
+    private AuthorityBitmaps.Bitmap getAuthorisationsBitmap(Set<String> authorities)
+    {
+        Authentication auth = AuthenticationUtil.getRunAsAuthentication();
+        String username = (auth == null) ? null : ((User) auth.getPrincipal()).getUsername();
+        @SuppressWarnings("unchecked")
+        Pair<String, AuthorityBitmaps.Bitmap> bitmap = (Pair<String, AuthorityBitmaps.Bitmap>) AlfrescoTransactionSupport.getResource("MyAuthBitmapCache");
+        if (bitmap == null || !EqualsHelper.nullSafeEquals(username, bitmap.getFirst()) || !authorityBitmaps.isCurrent(bitmap.getSecond()))
+        {
+            bitmap = new Pair<String, AuthorityBitmaps.Bitmap>(username, authorityBitmaps.toBitmap(authorities));
+            AlfrescoTransactionSupport.bindResource("MyAuthBitmapCache", bitmap);
+        }
+        return bitmap.getSecond();
+    }
+
     //
     // SUPPORT CLASSES
     //
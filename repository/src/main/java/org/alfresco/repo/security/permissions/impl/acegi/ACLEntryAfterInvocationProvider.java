@@ -56,6 +56,7 @@ import org.alfresco.repo.security.permissions.PermissionCheckCollection;
 import org.alfresco.repo.security.permissions.PermissionCheckValue;
 import org.alfresco.repo.security.permissions.PermissionCheckedCollection.PermissionCheckedCollectionMixin;
 import org.alfresco.repo.security.permissions.PermissionCheckedValue;
+import org.alfresco.repo.security.permissions.PermissionServiceSPI;
 import org.alfresco.repo.security.permissions.impl.SimplePermissionReference;
 import org.alfresco.service.cmr.repository.AssociationRef;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
@@ -95,6 +96,8 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
 
     private long maxPermissionCheckTimeMillis;
 
+    private int permissionCheckBatchSize = 1;
+
     private Set<QName> unfilteredForClassQNames = new HashSet<QName>();
 
     private Set<String> unfilteredFor = null;
@@ -199,6 +202,17 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
         this.maxPermissionCheckTimeMillis = maxPermissionCheckTimeMillis;
     }
 
+    /**
+     * Set the number of result set rows that are permission checked together. Nodes in a batch are loaded together and nodes that share an ACL are evaluated once. The check limits are tested between batches and, when there is a time limit, batches are kept small enough to finish within it.
+     * 
+     * @param permissionCheckBatchSize
+     *            int
+     */
+    public void setPermissionCheckBatchSize(int permissionCheckBatchSize)
+    {
+        this.permissionCheckBatchSize = permissionCheckBatchSize;
+    }
+
     /**
      * Types and aspects for which we will abstain on voting if they are present.
      */
@@ -621,13 +635,14 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
 
         try
         {
-            // Iterate over all the elements.
-            for (int i = 0; i < returnedObject.length(); i++)
+            // Iterate over all the elements a batch at a time.
+            int length = returnedObject.length();
+            int batchSize = Math.max(1, permissionCheckBatchSize);
+            int i = 0;
+            while (i < length)
             {
                 long currentTimeMillis = System.currentTimeMillis();
 
-                NodeRef nodeRef = returnedObject.getNodeRef(i);
-
                 // All permission checks must pass
                 filteringResultSet.setIncluded(i, true);
 
@@ -646,40 +661,73 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
                     break;
                 }
 
+                int end = Math.min(length, Math.min(maxChecks, i + nextBatchSize(batchSize, i, currentTimeMillis - startTimeMillis, maxCheckTime)));
+                for (int j = i + 1; j < end; j++)
+                {
+                    filteringResultSet.setIncluded(j, true);
+                }
+
                 // if supportedDefinitions is different from null, it is used to define the permission filter in results set.
                 if (supportedDefinitions != null)
                 {
                     for (ConfigAttributeDefintion cad : supportedDefinitions)
                     {
-                        NodeRef testNodeRef = null;
-                        if (cad.typeString.equals(AFTER_ACL_NODE))
-                        {
-                            testNodeRef = returnedObject.getNodeRef(i);
-                        }
-                        else if (cad.typeString.equals(AFTER_ACL_PARENT))
-                        {
-                            testNodeRef = returnedObject.getChildAssocRef(i).getParentRef();
-                        }
-
-                        if (isUnfiltered(testNodeRef))
+                        List<Integer> rows = new ArrayList<Integer>(end - i);
+                        List<NodeRef> testNodeRefs = new ArrayList<NodeRef>(end - i);
+                        for (int j = i; j < end; j++)
                         {
-                            continue;
+                            NodeRef testNodeRef = null;
+                            if (cad.typeString.equals(AFTER_ACL_NODE))
+                            {
+                                testNodeRef = returnedObject.getNodeRef(j);
+                            }
+                            else if (cad.typeString.equals(AFTER_ACL_PARENT))
+                            {
+                                testNodeRef = returnedObject.getChildAssocRef(j).getParentRef();
+                            }
+
+                            if (isUnfiltered(testNodeRef))
+                            {
+                                continue;
+                            }
+
+                            if (filteringResultSet.getIncluded(j) && (testNodeRef != null))
+                            {
+                                rows.add(j);
+                                testNodeRefs.add(testNodeRef);
+                            }
                         }
 
-                        if (filteringResultSet.getIncluded(i) && (testNodeRef != null)
-                                && (permissionService.hasPermission(
-                                        testNodeRef, cad.required.toString()) == AccessStatus.DENIED))
+                        Map<NodeRef, AccessStatus> statuses = hasPermissions(testNodeRefs, cad.required.toString());
+                        for (int k = 0; k < rows.size(); k++)
                         {
-                            filteringResultSet.setIncluded(i, false);
+                            if (statuses.get(testNodeRefs.get(k)) == AccessStatus.DENIED)
+                            {
+                                filteringResultSet.setIncluded(rows.get(k), false);
+                            }
                         }
                     }
                 }
-                else if (permissionService.hasReadPermission(nodeRef) == AccessStatus.DENIED)
+                else
                 // If supportedDefinitions is not passed as parameter, permissionService is used to check permission on results.
                 {
-                    filteringResultSet.setIncluded(i, false);
+                    List<NodeRef> nodeRefs = new ArrayList<NodeRef>(end - i);
+                    for (int j = i; j < end; j++)
+                    {
+                        nodeRefs.add(returnedObject.getNodeRef(j));
+                    }
+
+                    Map<NodeRef, AccessStatus> statuses = hasReadPermissions(nodeRefs);
+                    for (int j = i; j < end; j++)
+                    {
+                        if (statuses.get(nodeRefs.get(j - i)) == AccessStatus.DENIED)
+                        {
+                            filteringResultSet.setIncluded(j, false);
+                        }
+                    }
                 }
 
+                i = end;
             }
         }
         finally
@@ -692,6 +740,68 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
         return filteringResultSet;
     }
 
+    /**
+     * Size the next batch of permission checks so that it does not run past the time limit. A batch is checked as a whole, so with a time limit the batches start with a single row and grow no faster than doubling, and are then capped by the number of rows that the rate measured so far allows in the time that is left.
+     *
+     * @param batchSize
+     *            the configured batch size
+     * @param checked
+     *            the number of rows checked so far
+     * @param elapsedMillis
+     *            the time spent so far
+     * @param maxCheckTime
+     *            the time limit
+     * @return the number of rows to check in the next batch, at least one
+     */
+    static int nextBatchSize(int batchSize, int checked, long elapsedMillis, long maxCheckTime)
+    {
+        if (maxCheckTime == Long.MAX_VALUE)
+        {
+            return batchSize;
+        }
+        long size = Math.min(batchSize, Math.max(1L, 2L * checked));
+        if (checked > 0 && elapsedMillis > 0)
+        {
+            long affordable = (long) ((double) (maxCheckTime - elapsedMillis) * checked / elapsedMillis);
+            size = Math.min(size, affordable);
+        }
+        return (int) Math.max(1L, size);
+    }
+
+    /**
+     * Check a permission on a batch of nodes, in bulk if the permission service supports it.
+     */
+    private Map<NodeRef, AccessStatus> hasPermissions(List<NodeRef> nodeRefs, String permission)
+    {
+        if (permissionService instanceof PermissionServiceSPI)
+        {
+            return ((PermissionServiceSPI) permissionService).hasPermissions(nodeRefs, permission);
+        }
+        Map<NodeRef, AccessStatus> statuses = new HashMap<NodeRef, AccessStatus>(nodeRefs.size() * 2);
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            statuses.put(nodeRef, permissionService.hasPermission(nodeRef, permission));
+        }
+        return statuses;
+    }
+
+    /**
+     * Check read permission on a batch of nodes, in bulk if the permission service supports it.
+     */
+    private Map<NodeRef, AccessStatus> hasReadPermissions(List<NodeRef> nodeRefs)
+    {
+        if (permissionService instanceof PermissionServiceSPI)
+        {
+            return ((PermissionServiceSPI) permissionService).hasReadPermissions(nodeRefs);
+        }
+        Map<NodeRef, AccessStatus> statuses = new HashMap<NodeRef, AccessStatus>(nodeRefs.size() * 2);
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            statuses.put(nodeRef, permissionService.hasReadPermission(nodeRef));
+        }
+        return statuses;
+    }
+
     /**
      * Compute a (Weak)FilteringResultSet by selecting the first maxSize elements from returnedObject.
      *
@@ -102,6 +102,7 @@ public class SOLRTrackingComponentImpl implements SearchTrackingComponent
     private DictionaryService dictionaryService;
     private boolean enabled = true;
     private boolean cacheAncestors = true;
+    private int metadataBatchSize = 0;
     private TypeIndexFilter typeIndexFilter;
     private AspectIndexFilter aspectIndexFilter;
     private ShardRegistry shardRegistry;
@@ -130,6 +131,15 @@ public class SOLRTrackingComponentImpl implements SearchTrackingComponent
         this.cacheAncestors = cacheAncestors;
     }
 
+    /**
+     * @param metadataBatchSize
+     *            the number of nodes that are bulk loaded and handed to the callback at a time by {@link #getNodesMetadata}, so that the nodes of a large request are not all held in the caches at once. Zero or less loads all the nodes of a request together.
+     */
+    public void setMetadataBatchSize(int metadataBatchSize)
+    {
+        this.metadataBatchSize = metadataBatchSize;
+    }
+
     public void setSearchDAO(SearchDAO searchDAO)
     {
         this.searchDAO = searchDAO;
@@ -584,7 +594,7 @@ public class SOLRTrackingComponentImpl implements SearchTrackingComponent
         return new CategoryPaths(categoryPaths, categoryParents);
     }
 
-    private List<Long> preCacheNodes(NodeMetaDataParameters nodeMetaDataParameters)
+    private List<Long> getNodeIds(NodeMetaDataParameters nodeMetaDataParameters)
     {
         int maxResults = nodeMetaDataParameters.getMaxResults();
         boolean isLimitSet = (maxResults != 0 && maxResults != Integer.MAX_VALUE);
@@ -614,7 +624,11 @@ public class SOLRTrackingComponentImpl implements SearchTrackingComponent
                 nodeIds.add(nodeId);
             }
         }
+        return nodeIds;
+    }
 
+    private void preCacheNodes(List<Long> nodeIds)
+    {
         // Pre-evaluate ancestors so we can bulk load them
         List<Long> ancestors;
         if (cacheAncestors)
@@ -629,8 +643,6 @@ public class SOLRTrackingComponentImpl implements SearchTrackingComponent
         nodeDAO.setCheckNodeConsistency();
         // bulk load nodes and their ancestors
         nodeDAO.cacheNodesById(ancestors);
-
-        return nodeIds;
     }
 
     /**
@@ -791,149 +803,209 @@ public class SOLRTrackingComponentImpl implements SearchTrackingComponent
         boolean includeChildIds = (resultFilter == null ? true : resultFilter.getIncludeChildIds());
         boolean includeTxnId = (resultFilter == null ? true : resultFilter.getIncludeTxnId());
 
-        List<Long> nodeIds = preCacheNodes(nodeMetaDataParameters);
-
-        for (Long nodeId : nodeIds)
+        List<Long> allNodeIds = getNodeIds(nodeMetaDataParameters);
+        int batchSize = (metadataBatchSize > 0 ? metadataBatchSize : Math.max(allNodeIds.size(), 1));
+        for (int fromIndex = 0; fromIndex < allNodeIds.size(); fromIndex += batchSize)
         {
-            Status status = nodeDAO.getNodeIdStatus(nodeId);
-            if (status == null)
-            {
-                // We've been called with the ID of a purged node, probably due to processing a transaction with a
-                // cascading delete. Fine to skip and assume it will be processed in a transaction.
-                // See org.alfresco.solr.tracker.CoreTracker.updateDescendantAuxDocs(NodeMetaData, boolean, SolrIndexSearcher)
-                continue;
-            }
-            NodeRef nodeRef = status.getNodeRef();
+            // Bulk load one batch at a time so that the nodes loaded stay in the caches until they are used
+            List<Long> nodeIds = allNodeIds.subList(fromIndex, Math.min(fromIndex + batchSize, allNodeIds.size()));
+            preCacheNodes(nodeIds);
 
-            NodeRef unversionedNodeRef = null;
-            if (isVersionNodeRef(nodeRef))
+            for (Long nodeId : nodeIds)
             {
-                unversionedNodeRef = convertVersionNodeRefToVersionedNodeRef(VersionUtil.convertNodeRef(nodeRef));
-            }
+                Status status = nodeDAO.getNodeIdStatus(nodeId);
+                if (status == null)
+                {
+                    // We've been called with the ID of a purged node, probably due to processing a transaction with a
+                    // cascading delete. Fine to skip and assume it will be processed in a transaction.
+                    // See org.alfresco.solr.tracker.CoreTracker.updateDescendantAuxDocs(NodeMetaData, boolean, SolrIndexSearcher)
+                    continue;
+                }
+                NodeRef nodeRef = status.getNodeRef();
 
-            NodeMetaData nodeMetaData = new NodeMetaData();
-            nodeMetaData.setNodeId(nodeId);
+                NodeRef unversionedNodeRef = null;
+                if (isVersionNodeRef(nodeRef))
+                {
+                    unversionedNodeRef = convertVersionNodeRefToVersionedNodeRef(VersionUtil.convertNodeRef(nodeRef));
+                }
 
-            if (includeNodeRef)
-            {
-                nodeMetaData.setNodeRef(tenantService.getBaseName(nodeRef, true));
-            }
+                NodeMetaData nodeMetaData = new NodeMetaData();
+                nodeMetaData.setNodeId(nodeId);
 
-            if (includeTxnId)
-            {
-                nodeMetaData.setTxnId(status.getDbTxnId());
-            }
+                if (includeNodeRef)
+                {
+                    nodeMetaData.setNodeRef(tenantService.getBaseName(nodeRef, true));
+                }
 
-            if (status.isDeleted())
-            {
-                rowHandler.processResult(nodeMetaData);
-                continue;
-            }
+                if (includeTxnId)
+                {
+                    nodeMetaData.setTxnId(status.getDbTxnId());
+                }
 
-            Map<QName, Serializable> props = null;
-            Set<QName> aspects = null;
+                if (status.isDeleted())
+                {
+                    rowHandler.processResult(nodeMetaData);
+                    continue;
+                }
 
-            Status unversionedStatus = null;
-            if (unversionedNodeRef != null)
-            {
-                unversionedStatus = nodeDAO.getNodeRefStatus(unversionedNodeRef);
-            }
+                Map<QName, Serializable> props = null;
+                Set<QName> aspects = null;
 
-            if (unversionedStatus != null)
-            {
-                nodeMetaData.setAclId(nodeDAO.getNodeAclId(unversionedStatus.getDbId()));
-            }
-            else
-            {
-                nodeMetaData.setAclId(nodeDAO.getNodeAclId(nodeId));
-            }
+                Status unversionedStatus = null;
+                if (unversionedNodeRef != null)
+                {
+                    unversionedStatus = nodeDAO.getNodeRefStatus(unversionedNodeRef);
+                }
 
-            if (includeType)
-            {
-                QName nodeType = getNodeType(nodeId);
-                if (nodeType != null)
+                if (unversionedStatus != null)
                 {
-                    nodeMetaData.setNodeType(nodeType);
+                    nodeMetaData.setAclId(nodeDAO.getNodeAclId(unversionedStatus.getDbId()));
                 }
                 else
                 {
-                    QName typeQName = null;
-                    TypeDefinition typeDefinition = null;
-
-                    String errorMessage = "NodeId " + nodeId + " with nodeRef " + nodeRef;
+                    nodeMetaData.setAclId(nodeDAO.getNodeAclId(nodeId));
+                }
 
-                    typeQName = nodeDAO.getNodeType(nodeId);
-                    if (typeQName != null)
+                if (includeType)
+                {
+                    QName nodeType = getNodeType(nodeId);
+                    if (nodeType != null)
                     {
-                        errorMessage += " has type " + typeQName + ", but this type is not registered in DictionaryService.";
+                        nodeMetaData.setNodeType(nodeType);
                     }
                     else
                     {
-                        errorMessage += " has no type.";
-                    }
+                        QName typeQName = null;
+                        TypeDefinition typeDefinition = null;
+
+                        String errorMessage = "NodeId " + nodeId + " with nodeRef " + nodeRef;
+
+                        typeQName = nodeDAO.getNodeType(nodeId);
+                        if (typeQName != null)
+                        {
+                            errorMessage += " has type " + typeQName + ", but this type is not registered in DictionaryService.";
+                        }
+                        else
+                        {
+                            errorMessage += " has no type.";
+                        }
 
-                    throw new AlfrescoRuntimeException(errorMessage + " It will be ignored by SOLR.");
+                        throw new AlfrescoRuntimeException(errorMessage + " It will be ignored by SOLR.");
+                    }
                 }
-            }
 
-            if (includeProperties)
-            {
-                if (props == null)
+                if (includeProperties)
                 {
-                    props = getProperties(nodeId);
+                    if (props == null)
+                    {
+                        props = getProperties(nodeId);
+                    }
+                    nodeMetaData.setProperties(props);
+                }
+                else
+                {
+                    nodeMetaData.setProperties(Collections.<QName, Serializable> emptyMap());
                 }
-                nodeMetaData.setProperties(props);
-            }
-            else
-            {
-                nodeMetaData.setProperties(Collections.<QName, Serializable> emptyMap());
-            }
 
-            if (includeAspects || includePaths || includeParentAssociations)
-            {
-                aspects = getNodeAspects(nodeId);
-            }
-            nodeMetaData.setAspects(aspects);
+                if (includeAspects || includePaths || includeParentAssociations)
+                {
+                    aspects = getNodeAspects(nodeId);
+                }
+                nodeMetaData.setAspects(aspects);
 
-            boolean ignoreLargeMetadata = (typeIndexFilter.shouldBeIgnored(getNodeType(nodeId)) || aspectIndexFilter.shouldBeIgnored(getNodeAspects(nodeId)));
+                boolean ignoreLargeMetadata = (typeIndexFilter.shouldBeIgnored(getNodeType(nodeId)) || aspectIndexFilter.shouldBeIgnored(getNodeAspects(nodeId)));
 
-            CategoryPaths categoryPaths = new CategoryPaths(new ArrayList<Pair<Path, QName>>(), new ArrayList<ChildAssociationRef>());
-            if (!ignoreLargeMetadata && (includePaths || includeParentAssociations))
-            {
-                if (props == null)
+                CategoryPaths categoryPaths = new CategoryPaths(new ArrayList<Pair<Path, QName>>(), new ArrayList<ChildAssociationRef>());
+                if (!ignoreLargeMetadata && (includePaths || includeParentAssociations))
                 {
-                    props = getProperties(nodeId);
+                    if (props == null)
+                    {
+                        props = getProperties(nodeId);
+                    }
+                    categoryPaths = getCategoryPaths(status.getNodeRef(), aspects, props);
                 }
-                categoryPaths = getCategoryPaths(status.getNodeRef(), aspects, props);
-            }
 
-            if (!ignoreLargeMetadata && (typeIndexFilter.isIgnorePathsForSpecificTypes() || aspectIndexFilter.isIgnorePathsForSpecificAspects() || includeParentAssociations))
-            {
-                // check if parent should be ignored - only the primary parent's type/aspects are relevant here
-                Pair<Long, ChildAssociationRef> primaryParentAssoc = nodeDAO.getPrimaryParentAssoc(nodeId);
-                if (primaryParentAssoc != null)
+                if (!ignoreLargeMetadata && (typeIndexFilter.isIgnorePathsForSpecificTypes() || aspectIndexFilter.isIgnorePathsForSpecificAspects() || includeParentAssociations))
                 {
-                    Long parentId = primaryParentAssoc.getFirst();
-                    if (typeIndexFilter.isIgnorePathsForSpecificTypes())
+                    // check if parent should be ignored - only the primary parent's type/aspects are relevant here
+                    Pair<Long, ChildAssociationRef> primaryParentAssoc = nodeDAO.getPrimaryParentAssoc(nodeId);
+                    if (primaryParentAssoc != null)
                     {
-                        QName parentType = getNodeType(parentId);
-                        ignoreLargeMetadata = typeIndexFilter.shouldBeIgnored(parentType);
+                        Long parentId = primaryParentAssoc.getFirst();
+                        if (typeIndexFilter.isIgnorePathsForSpecificTypes())
+                        {
+                            QName parentType = getNodeType(parentId);
+                            ignoreLargeMetadata = typeIndexFilter.shouldBeIgnored(parentType);
+                        }
+                        if (!ignoreLargeMetadata && aspectIndexFilter.isIgnorePathsForSpecificAspects())
+                        {
+                            ignoreLargeMetadata = aspectIndexFilter.shouldBeIgnored(getNodeAspects(parentId));
+                        }
                     }
-                    if (!ignoreLargeMetadata && aspectIndexFilter.isIgnorePathsForSpecificAspects())
+
+                    if (includeParentAssociations)
                     {
-                        ignoreLargeMetadata = aspectIndexFilter.shouldBeIgnored(getNodeAspects(parentId));
+                        // Fetch all parent associations (primary and non-primary, e.g. group membership) for indexing.
+                        // Do not filter by isPrimary here: doing so causes AbstractNodeDAOImpl.getParentAssocs to run a
+                        // DB query restricted to the primary parent once a node's total parent-assoc count exceeds
+                        // PARENT_ASSOCS_CACHE_FILTER_THRESHOLD, silently dropping non-primary parents (e.g. group
+                        // memberships) from what gets indexed.
+                        final List<ChildAssociationRef> parentAssocs = new ArrayList<>(100);
+                        nodeDAO.getParentAssocs(nodeId, null, null, null, new ChildAssocRefQueryCallback() {
+                            @Override
+                            public boolean preLoadNodes()
+                            {
+                                return false;
+                            }
+
+                            @Override
+                            public boolean orderResults()
+                            {
+                                return false;
+                            }
+
+                            @Override
+                            public boolean handle(Pair<Long, ChildAssociationRef> childAssocPair, Pair<Long, NodeRef> parentNodePair, Pair<Long, NodeRef> childNodePair)
+                            {
+                                parentAssocs.add(tenantService.getBaseName(childAssocPair.getSecond(), true));
+                                return true;
+                            }
+
+                            @Override
+                            public void done()
+                            {
+                                // No action required once all parent associations have been handled.
+                            }
+                        });
+
+                        for (ChildAssociationRef ref : categoryPaths.getCategoryParents())
+                        {
+                            parentAssocs.add(tenantService.getBaseName(ref, true));
+                        }
+
+                        CRC32 crc = new CRC32();
+                        for (ChildAssociationRef car : parentAssocs)
+                        {
+                            try
+                            {
+                                crc.update(car.toString().getBytes("UTF-8"));
+                            }
+                            catch (UnsupportedEncodingException e)
+                            {
+                                throw new RuntimeException("UTF-8 encoding is not supported");
+                            }
+                        }
+                        nodeMetaData.setParentAssocs(parentAssocs, crc.getValue());
                     }
                 }
 
-                if (includeParentAssociations)
+                nodeMetaData.setTenantDomain(tenantService.getDomain(nodeRef.getStoreRef().getIdentifier()));
+
+                if (includeChildAssociations || includeChildIds)
                 {
-                    // Fetch all parent associations (primary and non-primary, e.g. group membership) for indexing.
-                    // Do not filter by isPrimary here: doing so causes AbstractNodeDAOImpl.getParentAssocs to run a
-                    // DB query restricted to the primary parent once a node's total parent-assoc count exceeds
-                    // PARENT_ASSOCS_CACHE_FILTER_THRESHOLD, silently dropping non-primary parents (e.g. group
-                    // memberships) from what gets indexed.
-                    final List<ChildAssociationRef> parentAssocs = new ArrayList<>(100);
-                    nodeDAO.getParentAssocs(nodeId, null, null, null, new ChildAssocRefQueryCallback() {
+                    final List<ChildAssociationRef> childAssocs = new ArrayList<ChildAssociationRef>(100);
+                    final List<Long> childIds = new ArrayList<Long>(100);
+                    nodeDAO.getChildAssocs(nodeId, null, null, null, null, null, new ChildAssocRefQueryCallback() {
                         @Override
                         public boolean preLoadNodes()
                         {
@@ -947,185 +1019,132 @@ public class SOLRTrackingComponentImpl implements SearchTrackingComponent
                         }
 
                         @Override
-                        public boolean handle(Pair<Long, ChildAssociationRef> childAssocPair, Pair<Long, NodeRef> parentNodePair, Pair<Long, NodeRef> childNodePair)
+                        public boolean handle(Pair<Long, ChildAssociationRef> childAssocPair, Pair<Long, NodeRef> parentNodePair,
+                                Pair<Long, NodeRef> childNodePair)
                         {
-                            parentAssocs.add(tenantService.getBaseName(childAssocPair.getSecond(), true));
+                            QName nodeType = nodeDAO.getNodeType(childNodePair.getFirst());
+                            if (includeChildAssociations)
+                            {
+                                boolean addCurrentChildAssoc = true;
+                                if (typeIndexFilter.isIgnorePathsForSpecificTypes())
+                                {
+                                    addCurrentChildAssoc = !typeIndexFilter.shouldBeIgnored(nodeType);
+                                }
+                                if (!addCurrentChildAssoc && aspectIndexFilter.isIgnorePathsForSpecificAspects())
+                                {
+                                    addCurrentChildAssoc = !aspectIndexFilter.shouldBeIgnored(getNodeAspects(childNodePair.getFirst()));
+                                }
+                                if (addCurrentChildAssoc)
+                                {
+                                    childAssocs.add(tenantService.getBaseName(childAssocPair.getSecond(), true));
+                                }
+                            }
+
+                            if (includeChildIds)
+                            {
+                                boolean addCurrentId = true;
+                                if (typeIndexFilter.isIgnorePathsForSpecificTypes())
+                                {
+                                    addCurrentId = !typeIndexFilter.shouldBeIgnored(nodeType);
+                                }
+                                if (!addCurrentId)
+                                {
+                                    addCurrentId = !aspectIndexFilter.shouldBeIgnored(getNodeAspects(childNodePair.getFirst()));
+                                }
+                                if (addCurrentId)
+                                {
+                                    childIds.add(childNodePair.getFirst());
+                                }
+                            }
                             return true;
                         }
 
                         @Override
                         public void done()
-                        {
-                            // No action required once all parent associations have been handled.
-                        }
+                        {}
                     });
+                    nodeMetaData.setChildAssocs(childAssocs);
+                    nodeMetaData.setChildIds(childIds);
+                }
+
+                if (includePaths && !ignoreLargeMetadata)
+                {
+                    List<Path> directPaths = nodeDAO.getPaths(new Pair<Long, NodeRef>(nodeId, status.getNodeRef()), false);
+                    Collection<Pair<Path, QName>> paths = new ArrayList<Pair<Path, QName>>(directPaths.size() + categoryPaths.getPaths().size());
 
-                    for (ChildAssociationRef ref : categoryPaths.getCategoryParents())
+                    for (Path path : directPaths)
                     {
-                        parentAssocs.add(tenantService.getBaseName(ref, true));
+                        paths.add(new Pair<Path, QName>(path.getBaseNamePath(tenantService), null));
                     }
-
-                    CRC32 crc = new CRC32();
-                    for (ChildAssociationRef car : parentAssocs)
+                    for (Pair<Path, QName> catPair : categoryPaths.getPaths())
                     {
-                        try
-                        {
-                            crc.update(car.toString().getBytes("UTF-8"));
-                        }
-                        catch (UnsupportedEncodingException e)
+                        paths.add(new Pair<Path, QName>(catPair.getFirst().getBaseNamePath(tenantService), catPair.getSecond()));
+                    }
+                    if (unversionedStatus != null)
+                    {
+                        List<Path> unversionedPaths = nodeDAO.getPaths(new Pair<Long, NodeRef>(unversionedStatus.getDbId(), unversionedStatus.getNodeRef()), false);
+                        for (Path path : unversionedPaths)
                         {
-                            throw new RuntimeException("UTF-8 encoding is not supported");
+                            paths.add(new Pair<Path, QName>(path.getBaseNamePath(tenantService), null));
                         }
                     }
-                    nodeMetaData.setParentAssocs(parentAssocs, crc.getValue());
-                }
-            }
 
-            nodeMetaData.setTenantDomain(tenantService.getDomain(nodeRef.getStoreRef().getIdentifier()));
+                    nodeMetaData.setPaths(paths);
 
-            if (includeChildAssociations || includeChildIds)
-            {
-                final List<ChildAssociationRef> childAssocs = new ArrayList<ChildAssociationRef>(100);
-                final List<Long> childIds = new ArrayList<Long>(100);
-                nodeDAO.getChildAssocs(nodeId, null, null, null, null, null, new ChildAssocRefQueryCallback() {
-                    @Override
-                    public boolean preLoadNodes()
+                    // Calculate name path
+                    Collection<Collection<String>> namePaths = new ArrayList<Collection<String>>(2);
+                    nodeMetaData.setNamePaths(namePaths);
+                    for (Pair<Path, QName> catPair : paths)
                     {
-                        return false;
-                    }
-
-                    @Override
-                    public boolean orderResults()
-                    {
-                        return false;
-                    }
+                        Path path = catPair.getFirst();
 
-                    @Override
-                    public boolean handle(Pair<Long, ChildAssociationRef> childAssocPair, Pair<Long, NodeRef> parentNodePair,
-                            Pair<Long, NodeRef> childNodePair)
-                    {
-                        QName nodeType = nodeDAO.getNodeType(childNodePair.getFirst());
-                        if (includeChildAssociations)
+                        boolean added = false;
+                        List<String> namePath = new ArrayList<String>(path.size());
+                        NEXT_ELEMENT: for (Path.Element pathElement : path)
                         {
-                            boolean addCurrentChildAssoc = true;
-                            if (typeIndexFilter.isIgnorePathsForSpecificTypes())
+                            if (!(pathElement instanceof ChildAssocElement))
                             {
-                                addCurrentChildAssoc = !typeIndexFilter.shouldBeIgnored(nodeType);
+                                // This is some path element that is terminal to a cm:name path
+                                break;
                             }
-                            if (!addCurrentChildAssoc && aspectIndexFilter.isIgnorePathsForSpecificAspects())
+                            ChildAssocElement pathChildAssocElement = (ChildAssocElement) pathElement;
+                            NodeRef childNodeRef = pathChildAssocElement.getRef().getChildRef();
+                            Pair<Long, NodeRef> childNodePair = nodeDAO.getNodePair(childNodeRef);
+                            if (childNodePair == null)
                             {
-                                addCurrentChildAssoc = !aspectIndexFilter.shouldBeIgnored(getNodeAspects(childNodePair.getFirst()));
+                                // Gone
+                                break;
                             }
-                            if (addCurrentChildAssoc)
+                            Long childNodeId = childNodePair.getFirst();
+                            String childNodeName = (String) nodeDAO.getNodeProperty(childNodeId, ContentModel.PROP_NAME);
+                            if (childNodeName == null)
                             {
-                                childAssocs.add(tenantService.getBaseName(childAssocPair.getSecond(), true));
+                                // We have hit a non-name node, which acts as a root for cm:name
+                                // DH: There is no particular constraint here. This is just a decision made.
+                                namePath.clear();
+                                // We have to continue down the path as there could be a name path lower down
+                                continue NEXT_ELEMENT;
                             }
-                        }
-
-                        if (includeChildIds)
-                        {
-                            boolean addCurrentId = true;
-                            if (typeIndexFilter.isIgnorePathsForSpecificTypes())
+                            // We can finally add the name to the path
+                            namePath.add(childNodeName);
+                            // Add the path if this is the first entry in the name path
+                            if (!added)
                             {
-                                addCurrentId = !typeIndexFilter.shouldBeIgnored(nodeType);
-                            }
-                            if (!addCurrentId)
-                            {
-                                addCurrentId = !aspectIndexFilter.shouldBeIgnored(getNodeAspects(childNodePair.getFirst()));
-                            }
-                            if (addCurrentId)
-                            {
-                                childIds.add(childNodePair.getFirst());
+                                namePaths.add(namePath);
+                                added = true;
                             }
                         }
-                        return true;
-                    }
-
-                    @Override
-                    public void done()
-                    {}
-                });
-                nodeMetaData.setChildAssocs(childAssocs);
-                nodeMetaData.setChildIds(childIds);
-            }
-
-            if (includePaths && !ignoreLargeMetadata)
-            {
-                List<Path> directPaths = nodeDAO.getPaths(new Pair<Long, NodeRef>(nodeId, status.getNodeRef()), false);
-                Collection<Pair<Path, QName>> paths = new ArrayList<Pair<Path, QName>>(directPaths.size() + categoryPaths.getPaths().size());
-
-                for (Path path : directPaths)
-                {
-                    paths.add(new Pair<Path, QName>(path.getBaseNamePath(tenantService), null));
-                }
-                for (Pair<Path, QName> catPair : categoryPaths.getPaths())
-                {
-                    paths.add(new Pair<Path, QName>(catPair.getFirst().getBaseNamePath(tenantService), catPair.getSecond()));
-                }
-                if (unversionedStatus != null)
-                {
-                    List<Path> unversionedPaths = nodeDAO.getPaths(new Pair<Long, NodeRef>(unversionedStatus.getDbId(), unversionedStatus.getNodeRef()), false);
-                    for (Path path : unversionedPaths)
-                    {
-                        paths.add(new Pair<Path, QName>(path.getBaseNamePath(tenantService), null));
                     }
                 }
 
-                nodeMetaData.setPaths(paths);
-
-                // Calculate name path
-                Collection<Collection<String>> namePaths = new ArrayList<Collection<String>>(2);
-                nodeMetaData.setNamePaths(namePaths);
-                for (Pair<Path, QName> catPair : paths)
+                if (includeOwner)
                 {
-                    Path path = catPair.getFirst();
-
-                    boolean added = false;
-                    List<String> namePath = new ArrayList<String>(path.size());
-                    NEXT_ELEMENT: for (Path.Element pathElement : path)
-                    {
-                        if (!(pathElement instanceof ChildAssocElement))
-                        {
-                            // This is some path element that is terminal to a cm:name path
-                            break;
-                        }
-                        ChildAssocElement pathChildAssocElement = (ChildAssocElement) pathElement;
-                        NodeRef childNodeRef = pathChildAssocElement.getRef().getChildRef();
-                        Pair<Long, NodeRef> childNodePair = nodeDAO.getNodePair(childNodeRef);
-                        if (childNodePair == null)
-                        {
-                            // Gone
-                            break;
-                        }
-                        Long childNodeId = childNodePair.getFirst();
-                        String childNodeName = (String) nodeDAO.getNodeProperty(childNodeId, ContentModel.PROP_NAME);
-                        if (childNodeName == null)
-                        {
-                            // We have hit a non-name node, which acts as a root for cm:name
-                            // DH: There is no particular constraint here. This is just a decision made.
-                            namePath.clear();
-                            // We have to continue down the path as there could be a name path lower down
-                            continue NEXT_ELEMENT;
-                        }
-                        // We can finally add the name to the path
-                        namePath.add(childNodeName);
-                        // Add the path if this is the first entry in the name path
-                        if (!added)
-                        {
-                            namePaths.add(namePath);
-                            added = true;
-                        }
-                    }
+                    // cached in OwnableService
+                    nodeMetaData.setOwner(ownableService.getOwner(status.getNodeRef()));
                 }
-            }
 
-            if (includeOwner)
-            {
-                // cached in OwnableService
-                nodeMetaData.setOwner(ownableService.getOwner(status.getNodeRef()));
+                rowHandler.processResult(nodeMetaData);
             }
-
-            rowHandler.processResult(nodeMetaData);
         }
     }
 
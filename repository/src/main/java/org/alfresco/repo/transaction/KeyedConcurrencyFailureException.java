@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.transaction;
+
+import java.io.Serializable;
+
+import org.springframework.dao.ConcurrencyFailureException;
+
+/**
+ * A {@link ConcurrencyFailureException} that names the contended entity, for example the node whose row could not be updated.
+ * <p>
+ * The {@link RetryingTransactionHelper} passes the key to its {@link RetryContentionTracker} so that transactions colliding on a hot entity back off further and can be made to retry one at a time. A failure can also name the parent of the entity, for example the folder of a node, so that transactions that each collide on a different child of a busy parent are tracked together.
+ */
+public class KeyedConcurrencyFailureException extends ConcurrencyFailureException
+{
+    private static final long serialVersionUID = -6322574458716330963L;
+
+    private final Serializable contentionKey;
+    private final Serializable parentContentionKey;
+
+    /**
+     * @param msg
+     *            the detail message
+     * @param contentionKey
+     *            a key identifying the contended entity, with value-based equality
+     */
+    public KeyedConcurrencyFailureException(String msg, Serializable contentionKey)
+    {
+        super(msg);
+        this.contentionKey = contentionKey;
+        this.parentContentionKey = null;
+    }
+
+    /**
+     * @param msg
+     *            the detail message
+     * @param contentionKey
+     *            a key identifying the contended entity, with value-based equality
+     * @param cause
+     *            the root cause, if any
+     */
+    public KeyedConcurrencyFailureException(String msg, Serializable contentionKey, Throwable cause)
+    {
+        this(msg, contentionKey, null, cause);
+    }
+
+    /**
+     * @param msg
+     *            the detail message
+     * @param contentionKey
+     *            a key identifying the contended entity, with value-based equality
+     * @param parentContentionKey
+     *            a key identifying the parent of the contended entity, or <tt>null</tt> if it is not known
+     * @param cause
+     *            the root cause, if any
+     */
+    public KeyedConcurrencyFailureException(String msg, Serializable contentionKey, Serializable parentContentionKey, Throwable cause)
+    {
+        super(msg, cause);
+        this.contentionKey = contentionKey;
+        this.parentContentionKey = parentContentionKey;
+    }
+
+    /**
+     * @return the key identifying the contended entity
+     */
+    public Serializable getContentionKey()
+    {
+        return contentionKey;
+    }
+
+    /**
+     * @return the key identifying the parent of the contended entity, or <tt>null</tt> if it is not known
+     */
+    public Serializable getParentContentionKey()
+    {
+        return parentContentionKey;
+    }
+}
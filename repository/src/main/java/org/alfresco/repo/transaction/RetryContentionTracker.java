@@ -0,0 +1,361 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.transaction;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.management.DynamicMBeanExportOperations;
+
+/**
+ * Shared record of the entities that {@link RetryingTransactionHelper} transactions collide on, and of the retries made by each type of callback.
+ * <p>
+ * A collision is recorded for the {@link KeyedConcurrencyFailureException#getContentionKey() key} of every retried failure. Collisions on a key are counted until no further collision has happened for <tt>collisionWindowMs</tt>, and the count drives:
+ * <ul>
+ * <li>an exponential, jittered retry wait, so that the transactions piling up on a hot key spread out rather than retrying in step</li>
+ * <li>optionally, once a key has seen <tt>serializeAfterCollisions</tt> collisions, a striped local lock that retries on the key must hold, so that they run one at a time on this server instead of failing each other</li>
+ * </ul>
+ * The per-callback statistics (executions, retries, failures and the time lost to failed attempts and waits) are available from {@link #getCallbackStatistics()}, and through JMX when an exporter is set.
+ */
+public class RetryContentionTracker implements RetryContentionTrackerMXBean
+{
+    private static final Log logger = LogFactory.getLog(RetryContentionTracker.class);
+    private static final String LAMBDA_MARKER = "$$Lambda";
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    private int maxTrackedKeys = 10000;
+    private long collisionWindowMs = 60000L;
+    private int serializeAfterCollisions = 0;
+    private int lockStripes = 64;
+    private DynamicMBeanExportOperations mbeanExporter;
+    private String objectName = "Alfresco:Name=RetryContentionTracker";
+
+    private Cache<Serializable, AtomicInteger> collisionsByKey;
+    private ReentrantLock[] locks;
+    private final ThreadLocal<ReentrantLock> heldLock = new ThreadLocal<>();
+    private final ConcurrentMap<String, CallbackStatistics> callbackStatistics = new ConcurrentHashMap<>();
+
+    public RetryContentionTracker()
+    {
+        init();
+    }
+
+    /**
+     * @param maxTrackedKeys
+     *            the maximum number of contended keys remembered (default 10000)
+     */
+    public void setMaxTrackedKeys(int maxTrackedKeys)
+    {
+        this.maxTrackedKeys = maxTrackedKeys;
+    }
+
+    /**
+     * @param collisionWindowMs
+     *            the time without collisions after which a key is no longer considered contended (default 60s)
+     */
+    public void setCollisionWindowMs(long collisionWindowMs)
+    {
+        this.collisionWindowMs = collisionWindowMs;
+    }
+
+    /**
+     * @param serializeAfterCollisions
+     *            the number of collisions on a key after which retries on that key are run one at a time, or zero (default) to never serialize
+     */
+    public void setSerializeAfterCollisions(int serializeAfterCollisions)
+    {
+        this.serializeAfterCollisions = serializeAfterCollisions;
+    }
+
+    /**
+     * @param lockStripes
+     *            the number of locks shared by the serialized keys (default 64)
+     */
+    public void setLockStripes(int lockStripes)
+    {
+        this.lockStripes = lockStripes;
+    }
+
+    /**
+     * @param mbeanExporter
+     *            used to make the statistics available through JMX (optional)
+     */
+    public void setMbeanExporter(DynamicMBeanExportOperations mbeanExporter)
+    {
+        this.mbeanExporter = mbeanExporter;
+    }
+
+    /**
+     * @param objectName
+     *            the JMX name of the tracker (default <tt>Alfresco:Name=RetryContentionTracker</tt>)
+     */
+    public void setObjectName(String objectName)
+    {
+        this.objectName = objectName;
+    }
+
+    /**
+     * Apply the configuration
+     */
+    public void init()
+    {
+        collisionsByKey = CacheBuilder.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterAccess(collisionWindowMs, TimeUnit.MILLISECONDS)
+                .build();
+        locks = new ReentrantLock[Math.max(1, lockStripes)];
+        for (int i = 0; i < locks.length; i++)
+        {
+            locks[i] = new ReentrantLock();
+        }
+        if (mbeanExporter != null)
+        {
+            mbeanExporter.registerMBean(this, getObjectName());
+        }
+    }
+
+    public void destroy()
+    {
+        if (mbeanExporter != null)
+        {
+            mbeanExporter.unregisterMBean(getObjectName());
+        }
+    }
+
+    private ObjectName getObjectName()
+    {
+        try
+        {
+            return new ObjectName(objectName);
+        }
+        catch (MalformedObjectNameException e)
+        {
+            throw new AlfrescoRuntimeException("Invalid JMX name for the retry contention tracker: " + objectName, e);
+        }
+    }
+
+    @Override
+    public int getSerializeAfterCollisions()
+    {
+        return serializeAfterCollisions;
+    }
+
+    @Override
+    public long getContendedKeyCount()
+    {
+        return collisionsByKey.size();
+    }
+
+    /**
+     * Record a collision on a key
+     * 
+     * @return the number of collisions on the key within the window, including this one
+     */
+    public int recordCollision(Serializable key)
+    {
+        int collisions = collisionsByKey.asMap().computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        if (logger.isDebugEnabled() && collisions == serializeAfterCollisions)
+        {
+            logger.debug("Serializing retries on contended key " + key);
+        }
+        return collisions;
+    }
+
+    /**
+     * @return the number of collisions on the key within the window
+     */
+    public int getCollisions(Serializable key)
+    {
+        AtomicInteger collisions = collisionsByKey.getIfPresent(key);
+        return collisions == null ? 0 : collisions.get();
+    }
+
+    /**
+     * Calculate the wait before retrying after a collision. The ceiling doubles with each collision on the key, up to <tt>maxWaitMs</tt>, and the wait is chosen at random from the upper half of it.
+     * 
+     * @param collisions
+     *            the number of collisions on the key
+     * @return the wait in milliseconds, never less than <tt>minWaitMs</tt>
+     */
+    public long getBackoffMs(int collisions, int minWaitMs, int maxWaitMs)
+    {
+        int shift = Math.min(Math.max(collisions - 1, 0), MAX_BACKOFF_SHIFT);
+        long ceiling = Math.min((long) maxWaitMs, (long) Math.max(minWaitMs, 1) << shift);
+        long half = ceiling / 2;
+        long wait = half + ThreadLocalRandom.current().nextLong(half + 1);
+        return Math.max(minWaitMs, wait);
+    }
+
+    /**
+     * Take the lock for the key if retries on it must be serialized. Nothing is locked if the thread already holds a contention lock, so that nested transactions cannot deadlock on the stripes.
+     * 
+     * @param timeoutMs
+     *            the longest time to wait for the lock, after which the retry goes ahead without it
+     * @return the lock that was taken and must be passed to {@link #release(ReentrantLock)}, or <tt>null</tt>
+     */
+    public ReentrantLock lockIfContended(Serializable key, long timeoutMs)
+    {
+        if (serializeAfterCollisions <= 0 || heldLock.get() != null || getCollisions(key) < serializeAfterCollisions)
+        {
+            return null;
+        }
+        ReentrantLock lock = locks[Math.floorMod(key.hashCode(), locks.length)];
+        try
+        {
+            if (lock.tryLock(timeoutMs, TimeUnit.MILLISECONDS))
+            {
+                heldLock.set(lock);
+                return lock;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // Retry without the lock, but leave the interrupt for the caller to see
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Release a lock taken by {@link #lockIfContended(Serializable, long)}
+     */
+    public void release(ReentrantLock lock)
+    {
+        heldLock.remove();
+        lock.unlock();
+    }
+
+    public void recordExecution(Object callback)
+    {
+        getStatistics(callback).executions.increment();
+    }
+
+    /**
+     * @param wastedMs
+     *            the duration of the failed attempt plus the wait before the next one
+     */
+    public void recordRetry(Object callback, long wastedMs)
+    {
+        CallbackStatistics statistics = getStatistics(callback);
+        statistics.retries.increment();
+        statistics.wastedMs.add(wastedMs);
+    }
+
+    public void recordFailure(Object callback)
+    {
+        getStatistics(callback).failures.increment();
+    }
+
+    private CallbackStatistics getStatistics(Object callback)
+    {
+        return callbackStatistics.computeIfAbsent(getCallbackName(callback), name -> new CallbackStatistics());
+    }
+
+    /**
+     * @return the class name of the callback, without the generated suffix of lambdas so that all executions of the same lambda are counted together
+     */
+    static String getCallbackName(Object callback)
+    {
+        String name = callback.getClass().getName();
+        int lambdaIndex = name.indexOf(LAMBDA_MARKER);
+        return lambdaIndex < 0 ? name : name.substring(0, lambdaIndex + LAMBDA_MARKER.length());
+    }
+
+    @Override
+    public Map<String, CallbackStatistics> getCallbackStatistics()
+    {
+        return Collections.unmodifiableMap(new TreeMap<>(callbackStatistics));
+    }
+
+    /**
+     * Retry statistics of one callback class
+     */
+    public static class CallbackStatistics
+    {
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder wastedMs = new LongAdder();
+
+        /**
+         * @return the number of transactions started for the callback, excluding retries
+         */
+        public long getExecutions()
+        {
+            return executions.sum();
+        }
+
+        /**
+         * @return the number of attempts that failed with an error that allows a retry
+         */
+        public long getRetries()
+        {
+            return retries.sum();
+        }
+
+        /**
+         * @return the number of transactions that failed after exhausting their retries
+         */
+        public long getFailures()
+        {
+            return failures.sum();
+        }
+
+        /**
+         * @return the time spent in failed attempts and in waiting to retry them
+         */
+        public long getWastedMs()
+        {
+            return wastedMs.sum();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "CallbackStatistics[executions=" + getExecutions() +
+                    ", retries=" + getRetries() +
+                    ", failures=" + getFailures() +
+                    ", wastedMs=" + getWastedMs() + "]";
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.transaction;
+
+import java.util.Map;
+
+import org.alfresco.repo.transaction.RetryContentionTracker.CallbackStatistics;
+
+/**
+ * Management interface of the {@link RetryContentionTracker}. It is an MXBean so that the statistics of each callback are shown as open data.
+ *
+ * @since 26.3
+ */
+public interface RetryContentionTrackerMXBean
+{
+    /**
+     * @return the number of collisions on a key after which retries on that key are run one at a time, or zero if retries are never serialized
+     */
+    int getSerializeAfterCollisions();
+
+    /**
+     * @return the number of keys that have seen a collision within the collision window
+     */
+    long getContendedKeyCount();
+
+    /**
+     * @return the statistics by callback class name
+     */
+    Map<String, CallbackStatistics> getCallbackStatistics();
+}
@@ -25,6 +25,7 @@
  */
 package org.alfresco.repo.transaction;
 
+import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.sql.BatchUpdateException;
 import java.sql.SQLException;
@@ -36,6 +37,7 @@ import java.util.List;
 import java.util.Random;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
 import jakarta.transaction.RollbackException;
 import jakarta.transaction.Status;
 import jakarta.transaction.UserTransaction;
@@ -75,6 +77,8 @@ import org.alfresco.util.LockHelper.LockTryException;
  * To get details of 'why' transactions are retried use the following log level:<br>
  * <b>Summary: log4j.logger.org.alfresco.repo.transaction.RetryingTransactionHelper=INFO</b><br>
  * <b>Details: log4j.logger.org.alfresco.repo.transaction.RetryingTransactionHelper=DEBUG</b><br>
+ * <p>
+ * When a {@link RetryContentionTracker} is set, failures that name the contended entity through a {@link KeyedConcurrencyFailureException} are retried with a wait that grows exponentially with the recent collisions on that entity, and the retries may be serialized on it. Retry counts and the time lost to retries are recorded per callback class.
  * 
  *
  * @author Derek Hulley
@@ -198,6 +202,11 @@ public class RetryingTransactionHelper
      */
     private List<Class<?>> extraExceptions;
 
+    /**
+     * Optional tracker of contended keys and retry statistics.
+     */
+    private RetryContentionTracker contentionTracker;
+
     /**
      * Callback interface
      * 
@@ -299,6 +308,14 @@ public class RetryingTransactionHelper
         this.extraExceptions = extraExceptions;
     }
 
+    /**
+     * Set the tracker used to back off from, and optionally serialize on, contended keys. The tracker should be shared by all helpers.
+     */
+    public void setContentionTracker(RetryContentionTracker contentionTracker)
+    {
+        this.contentionTracker = contentionTracker;
+    }
+
     /**
      * Execute a callback in a transaction until it succeeds, fails because of an error not the result of an optimistic locking failure, or a deadlock loser failure, or until a maximum number of retries have been attempted.
      * <p>
@@ -416,18 +433,45 @@ public class RetryingTransactionHelper
             }
         }
 
+        boolean trackContention = requiresNew && contentionTracker != null;
+        if (trackContention)
+        {
+            contentionTracker.recordExecution(cb);
+        }
+
         try
         {
             // Track the last exception caught, so that we
             // can throw it if we run out of retries.
             RuntimeException lastException = null;
+            // The entity that the last attempt collided on, if known
+            Serializable contentionKey = null;
+            long retryWaitMs = 0L;
             for (int count = 0; count == 0 || count < maxRetries; count++)
             {
+                if (retryWaitMs > 0L)
+                {
+                    try
+                    {
+                        Thread.sleep(retryWaitMs);
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        // Do nothing.
+                    }
+                    retryWaitMs = 0L;
+                }
                 UserTransaction txn = null;
+                ReentrantLock contentionLock = null;
+                long attemptStartMs = System.currentTimeMillis();
                 try
                 {
                     if (requiresNew)
                     {
+                        if (trackContention && contentionKey != null)
+                        {
+                            contentionLock = contentionTracker.lockIfContended(contentionKey, maxRetryWaitMs);
+                        }
                         txn = txnService.getNonPropagatingUserTransaction(readOnly, forceWritable);
 
                         txn.begin();
@@ -537,13 +581,42 @@ public class RetryingTransactionHelper
 
                     if (retryCause != null)
                     {
-                        // Sleep a random amount of time before retrying.
-                        // The sleep interval increases with the number of retries.
-                        int sleepIntervalRandom = (count > 0 && retryWaitIncrementMs > 0)
-                                ? random.nextInt(count * retryWaitIncrementMs)
-                                : minRetryWaitMs;
-                        int sleepInterval = Math.min(maxRetryWaitMs, sleepIntervalRandom);
-                        sleepInterval = Math.max(sleepInterval, minRetryWaitMs);
+                        KeyedConcurrencyFailureException keyedCause = trackContention ? extractKeyedCause(e) : null;
+                        contentionKey = null;
+                        long sleepInterval;
+                        if (keyedCause != null)
+                        {
+                            // Back off further the more transactions have collided on the same entity
+                            contentionKey = keyedCause.getContentionKey();
+                            int collisions = contentionTracker.recordCollision(contentionKey);
+                            Serializable parentContentionKey = keyedCause.getParentContentionKey();
+                            if (parentContentionKey != null)
+                            {
+                                // Transactions working on different children of a busy parent collide on the parent:
+                                // go by whichever of the two has seen more collisions
+                                int parentCollisions = contentionTracker.recordCollision(parentContentionKey);
+                                if (parentCollisions > collisions)
+                                {
+                                    contentionKey = parentContentionKey;
+                                    collisions = parentCollisions;
+                                }
+                            }
+                            sleepInterval = contentionTracker.getBackoffMs(collisions, minRetryWaitMs, maxRetryWaitMs);
+                        }
+                        else
+                        {
+                            // Sleep a random amount of time before retrying.
+                            // The sleep interval increases with the number of retries.
+                            int sleepIntervalRandom = (count > 0 && retryWaitIncrementMs > 0)
+                                    ? random.nextInt(count * retryWaitIncrementMs)
+                                    : minRetryWaitMs;
+                            sleepInterval = Math.min(maxRetryWaitMs, sleepIntervalRandom);
+                            sleepInterval = Math.max(sleepInterval, minRetryWaitMs);
+                        }
+                        if (trackContention)
+                        {
+                            contentionTracker.recordRetry(cb, System.currentTimeMillis() - attemptStartMs + sleepInterval);
+                        }
                         if (logger.isInfoEnabled() && !logger.isDebugEnabled())
                         {
                             String msg = String.format(
@@ -554,14 +627,8 @@ public class RetryingTransactionHelper
                                     retryCause.getClass().getName());
                             logger.info(msg);
                         }
-                        try
-                        {
-                            Thread.sleep(sleepInterval);
-                        }
-                        catch (InterruptedException ie)
-                        {
-                            // Do nothing.
-                        }
+                        // Wait at the start of the next attempt, once any contention lock has been released
+                        retryWaitMs = sleepInterval;
                         // Try again
                         continue;
                     }
@@ -571,9 +638,20 @@ public class RetryingTransactionHelper
                         throw lastException;
                     }
                 }
+                finally
+                {
+                    if (contentionLock != null)
+                    {
+                        contentionTracker.release(contentionLock);
+                    }
+                }
             }
             // We've worn out our welcome and retried the maximum number of times.
             // So, fail.
+            if (trackContention)
+            {
+                contentionTracker.recordFailure(cb);
+            }
             throw lastException;
         }
         finally
@@ -600,6 +678,14 @@ public class RetryingTransactionHelper
         }
     }
 
+    /**
+     * @return the failure that names the entity collided on, or <tt>null</tt> if it is not known
+     */
+    private static KeyedConcurrencyFailureException extractKeyedCause(Throwable cause)
+    {
+        return (KeyedConcurrencyFailureException) ExceptionStackUtil.getCause(cause, KeyedConcurrencyFailureException.class);
+    }
+
     /**
      * Sometimes, the exception means retry and sometimes not. The stack of exceptions is also checked for any occurence of {@link DoNotRetryException} and, if found, nothing is returned.
      *
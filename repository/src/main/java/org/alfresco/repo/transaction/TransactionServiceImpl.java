@@ -60,6 +60,7 @@ public class TransactionServiceImpl implements TransactionService
     private int minRetryWaitMs = -1;
     private int maxRetryWaitMs = -1;
     private int retryWaitIncrementMs = -1;
+    private RetryContentionTracker contentionTracker;
 
     private static final Log logger = LogFactory.getLog(TransactionServiceImpl.class);
 
@@ -220,6 +221,14 @@ public class TransactionServiceImpl implements TransactionService
         this.retryWaitIncrementMs = retryWaitIncrementMs;
     }
 
+    /**
+     * @see RetryingTransactionHelper#setContentionTracker(RetryContentionTracker)
+     */
+    public void setContentionTracker(RetryContentionTracker contentionTracker)
+    {
+        this.contentionTracker = contentionTracker;
+    }
+
     /**
      * @see org.springframework.transaction.TransactionDefinition#PROPAGATION_REQUIRED
      */
@@ -327,6 +336,7 @@ public class TransactionServiceImpl implements TransactionService
         {
             helper.setRetryWaitIncrementMs(retryWaitIncrementMs);
         }
+        helper.setContentionTracker(contentionTracker);
         return helper;
     }
 }
@@ -26,10 +26,14 @@
 
 package org.alfresco.repo.virtual.bundle;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -423,6 +427,38 @@ public class VirtualPermissionServiceExtension extends
         return getTrait().hasReadPermission(nodeRef);
     }
 
+    @Override
+    public Map<NodeRef, AccessStatus> hasPermissions(Collection<NodeRef> nodeRefs, String perm)
+    {
+        Map<NodeRef, AccessStatus> statuses = new HashMap<>(nodeRefs.size() * 2);
+        List<NodeRef> actualNodeRefs = new ArrayList<>(nodeRefs.size());
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            if (Reference.fromNodeRef(nodeRef) == null)
+            {
+                actualNodeRefs.add(nodeRef);
+            }
+            else
+            {
+                statuses.put(nodeRef,
+                        hasPermission(nodeRef,
+                                perm));
+            }
+        }
+        if (!actualNodeRefs.isEmpty())
+        {
+            statuses.putAll(getTrait().hasPermissions(actualNodeRefs,
+                    perm));
+        }
+        return statuses;
+    }
+
+    @Override
+    public Map<NodeRef, AccessStatus> hasReadPermissions(Collection<NodeRef> nodeRefs)
+    {
+        return getTrait().hasReadPermissions(nodeRefs);
+    }
+
     @Override
     public Set<String> getReaders(Long aclId)
     {
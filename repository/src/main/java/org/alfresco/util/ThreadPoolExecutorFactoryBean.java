@@ -52,6 +52,7 @@ import org.alfresco.error.AlfrescoRuntimeException;
  * <li><b>{@link #setThreadDaemon(boolean) threadDaemon}: </b> true</li>
  * <li><b>{@link #setWorkQueueSize(int) workQueueSize}: </b> -1 or less (No upper bound)</li>
  * <li><b>{@link #setRejectedExecutionHandler(RejectedExecutionHandler) rejectedExecutionHandler}: </b> <code>ThreadPoolExecutor.CallerRunsPolicy</code></li>
+ * <li><b>{@link #setVirtualThreads(boolean) virtualThreads}: </b> false</li>
  * </ul>
  * 
  * @author Derek Hulley
@@ -65,6 +66,7 @@ public class ThreadPoolExecutorFactoryBean implements FactoryBean, InitializingB
     private static final boolean DEFAULT_THREAD_DAEMON = Boolean.TRUE;
     private static final int DEFAULT_WORK_QUEUE_SIZE = -1;
     private static final RejectedExecutionHandler DEFAULT_REJECTED_EXECUTION_HANDLER = new ThreadPoolExecutor.CallerRunsPolicy();
+    private static final boolean DEFAULT_VIRTUAL_THREADS = false;
     private String poolName = "";
 
     private int corePoolSize;
@@ -74,6 +76,7 @@ public class ThreadPoolExecutorFactoryBean implements FactoryBean, InitializingB
     private boolean threadDaemon;
     private int workQueueSize;
     private RejectedExecutionHandler rejectedExecutionHandler;
+    private boolean virtualThreads;
     /** the instance that will be given out by the factory */
     private DynamicallySizedThreadPoolExecutor instance;
 
@@ -89,6 +92,7 @@ public class ThreadPoolExecutorFactoryBean implements FactoryBean, InitializingB
         threadDaemon = DEFAULT_THREAD_DAEMON;
         workQueueSize = DEFAULT_WORK_QUEUE_SIZE;
         rejectedExecutionHandler = DEFAULT_REJECTED_EXECUTION_HANDLER;
+        virtualThreads = DEFAULT_VIRTUAL_THREADS;
     }
 
     /**
@@ -168,6 +172,19 @@ public class ThreadPoolExecutorFactoryBean implements FactoryBean, InitializingB
         this.rejectedExecutionHandler = rejectedExecutionHandler;
     }
 
+    /**
+     * Run the tasks on virtual threads instead of platform threads. This suits pools whose tasks spend most of their time blocked on JDBC or remote calls, as blocked virtual threads do not hold on to platform threads. The pool sizes still limit the number of tasks that run at once, so they can be raised without the cost of platform threads but continue to protect resources such as the database connection pool. Idle virtual threads are not kept in the pool.
+     * <p>
+     * Tasks that block while holding a monitor pin their carrier thread, so pools whose tasks do so must keep using platform threads. See {@link TraceableThreadFactory#setVirtualThreads(boolean)}.
+     * 
+     * @param virtualThreads
+     *            <tt>true</tt> to use virtual threads
+     */
+    public void setVirtualThreads(boolean virtualThreads)
+    {
+        this.virtualThreads = virtualThreads;
+    }
+
     public void afterPropertiesSet() throws Exception
     {
         // if the maximum pool size has not been set, change it to match the core pool size
@@ -180,6 +197,7 @@ public class ThreadPoolExecutorFactoryBean implements FactoryBean, InitializingB
         TraceableThreadFactory threadFactory = new TraceableThreadFactory();
         threadFactory.setThreadDaemon(threadDaemon);
         threadFactory.setThreadPriority(threadPriority);
+        threadFactory.setVirtualThreads(virtualThreads);
 
         if (poolName.length() > 0)
         {
@@ -207,6 +225,11 @@ public class ThreadPoolExecutorFactoryBean implements FactoryBean, InitializingB
                 workQueue,
                 threadFactory,
                 rejectedExecutionHandler);
+        if (virtualThreads && keepAliveTime > 0)
+        {
+            // Virtual threads are cheap to create, so there is no point in keeping idle ones
+            instance.allowCoreThreadTimeOut(true);
+        }
     }
 
     /**
@@ -61,11 +61,16 @@ import org.alfresco.util.testing.category.NonBuildTests;
         org.alfresco.opencmis.mapping.RuntimeSwitchingCMISFacadeTest.class,
         org.alfresco.integrations.compatibility.DriveSdkPlatformCompatibilityTest.class,
         org.alfresco.repo.admin.Log4JHierarchyInitTest.class,
+        org.alfresco.repo.attributes.IncrementalPropTablesCleanerTest.class,
         org.alfresco.repo.attributes.PropTablesCleanupJobTest.class,
+        org.alfresco.repo.batch.BatchProcessorTest.class,
         org.alfresco.repo.cache.AbstractCacheFactoryTest.class,
+        org.alfresco.repo.cache.CompactBucketMapTest.class,
         org.alfresco.repo.cache.DefaultCacheFactoryTest.class,
         org.alfresco.repo.cache.DefaultSimpleCacheTest.class,
         org.alfresco.repo.cache.InMemoryCacheStatisticsTest.class,
+        org.alfresco.repo.cache.InvalidatingSimpleCacheTest.class,
+        org.alfresco.repo.cache.OffHeapSimpleCacheTest.class,
         org.alfresco.repo.cache.TransactionStatsTest.class,
         org.alfresco.repo.cache.lookup.EntityLookupCacheTest.class,
         org.alfresco.repo.calendar.CalendarHelpersTest.class,
@@ -98,6 +103,7 @@ import org.alfresco.util.testing.category.NonBuildTests;
         org.alfresco.repo.template.UnsafeMethodsTest.class,
         org.alfresco.repo.tenant.MultiTAdminServiceImplTest.class,
         org.alfresco.repo.thumbnail.ThumbnailServiceImplParameterTest.class,
+        org.alfresco.repo.transaction.RetryContentionTrackerTest.class,
         org.alfresco.repo.transfer.ContentChunkerImplTest.class,
         org.alfresco.repo.transfer.HttpClientTransmitterImplTest.class,
         org.alfresco.repo.transfer.manifest.TransferManifestTest.class,
@@ -218,6 +224,7 @@ import org.alfresco.util.testing.category.NonBuildTests;
         org.alfresco.repo.action.executer.ImporterActionExecutorUnitTest.class,
         org.alfresco.repo.audit.AuditableAnnotationTest.class,
         org.alfresco.repo.audit.AuditComponentImplUnitTest.class,
+        org.alfresco.repo.audit.AuditEntryJournalTest.class,
         org.alfresco.repo.audit.PropertyAuditFilterTest.class,
         org.alfresco.repo.audit.access.NodeChangeTest.class,
         org.alfresco.repo.content.ContentServiceImplUnitTest.class,
@@ -238,8 +245,11 @@ import org.alfresco.util.testing.category.NonBuildTests;
         org.alfresco.repo.content.caching.quota.UnlimitedQuotaStrategyTest.class,
         org.alfresco.repo.content.caching.CachingContentStoreTest.class,
         org.alfresco.repo.content.caching.ContentCacheImplTest.class,
+        org.alfresco.repo.content.caching.StreamingCacheFillTest.class,
         org.alfresco.repo.domain.permissions.FixedAclUpdaterUnitTest.class,
+        org.alfresco.repo.domain.propval.InFlightValueCreationsTest.class,
         org.alfresco.repo.domain.propval.PropertyTypeConverterTest.class,
+        org.alfresco.repo.domain.qname.IdSnapshotIndexTest.class,
         org.alfresco.repo.domain.schema.script.ScriptBundleExecutorImplTest.class,
         org.alfresco.repo.search.MLAnaysisModeExpansionTest.class,
         org.alfresco.repo.search.DocumentNavigatorTest.class,
@@ -252,6 +262,7 @@ import org.alfresco.util.testing.category.NonBuildTests;
         org.alfresco.repo.security.permissions.PermissionCheckedCollectionTest.class,
         org.alfresco.repo.security.permissions.impl.acegi.FilteringResultSetTest.class,
         org.alfresco.repo.security.permissions.impl.acegi.ACLEntryVoterUtilsTest.class,
+        org.alfresco.repo.security.permissions.impl.AuthorityBitmapsTest.class,
         org.alfresco.repo.security.authentication.ChainingAuthenticationServiceTest.class,
         org.alfresco.repo.security.authentication.NameBasedUserNameGeneratorTest.class,
         org.alfresco.repo.version.common.VersionImplTest.class,
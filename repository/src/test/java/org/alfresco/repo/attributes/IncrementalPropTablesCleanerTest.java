@@ -0,0 +1,246 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.attributes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import org.alfresco.repo.domain.propval.PropertyValueDAO;
+import org.alfresco.repo.domain.propval.PropertyValueDAO.CleanupTable;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.cmr.attributes.AttributeService;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.Pair;
+
+/**
+ * Tests for the {@link IncrementalPropTablesCleaner} class.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class IncrementalPropTablesCleanerTest
+{
+    private @Mock TransactionService transactionService;
+    private @Mock RetryingTransactionHelper txnHelper;
+    private @Mock AttributeService attributeService;
+    private @Mock PropertyValueDAO propertyValueDAO;
+    private @Mock IncrementalPropTablesCleaner.RangeLock rangeLock;
+    private IncrementalPropTablesCleaner cleaner;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        when(transactionService.getRetryingTransactionHelper()).thenReturn(txnHelper);
+        when(txnHelper.doInTransaction(any(), anyBoolean(), anyBoolean()))
+                .thenAnswer(call -> ((RetryingTransactionCallback<?>) call.getArgument(0)).execute());
+
+        cleaner = newCleaner(10, 10);
+        cleaner.init();
+    }
+
+    private IncrementalPropTablesCleaner newCleaner(int minRangeSize, int maxRangeSize)
+    {
+        IncrementalPropTablesCleaner cleaner = new IncrementalPropTablesCleaner();
+        cleaner.setTransactionService(transactionService);
+        cleaner.setAttributeService(attributeService);
+        cleaner.setPropertyValueDAO(propertyValueDAO);
+        cleaner.setMinRangeSize(minRangeSize);
+        cleaner.setMaxRangeSize(maxRangeSize);
+        cleaner.setPauseRatio(0);
+        return cleaner;
+    }
+
+    @Test
+    public void cleansAllTablesInOrderAndRemovesProgress()
+    {
+        for (CleanupTable table : CleanupTable.values())
+        {
+            when(propertyValueDAO.getMaxCleanupId(table)).thenReturn(table == CleanupTable.PROP_ROOT ? 25L : 5L);
+            when(propertyValueDAO.cleanupUnusedValues(eq(table), anyLong(), anyLong())).thenReturn(new Pair<>(4, 1));
+        }
+
+        cleaner.execute(() -> {});
+
+        InOrder inOrder = inOrder(propertyValueDAO);
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.PROP_ROOT, 0L, 10L);
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.PROP_ROOT, 10L, 20L);
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.PROP_ROOT, 20L, 25L);
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.PROP_VALUE, 0L, 5L);
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.STRING_VALUE, 0L, 5L);
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.SERIALIZABLE_VALUE, 0L, 5L);
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.DOUBLE_VALUE, 0L, 5L);
+
+        verify(attributeService).removeAttribute(IncrementalPropTablesCleaner.ATTR_KEY_CLEANER, IncrementalPropTablesCleaner.ATTR_KEY_PROGRESS);
+        verify(attributeService, never()).setAttribute(any(), any(Serializable[].class));
+        assertEquals(28L, cleaner.getRowsScanned());
+        assertEquals(7L, cleaner.getRowsDeleted());
+        assertEquals(7L, cleaner.getRangesProcessed());
+        assertEquals(1L, cleaner.getPassesCompleted());
+        assertNull(cleaner.getCurrentTable());
+        assertFalse(cleaner.isRunning());
+    }
+
+    @Test
+    public void continuesFromSavedProgress()
+    {
+        HashMap<String, Serializable> progress = new HashMap<>();
+        progress.put(IncrementalPropTablesCleaner.PROGRESS_TABLE, CleanupTable.DOUBLE_VALUE.name());
+        progress.put(IncrementalPropTablesCleaner.PROGRESS_FROM_ID, 30L);
+        progress.put(IncrementalPropTablesCleaner.PROGRESS_MAX_ID, 35L);
+        when(attributeService.getAttribute(IncrementalPropTablesCleaner.ATTR_KEY_CLEANER, IncrementalPropTablesCleaner.ATTR_KEY_PROGRESS))
+                .thenReturn(progress);
+        when(propertyValueDAO.cleanupUnusedValues(CleanupTable.DOUBLE_VALUE, 30L, 35L)).thenReturn(new Pair<>(5, 5));
+
+        cleaner.execute(() -> {});
+
+        verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.DOUBLE_VALUE, 30L, 35L);
+        verify(propertyValueDAO, never()).getMaxCleanupId(any());
+        verify(attributeService).removeAttribute(IncrementalPropTablesCleaner.ATTR_KEY_CLEANER, IncrementalPropTablesCleaner.ATTR_KEY_PROGRESS);
+        assertEquals(5L, cleaner.getRowsDeleted());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void savesProgressWhenRangeFails()
+    {
+        when(propertyValueDAO.getMaxCleanupId(CleanupTable.PROP_ROOT)).thenReturn(100L);
+        when(propertyValueDAO.cleanupUnusedValues(CleanupTable.PROP_ROOT, 0L, 10L)).thenReturn(new Pair<>(10, 0));
+        when(propertyValueDAO.cleanupUnusedValues(CleanupTable.PROP_ROOT, 10L, 20L)).thenThrow(new IllegalStateException("Test failure"));
+
+        try
+        {
+            cleaner.execute(() -> {});
+            fail("Expected the failure to be passed on");
+        }
+        catch (IllegalStateException e)
+        {
+            // Expected
+        }
+
+        ArgumentCaptor<Serializable> progressCaptor = ArgumentCaptor.forClass(Serializable.class);
+        verify(attributeService).setAttribute(progressCaptor.capture(),
+                eq(IncrementalPropTablesCleaner.ATTR_KEY_CLEANER), eq(IncrementalPropTablesCleaner.ATTR_KEY_PROGRESS));
+        Map<String, Serializable> progress = (Map<String, Serializable>) progressCaptor.getValue();
+        assertEquals(CleanupTable.PROP_ROOT.name(), progress.get(IncrementalPropTablesCleaner.PROGRESS_TABLE));
+        assertEquals(10L, progress.get(IncrementalPropTablesCleaner.PROGRESS_FROM_ID));
+        assertEquals(100L, progress.get(IncrementalPropTablesCleaner.PROGRESS_MAX_ID));
+        verify(attributeService, never()).removeAttribute(any(Serializable[].class));
+        assertFalse(cleaner.isRunning());
+    }
+
+    @Test
+    public void holdsRangeLockOnlyWhileCleaningEachRange()
+    {
+        when(propertyValueDAO.getMaxCleanupId(any())).thenReturn(0L);
+        when(propertyValueDAO.getMaxCleanupId(CleanupTable.PROP_ROOT)).thenReturn(20L);
+        when(propertyValueDAO.cleanupUnusedValues(eq(CleanupTable.PROP_ROOT), anyLong(), anyLong())).thenReturn(new Pair<>(0, 0));
+
+        cleaner.execute(() -> {}, rangeLock);
+
+        InOrder inOrder = inOrder(rangeLock, propertyValueDAO);
+        inOrder.verify(rangeLock).lock();
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.PROP_ROOT, 0L, 10L);
+        inOrder.verify(rangeLock).unlock();
+        inOrder.verify(rangeLock).lock();
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.PROP_ROOT, 10L, 20L);
+        inOrder.verify(rangeLock).unlock();
+        verify(rangeLock, times(2)).lock();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void stopsAndSavesProgressWhenRangeLockIsTaken()
+    {
+        when(propertyValueDAO.getMaxCleanupId(CleanupTable.PROP_ROOT)).thenReturn(100L);
+        doThrow(new IllegalStateException("Lock taken")).when(rangeLock).lock();
+
+        try
+        {
+            cleaner.execute(() -> {}, rangeLock);
+            fail("Expected the lock failure to be passed on");
+        }
+        catch (IllegalStateException e)
+        {
+            // Expected
+        }
+
+        verify(propertyValueDAO, never()).cleanupUnusedValues(any(), anyLong(), anyLong());
+        verify(rangeLock, never()).unlock();
+        ArgumentCaptor<Serializable> progressCaptor = ArgumentCaptor.forClass(Serializable.class);
+        verify(attributeService).setAttribute(progressCaptor.capture(),
+                eq(IncrementalPropTablesCleaner.ATTR_KEY_CLEANER), eq(IncrementalPropTablesCleaner.ATTR_KEY_PROGRESS));
+        Map<String, Serializable> progress = (Map<String, Serializable>) progressCaptor.getValue();
+        assertEquals(0L, progress.get(IncrementalPropTablesCleaner.PROGRESS_FROM_ID));
+        assertFalse(cleaner.isRunning());
+    }
+
+    @Test
+    public void shrinksRangeWhenDatabaseIsSlow()
+    {
+        cleaner = newCleaner(10, 40);
+        cleaner.setTargetRangeTimeMs(1L);
+        cleaner.init();
+        assertEquals(40, cleaner.getRangeSize());
+
+        when(propertyValueDAO.getMaxCleanupId(any())).thenReturn(0L);
+        when(propertyValueDAO.getMaxCleanupId(CleanupTable.PROP_ROOT)).thenReturn(70L);
+        when(propertyValueDAO.cleanupUnusedValues(eq(CleanupTable.PROP_ROOT), anyLong(), anyLong())).thenAnswer(call -> {
+            Thread.sleep(20L);
+            return new Pair<>(0, 0);
+        });
+
+        cleaner.execute(() -> {});
+
+        InOrder inOrder = inOrder(propertyValueDAO);
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.PROP_ROOT, 0L, 40L);
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.PROP_ROOT, 40L, 60L);
+        inOrder.verify(propertyValueDAO).cleanupUnusedValues(CleanupTable.PROP_ROOT, 60L, 70L);
+        assertEquals(10, cleaner.getRangeSize());
+    }
+}
@@ -1169,6 +1169,57 @@ public class AuditComponentTest extends TestCase
         }
     }
 
+    /**
+     * Entries recorded with asynchronous auditing on are only written once the transaction has committed and the writer has run
+     */
+    public void testAuditAsync() throws Exception
+    {
+        AsyncAuditEntryWriter writer = (AsyncAuditEntryWriter) ctx.getBean("asyncAuditEntryWriter");
+        writer.writePending();
+        clearAuditLog(APPLICATION_ACTIONS_TEST);
+
+        final MutableInt rowCount = new MutableInt();
+        final AuditQueryCallback callback = new AuditQueryCallback() {
+            public boolean valuesRequired()
+            {
+                return true;
+            }
+
+            public boolean handleAuditEntry(
+                    Long entryId, String applicationName, String user, long time, Map<String, Serializable> values)
+            {
+                assertEquals(AuditComponentTest.this.user, user);
+                assertEquals(nodeRef, values.get("/actions-test/actions/context-node/noderef"));
+                rowCount.setValue(rowCount.intValue() + 1);
+                return true;
+            }
+
+            public boolean handleAuditEntryError(Long entryId, String errorMsg, Throwable error)
+            {
+                throw new AlfrescoRuntimeException(errorMsg, error);
+            }
+        };
+        AuditQueryParameters params = new AuditQueryParameters();
+        params.setApplicationName(APPLICATION_ACTIONS_TEST);
+        params.setUser(user);
+
+        auditComponent.setAsyncEnabled(true);
+        try
+        {
+            // Only a read-only transaction is needed to record the values
+            auditAction01("action-01");
+            auditAction01("action-01");
+        }
+        finally
+        {
+            auditComponent.setAsyncEnabled(false);
+        }
+        writer.writePending();
+
+        queryAuditLog(callback, params, Integer.MAX_VALUE);
+        assertEquals("Both entries should have been written after commit", 2, rowCount.intValue());
+    }
+
     public void testAuditTruncatedValues()
     {
         final String rootPath = "/test/one.one/two.one";
@@ -0,0 +1,226 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.alfresco.repo.domain.audit.AuditDAO.NewAuditEntry;
+
+/**
+ * Tests the ordering, checkpointing, segment rollover and recovery of the {@link AuditEntryJournal}.
+ */
+public class AuditEntryJournalTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<NewAuditEntry> entries(int first, int count)
+    {
+        List<NewAuditEntry> entries = new ArrayList<>(count);
+        for (int i = first; i < first + count; i++)
+        {
+            Map<String, Serializable> values = new HashMap<>();
+            values.put("/test/value", "value-" + i);
+            entries.add(new NewAuditEntry(1L, i, "user" + i, values));
+        }
+        return entries;
+    }
+
+    private static void assertEntries(int first, List<NewAuditEntry> entries)
+    {
+        for (int i = 0; i < entries.size(); i++)
+        {
+            NewAuditEntry entry = entries.get(i);
+            assertEquals(first + i, entry.getTime());
+            assertEquals("user" + (first + i), entry.getUsername());
+            assertEquals("value-" + (first + i), entry.getValues().get("/test/value"));
+        }
+    }
+
+    @Test
+    public void testReadInOrderAndCommit() throws Exception
+    {
+        AuditEntryJournal journal = new AuditEntryJournal(folder.getRoot(), false);
+        journal.append(entries(0, 3));
+        journal.append(entries(3, 4));
+        assertTrue(journal.hasPending());
+
+        AuditEntryJournal.Batch batch = journal.read(5);
+        assertEquals(5, batch.getEntries().size());
+        assertEntries(0, batch.getEntries());
+
+        // Nothing moves until the batch is committed
+        assertEntries(0, journal.read(5).getEntries());
+        journal.commit(batch.getEndPosition());
+
+        batch = journal.read(5);
+        assertEquals(2, batch.getEntries().size());
+        assertEntries(5, batch.getEntries());
+        journal.commit(batch.getEndPosition());
+
+        assertFalse(journal.hasPending());
+        assertTrue(journal.read(5).getEntries().isEmpty());
+        assertEquals("The journal should be emptied once fully written", 0L, new File(folder.getRoot(), AuditEntryJournal.segmentFileName(0L)).length());
+        journal.close();
+    }
+
+    @Test
+    public void testReplayAfterRestart() throws Exception
+    {
+        AuditEntryJournal journal = new AuditEntryJournal(folder.getRoot(), true);
+        journal.append(entries(0, 10));
+        journal.commit(journal.read(4).getEndPosition());
+        journal.close();
+
+        journal = new AuditEntryJournal(folder.getRoot(), true);
+        AuditEntryJournal.Batch batch = journal.read(100);
+        assertEquals(6, batch.getEntries().size());
+        assertEntries(4, batch.getEntries());
+        journal.close();
+    }
+
+    @Test
+    public void testIncompleteRecordIsDropped() throws Exception
+    {
+        AuditEntryJournal journal = new AuditEntryJournal(folder.getRoot(), true);
+        journal.append(entries(0, 2));
+        journal.append(entries(2, 1));
+        journal.close();
+
+        // Cut the last record short, as if the server stopped while writing it
+        File journalFile = new File(folder.getRoot(), AuditEntryJournal.segmentFileName(0L));
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw"))
+        {
+            file.setLength(file.length() - 5);
+        }
+
+        journal = new AuditEntryJournal(folder.getRoot(), true);
+        AuditEntryJournal.Batch batch = journal.read(100);
+        assertEquals(2, batch.getEntries().size());
+        assertEntries(0, batch.getEntries());
+
+        // New entries follow on from the last complete record
+        journal.append(entries(2, 1));
+        batch = journal.read(100);
+        assertEquals(3, batch.getEntries().size());
+        assertEntries(0, batch.getEntries());
+        journal.close();
+    }
+
+    @Test
+    public void testCheckpointBeyondEmptiedJournal() throws Exception
+    {
+        AuditEntryJournal journal = new AuditEntryJournal(folder.getRoot(), true);
+        journal.append(entries(0, 2));
+        long end = journal.read(100).getEndPosition();
+        journal.commit(end - 1);
+        journal.close();
+
+        // The journal was emptied but the checkpoint was not reset
+        try (RandomAccessFile file = new RandomAccessFile(new File(folder.getRoot(), AuditEntryJournal.segmentFileName(0L)), "rw"))
+        {
+            file.setLength(0L);
+        }
+
+        journal = new AuditEntryJournal(folder.getRoot(), true);
+        assertFalse(journal.hasPending());
+        journal.append(Collections.singletonList(entries(7, 1).get(0)));
+        assertEntries(7, journal.read(100).getEntries());
+        journal.close();
+    }
+
+    @Test
+    public void testRollsOverToNewSegments() throws Exception
+    {
+        // Every append after the first starts a new segment
+        AuditEntryJournal journal = new AuditEntryJournal(folder.getRoot(), true, 1L);
+        journal.append(entries(0, 2));
+        journal.append(entries(2, 2));
+        journal.append(entries(4, 2));
+        assertEquals(3, journal.getSegmentCount());
+
+        AuditEntryJournal.Batch batch = journal.read(3);
+        assertEntries(0, batch.getEntries());
+        journal.commit(batch.getEndPosition());
+        assertEquals("Fully written segments should be deleted", 2, journal.getSegmentCount());
+        assertFalse(new File(folder.getRoot(), AuditEntryJournal.segmentFileName(0L)).exists());
+        journal.close();
+
+        // The remaining entries are replayed across segments
+        journal = new AuditEntryJournal(folder.getRoot(), true, 1L);
+        batch = journal.read(100);
+        assertEquals(3, batch.getEntries().size());
+        assertEntries(3, batch.getEntries());
+
+        // Entries can be committed one at a time
+        journal.commit(batch.getEndPosition(0));
+        assertEntries(4, journal.read(100).getEntries());
+        journal.commit(batch.getEndPosition(2));
+        assertFalse(journal.hasPending());
+        assertEquals(1, journal.getSegmentCount());
+        assertEquals(0L, new File(folder.getRoot(), AuditEntryJournal.segmentFileName(2L)).length());
+        journal.close();
+    }
+
+    @Test
+    public void testJournalCannotBeOpenedTwice() throws Exception
+    {
+        AuditEntryJournal journal = new AuditEntryJournal(folder.getRoot(), true);
+        journal.append(entries(0, 1));
+        try
+        {
+            new AuditEntryJournal(folder.getRoot(), true);
+            fail("A journal that is already open must not be opened again");
+        }
+        catch (IOException e)
+        {
+            // Expected
+        }
+        journal.close();
+
+        // The lock is released on close
+        journal = new AuditEntryJournal(folder.getRoot(), true);
+        assertEntries(0, journal.read(100).getEntries());
+        journal.close();
+    }
+}
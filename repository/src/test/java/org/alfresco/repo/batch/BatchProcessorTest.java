@@ -0,0 +1,426 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import org.alfresco.repo.batch.BatchProcessor.BatchProcessWorkerAdaptor;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.transaction.SpringAwareUserTransaction;
+import org.alfresco.util.transaction.TransactionListenerAdapter;
+
+/**
+ * Tests the prefetching, the adaptive batch size and the transaction handling of the {@link BatchProcessor}.
+ * <p>
+ * The batches run in real transaction synchronizations on a transaction manager that does nothing, so that the entries committed by each batch can be recorded.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class BatchProcessorTest
+{
+    private static final Log logger = LogFactory.getLog(BatchProcessorTest.class);
+
+    private @Mock TransactionService transactionService;
+    private RetryingTransactionHelper txnHelper;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        final NoOpTransactionManager transactionManager = new NoOpTransactionManager();
+        when(transactionService.getNonPropagatingUserTransaction(anyBoolean(), anyBoolean())).thenAnswer(call -> new SpringAwareUserTransaction(
+                transactionManager,
+                (Boolean) call.getArgument(0),
+                TransactionDefinition.ISOLATION_DEFAULT,
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW,
+                TransactionDefinition.TIMEOUT_DEFAULT));
+
+        txnHelper = new RetryingTransactionHelper();
+        txnHelper.setTransactionService(transactionService);
+        txnHelper.setMaxRetries(3);
+        txnHelper.setMinRetryWaitMs(1);
+        txnHelper.setMaxRetryWaitMs(2);
+        txnHelper.setRetryWaitIncrementMs(1);
+    }
+
+    @Test
+    public void testPrefetchStopsWhenQueueIsFull() throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch(1);
+        NumberWorkProvider provider = new NumberWorkProvider(1000, 1);
+        RecordingWorker worker = new RecordingWorker() {
+            @Override
+            protected void work(Integer entry, int attempt) throws Throwable
+            {
+                release.await();
+            }
+        };
+        final BatchProcessor<Integer> processor = new BatchProcessor<>("PrefetchTest", txnHelper, provider, 2, 1, null, logger, 1000);
+        processor.setPrefetchDepth(3);
+
+        Thread runner = runInBackground(processor, worker);
+        try
+        {
+            // The workers are blocked, so the executor and prefetch queues fill up and the fetching stops
+            waitFor(() -> processor.getPrefetchedWorkChunks() == 3);
+            int calls = provider.getCalls();
+            Thread.sleep(200L);
+            assertEquals("The work provider was called while the prefetch queue was full", calls, provider.getCalls());
+            // 2 batches executing, 4 in the executor queue, 1 waiting to be queued and 1 looked ahead at,
+            // 3 chunks prefetched and 1 waiting to be prefetched
+            assertTrue("Too much work was fetched: " + calls, calls <= 12);
+            assertEquals(0L, processor.getCompletedBatchesLong());
+        }
+        finally
+        {
+            release.countDown();
+        }
+        runner.join(10000L);
+        assertFalse("The processor did not finish", runner.isAlive());
+        assertNull(worker.getFailure());
+
+        worker.assertCommittedOnce(0, 1000, Collections.<Integer> emptySet());
+        assertEquals(1001, provider.getCalls());
+        assertEquals(1001L, processor.getWorkProviderCallsLong());
+        assertEquals(1000L, processor.getSuccessfullyProcessedEntriesLong());
+        assertEquals(0, processor.getPrefetchedWorkChunks());
+    }
+
+    @Test
+    public void testBatchSizeShrinksWhenSlowAndGrowsBack() throws Exception
+    {
+        NumberWorkProvider provider = new NumberWorkProvider(300, 50);
+        RecordingWorker worker = new RecordingWorker() {
+            @Override
+            protected void work(Integer entry, int attempt) throws Throwable
+            {
+                // The batches of the first 30 entries take longer than the target time
+                if (entry < 30)
+                {
+                    Thread.sleep(40L);
+                }
+            }
+        };
+        BatchProcessor<Integer> processor = new BatchProcessor<>("AdaptiveTest", txnHelper, provider, 1, 16, null, logger, 1000);
+        processor.setAdaptiveBatchSize(2, 32, 100L);
+        processor.processLong(worker, true);
+
+        List<Integer> batchSizes = worker.getBatchSizes();
+        assertEquals(Arrays.asList(16, 8, 4, 2), batchSizes.subList(0, 4));
+        assertEquals("The batch size did not grow back to the maximum: " + batchSizes, 32, (int) Collections.max(batchSizes.subList(4, batchSizes.size())));
+        assertEquals(32, processor.getCurrentBatchSize());
+        assertEquals(0L, processor.getRetriedBatchesLong());
+        worker.assertCommittedOnce(0, 300, Collections.<Integer> emptySet());
+    }
+
+    @Test
+    public void testBatchSizeShrinksAfterRetryAndGrowsBack() throws Exception
+    {
+        NumberWorkProvider provider = new NumberWorkProvider(100, 100);
+        RecordingWorker worker = new RecordingWorker() {
+            @Override
+            protected void work(Integer entry, int attempt) throws Throwable
+            {
+                if (entry == 0 && attempt == 1)
+                {
+                    throw new ConcurrencyFailureException("Retry entry " + entry);
+                }
+            }
+        };
+        BatchProcessor<Integer> processor = new BatchProcessor<>("RetryTest", txnHelper, provider, 1, 8, null, logger, 1000);
+        processor.setAdaptiveBatchSize(1, 8, 60000L);
+        processor.processLong(worker, true);
+
+        assertEquals(1L, processor.getRetriedBatchesLong());
+        assertEquals(Arrays.asList(8, 4, 5, 6, 7, 8), worker.getBatchSizes().subList(0, 6));
+        assertEquals(8, processor.getCurrentBatchSize());
+        assertEquals(0L, processor.getTotalErrorsLong());
+        worker.assertCommittedOnce(0, 100, Collections.<Integer> emptySet());
+    }
+
+    @Test
+    public void testEveryEntryProcessedOnceWhenBatchesFail() throws Exception
+    {
+        final Set<Integer> notCommitted = new HashSet<>();
+        for (int i = 7; i < 1000; i += 100)
+        {
+            notCommitted.add(i);
+        }
+        for (int i = 500; i < 505; i++)
+        {
+            notCommitted.add(i);
+        }
+        NumberWorkProvider provider = new NumberWorkProvider(1000, 37);
+        RecordingWorker worker = new RecordingWorker() {
+            @Override
+            protected void work(Integer entry, int attempt) throws Throwable
+            {
+                if (entry % 100 == 7)
+                {
+                    // Fails the entry but not the batch
+                    throw new IllegalStateException("Failed entry " + entry);
+                }
+                if (entry % 50 == 3 && attempt == 1)
+                {
+                    // Rolls the batch back once
+                    throw new ConcurrencyFailureException("Retry entry " + entry);
+                }
+                if (entry == 500)
+                {
+                    // Fails the batch once the retries run out
+                    throw new ConcurrencyFailureException("Failed batch at entry " + entry);
+                }
+            }
+        };
+        BatchProcessor<Integer> processor = new BatchProcessor<>("FailureTest", txnHelper, provider, 4, 5, null, logger, 1000);
+        processor.setPrefetchDepth(2);
+
+        Thread runner = runInBackground(processor, worker);
+        runner.join(30000L);
+        assertFalse("The processor did not finish", runner.isAlive());
+        assertNull(worker.getFailure());
+
+        worker.assertCommittedOnce(0, 1000, notCommitted);
+        assertEquals("The work provider was not drained", 29, provider.getCalls());
+        assertEquals(1000L - notCommitted.size(), processor.getSuccessfullyProcessedEntriesLong());
+        // Each failed entry and the failed batch
+        assertEquals(11L, processor.getTotalErrorsLong());
+        assertEquals(200L, processor.getCompletedBatchesLong());
+    }
+
+    private Thread runInBackground(final BatchProcessor<Integer> processor, final RecordingWorker worker)
+    {
+        Thread runner = new Thread(() -> {
+            try
+            {
+                processor.processLong(worker, true);
+            }
+            catch (RuntimeException | Error e)
+            {
+                worker.failure.set(e);
+            }
+        }, "BatchProcessorTest");
+        runner.setDaemon(true);
+        runner.start();
+        return runner;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + 10000L;
+        while (!condition.getAsBoolean())
+        {
+            if (System.currentTimeMillis() > end)
+            {
+                fail("Timed out waiting for the batch processor");
+            }
+            Thread.sleep(10L);
+        }
+    }
+
+    /**
+     * Provides the numbers from 0 in chunks of the given size
+     */
+    private static class NumberWorkProvider implements BatchProcessWorkProvider<Integer>
+    {
+        private final int total;
+        private final int chunkSize;
+        private final AtomicInteger calls = new AtomicInteger();
+        private int next;
+
+        private NumberWorkProvider(int total, int chunkSize)
+        {
+            this.total = total;
+            this.chunkSize = chunkSize;
+        }
+
+        private int getCalls()
+        {
+            return calls.get();
+        }
+
+        @Override
+        public int getTotalEstimatedWorkSize()
+        {
+            return total;
+        }
+
+        @Override
+        public long getTotalEstimatedWorkSizeLong()
+        {
+            return total;
+        }
+
+        @Override
+        public synchronized Collection<Integer> getNextWork()
+        {
+            calls.incrementAndGet();
+            List<Integer> work = new ArrayList<>(chunkSize);
+            for (int i = 0; i < chunkSize && next < total; i++)
+            {
+                work.add(next++);
+            }
+            return work;
+        }
+    }
+
+    /**
+     * Records the entries committed and the size of each batch
+     */
+    private static class RecordingWorker extends BatchProcessWorkerAdaptor<Integer>
+    {
+        private final Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+        private final Map<Integer, AtomicInteger> committed = new ConcurrentHashMap<>();
+        private final List<Set<Integer>> batches = Collections.synchronizedList(new ArrayList<Set<Integer>>());
+        private final ThreadLocal<Set<Integer>> currentBatch = new ThreadLocal<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        /**
+         * Override to fail or slow down the processing of an entry
+         *
+         * @param attempt
+         *            the number of times the entry has been processed, starting at 1
+         */
+        protected void work(Integer entry, int attempt) throws Throwable
+        {}
+
+        @Override
+        public void beforeProcess() throws Throwable
+        {
+            Set<Integer> batch = Collections.synchronizedSet(new HashSet<Integer>());
+            currentBatch.set(batch);
+            batches.add(batch);
+        }
+
+        @Override
+        public void process(final Integer entry) throws Throwable
+        {
+            currentBatch.get().add(entry);
+            int attempt = attempts.computeIfAbsent(entry, e -> new AtomicInteger()).incrementAndGet();
+            work(entry, attempt);
+            AlfrescoTransactionSupport.bindListener(new TransactionListenerAdapter() {
+                @Override
+                public void afterCommit()
+                {
+                    committed.computeIfAbsent(entry, e -> new AtomicInteger()).incrementAndGet();
+                }
+            });
+        }
+
+        private Throwable getFailure()
+        {
+            return failure.get();
+        }
+
+        /**
+         * @return the number of entries attempted by each batch, in the order the batches started
+         */
+        private List<Integer> getBatchSizes()
+        {
+            List<Integer> sizes = new ArrayList<>(batches.size());
+            for (Set<Integer> batch : batches)
+            {
+                sizes.add(batch.size());
+            }
+            return sizes;
+        }
+
+        private void assertCommittedOnce(int first, int count, Set<Integer> notCommitted)
+        {
+            for (int i = first; i < first + count; i++)
+            {
+                AtomicInteger commits = committed.get(i);
+                if (notCommitted.contains(i))
+                {
+                    assertNull("Entry " + i + " should not have been committed", commits);
+                }
+                else
+                {
+                    assertTrue("Entry " + i + " was not committed", commits != null);
+                    assertEquals("Entry " + i + " was committed more than once", 1, commits.get());
+                }
+            }
+            assertEquals(count - notCommitted.size(), committed.size());
+        }
+    }
+
+    /**
+     * Begins, commits and rolls back transactions without any resources, so that only the synchronizations run
+     */
+    @SuppressWarnings("serial")
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager
+    {
+        @Override
+        protected Object doGetTransaction()
+        {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition)
+        {}
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status)
+        {}
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status)
+        {}
+    }
+}
@@ -216,6 +216,104 @@ public class BulkImportTest extends AbstractBulkImportTests
                 });
     }
 
+    @Test
+    public void testBatchingImport() throws Throwable
+    {
+        txn = transactionService.getUserTransaction();
+        txn.begin();
+
+        NodeRef folderNode = topLevelFolder.getNodeRef();
+        BatchingNodeImporterFactory batchingNodeImporterFactory = (BatchingNodeImporterFactory) ctx.getBean("batchingNodeImporterFactory");
+
+        try
+        {
+            NodeImporter nodeImporter = batchingNodeImporterFactory.getNodeImporter(ResourceUtils.getFile("classpath:bulkimport"));
+            BulkImportParameters bulkImportParameters = new BulkImportParameters();
+            bulkImportParameters.setTarget(folderNode);
+            bulkImportParameters.setReplaceExisting(true);
+            bulkImportParameters.setDisableRulesService(true);
+            bulkImportParameters.setBatchSize(40);
+            bulkImporter.bulkImport(bulkImportParameters, nodeImporter);
+        }
+        catch (Throwable e)
+        {
+            fail(e.getMessage());
+        }
+
+        System.out.println(bulkImporter.getStatus());
+
+        checkFiles(folderNode, null, 2, 9,
+                new ExpectedFile[]{
+                        new ExpectedFile("quickImg1.xls", MimetypeMap.MIMETYPE_EXCEL),
+                        new ExpectedFile("quickImg1.doc", MimetypeMap.MIMETYPE_WORD),
+                        new ExpectedFile("quick.txt", MimetypeMap.MIMETYPE_TEXT_PLAIN, "The quick brown fox jumps over the lazy dog"),
+                },
+                new ExpectedFolder[]{
+                        new ExpectedFolder("folder1"),
+                        new ExpectedFolder("folder2")
+                });
+
+        // The aspects implied by the properties are added as the node service would
+        NodeRef quickTxt = fileFolderService.searchSimple(folderNode, "quick.txt");
+        assertTrue(nodeService.hasAspect(quickTxt, ContentModel.ASPECT_TITLED));
+        assertEquals("quick.txt", nodeService.getProperty(quickTxt, ContentModel.PROP_TITLE));
+
+        List<FileInfo> folders = getFolders(folderNode, "folder1");
+        assertEquals("", 1, folders.size());
+        checkFiles(folders.get(0).getNodeRef(), null, 1, 0, null,
+                new ExpectedFolder[]{
+                        new ExpectedFolder("folder1.1")
+                });
+    }
+
+    @Test
+    public void testStreamingImport() throws Throwable
+    {
+        txn = transactionService.getUserTransaction();
+        txn.begin();
+
+        NodeRef folderNode = topLevelFolder.getNodeRef();
+        MultiThreadedBulkFilesystemImporter streamingImporter = (MultiThreadedBulkFilesystemImporter) ctx.getBean("streamingBulkFilesystemImporter");
+
+        try
+        {
+            NodeImporter nodeImporter = streamingNodeImporterFactory.getNodeImporter(ResourceUtils.getFile("classpath:bulkimport"));
+            BulkImportParameters bulkImportParameters = new BulkImportParameters();
+            bulkImportParameters.setTarget(folderNode);
+            bulkImportParameters.setReplaceExisting(true);
+            bulkImportParameters.setDisableRulesService(true);
+            bulkImportParameters.setBatchSize(40);
+            streamingImporter.bulkImport(bulkImportParameters, nodeImporter);
+        }
+        catch (Throwable e)
+        {
+            fail(e.getMessage());
+        }
+
+        System.out.println(streamingImporter.getStatus());
+        assertEquals(false, streamingImporter.getStatus().inProgress());
+
+        // Every level of the tree is imported below its parent
+        checkFiles(folderNode, null, 2, 9, null,
+                new ExpectedFolder[]{
+                        new ExpectedFolder("folder1"),
+                        new ExpectedFolder("folder2")
+                });
+        NodeRef folder1 = getFolders(folderNode, "folder1").get(0).getNodeRef();
+        NodeRef folder1_1 = getFolders(folder1, "folder1.1").get(0).getNodeRef();
+        checkFiles(folder1_1, null, 2, 12,
+                new ExpectedFile[]{
+                        new ExpectedFile("quick.txt", MimetypeMap.MIMETYPE_TEXT_PLAIN, "The quick brown fox jumps over the lazy dog"),
+                },
+                new ExpectedFolder[]{
+                        new ExpectedFolder("folder1.1.1"),
+                        new ExpectedFolder("folder1.1.2")
+                });
+        NodeRef folder2 = getFolders(folderNode, "folder2").get(0).getNodeRef();
+        NodeRef folder2_1 = getFolders(folder2, "folder2.1").get(0).getNodeRef();
+        checkFiles(folder2_1, null, 0, 17, null, null);
+    }
+
     protected Rule createCopyRule(NodeRef targetNode, boolean isAppliedToChildren)
     {
         Rule rule = new Rule();
@@ -25,6 +25,7 @@
  */
 package org.alfresco.repo.cache;
 
+import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.Collection;
 import jakarta.transaction.Status;
@@ -404,6 +405,60 @@ public class CacheTest extends TestCase
         }
     }
 
+    public void testInvalidatingSharedCacheSendsOneBatchPerCommit() throws Throwable
+    {
+        LoopbackCacheInvalidationTransport transport = new LoopbackCacheInvalidationTransport("local");
+        LoopbackCacheInvalidationTransport peerTransport = transport.join("peer");
+        InvalidatingSimpleCache<Serializable, ValueHolder<Object>> sharedCache = new InvalidatingSimpleCache<>(
+                new DefaultSimpleCache<Serializable, InvalidatingSimpleCache.Entry<ValueHolder<Object>>>(100, "cache.invalidating"),
+                transport, "cache.invalidating", 64);
+        InvalidatingSimpleCache<Serializable, ValueHolder<Object>> peerSharedCache = new InvalidatingSimpleCache<>(
+                new DefaultSimpleCache<Serializable, InvalidatingSimpleCache.Entry<ValueHolder<Object>>>(100, "cache.invalidating"),
+                peerTransport, "cache.invalidating", 64);
+        TransactionalCache<String, Object> txnCache = new TransactionalCache<>();
+        txnCache.setName("cache.invalidating");
+        txnCache.setSharedCache(sharedCache);
+        txnCache.afterPropertiesSet();
+        TransactionalCache<String, Object> peerTxnCache = new TransactionalCache<>();
+        peerTxnCache.setName("cache.invalidating");
+        peerTxnCache.setSharedCache(peerSharedCache);
+        peerTxnCache.afterPropertiesSet();
+
+        // The peer caches its own copies of the values
+        peerTxnCache.put(NEW_GLOBAL_ONE, NEW_GLOBAL_ONE);
+        peerTxnCache.put(NEW_GLOBAL_TWO, NEW_GLOBAL_TWO);
+        peerTxnCache.put(NEW_GLOBAL_THREE, NEW_GLOBAL_THREE);
+        assertEquals("Values are not shipped to the peers", 0, sharedCache.getKeys().size());
+
+        TransactionService transactionService = serviceRegistry.getTransactionService();
+        UserTransaction txn = transactionService.getUserTransaction();
+        try
+        {
+            txn.begin();
+            txnCache.put(NEW_GLOBAL_ONE, UPDATE_TXN_THREE);
+            txnCache.put(NEW_GLOBAL_TWO, UPDATE_TXN_FOUR);
+            txnCache.remove(NEW_GLOBAL_THREE);
+            long batchesBeforeCommit = transport.getBatchesSent();
+            txn.commit();
+
+            assertEquals("All invalidations of a commit go in one batch", batchesBeforeCommit + 1, transport.getBatchesSent());
+        }
+        catch (Throwable e)
+        {
+            if (txn.getStatus() == Status.STATUS_ACTIVE)
+            {
+                txn.rollback();
+            }
+            throw e;
+        }
+        assertEquals(3, sharedCache.getInvalidationsSent());
+        assertEquals(3, peerSharedCache.getInvalidationsReceived());
+        assertNull("Peer kept a stale value", peerTxnCache.get(NEW_GLOBAL_ONE));
+        assertNull("Peer kept a stale value", peerTxnCache.get(NEW_GLOBAL_TWO));
+        assertNull("Peer kept a removed value", peerTxnCache.get(NEW_GLOBAL_THREE));
+        assertEquals(UPDATE_TXN_THREE, txnCache.get(NEW_GLOBAL_ONE));
+    }
+
     /**
      * Preloads the cache, then performs a simultaneous addition of N new values and removal of the N preloaded values.
      * 
@@ -607,6 +662,39 @@ public class CacheTest extends TestCase
         }
     }
 
+    /**
+     * Reads in a read-only transaction are repeatable: a change made to the shared cache by another transaction is not seen by a transaction that has already read the key.
+     */
+    public void testRepeatableReadInReadOnlyTxn() throws Exception
+    {
+        TransactionalCache.putSharedCacheValue(backingCacheNoStats, "A", "AAA", null);
+
+        TransactionService transactionService = serviceRegistry.getTransactionService();
+        UserTransaction txn = transactionService.getUserTransaction(true);
+        try
+        {
+            txn.begin();
+
+            assertEquals("AAA", transactionalCacheNoStats.get("A"));
+            // Another transaction changes the shared value
+            TransactionalCache.putSharedCacheValue(backingCacheNoStats, "A", "BBB", null);
+            assertEquals("Read-only transaction must see the value it read first", "AAA", transactionalCacheNoStats.get("A"));
+
+            txn.commit();
+        }
+        finally
+        {
+            try
+            {
+                txn.rollback();
+            }
+            catch (Throwable ee)
+            {}
+        }
+        // Nothing is written back by the read-only transaction
+        assertEquals("BBB", TransactionalCache.getSharedCacheValue(backingCacheNoStats, "A", null));
+    }
+
     /** Execute the callback and ensure that the backing cache is left with the expected value */
     private void executeAndCheck(
             RetryingTransactionCallback<Object> callback,
@@ -0,0 +1,217 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompactBucketMap}
+ */
+public class CompactBucketMapTest
+{
+    @Test
+    public void putGetRemove()
+    {
+        CompactBucketMap<Long, String> map = new CompactBucketMap<>(100);
+        for (long i = 0; i < 50; i++)
+        {
+            map.put(i, "v" + i);
+        }
+        assertEquals(50, map.size());
+        assertEquals("v7", map.get(7L));
+        map.put(7L, "updated");
+        assertEquals("updated", map.get(7L));
+        assertEquals(50, map.size());
+
+        assertEquals("updated", map.remove(7L));
+        assertNull(map.get(7L));
+        assertFalse(map.containsKey(7L));
+        assertEquals(49, map.size());
+        for (long i = 0; i < 50; i++)
+        {
+            if (i != 7)
+            {
+                assertEquals("v" + i, map.get(i));
+            }
+        }
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1L));
+    }
+
+    @Test
+    public void evictsWhenFull()
+    {
+        CompactBucketMap<Integer, Integer> map = new CompactBucketMap<>(10);
+        for (int i = 0; i < 10; i++)
+        {
+            map.put(i, i);
+        }
+        assertTrue(map.hasHitSize());
+        // Touch the eldest entry so that the next one becomes the least recently used
+        assertEquals(Integer.valueOf(0), map.get(0));
+        map.put(100, 100);
+        assertEquals(10, map.size());
+        assertEquals(Integer.valueOf(100), map.get(100));
+        assertFalse("The least recently used entry must be evicted", map.containsKey(1));
+        assertTrue(map.containsKey(0));
+        // Replacing an existing key never evicts
+        map.put(100, 101);
+        assertEquals(10, map.size());
+        assertEquals(Arrays.asList(2, 3, 4, 5, 6, 7, 8, 9, 0, 100), map.keys());
+    }
+
+    @Test
+    public void matchesAccessOrderedLinkedHashMapUnderRandomOperations()
+    {
+        final int maxSize = 64;
+        Random random = new Random(7L);
+        CompactBucketMap<Integer, Integer> map = new CompactBucketMap<>(maxSize);
+        Map<Integer, Integer> expected = new LinkedHashMap<Integer, Integer>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest)
+            {
+                return size() > maxSize;
+            }
+        };
+        for (int n = 0; n < 100000; n++)
+        {
+            // Colliding hash codes exercise probing, backward shifts and resizes together with the access order
+            Integer key = random.nextInt(256) * 64;
+            int op = random.nextInt(3);
+            if (op == 0)
+            {
+                map.put(key, n);
+                expected.put(key, n);
+            }
+            else if (op == 1)
+            {
+                assertEquals(expected.get(key), map.get(key));
+            }
+            else
+            {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+            if (random.nextInt(10000) == 0)
+            {
+                map.clear();
+                expected.clear();
+            }
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), map.keys());
+        List<Integer> visited = new ArrayList<>();
+        map.forEach((key, value) -> {
+            assertEquals(expected.get(key), value);
+            visited.add(key);
+        });
+        assertEquals(map.keys(), visited);
+    }
+
+    @Test
+    public void hitsDoNotAllocate()
+    {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled());
+
+        CompactBucketMap<Long, String> map = new CompactBucketMap<>(1000);
+        Long[] keys = new Long[500];
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = Long.valueOf(i * 31L);
+            map.put(keys[i], "v" + i);
+        }
+        String value = "updated";
+        long threadId = Thread.currentThread().getId();
+        long allocated = Long.MAX_VALUE;
+        // Take the best of a few rounds so that the measurement itself and any JIT activity don't count
+        for (int round = 0; round < 5; round++)
+        {
+            long start = allocationBean.getThreadAllocatedBytes(threadId);
+            for (int n = 0; n < 100; n++)
+            {
+                for (Long key : keys)
+                {
+                    map.get(key);
+                    map.put(key, value);
+                }
+            }
+            allocated = Math.min(allocated, allocationBean.getThreadAllocatedBytes(threadId) - start);
+        }
+        // 100K hits and replacements: anything that allocated per call would show megabytes
+        assertTrue("Hits allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void matchesHashMapUnderRandomOperations()
+    {
+        Random random = new Random(42L);
+        CompactBucketMap<Integer, Integer> map = new CompactBucketMap<>(Integer.MAX_VALUE);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int n = 0; n < 100000; n++)
+        {
+            // Narrow key range with colliding hash codes to exercise probing and backward shifts
+            Integer key = random.nextInt(512) * 64;
+            if (random.nextBoolean())
+            {
+                map.put(key, n);
+                expected.put(key, n);
+            }
+            else
+            {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet())
+        {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        Map<Integer, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+        assertEquals(expected.size(), map.keys().size());
+    }
+}
@@ -62,6 +62,16 @@ public class DefaultCacheFactoryTest
         properties.setProperty("cache.withMaxIdle.maxItems", "0");
         properties.setProperty("cache.withMaxIdle.eviction-policy", "NONE");
         properties.setProperty("cache.withMaxIdle.maxIdleSeconds", "7");
+        // cache.withOffHeap
+        properties.setProperty("cache.withOffHeap.maxItems", "4");
+        properties.setProperty("cache.withOffHeap.eviction-policy", "EVICT");
+        properties.setProperty("cache.withOffHeap.offHeap.maxMemoryMB", "1");
+        properties.setProperty("cache.withOffHeap.offHeap.blockSize", "64");
+        // cache.clustered
+        properties.setProperty("cache.clustered.maxItems", "4");
+        properties.setProperty("cache.clustered.eviction-policy", "EVICT");
+        properties.setProperty("cache.clustered.cluster.type", "invalidating");
+        properties.setProperty("cache.clustered.invalidation.stripes", "100");
 
         cacheFactory.setProperties(properties);
     }
@@ -100,4 +110,39 @@ public class DefaultCacheFactoryTest
         assertEquals(0, cache.getTTLSecs());
         assertEquals(7, cache.getMaxIdleSecs());
     }
+
+    @Test
+    public void canCreateCacheWithOffHeapTier()
+    {
+        SimpleCache<String, String> tieredCache = cacheFactory.createCache("cache.withOffHeap");
+        assertTrue(tieredCache instanceof TieredSimpleCache);
+        cache = (DefaultSimpleCache<String, String>) ((TieredSimpleCache<String, String>) tieredCache).getHeapCache();
+        assertEquals(4, cache.getMaxItems());
+        OffHeapSimpleCache<String, String> offHeapCache = (OffHeapSimpleCache<String, String>) ((TieredSimpleCache<String, String>) tieredCache).getSecondLevelCache();
+        assertEquals(1024 * 1024, offHeapCache.getMaxMemory());
+        assertEquals("cache.withOffHeap", offHeapCache.getCacheName());
+
+        tieredCache.put("a", "AAA");
+        assertEquals("AAA", offHeapCache.get("a"));
+    }
+
+    @Test
+    public void canCreateInvalidatingCache()
+    {
+        cacheFactory.setInvalidationTransport(new LoopbackCacheInvalidationTransport("local"));
+        SimpleCache<String, String> invalidatingCache = cacheFactory.createCache("cache.clustered");
+        assertTrue(invalidatingCache instanceof InvalidatingSimpleCache);
+        assertEquals("cache.clustered", ((InvalidatingSimpleCache<String, String>) invalidatingCache).getCacheName());
+        SimpleCache<String, ?> localCache = ((InvalidatingSimpleCache<String, String>) invalidatingCache).getLocalCache();
+        assertEquals(4, ((DefaultSimpleCache<String, ?>) localCache).getMaxItems());
+
+        // Caches that are always local are not affected
+        assertTrue(cacheFactory.createCache("cache.someCache") instanceof DefaultSimpleCache);
+
+        // Nor are distributed caches, or invalidating caches that hold the only copy of their values
+        properties.setProperty("cache.distributed.cluster.type", "fully-distributed");
+        assertTrue(cacheFactory.createCache("cache.distributed") instanceof DefaultSimpleCache);
+        properties.setProperty("cache.clustered.invalidation.enabled", "false");
+        assertTrue(cacheFactory.createCache("cache.clustered") instanceof DefaultSimpleCache);
+    }
 }
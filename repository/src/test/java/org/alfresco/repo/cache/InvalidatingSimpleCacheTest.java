@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.alfresco.util.Pair;
+
+/**
+ * Tests for the {@link InvalidatingSimpleCache} class, using the {@link LoopbackCacheInvalidationTransport}.
+ */
+public class InvalidatingSimpleCacheTest
+{
+    private static final String CACHE_NAME = "cache.invalidatingTest";
+
+    private LoopbackCacheInvalidationTransport transport;
+    private LoopbackCacheInvalidationTransport peerTransport;
+    private InvalidatingSimpleCache<Integer, String> cache;
+    private InvalidatingSimpleCache<Integer, String> peerCache;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        transport = new LoopbackCacheInvalidationTransport("local");
+        peerTransport = transport.join("peer");
+        cache = createCache(transport);
+        peerCache = createCache(peerTransport);
+    }
+
+    private static InvalidatingSimpleCache<Integer, String> createCache(CacheInvalidationTransport transport)
+    {
+        DefaultSimpleCache<Integer, InvalidatingSimpleCache.Entry<String>> localCache = new DefaultSimpleCache<>(100, CACHE_NAME);
+        return new InvalidatingSimpleCache<Integer, String>(localCache, transport, CACHE_NAME, 16);
+    }
+
+    @Test
+    public void valuesStayLocal()
+    {
+        cache.put(1, "one");
+        assertEquals("one", cache.get(1));
+        assertNull(peerCache.get(1));
+        assertFalse(peerCache.contains(1));
+    }
+
+    @Test
+    public void removeInvalidatesPeers()
+    {
+        cache.setInvalidateOnPut(false);
+        peerCache.setInvalidateOnPut(false);
+        cache.put(1, "one");
+        peerCache.put(1, "one");
+        peerCache.put(2, "two");
+        assertEquals(0, transport.getBatchesSent());
+        assertEquals(0, peerTransport.getBatchesSent());
+
+        cache.remove(1);
+
+        assertEquals(1, cache.getInvalidationsSent());
+        assertEquals(1, peerCache.getInvalidationsReceived());
+        assertNull(peerCache.get(1));
+        assertEquals(1, peerCache.getStaleEntries());
+        assertEquals("Keys in other stripes are not affected", "two", peerCache.get(2));
+        assertEquals(1, peerCache.getKeys().size());
+    }
+
+    @Test
+    public void changedValueInvalidatesPeers()
+    {
+        peerCache.put(1, "one");
+        cache.put(1, "ONE");
+        assertNull(peerCache.get(1));
+        assertEquals("ONE", cache.get(1));
+
+        long sent = cache.getInvalidationsSent();
+        cache.put(1, "ONE");
+        assertEquals("An unchanged value must not invalidate the peers", sent, cache.getInvalidationsSent());
+    }
+
+    @Test
+    public void valuesPutAfterInvalidationAreKept()
+    {
+        peerCache.put(1, "one");
+        cache.remove(1);
+        peerCache.put(1, "ONE");
+        assertEquals("ONE", peerCache.get(1));
+    }
+
+    @Test
+    public void valuesReadBeforeInvalidationAreDropped()
+    {
+        // The peer misses and loads the value, but a change is committed elsewhere before the peer puts it
+        assertNull(peerCache.get(1));
+        cache.put(1, "ONE");
+        peerCache.put(1, "one");
+        assertNull("A value read before the invalidation must not be kept", peerCache.get(1));
+        assertEquals(1, peerCache.getStaleEntries());
+
+        peerCache.put(1, "ONE");
+        assertEquals("ONE", peerCache.get(1));
+    }
+
+    @Test
+    public void keyHashesDoNotDependOnIdentity()
+    {
+        assertEquals(31 * TimeUnit.class.getName().hashCode() + "SECONDS".hashCode(), CacheKeyHash.of(TimeUnit.SECONDS));
+        Set<Object> key = new HashSet<>(Arrays.asList(TimeUnit.SECONDS, "a", 1L));
+        Set<Object> sameKey = new LinkedHashSet<>(Arrays.asList(1L, "a", TimeUnit.SECONDS));
+        assertEquals(CacheKeyHash.of(key), CacheKeyHash.of(sameKey));
+        assertEquals(CacheKeyHash.of(new Pair<>(TimeUnit.SECONDS, "a")), CacheKeyHash.of(new Pair<>(TimeUnit.SECONDS, "a")));
+        assertNotEquals(CacheKeyHash.of(new Pair<>(TimeUnit.SECONDS, "a")), CacheKeyHash.of(new Pair<>("a", TimeUnit.SECONDS)));
+    }
+
+    @Test
+    public void clearInvalidatesAllPeerEntries()
+    {
+        peerCache.put(1, "one");
+        peerCache.put(2, "two");
+        cache.clear();
+        assertEquals(1, peerCache.getClearsReceived());
+        assertTrue(peerCache.getKeys().isEmpty());
+        assertNull(peerCache.get(2));
+    }
+
+    @Test
+    public void batchCarriesDistinctKeysAndRegionCounts()
+    {
+        CacheInvalidationBatch batch = new CacheInvalidationBatch("local");
+        assertTrue(batch.isEmpty());
+        batch.addKeyHash(CACHE_NAME, 7);
+        batch.addKeyHash(CACHE_NAME, 7);
+        batch.addKeyHash(CACHE_NAME, 9);
+        batch.addKeyHash("cache.other", 7);
+        batch.addClear("cache.other");
+
+        assertEquals(2, batch.getCacheNames().size());
+        assertArrayEquals(new int[]{7, 9}, batch.getKeyHashes(CACHE_NAME));
+        assertEquals(3, batch.getInvalidationCount(CACHE_NAME));
+        assertFalse(batch.isCleared(CACHE_NAME));
+        assertTrue(batch.isCleared("cache.other"));
+        assertEquals(0, batch.getKeyHashes("cache.other").length);
+        assertEquals(2, batch.getInvalidationCount("cache.other"));
+
+        transport.send(batch);
+        assertEquals(2, peerCache.getInvalidationsReceived());
+    }
+}
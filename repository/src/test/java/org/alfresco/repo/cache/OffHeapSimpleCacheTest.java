@@ -0,0 +1,316 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+import org.alfresco.repo.domain.node.NodeEntity;
+import org.alfresco.repo.domain.node.StoreEntity;
+import org.alfresco.repo.domain.node.TransactionEntity;
+import org.alfresco.repo.security.permissions.ACLType;
+import org.alfresco.repo.security.permissions.SimpleAccessControlList;
+import org.alfresco.repo.security.permissions.SimpleAccessControlListProperties;
+import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.MLText;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.QName;
+
+/**
+ * Tests for {@link OffHeapSimpleCache} and {@link TieredSimpleCache}.
+ */
+public class OffHeapSimpleCacheTest
+{
+    private static final String NAMESPACE = "http://www.alfresco.org/test/offheap";
+
+    private OffHeapSimpleCache<Serializable, Object> cache;
+
+    @Before
+    public void setUp()
+    {
+        cache = new OffHeapSimpleCache<>(16 * 1024 * 1024, 64, "cache.offHeapTest");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPropertiesRoundTrip()
+    {
+        Map<QName, Serializable> props = new HashMap<>();
+        props.put(QName.createQName(NAMESPACE, "name"), "A name with some length to span several blocks of the cache");
+        props.put(QName.createQName(NAMESPACE, "count"), 42);
+        props.put(QName.createQName(NAMESPACE, "size"), 4200000000L);
+        props.put(QName.createQName(NAMESPACE, "flag"), Boolean.TRUE);
+        props.put(QName.createQName(NAMESPACE, "created"), new Date());
+        props.put(QName.createQName(NAMESPACE, "type"), QName.createQName(NAMESPACE, "content"));
+        props.put(QName.createQName(NAMESPACE, "node"), new NodeRef("workspace://SpacesStore/1234"));
+        props.put(QName.createQName(NAMESPACE, "list"), new ArrayList<>(Collections.singletonList("x")));
+        props.put(QName.createQName(NAMESPACE, "sorted"), new TreeMap<>(Collections.singletonMap("k", "v")));
+        props.put(QName.createQName(NAMESPACE, "empty"), null);
+        Map<QName, Serializable> value = Collections.unmodifiableMap(props);
+
+        cache.put("props", value);
+        Object cached = cache.get("props");
+        assertEquals(value, cached);
+        assertNotSame(value, cached);
+        assertEquals(TreeMap.class, ((Map<?, ?>) cached).get(QName.createQName(NAMESPACE, "sorted")).getClass());
+        try
+        {
+            ((Map<QName, Serializable>) cached).put(QName.createQName(NAMESPACE, "other"), "x");
+            fail("Unmodifiable maps must remain unmodifiable");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // Expected
+        }
+
+        Set<QName> aspects = new HashSet<>();
+        aspects.add(QName.createQName(NAMESPACE, "titled"));
+        aspects.add(QName.createQName(NAMESPACE, "auditable"));
+        cache.put("aspects", Collections.unmodifiableSet(aspects));
+        assertEquals(aspects, cache.get("aspects"));
+    }
+
+    @Test
+    public void testValueHoldersUseTheCompactEncoding() throws IOException
+    {
+        Map<QName, Serializable> props = new HashMap<>();
+        props.put(QName.createQName(NAMESPACE, "name"), "A name");
+        props.put(QName.createQName(NAMESPACE, "count"), 42);
+        props.put(QName.createQName(NAMESPACE, "node"), new NodeRef("workspace://SpacesStore/1234"));
+        Map<QName, Serializable> value = Collections.unmodifiableMap(props);
+
+        OffHeapSimpleCache<Serializable, ValueHolder<Map<QName, Serializable>>> sharedCache = new OffHeapSimpleCache<>(16 * 1024 * 1024, 64, "cache.offHeapTest");
+        TransactionalCache.putSharedCacheValue(sharedCache, "props", value, null);
+        ValueHolder<Map<QName, Serializable>> cached = sharedCache.get("props");
+        assertNotNull(cached);
+        assertEquals(value, cached.getValue());
+
+        // The holder keeps its identity and its value is not serialized
+        OffHeapValueCodec codec = new OffHeapValueCodec();
+        byte[] encoded = codec.encode(cached);
+        assertEquals(OffHeapValueCodec.VALUE_HOLDER, encoded[0]);
+        assertNotEquals(OffHeapValueCodec.SERIALIZED, encoded[5]);
+        @SuppressWarnings("unchecked")
+        ValueHolder<Map<QName, Serializable>> decoded = (ValueHolder<Map<QName, Serializable>>) codec.decode(encoded);
+        assertEquals(cached, decoded);
+        assertEquals(value, decoded.getValue());
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(serialized))
+        {
+            oos.writeObject(cached);
+        }
+        assertTrue(encoded.length * 4 < serialized.size());
+    }
+
+    @Test
+    public void testPropertyValueTypesRoundTrip() throws IOException
+    {
+        MLText mlText = new MLText(Locale.FRANCE, "Bonjour");
+        mlText.addValue(Locale.ENGLISH, "Hello");
+        ContentData contentData = new ContentData("store://2026/1/1/abc.bin", "text/plain", 1234L, "UTF-8", Locale.UK);
+        Locale scripted = Locale.forLanguageTag("sr-Latn-RS");
+
+        OffHeapValueCodec codec = new OffHeapValueCodec();
+        for (Serializable value : new Serializable[]{mlText, contentData, Locale.GERMANY, scripted})
+        {
+            byte[] encoded = codec.encode(value);
+            Object decoded = codec.decode(encoded);
+            assertEquals(value, decoded);
+            assertEquals(value.getClass(), decoded.getClass());
+            if (value != scripted)
+            {
+                assertNotEquals("Property values must not fall back to serialization", OffHeapValueCodec.SERIALIZED, encoded[0]);
+            }
+        }
+    }
+
+    @Test
+    public void testEntitiesUseCompactSerialization() throws IOException
+    {
+        StoreEntity store = new StoreEntity();
+        store.setId(6L);
+        store.setProtocol("workspace");
+        store.setIdentifier("SpacesStore");
+        TransactionEntity txn = new TransactionEntity();
+        txn.setId(42L);
+        txn.setChangeTxnId("change-42");
+        txn.setCommitTimeMs(1000L);
+        NodeEntity node = new NodeEntity();
+        node.setId(1000L);
+        node.setVersion(3L);
+        node.setStore(store);
+        node.setUuid("1234");
+        node.setTypeQNameId(10L);
+        node.setAclId(20L);
+        node.setTransaction(txn);
+        node.lock();
+
+        SimpleAccessControlListProperties aclProperties = new SimpleAccessControlListProperties();
+        aclProperties.setId(20L);
+        aclProperties.setAclType(ACLType.DEFINING);
+        SimpleAccessControlList acl = new SimpleAccessControlList();
+        acl.setProperties(aclProperties);
+
+        OffHeapValueCodec codec = new OffHeapValueCodec();
+        for (Serializable value : new Serializable[]{node, acl})
+        {
+            byte[] encoded = codec.encode(value);
+            ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(serialized))
+            {
+                oos.writeObject(value);
+            }
+            assertTrue(encoded.length * 2 < serialized.size());
+            // The class descriptors are written once, then referenced
+            assertEquals(encoded.length, codec.encode(value).length);
+        }
+
+        NodeEntity decodedNode = (NodeEntity) codec.decode(codec.encode(node));
+        assertEquals(node, decodedNode);
+        assertEquals(node.getNodeRef(), decodedNode.getNodeRef());
+        assertEquals("change-42", decodedNode.getTransaction().getChangeTxnId());
+        try
+        {
+            decodedNode.setAclId(21L);
+            fail("Decoded nodes must remain locked");
+        }
+        catch (IllegalStateException e)
+        {
+            // Expected
+        }
+        SimpleAccessControlList decodedAcl = (SimpleAccessControlList) codec.decode(codec.encode(acl));
+        assertEquals(ACLType.DEFINING, decodedAcl.getProperties().getAclType());
+    }
+
+    @Test
+    public void testFreedBlocksAreReused()
+    {
+        // 16 segments of 4 blocks each
+        cache = new OffHeapSimpleCache<>(16 * 4 * 64, 64, "cache.offHeapTest");
+        String value = "A value that needs more than one block of sixty four bytes to be stored";
+        cache.put("a", value);
+        long used = cache.getUsedMemory();
+        assertTrue(used >= 2 * 64);
+        for (int i = 0; i < 100; i++)
+        {
+            cache.remove("a");
+            assertEquals(0, cache.getUsedMemory());
+            cache.put("a", value);
+            assertEquals(used, cache.getUsedMemory());
+            assertEquals(value, cache.get("a"));
+        }
+    }
+
+    @Test
+    public void testBasicOperations()
+    {
+        assertFalse(cache.contains("a"));
+        assertNull(cache.get("a"));
+
+        cache.put("a", "AAA");
+        cache.put("b", "BBB");
+        assertTrue(cache.contains("a"));
+        assertEquals("AAA", cache.get("a"));
+        assertEquals(2, cache.getKeys().size());
+
+        cache.put("a", "AAA2");
+        assertEquals("AAA2", cache.get("a"));
+        assertEquals(2, cache.size());
+
+        cache.remove("a");
+        assertFalse(cache.contains("a"));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getUsedMemory());
+    }
+
+    @Test
+    public void testValuesThatCannotBeSerializedAreNotCached()
+    {
+        cache.put("a", "AAA");
+        cache.put("a", new Object());
+        assertFalse("A stale value must not be left behind", cache.contains("a"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted()
+    {
+        // 16 segments of 4 blocks each
+        cache = new OffHeapSimpleCache<>(16 * 4 * 64, 64, "cache.offHeapTest");
+        for (int i = 0; i < 1000; i++)
+        {
+            cache.put(i, "Value " + i);
+            // Keep the first entry in use
+            assertEquals("Value 0", cache.get(0));
+        }
+        assertTrue(cache.size() < 1000);
+        assertTrue(cache.getUsedMemory() <= cache.getMaxMemory());
+        assertEquals("Value 0", cache.get(0));
+        assertEquals("Value 999", cache.get(999));
+    }
+
+    @Test
+    public void testTieredCache()
+    {
+        DefaultSimpleCache<Serializable, Object> heapCache = new DefaultSimpleCache<>(2, "cache.heapTest");
+        TieredSimpleCache<Serializable, Object> tieredCache = new TieredSimpleCache<>(heapCache, cache, "cache.tieredTest");
+        for (int i = 0; i < 10; i++)
+        {
+            tieredCache.put(i, "Value " + i);
+        }
+        heapCache.clear();
+
+        // Values are read from the second level and promoted
+        assertEquals("Value 5", tieredCache.get(5));
+        assertTrue(heapCache.contains(5));
+        assertEquals(10, tieredCache.getKeys().size());
+
+        tieredCache.remove(5);
+        assertFalse(heapCache.contains(5));
+        assertFalse(cache.contains(5));
+        assertNull(tieredCache.get(5));
+    }
+}
@@ -29,6 +29,7 @@ import static org.junit.Assert.*;
 
 import java.sql.Savepoint;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -60,6 +61,8 @@ public class EntityLookupCacheTest implements EntityLookupCallbackDAO<Long, Obje
     private EntityLookupCache<Long, Object, String> entityLookupCacheB;
     private TreeMap<Long, String> database;
     private ControlDAO controlDAO;
+    private int batchSize;
+    private List<Integer> bulkLookupSizes;
 
     @Before
     public void setUp() throws Exception
@@ -68,6 +71,8 @@ public class EntityLookupCacheTest implements EntityLookupCallbackDAO<Long, Obje
         entityLookupCacheA = new EntityLookupCache<Long, Object, String>(cache, "A", this);
         entityLookupCacheB = new EntityLookupCache<Long, Object, String>(cache, "B", this);
         database = new TreeMap<Long, String>();
+        batchSize = EntityLookupCache.DEFAULT_BATCH_SIZE;
+        bulkLookupSizes = new ArrayList<>();
 
         controlDAO = Mockito.mock(ControlDAO.class);
         Mockito.when(controlDAO.createSavepoint(Mockito.anyString())).thenReturn(Mockito.mock(Savepoint.class));
@@ -296,6 +301,69 @@ public class EntityLookupCacheTest implements EntityLookupCallbackDAO<Long, Obje
         assertNull(entityPairCacheCheck);
     }
 
+    @Test
+    public void testGetByKeysInBatches() throws Exception
+    {
+        batchSize = 2;
+        for (int i = 0; i < 5; i++)
+        {
+            createValue(new TestValue("V" + i));
+        }
+
+        List<Pair<Long, Object>> entityPairs = entityLookupCacheA.getByKeys(Arrays.asList(1L, 2L, 3L, 4L, 5L));
+        assertEquals(5, entityPairs.size());
+        assertEquals("Lookups must be split into batches", Arrays.asList(2, 2, 1), bulkLookupSizes);
+        // Both the keys and the value keys are cached
+        assertEquals(10, cache.getKeys().size());
+
+        // Everything is now cached
+        bulkLookupSizes.clear();
+        entityPairs = entityLookupCacheA.getByKeys(Arrays.asList(1L, 2L, 3L, 4L, 5L));
+        assertEquals(5, entityPairs.size());
+        assertTrue("No lookups expected when all keys are cached", bulkLookupSizes.isEmpty());
+    }
+
+    @Test
+    public void testGetByKeysCachesMissingKeys() throws Exception
+    {
+        createValue(new TestValue("AAA"));
+
+        List<Pair<Long, Object>> entityPairs = entityLookupCacheA.getByKeys(Arrays.asList(1L, 100L));
+        assertEquals(1, entityPairs.size());
+        assertEquals(Long.valueOf(1), entityPairs.get(0).getFirst());
+        assertEquals(Arrays.asList(2), bulkLookupSizes);
+
+        // The missing key must not be looked up again
+        bulkLookupSizes.clear();
+        entityPairs = entityLookupCacheA.getByKeys(Arrays.asList(1L, 100L));
+        assertEquals(1, entityPairs.size());
+        assertTrue(bulkLookupSizes.isEmpty());
+        assertNull(entityLookupCacheA.getByKey(100L));
+    }
+
+    @Test
+    public void testGetByValuesInBatches() throws Exception
+    {
+        batchSize = 2;
+        createValue(new TestValue("AAA"));
+        createValue(new TestValue("BBB"));
+        createValue(new TestValue("CCC"));
+
+        List<Object> values = Arrays.asList(new TestValue("AAA"), new TestValue("BBB"), new TestValue("CCC"), new TestValue("ZZZ"));
+        List<Pair<Long, Object>> entityPairs = entityLookupCacheA.getByValues(values);
+        assertEquals(3, entityPairs.size());
+        assertEquals(Arrays.asList(2, 2), bulkLookupSizes);
+
+        // Values, including the missing one, are now cached against their value keys
+        bulkLookupSizes.clear();
+        entityPairs = entityLookupCacheA.getByValues(values);
+        assertEquals(3, entityPairs.size());
+        assertTrue(bulkLookupSizes.isEmpty());
+        Pair<Long, Object> entityPair = entityLookupCacheA.getCachedEntityByValue(new TestValue("BBB"));
+        assertNotNull(entityPair);
+        assertEquals(Long.valueOf(2), entityPair.getFirst());
+    }
+
     /**
      * Helper class to represent business object
      */
@@ -360,9 +428,29 @@ public class EntityLookupCacheTest implements EntityLookupCallbackDAO<Long, Obje
     }
 
     @Override
-    public List<Pair<Long, Object>> findByKeys(List<Long> key)
+    public List<Pair<Long, Object>> findByKeys(List<Long> keys)
+    {
+        assertNotNull(keys);
+        assertFalse(keys.isEmpty());
+        assertTrue("Batch size exceeded", keys.size() <= batchSize);
+        bulkLookupSizes.add(keys.size());
+
+        List<Pair<Long, Object>> results = new ArrayList<>(keys.size());
+        for (Long key : keys)
+        {
+            Pair<Long, Object> entityPair = findByKey(key);
+            if (entityPair != null)
+            {
+                results.add(entityPair);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public int getBatchSize()
     {
-        throw new UnsupportedOperationException("Batch lookup not supported in test DAO.");
+        return batchSize;
     }
 
     public Pair<Long, Object> findByValue(Object value)
@@ -385,6 +473,8 @@ public class EntityLookupCacheTest implements EntityLookupCallbackDAO<Long, Obje
     {
         assertNotNull(values);
         assertFalse(values.isEmpty());
+        assertTrue("Batch size exceeded", values.size() <= batchSize);
+        bulkLookupSizes.add(values.size());
 
         List<Pair<Long, Object>> results = new ArrayList<>(values.size());
 
@@ -396,7 +486,7 @@ public class EntityLookupCacheTest implements EntityLookupCallbackDAO<Long, Obje
             {
                 if (EqualsHelper.nullSafeEquals(entry.getValue(), dbValue))
                 {
-                    results.add(new Pair<>(entry.getKey(), entry.getValue()));
+                    results.add(new Pair<>(entry.getKey(), new TestValue(entry.getValue())));
                     break;
                 }
             }
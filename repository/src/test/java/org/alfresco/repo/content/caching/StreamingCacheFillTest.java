@@ -0,0 +1,246 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.caching;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.filestore.FileContentReader;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.util.GUID;
+import org.alfresco.util.TempFileProvider;
+
+/**
+ * Tests for the background cache fill of {@link CachingContentStore}, using a real {@link ContentCacheImpl} and a mock backing store.
+ */
+public class StreamingCacheFillTest
+{
+    private static final String URL = "store://2026/10/18/content.bin";
+    private static final int CONTENT_SIZE = 300 * 1024;
+
+    private CachingContentStore cachingStore;
+    private ContentCacheImpl cache;
+    private ContentStore backingStore;
+    private File cacheRoot;
+    private byte[] content;
+    private List<Runnable> queuedFills;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        cacheRoot = new File(TempFileProvider.getTempDir(), GUID.generate());
+        cache = new ContentCacheImpl();
+        cache.setMemoryStore(new DefaultSimpleCache<>());
+        cache.setCacheRoot(cacheRoot);
+
+        content = new byte[CONTENT_SIZE];
+        for (int i = 0; i < content.length; i++)
+        {
+            content[i] = (byte) (i % 251);
+        }
+        File sourceFile = TempFileProvider.createTempFile(getClass().getSimpleName(), ".bin");
+        Files.write(sourceFile.toPath(), content);
+
+        backingStore = mock(ContentStore.class);
+        when(backingStore.getReader(URL)).thenAnswer(invocation -> new FileContentReader(sourceFile, URL));
+
+        cachingStore = new CachingContentStore(backingStore, cache, false);
+        queuedFills = new ArrayList<>();
+        cachingStore.setCacheFillExecutor(queuedFills::add);
+    }
+
+    @After
+    public void tearDown()
+    {
+        cache.deleteFile(URL);
+    }
+
+    @Test
+    public void readerIsReturnedBeforeContentIsCached() throws Exception
+    {
+        ContentReader reader = cachingStore.getReader(URL);
+
+        assertEquals(1, queuedFills.size());
+        assertFalse("Content should not be cached until the fill has run", cache.contains(URL));
+        assertEquals(CONTENT_SIZE, reader.getSize());
+
+        queuedFills.get(0).run();
+
+        assertTrue("Content should be cached once the fill has run", cache.contains(URL));
+        assertArrayEquals(content, readAll(reader));
+        // Now served from the cache
+        assertTrue(cachingStore.getReader(URL) instanceof FileContentReader);
+        verify(backingStore, times(1)).getReader(URL);
+    }
+
+    @Test
+    public void concurrentReadersShareOneFill()
+    {
+        ContentReader reader1 = cachingStore.getReader(URL);
+        ContentReader reader2 = cachingStore.getReader(URL);
+
+        assertEquals("Only one fill should be started", 1, queuedFills.size());
+        queuedFills.get(0).run();
+
+        assertArrayEquals(content, readAll(reader1));
+        assertArrayEquals(content, readAll(reader2));
+    }
+
+    @Test
+    public void readersStreamWhileContentIsCached() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            cachingStore.setCacheFillExecutor(executor);
+
+            ContentReader reader = cachingStore.getReader(URL);
+
+            assertArrayEquals(content, readAll(reader));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        assertTrue(cache.contains(URL));
+    }
+
+    @Test
+    public void rangeReadBeyondThresholdIsServedByBackingStore() throws Exception
+    {
+        cachingStore.setRangeReadThreshold(1024L);
+        ContentReader reader = cachingStore.getReader(URL);
+
+        try (SeekableByteChannel channel = (SeekableByteChannel) reader.getReadableChannel())
+        {
+            channel.position(CONTENT_SIZE - 100);
+            ByteBuffer buffer = ByteBuffer.allocate(100);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0)
+            {}
+            assertArrayEquals(Arrays.copyOfRange(content, CONTENT_SIZE - 100, CONTENT_SIZE), buffer.array());
+        }
+        assertFalse("The fill should not have been run to serve the range", cache.contains(URL));
+        assertEquals(1, queuedFills.size());
+    }
+
+    @Test
+    public void failedFillIsNotCached()
+    {
+        ContentReader failingReader = mock(ContentReader.class);
+        when(failingReader.getSize()).thenReturn((long) CONTENT_SIZE);
+        when(failingReader.getReadableChannel()).thenThrow(new ContentIOException("Backing store unavailable"));
+        when(backingStore.getReader(URL)).thenReturn(failingReader);
+
+        ContentReader reader = cachingStore.getReader(URL);
+        assertNotNull(reader);
+        queuedFills.get(0).run();
+
+        assertFalse(cache.contains(URL));
+        // A later read starts a new fill
+        cachingStore.getReader(URL);
+        assertEquals(2, queuedFills.size());
+    }
+
+    @Test
+    public void fillFailingOnCloseIsNotCached()
+    {
+        // All the content arrives, but the source reports an error when it is closed
+        ReadableByteChannel failingOnClose = new ReadableByteChannel() {
+            private final ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(content));
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException
+            {
+                return channel.read(dst);
+            }
+
+            @Override
+            public boolean isOpen()
+            {
+                return channel.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                channel.close();
+                throw new IOException("Connection reset");
+            }
+        };
+        ContentReader failingReader = mock(ContentReader.class);
+        when(failingReader.getSize()).thenReturn((long) CONTENT_SIZE);
+        when(failingReader.getReadableChannel()).thenReturn(failingOnClose);
+        when(backingStore.getReader(URL)).thenReturn(failingReader);
+
+        cachingStore.getReader(URL);
+        queuedFills.get(0).run();
+
+        assertFalse("A fill is only successful once its channels have been closed", cache.contains(URL));
+    }
+
+    private static byte[] readAll(ContentReader reader)
+    {
+        try (InputStream is = reader.getReader().getContentInputStream())
+        {
+            return is.readAllBytes();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1462,6 +1462,37 @@ public class FixedAclUpdaterTest
         }
     }
 
+    /* Test searching for the pending nodes a range of node ids at a time */
+    @Test
+    @RetryAtMost(3)
+    public void testNodeIdRanges()
+    {
+        NodeRef folderRef = createFolderHierarchyInRootForFileTests("testNodeIdRangesFolder");
+        long nodeIdRangeSize = fixedAclUpdater.getNodeIdRangeSize();
+
+        try
+        {
+            setPermissionsOnTree(folderRef, true, true);
+
+            int initialPendingAcls = getNodesCountWithPendingFixedAclAspect();
+            assertTrue("We don't have enough pending acls to test", initialPendingAcls > 0);
+
+            // A range smaller than a batch, so that batches span ranges
+            fixedAclUpdater.setNodeIdRangeSize(7);
+            triggerFixedACLJob(false, true, -1, 30);
+
+            int finalPendingAcls = getNodesCountWithPendingFixedAclAspect();
+
+            assertEquals("Not all ACls were processed", 0, finalPendingAcls);
+        }
+        finally
+        {
+            fixedAclUpdater.setNodeIdRangeSize(nodeIdRangeSize);
+            setFixedAclMaxTransactionTime(permissionsDaoComponent, homeFolderNodeRef, MAX_TRANSACTION_TIME_DEFAULT);
+            deleteNodes(folderRef);
+        }
+    }
+
     private Long getChild(Long parentId)
     {
         List<FileInfo> children = fileFolderService.list(nodeDAO.getNodePair(parentId).getSecond());
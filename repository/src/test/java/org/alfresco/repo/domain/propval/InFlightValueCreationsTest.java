@@ -0,0 +1,239 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.propval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link InFlightValueCreations} class, using a map per thread in place of the transaction.
+ */
+public class InFlightValueCreationsTest
+{
+    private final ThreadLocal<Map<Serializable, CountDownLatch>> transactionCreations = ThreadLocal.withInitial(HashMap::new);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private InFlightValueCreations newCreations(long waitMs)
+    {
+        return new InFlightValueCreations(4, waitMs) {
+            @Override
+            protected Map<Serializable, CountDownLatch> getTransactionCreations()
+            {
+                return transactionCreations.get();
+            }
+        };
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void createsOnceAndHoldsUntilReleased()
+    {
+        InFlightValueCreations creations = newCreations(1000L);
+        AtomicInteger creates = new AtomicInteger();
+
+        assertEquals("A", creations.findOrCreate("key", () -> null, () -> {
+            creates.incrementAndGet();
+            return "A";
+        }));
+        assertEquals(1, creates.get());
+        assertEquals(1, creations.getInFlightCount());
+
+        // The same transaction does not wait for itself
+        assertEquals("A", creations.findOrCreate("key", () -> null, () -> {
+            creates.incrementAndGet();
+            return "A";
+        }));
+        assertEquals(2, creates.get());
+        assertEquals(1, creations.getInFlightCount());
+
+        creations.release(transactionCreations.get());
+        assertEquals(0, creations.getInFlightCount());
+    }
+
+    @Test
+    public void otherTransactionWaitsAndFindsCommittedValue() throws Exception
+    {
+        InFlightValueCreations creations = newCreations(5000L);
+        AtomicReference<String> committed = new AtomicReference<>();
+        AtomicInteger creates = new AtomicInteger();
+
+        creations.findOrCreate("key", committed::get, () -> {
+            creates.incrementAndGet();
+            return "created";
+        });
+
+        Future<String> other = executor.submit(() -> creations.findOrCreate("key", committed::get, () -> {
+            creates.incrementAndGet();
+            return "duplicate";
+        }));
+        Thread.sleep(100L);
+        assertTrue("Second transaction did not wait", !other.isDone());
+
+        // Commit
+        committed.set("created");
+        creations.release(transactionCreations.get());
+
+        assertEquals("created", other.get(5, TimeUnit.SECONDS));
+        assertEquals(1, creates.get());
+    }
+
+    @Test
+    public void otherTransactionCreatesAfterRollback() throws Exception
+    {
+        InFlightValueCreations creations = newCreations(5000L);
+
+        creations.findOrCreate("key", () -> null, () -> "rolled back");
+        Future<String> other = executor.submit(() -> creations.findOrCreate("key", () -> null, () -> "created"));
+        Thread.sleep(100L);
+
+        // Roll back: nothing was committed, so the other transaction creates the value itself
+        creations.release(transactionCreations.get());
+        assertEquals("created", other.get(5, TimeUnit.SECONDS));
+        assertEquals(1, creations.getInFlightCount());
+    }
+
+    @Test
+    public void otherTransactionCreatesAfterTimeout() throws Exception
+    {
+        InFlightValueCreations creations = newCreations(50L);
+
+        creations.findOrCreate("key", () -> null, () -> "first");
+        Future<String> other = executor.submit(() -> creations.findOrCreate("key", () -> null, () -> "second"));
+        assertEquals("second", other.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void differentKeysDoNotWait() throws Exception
+    {
+        InFlightValueCreations creations = newCreations(5000L);
+
+        creations.findOrCreate("key-1", () -> null, () -> "first");
+        Future<String> other = executor.submit(() -> creations.findOrCreate("key-2", () -> null, () -> "second"));
+        assertEquals("second", other.get(1, TimeUnit.SECONDS));
+        assertEquals(2, creations.getInFlightCount());
+    }
+
+    @Test
+    public void creationDoesNotHoldTheStripe() throws Exception
+    {
+        InFlightValueCreations creations = newCreations(5000L);
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch finishCreating = new CountDownLatch(1);
+
+        // Keys 1 and 5 share a stripe of the four locks
+        Future<String> slow = executor.submit(() -> creations.findOrCreate(1, () -> null, () -> {
+            creating.countDown();
+            await(finishCreating);
+            return "slow";
+        }));
+        assertTrue(creating.await(5, TimeUnit.SECONDS));
+        try
+        {
+            AtomicInteger creates = new AtomicInteger();
+            long start = System.nanoTime();
+            assertEquals("fast", creations.findOrCreate(5, () -> null, () -> {
+                creates.incrementAndGet();
+                return "fast";
+            }));
+            assertEquals(1, creates.get());
+            assertTrue("Creation waited for another value on the same stripe",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000L);
+        }
+        finally
+        {
+            finishCreating.countDown();
+        }
+        assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedCreationGivesUpTheClaim()
+    {
+        InFlightValueCreations creations = newCreations(5000L);
+        try
+        {
+            creations.findOrCreate("key", () -> null, () -> {
+                throw new IllegalStateException("Insert failed");
+            });
+        }
+        catch (IllegalStateException e)
+        {
+            // Expected
+        }
+        assertEquals(0, creations.getInFlightCount());
+        assertTrue(transactionCreations.get().isEmpty());
+    }
+
+    @Test
+    public void foundValueGivesUpTheClaim() throws Exception
+    {
+        InFlightValueCreations creations = newCreations(5000L);
+        AtomicReference<String> committed = new AtomicReference<>();
+
+        creations.findOrCreate("key", committed::get, () -> "created");
+        Future<Integer> other = executor.submit(() -> {
+            assertEquals("created", creations.findOrCreate("key", committed::get, () -> "duplicate"));
+            return transactionCreations.get().size();
+        });
+        Thread.sleep(100L);
+
+        committed.set("created");
+        creations.release(transactionCreations.get());
+        assertEquals("Nothing is held for a value that was found", Integer.valueOf(0), other.get(5, TimeUnit.SECONDS));
+        assertEquals(0, creations.getInFlightCount());
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -25,6 +25,7 @@
  */
 package org.alfresco.repo.domain.propval;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -48,6 +49,7 @@ import org.alfresco.service.cmr.attributes.AttributeService;
 import org.alfresco.service.transaction.TransactionService;
 import org.alfresco.test_category.OwnJVMTestsCategory;
 import org.alfresco.util.ApplicationContextHelper;
+import org.alfresco.util.Pair;
 import org.alfresco.util.testing.category.DBTests;
 
 /**
@@ -173,6 +175,43 @@ public class PropertyValueCleanupTest
         }
     }
 
+    @Test
+    public void testCleanupByIdRange() throws Exception
+    {
+        final String key1 = "testCleanupByIdRange";
+        final String toDeleteKey2 = UUID.randomUUID().toString();
+        final String toKeepKey2 = UUID.randomUUID().toString();
+        attributeService.createAttribute("Value " + toDeleteKey2, key1, toDeleteKey2);
+        attributeService.createAttribute("Value " + toKeepKey2, key1, toKeepKey2);
+        attributeService.removeAttribute(key1, toDeleteKey2);
+        assertNotNull("Key2 should be present as a property value (even if unreferenced)", propertyValueDAO.getPropertyStringValue(toDeleteKey2));
+
+        RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        for (final PropertyValueDAO.CleanupTable table : PropertyValueDAO.CleanupTable.values())
+        {
+            txnHelper.doInTransaction(new RetryingTransactionCallback<Void>() {
+                public Void execute() throws Throwable
+                {
+                    long maxId = propertyValueDAO.getMaxCleanupId(table);
+                    // Use several ranges to check that they join up
+                    long rangeSize = Math.max(1L, maxId / 3L + 1L);
+                    for (long fromId = 0L; fromId < maxId; fromId += rangeSize)
+                    {
+                        Pair<Integer, Integer> result = propertyValueDAO.cleanupUnusedValues(table, fromId, Math.min(fromId + rangeSize, maxId));
+                        assertTrue("Cannot delete more rows than were scanned", result.getSecond() <= result.getFirst());
+                    }
+                    return null;
+                }
+            });
+        }
+        clearCaches();
+
+        assertNull("Key2 should be NOT present as a property value (cleanup by ID range)", propertyValueDAO.getPropertyStringValue(toDeleteKey2));
+        assertNotNull("Key2 should still be present as a property value", propertyValueDAO.getPropertyStringValue(toKeepKey2));
+        assertEquals("Value " + toKeepKey2, attributeService.getAttribute(key1, toKeepKey2));
+        attributeService.removeAttribute(key1, toKeepKey2);
+    }
+
     /**
      * Simple runnable that continuously creates new serializable attributes until stopped. Each thread has a unique second key value, a sequential third key and generates serializable (unshared) property values.
      * 
@@ -667,6 +667,57 @@ public class PropertyValueDAOTest
         runPropertyTest(list);
     }
 
+    @Test
+    public void testPropertyValues_Batch() throws Exception
+    {
+        final String existing = "BATCH-EXISTING-" + GUID.generate();
+        final Pair<Long, Serializable> existingPair = txnHelper.doInTransaction(new RetryingTransactionCallback<Pair<Long, Serializable>>() {
+            public Pair<Long, Serializable> execute() throws Throwable
+            {
+                return propertyValueDAO.getOrCreatePropertyValue(existing);
+            }
+        }, false);
+        final List<Serializable> values = new ArrayList<Serializable>();
+        values.add(existing);
+        values.add("BATCH-NEW-" + GUID.generate());
+        values.add(null);
+        values.add(Long.valueOf(42L));
+        values.add(Double.valueOf(4.2));
+        values.add(TEST_NUMBERS.TWO);
+        values.add(new CompositeName("BATCH-SERIALIZABLE"));
+        values.add(existing);
+        List<Pair<Long, Serializable>> pairs = txnHelper.doInTransaction(new RetryingTransactionCallback<List<Pair<Long, Serializable>>>() {
+            public List<Pair<Long, Serializable>> execute() throws Throwable
+            {
+                return propertyValueDAO.getOrCreatePropertyValues(values);
+            }
+        }, false);
+        assertEquals(values.size(), pairs.size());
+        assertEquals("Existing value not found", existingPair, pairs.get(0));
+        assertEquals("Repeated value not found", existingPair, pairs.get(7));
+        for (int i = 0; i < values.size(); i++)
+        {
+            assertNotNull(pairs.get(i).getFirst());
+            assertEquals(values.get(i), pairs.get(i).getSecond());
+        }
+        // All the values now exist, so they must come back with the same IDs
+        List<Pair<Long, Serializable>> checkPairs = txnHelper.doInTransaction(new RetryingTransactionCallback<List<Pair<Long, Serializable>>>() {
+            public List<Pair<Long, Serializable>> execute() throws Throwable
+            {
+                return propertyValueDAO.getOrCreatePropertyValues(values);
+            }
+        }, false);
+        for (int i = 0; i < values.size(); i++)
+        {
+            if (values.get(i) instanceof CompositeName)
+            {
+                // Serialized values are not shared
+                continue;
+            }
+            assertEquals(pairs.get(i), checkPairs.get(i));
+        }
+    }
+
     @Test
     public void testProperty_UpdateCollection() throws Exception
     {
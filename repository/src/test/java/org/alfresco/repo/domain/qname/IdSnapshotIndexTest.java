@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.qname;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link IdSnapshotIndex}.
+ */
+public class IdSnapshotIndexTest
+{
+    @Test
+    public void testEmpty()
+    {
+        IdSnapshotIndex<String> index = IdSnapshotIndex.empty();
+        assertEquals(0, index.size());
+        assertNull(index.get(1L));
+        assertEquals(IdSnapshotIndex.NO_ID, index.getId("A"));
+    }
+
+    @Test
+    public void testLookupsInBothDirections()
+    {
+        IdSnapshotIndex<String> index = IdSnapshotIndex.empty();
+        for (long id = 1; id <= 1000; id++)
+        {
+            index = index.with(id * 7, "Value " + id);
+        }
+        assertEquals(1000, index.size());
+        for (long id = 1; id <= 1000; id++)
+        {
+            assertEquals("Value " + id, index.get(id * 7));
+            assertEquals(id * 7, index.getId("Value " + id));
+        }
+        assertNull(index.get(3L));
+        assertEquals(IdSnapshotIndex.NO_ID, index.getId("Value 1001"));
+    }
+
+    @Test
+    public void testSnapshotsAreImmutable()
+    {
+        IdSnapshotIndex<String> index = IdSnapshotIndex.<String> empty().with(1L, "A");
+        IdSnapshotIndex<String> next = index.with(2L, "B");
+        assertNull(index.get(2L));
+        assertEquals("B", next.get(2L));
+        assertSame("Adding an existing entry must not copy the index", next, next.with(2L, "B"));
+    }
+
+    @Test
+    public void testReplacedEntriesAreDropped()
+    {
+        IdSnapshotIndex<String> index = IdSnapshotIndex.<String> empty().with(1L, "A").with(2L, "B");
+
+        // Same ID, new value
+        index = index.with(1L, "C");
+        assertEquals("C", index.get(1L));
+        assertEquals(IdSnapshotIndex.NO_ID, index.getId("A"));
+
+        // Same value, new ID
+        index = index.with(3L, "B");
+        assertEquals(3L, index.getId("B"));
+        assertNull(index.get(2L));
+        assertEquals(2, index.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidId()
+    {
+        IdSnapshotIndex.<String> empty().with(0L, "A");
+    }
+
+    @Test
+    public void testBulkAdditionsLaterEntriesWin()
+    {
+        IdSnapshotIndex<String> index = IdSnapshotIndex.<String> empty().with(1L, "A");
+        index = index.withAll(new long[]{2L, 1L, 3L, 4L}, new Object[]{"B", "C", "B", "D"}, 3);
+        assertEquals("C", index.get(1L));
+        assertEquals(IdSnapshotIndex.NO_ID, index.getId("A"));
+        assertEquals(3L, index.getId("B"));
+        assertNull(index.get(2L));
+        assertNull("Entries beyond the count are ignored", index.get(4L));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testPublisherPublishesInBulk()
+    {
+        IdSnapshotIndex.Publisher<String> publisher = new IdSnapshotIndex.Publisher<>();
+        int snapshots = 0;
+        IdSnapshotIndex<String> last = publisher.get();
+        for (long id = 1; id <= 10000; id++)
+        {
+            publisher.add(id, "Value " + id, (int) id, publisher.getGeneration());
+            if (publisher.get() != last)
+            {
+                last = publisher.get();
+                snapshots++;
+            }
+        }
+        assertTrue("Too many snapshots: " + snapshots, snapshots < 50);
+        assertTrue(last.size() > 8000);
+        for (long id = 1; id <= last.size(); id++)
+        {
+            assertEquals("Value " + id, last.get(id));
+        }
+    }
+
+    @Test
+    public void testPublisherClear()
+    {
+        IdSnapshotIndex.Publisher<String> publisher = new IdSnapshotIndex.Publisher<>();
+        long generation = publisher.getGeneration();
+        publisher.add(1L, "A", 0, generation);
+        publisher.add(2L, "B", 42, generation);
+        assertTrue(publisher.isAffectedBy(new int[]{7, 42}));
+        assertTrue(publisher.isAffectedBy(new int[]{0}));
+        assertFalse(publisher.isAffectedBy(new int[]{7}));
+
+        publisher.clear();
+        assertEquals(0, publisher.get().size());
+        assertFalse(publisher.isAffectedBy(new int[]{0, 42}));
+
+        // A value read before the clear must not be added after it
+        publisher.add(1L, "A", 0, generation);
+        assertEquals(0, publisher.get().size());
+        publisher.add(1L, "A", 0, publisher.getGeneration());
+        assertEquals("A", publisher.get().get(1L));
+    }
+}
@@ -243,4 +243,64 @@ public class QNameDAOTest extends TestCase
         // The QName should not be there
         getQName(qname, false, false);
     }
+
+    public void testPrimitiveLookups() throws Exception
+    {
+        final QName qname = QName.createQName(GUID.generate(), GUID.generate());
+
+        // A QName created in a transaction that rolls back must not be remembered
+        RetryingTransactionCallback<Void> rollbackCallback = new RetryingTransactionCallback<Void>() {
+            public Void execute() throws Throwable
+            {
+                long id = qnameDAO.getOrCreateQNameId(qname);
+                assertEquals(qname, qnameDAO.getQNameById(id));
+                assertEquals(id, qnameDAO.getQNameId(qname));
+                throw new UnsupportedOperationException("Forced rollback");
+            }
+        };
+        try
+        {
+            txnHelper.doInTransaction(rollbackCallback, false, true);
+            fail("Transaction should have rolled back");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // Expected
+        }
+        RetryingTransactionCallback<Long> getIdCallback = new RetryingTransactionCallback<Long>() {
+            public Long execute() throws Throwable
+            {
+                return qnameDAO.getQNameId(qname);
+            }
+        };
+        assertEquals(QNameDAO.NO_ID, txnHelper.doInTransaction(getIdCallback, true, false).longValue());
+
+        // Create it properly
+        Pair<Long, QName> qnamePair = getQName(qname, true, true);
+        final long qnameId = qnamePair.getFirst();
+        assertEquals(qnameId, txnHelper.doInTransaction(getIdCallback, true, false).longValue());
+        RetryingTransactionCallback<QName> getQNameCallback = new RetryingTransactionCallback<QName>() {
+            public QName execute() throws Throwable
+            {
+                return qnameDAO.getQNameById(qnameId);
+            }
+        };
+        QName qnameCheck = txnHelper.doInTransaction(getQNameCallback, true, false);
+        assertEquals(qname, qnameCheck);
+        assertSame("QNames should be shared", qnameCheck, txnHelper.doInTransaction(getQNameCallback, true, false));
+        assertEquals(qnamePair.getSecond().getNamespaceURI(), qnameDAO.getNamespaceUriById(getNamespace(qname.getNamespaceURI(), false, true).getFirst()));
+
+        // Renaming must be seen by the primitive lookups
+        final QName qnameNew = QName.createQName(GUID.generate(), GUID.generate());
+        RetryingTransactionCallback<Void> updateCallback = new RetryingTransactionCallback<Void>() {
+            public Void execute() throws Throwable
+            {
+                qnameDAO.updateQName(qname, qnameNew);
+                return null;
+            }
+        };
+        txnHelper.doInTransaction(updateCallback);
+        assertEquals(qnameNew, txnHelper.doInTransaction(getQNameCallback, true, false));
+        assertEquals(QNameDAO.NO_ID, txnHelper.doInTransaction(getIdCallback, true, false).longValue());
+    }
 }
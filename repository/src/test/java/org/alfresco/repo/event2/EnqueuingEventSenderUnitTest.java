@@ -28,11 +28,16 @@ package org.alfresco.repo.event2;
 import static java.lang.Thread.sleep;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -98,6 +103,32 @@ public class EnqueuingEventSenderUnitTest
                 return null;
             }
         }).when(bus).send(any());
+
+        // A batch is sent in one transaction: the events of a failing batch are not delivered
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable
+            {
+                List<?> batch = invocation.getArgument(0, List.class);
+                int delivered = recordedEvents.size();
+                try
+                {
+                    for (Object event : batch)
+                    {
+                        bus.send(event);
+                    }
+                }
+                catch (Throwable e)
+                {
+                    while (recordedEvents.size() > delivered)
+                    {
+                        recordedEvents.remove(recordedEvents.size() - 1);
+                    }
+                    throw e;
+                }
+                return null;
+            }
+        }).when(bus).sendBatch(anyList());
     }
 
     @Test
@@ -223,6 +254,88 @@ public class EnqueuingEventSenderUnitTest
         assertEquals("C", recordedEvents.get(1).getId());
     }
 
+    @Test
+    public void shouldSendQueuedEventsInOneBatch() throws Exception
+    {
+        EnqueuingEventSender batchingSender = new EnqueuingEventSender(bus, enqueuePool, dequeuePool);
+        batchingSender.setMaxBatchDelay(200l);
+        batchingSender.initialize();
+
+        batchingSender.accept(messageWithDelay("A", 0l));
+        batchingSender.accept(messageWithDelay("B", 0l));
+        batchingSender.accept(messageWithDelay("C", 0l));
+
+        sleep(450l);
+
+        assertEquals(3, recordedEvents.size());
+        assertEquals("A", recordedEvents.get(0).getId());
+        assertEquals("B", recordedEvents.get(1).getId());
+        assertEquals("C", recordedEvents.get(2).getId());
+        assertEquals(3, batchingSender.getLastBatchSize());
+        assertEquals(3l, batchingSender.getSentCount());
+        assertEquals(0, batchingSender.getQueueSize());
+        verify(bus).sendBatch(Arrays.asList(events.get("A"), events.get("B"), events.get("C")));
+    }
+
+    @Test
+    public void shouldBlockWhenQueueIsFull() throws Exception
+    {
+        EnqueuingEventSender boundedSender = new EnqueuingEventSender(bus, enqueuePool, dequeuePool, 1);
+        boundedSender.accept(messageWithDelay("A", 0l));
+
+        Thread blocked = new Thread(() -> boundedSender.accept(messageWithDelay("B", 0l)));
+        blocked.start();
+        blocked.join(200l);
+        assertTrue("The caller should wait for space in the queue", blocked.isAlive());
+        assertEquals(1, boundedSender.getQueueSize());
+
+        boundedSender.initialize();
+        blocked.join(1000l);
+        sleep(150l);
+
+        assertFalse(blocked.isAlive());
+        assertEquals(2, recordedEvents.size());
+        assertEquals("A", recordedEvents.get(0).getId());
+        assertEquals("B", recordedEvents.get(1).getId());
+        assertEquals(0l, boundedSender.getOverflowCount());
+    }
+
+    @Test
+    public void shouldSendDirectlyWhenQueueStaysFull() throws Exception
+    {
+        EnqueuingEventSender boundedSender = new EnqueuingEventSender(bus, enqueuePool, dequeuePool, 1);
+        boundedSender.setQueueOfferTimeout(50l);
+        boundedSender.accept(messageWithDelay("A", 0l));
+        boundedSender.accept(messageWithDelay("B", 0l));
+
+        assertEquals(1l, boundedSender.getOverflowCount());
+        assertEquals(1, recordedEvents.size());
+        assertEquals("B", recordedEvents.get(0).getId());
+
+        boundedSender.initialize();
+        sleep(150l);
+
+        assertEquals(2, recordedEvents.size());
+        assertEquals("A", recordedEvents.get(1).getId());
+    }
+
+    @Test
+    public void shouldDropWhenQueueStaysFull() throws Exception
+    {
+        EnqueuingEventSender boundedSender = new EnqueuingEventSender(bus, enqueuePool, dequeuePool, 1);
+        boundedSender.setQueueOfferTimeout(50l);
+        boundedSender.setOverflowPolicy(EnqueuingEventSender.OverflowPolicy.DROP);
+        boundedSender.accept(messageWithDelay("A", 0l));
+        boundedSender.accept(messageWithDelay("B", 0l));
+
+        assertEquals(1l, boundedSender.getOverflowCount());
+        boundedSender.initialize();
+        sleep(150l);
+
+        assertEquals(1, recordedEvents.size());
+        assertEquals("A", recordedEvents.get(0).getId());
+    }
+
     private Callable<Optional<RepoEvent<?>>> messageWithDelay(String id, long delay)
     {
         return new Callable<Optional<RepoEvent<?>>>() {
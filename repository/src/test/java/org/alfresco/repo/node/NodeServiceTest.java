@@ -391,6 +391,50 @@ public class NodeServiceTest
         assertEquals("", 3, paths.size());
     }
 
+    /**
+     * The paths of a node are built from the cached paths of its parent, so check that moving an ancestor or adding a parent is reflected in the paths of the descendants.
+     */
+    @Test
+    public void testGetPathsAfterAncestorChanges() throws Exception
+    {
+        final NodeRef workspaceRootNodeRef = nodeService.getRootNode(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+        final NodeRef[] nodes = new NodeRef[6];
+        buildNodeHierarchy(workspaceRootNodeRef, nodes);
+
+        // Warm up the paths of the whole hierarchy
+        Path path = nodeService.getPath(nodes[5]);
+        assertEquals("Incorrect path: " + path, 7, path.size());
+        assertEquals(nodes[4], ((Path.ChildAssocElement) path.get(6)).getRef().getParentRef());
+
+        // Move an ancestor and check the descendants in the same transaction
+        txnService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>() {
+            @Override
+            public Void execute() throws Throwable
+            {
+                nodeService.moveNode(nodes[3], nodes[0], ContentModel.ASSOC_CONTAINS, QName.createQName(NAMESPACE, "moved"));
+                Path path = nodeService.getPath(nodes[5]);
+                assertEquals("Incorrect path after move: " + path, 5, path.size());
+                assertEquals(nodes[0], ((Path.ChildAssocElement) path.get(2)).getRef().getParentRef());
+                return null;
+            }
+        });
+        path = nodeService.getPath(nodes[5]);
+        assertEquals("Incorrect path after move: " + path, 5, path.size());
+        assertEquals(QName.createQName(NAMESPACE, "moved"), ((Path.ChildAssocElement) path.get(2)).getRef().getQName());
+
+        // A secondary parent of an ancestor adds a path to every descendant
+        nodeService.addChild(nodes[1], nodes[3], ContentModel.ASSOC_CONTAINS, QName.createQName(NAMESPACE, "secondary"));
+        List<Path> paths = nodeService.getPaths(nodes[5], false);
+        assertEquals("Incorrect paths: " + paths, 2, paths.size());
+        assertEquals(path, nodeService.getPath(nodes[5]));
+        paths = nodeService.getPaths(nodes[4], false);
+        assertEquals("Incorrect paths: " + paths, 2, paths.size());
+
+        nodeService.removeChild(nodes[1], nodes[3]);
+        paths = nodeService.getPaths(nodes[5], false);
+        assertEquals("Incorrect paths: " + paths, 1, paths.size());
+    }
+
     /**
      * Test class to detect inner transaction failure
      */
@@ -44,6 +44,7 @@ import org.springframework.context.ApplicationContext;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.security.authority.AuthorityBridgeTableAsynchronouslyRefreshedCache.AuthorityLinkChange;
 import org.alfresco.repo.tenant.TenantAdminService;
 import org.alfresco.repo.tenant.TenantService;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
@@ -56,6 +57,7 @@ import org.alfresco.service.cmr.security.PersonService;
 import org.alfresco.service.transaction.TransactionService;
 import org.alfresco.test_category.OwnJVMTestsCategory;
 import org.alfresco.util.ApplicationContextHelper;
+import org.alfresco.util.BridgeTable;
 import org.alfresco.util.GUID;
 
 @Category(OwnJVMTestsCategory.class)
@@ -252,6 +254,37 @@ public class AuthorityBridgeTableAsynchronouslyRefreshedCacheTest extends TestCa
         }
     }
 
+    public void testLinkChangesAreAppliedInPlace()
+    {
+        List<AuthorityBridgeLink> links = new LinkedList<AuthorityBridgeLink>();
+        links.add(createAuthorityBridgeLink("g1", "g2"));
+        AuthorityBridgeDAO authorityBridgeDAOMock = mock(AuthorityBridgeDAO.class);
+        when(authorityBridgeDAOMock.getAuthorityBridgeLinks()).thenReturn(links);
+
+        AuthorityBridgeTableAsynchronouslyRefreshedCache cache = new AuthorityBridgeTableAsynchronouslyRefreshedCache();
+        cache.setAuthorityBridgeDAO(authorityBridgeDAOMock);
+        cache.setAuthorityDAO(mock(AuthorityDAO.class));
+        cache.setTenantAdminService(tenantAdminService);
+        cache.setRetryingTransactionHelper(transactionService.getRetryingTransactionHelper());
+
+        String tenantId = tenantAdminService.getCurrentUserDomain();
+        BridgeTable<String> bridgeTable = cache.buildCache(tenantId);
+
+        AuthorityLinkChange add = new AuthorityLinkChange("g2", "g3", true);
+        assertTrue(cache.applyUpdate(tenantId, bridgeTable, add));
+        assertTrue(bridgeTable.getAncestors("g3").contains("g1"));
+        // Changes are idempotent
+        assertTrue(cache.applyUpdate(tenantId, bridgeTable, add));
+        assertTrue(cache.applyUpdate(tenantId, bridgeTable, new AuthorityLinkChange("g2", "g3", false)));
+        assertTrue(cache.applyUpdate(tenantId, bridgeTable, new AuthorityLinkChange("g2", "g3", false)));
+        assertFalse(bridgeTable.getAncestors("g3").contains("g1"));
+        assertTrue(bridgeTable.getAncestors("g2").contains("g1"));
+
+        // A cycle needs a full rebuild
+        assertFalse(cache.applyUpdate(tenantId, bridgeTable, new AuthorityLinkChange("g2", "g1", true)));
+        assertFalse(bridgeTable.hasLink("g2", "g1"));
+    }
+
     private AuthorityBridgeLink createAuthorityBridgeLink(String parentName, String childName)
     {
         AuthorityBridgeLink link = new AuthorityBridgeLink();
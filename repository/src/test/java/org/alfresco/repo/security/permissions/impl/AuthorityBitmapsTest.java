@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2026 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ *
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.permissions.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class AuthorityBitmapsTest
+{
+    private final AuthorityBitmaps authorityBitmaps = new AuthorityBitmaps();
+
+    @Test
+    public void shouldAssignDenseStableIds()
+    {
+        int andy = authorityBitmaps.getId("andy");
+        int group = authorityBitmaps.getId("GROUP_ONE");
+
+        assertEquals(0, andy);
+        assertEquals(1, group);
+        assertEquals(andy, authorityBitmaps.getId("andy"));
+        assertEquals(2, authorityBitmaps.size());
+    }
+
+    @Test
+    public void shouldTestReadersByIntersection()
+    {
+        AuthorityBitmaps.AclReaders aclReaders = authorityBitmaps.toAclReaders(Set.of("GROUP_ONE", "GROUP_TWO"), Set.of("GROUP_DENIED"));
+
+        AuthorityBitmaps.Bitmap reader = authorityBitmaps.toBitmap(Set.of("andy", "GROUP_EVERYONE", "GROUP_TWO"));
+        AuthorityBitmaps.Bitmap other = authorityBitmaps.toBitmap(Set.of("bob", "GROUP_EVERYONE"));
+        AuthorityBitmaps.Bitmap denied = authorityBitmaps.toBitmap(Set.of("carol", "GROUP_ONE", "GROUP_DENIED"));
+
+        assertTrue(aclReaders.canRead(reader));
+        assertFalse(aclReaders.isReadDenied(reader));
+        assertFalse(aclReaders.canRead(other));
+        assertTrue(aclReaders.canRead(denied));
+        assertTrue(aclReaders.isReadDenied(denied));
+    }
+
+    @Test
+    public void shouldGiveNewAuthoritiesNewIds()
+    {
+        AuthorityBitmaps.Bitmap before = authorityBitmaps.toBitmap(Set.of("GROUP_ONE"));
+        AuthorityBitmaps.Bitmap after = authorityBitmaps.toBitmap(Set.of("GROUP_NEW"));
+
+        assertNotEquals(authorityBitmaps.getId("GROUP_ONE"), authorityBitmaps.getId("GROUP_NEW"));
+        assertFalse(before.intersects(after));
+    }
+
+    @Test
+    public void shouldHoldScatteredIdsAsSortedIds()
+    {
+        AuthorityBitmaps.Bitmap bitmap = AuthorityBitmaps.Bitmap.of(0, new int[]{200000, 3, 3, 70000});
+
+        assertFalse(bitmap.isDense());
+        assertEquals(3, bitmap.size());
+        assertTrue(bitmap.contains(3));
+        assertTrue(bitmap.contains(70000));
+        assertTrue(bitmap.contains(200000));
+        assertFalse(bitmap.contains(4));
+    }
+
+    @Test
+    public void shouldHoldDenseIdsAsWords()
+    {
+        int[] ids = new int[100];
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = 100000 + i * 2;
+        }
+        AuthorityBitmaps.Bitmap bitmap = AuthorityBitmaps.Bitmap.of(0, ids);
+
+        assertTrue(bitmap.isDense());
+        assertEquals(100, bitmap.size());
+        assertTrue(bitmap.contains(100000));
+        assertTrue(bitmap.contains(100198));
+        assertFalse(bitmap.contains(100001));
+        assertFalse(bitmap.contains(3));
+        assertFalse(bitmap.contains(200000));
+    }
+
+    @Test
+    public void shouldIntersectAcrossRepresentations()
+    {
+        int[] evens = new int[100];
+        int[] odds = new int[100];
+        for (int i = 0; i < 100; i++)
+        {
+            evens[i] = 1000 + i * 2;
+            odds[i] = 1001 + i * 2;
+        }
+        AuthorityBitmaps.Bitmap denseEvens = AuthorityBitmaps.Bitmap.of(0, evens);
+        AuthorityBitmaps.Bitmap denseOdds = AuthorityBitmaps.Bitmap.of(0, odds);
+        AuthorityBitmaps.Bitmap sparseOdd = AuthorityBitmaps.Bitmap.of(0, new int[]{5, 1001, 900000});
+        AuthorityBitmaps.Bitmap sparseEven = AuthorityBitmaps.Bitmap.of(0, new int[]{5, 1198, 900000});
+        AuthorityBitmaps.Bitmap sparseOther = AuthorityBitmaps.Bitmap.of(0, new int[]{7, 900000});
+        AuthorityBitmaps.Bitmap empty = AuthorityBitmaps.Bitmap.of(0, new int[0]);
+
+        assertFalse(denseEvens.intersects(denseOdds));
+        assertTrue(denseEvens.intersects(AuthorityBitmaps.Bitmap.of(0, evens.clone())));
+        assertTrue(denseOdds.intersects(sparseOdd));
+        assertTrue(sparseOdd.intersects(denseOdds));
+        assertFalse(denseEvens.intersects(sparseOdd));
+        assertTrue(denseEvens.intersects(sparseEven));
+        assertTrue(sparseOdd.intersects(sparseOther));
+        assertFalse(empty.intersects(denseEvens));
+        assertFalse(sparseOther.intersects(empty));
+    }
+
+    @Test
+    public void shouldSizeBitmapsByMembersRatherThanHighestId()
+    {
+        for (int i = 0; i < 200000; i++)
+        {
+            authorityBitmaps.getId("user" + i);
+        }
+        AuthorityBitmaps.Bitmap bitmap = authorityBitmaps.toBitmap(Set.of("GROUP_LATE", "user1"));
+
+        assertFalse(bitmap.isDense());
+        assertEquals(2, bitmap.size());
+    }
+
+    @Test
+    public void shouldRecycleIdsWhenTheIdSpaceIsFull()
+    {
+        authorityBitmaps.setMaxIds(3);
+        AuthorityBitmaps.Bitmap first = authorityBitmaps.toBitmap(Set.of("a", "b", "c"));
+        assertEquals(0, first.getGeneration());
+        assertTrue(authorityBitmaps.isCurrent(first));
+
+        AuthorityBitmaps.Bitmap second = authorityBitmaps.toBitmap(Set.of("a"));
+
+        assertEquals(1, second.getGeneration());
+        assertEquals(1, authorityBitmaps.size());
+        assertFalse(authorityBitmaps.isCurrent(first));
+        assertTrue(authorityBitmaps.isCurrent(second));
+        try
+        {
+            first.intersects(second);
+            fail("Bitmaps from different id spaces must not be compared");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void shouldBuildAclReadersFromOneIdSpace()
+    {
+        authorityBitmaps.setMaxIds(2);
+        List<String> readers = new ArrayList<>(List.of("a", "b", "c"));
+
+        AuthorityBitmaps.AclReaders aclReaders = authorityBitmaps.toAclReaders(readers, Set.of("d"));
+
+        assertEquals(0, aclReaders.getGeneration());
+        assertEquals(1, authorityBitmaps.toBitmap(Set.of("d")).getGeneration());
+    }
+}
@@ -31,6 +31,7 @@ import static org.mockito.Mockito.verify;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import net.sf.acegisecurity.Authentication;
@@ -437,6 +438,41 @@ public class PermissionServiceTest extends AbstractPermissionTest
         assertTrue(permissionService.hasReadPermission(four) == AccessStatus.DENIED);
     }
 
+    public void testBulkPermissionChecksMatchSingleChecks()
+    {
+        personService.getPerson("andy");
+        runAs("admin");
+
+        NodeRef folder = nodeService.createNode(rootNodeRef, ContentModel.ASSOC_CHILDREN, QName.createQName("{namespace}bulk"), ContentModel.TYPE_FOLDER).getChildRef();
+        permissionService.setPermission(folder, "andy", PermissionService.READ, true);
+
+        List<NodeRef> nodeRefs = new ArrayList<NodeRef>();
+        nodeRefs.add(folder);
+        for (int i = 0; i < 5; i++)
+        {
+            nodeRefs.add(nodeService.createNode(folder, ContentModel.ASSOC_CONTAINS, QName.createQName("{namespace}bulk" + i), ContentModel.TYPE_FOLDER).getChildRef());
+        }
+        NodeRef hidden = nodeRefs.get(3);
+        permissionService.setInheritParentPermissions(hidden, false);
+        NodeRef writable = nodeRefs.get(4);
+        permissionService.setPermission(writable, "andy", PermissionService.WRITE, true);
+        nodeRefs.add(null);
+        nodeRefs.add(folder);
+
+        runAs("andy");
+        Map<NodeRef, AccessStatus> reads = permissionService.hasReadPermissions(nodeRefs);
+        Map<NodeRef, AccessStatus> writes = permissionService.hasPermissions(nodeRefs, PermissionService.WRITE);
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            assertEquals(permissionService.hasReadPermission(nodeRef), reads.get(nodeRef));
+            assertEquals(permissionService.hasPermission(nodeRef, PermissionService.READ), permissionService.hasPermissions(nodeRefs, PermissionService.READ).get(nodeRef));
+            assertEquals(permissionService.hasPermission(nodeRef, PermissionService.WRITE), writes.get(nodeRef));
+        }
+        assertEquals(AccessStatus.DENIED, reads.get(hidden));
+        assertEquals(AccessStatus.ALLOWED, writes.get(writable));
+        assertEquals(AccessStatus.DENIED, writes.get(folder));
+    }
+
     /* Tests that the current user is contained in the current authorisations set */
     public void testCurrentUserAuthority()
     {
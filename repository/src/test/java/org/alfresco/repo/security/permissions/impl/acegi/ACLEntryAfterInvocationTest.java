@@ -70,6 +70,20 @@ public class ACLEntryAfterInvocationTest extends AbstractPermissionTest
         super();
     }
 
+    public void testBatchSizeIsCappedByCheckTime() throws Exception
+    {
+        // no time limit: always the configured size
+        assertEquals(500, ACLEntryAfterInvocationProvider.nextBatchSize(500, 0, 0, Long.MAX_VALUE));
+        // time limit: start small and grow
+        assertEquals(1, ACLEntryAfterInvocationProvider.nextBatchSize(500, 0, 0, 1000));
+        assertEquals(8, ACLEntryAfterInvocationProvider.nextBatchSize(500, 4, 0, 1000));
+        assertEquals(500, ACLEntryAfterInvocationProvider.nextBatchSize(500, 1000, 10, 1000));
+        // 100 rows took 900ms: only 11 more fit in the 100ms left
+        assertEquals(11, ACLEntryAfterInvocationProvider.nextBatchSize(500, 100, 900, 1000));
+        // out of time: still at least one row, the caller stops on the time limit
+        assertEquals(1, ACLEntryAfterInvocationProvider.nextBatchSize(500, 100, 1000, 1000));
+    }
+
     public void testBasicAllowNullNode() throws Exception
     {
         runAs("andy");
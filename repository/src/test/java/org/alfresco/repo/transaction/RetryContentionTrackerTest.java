@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2016 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.transaction;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.alfresco.repo.transaction.RetryContentionTracker.CallbackStatistics;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+
+/**
+ * Tests for the {@link RetryContentionTracker} class.
+ */
+public class RetryContentionTrackerTest
+{
+    private RetryContentionTracker tracker;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        tracker = new RetryContentionTracker();
+        tracker.setSerializeAfterCollisions(3);
+        tracker.setLockStripes(4);
+        tracker.init();
+    }
+
+    @Test
+    public void countsCollisionsPerKey()
+    {
+        assertEquals(0, tracker.getCollisions("node-1"));
+        assertEquals(1, tracker.recordCollision("node-1"));
+        assertEquals(2, tracker.recordCollision("node-1"));
+        assertEquals(1, tracker.recordCollision("node-2"));
+        assertEquals(2, tracker.getCollisions("node-1"));
+    }
+
+    @Test
+    public void backoffGrowsWithCollisionsWithinLimits()
+    {
+        for (int i = 0; i < 20; i++)
+        {
+            long first = tracker.getBackoffMs(1, 100, 2000);
+            assertTrue("Wait below the minimum: " + first, first >= 100);
+            assertTrue("Wait above the first ceiling: " + first, first <= 100);
+
+            long fourth = tracker.getBackoffMs(4, 100, 2000);
+            assertTrue("Wait not in the upper half of the ceiling: " + fourth, fourth >= 400 && fourth <= 800);
+
+            long many = tracker.getBackoffMs(50, 100, 2000);
+            assertTrue("Wait above the maximum: " + many, many >= 1000 && many <= 2000);
+        }
+    }
+
+    @Test
+    public void serializesOnlyHotKeys() throws Exception
+    {
+        tracker.recordCollision("node-1");
+        tracker.recordCollision("node-1");
+        assertNull("Key is not hot yet", tracker.lockIfContended("node-1", 10));
+
+        tracker.recordCollision("node-1");
+        ReentrantLock lock = tracker.lockIfContended("node-1", 10);
+        assertNotNull(lock);
+        try
+        {
+            assertNull("Nested retries must not take a second lock", tracker.lockIfContended("node-1", 10));
+
+            // Another thread retrying on the key has to wait for the lock
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try
+            {
+                Future<ReentrantLock> otherLock = executor.submit(() -> tracker.lockIfContended("node-1", 10));
+                assertNull(otherLock.get());
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+        finally
+        {
+            tracker.release(lock);
+        }
+        assertFalse(lock.isLocked());
+    }
+
+    @Test
+    public void interruptIsKeptWhenWaitingForTheLock() throws Exception
+    {
+        for (int i = 0; i < 3; i++)
+        {
+            tracker.recordCollision("node-1");
+        }
+        Thread.currentThread().interrupt();
+        try
+        {
+            assertNull("Interrupted retries go ahead without the lock", tracker.lockIfContended("node-1", 1000));
+        }
+        finally
+        {
+            assertTrue("The interrupt must not be swallowed", Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void statisticsAreAvailableThroughJmx() throws Exception
+    {
+        RetryingTransactionCallback<Void> callback = () -> null;
+        tracker.recordExecution(callback);
+        tracker.recordRetry(callback, 25);
+        tracker.recordCollision("node-1");
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("Alfresco:Name=RetryContentionTrackerTest");
+        server.registerMBean(tracker, name);
+        try
+        {
+            assertEquals(1L, server.getAttribute(name, "ContendedKeyCount"));
+            assertEquals(3, server.getAttribute(name, "SerializeAfterCollisions"));
+            TabularData statistics = (TabularData) server.getAttribute(name, "CallbackStatistics");
+            assertEquals(1, statistics.size());
+            CompositeData row = (CompositeData) statistics.values().iterator().next();
+            CompositeData value = (CompositeData) row.get("value");
+            assertEquals(1L, value.get("executions"));
+            assertEquals(1L, value.get("retries"));
+            assertEquals(25L, value.get("wastedMs"));
+        }
+        finally
+        {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void serializationIsOffByDefault()
+    {
+        RetryContentionTracker defaultTracker = new RetryContentionTracker();
+        for (int i = 0; i < 10; i++)
+        {
+            defaultTracker.recordCollision("node-1");
+        }
+        assertNull(defaultTracker.lockIfContended("node-1", 10));
+    }
+
+    @Test
+    public void recordsStatisticsPerCallbackClass()
+    {
+        RetryingTransactionCallback<Void> callback = () -> null;
+        tracker.recordExecution(callback);
+        tracker.recordExecution(callback);
+        tracker.recordRetry(callback, 150);
+        tracker.recordRetry(callback, 50);
+        tracker.recordFailure(callback);
+
+        Map<String, CallbackStatistics> statistics = tracker.getCallbackStatistics();
+        assertEquals(1, statistics.size());
+        String name = statistics.keySet().iterator().next();
+        assertTrue(name, name.startsWith(RetryContentionTrackerTest.class.getName()));
+        assertTrue("Lambda suffix not removed: " + name, name.endsWith("$$Lambda"));
+        CallbackStatistics callbackStatistics = statistics.get(name);
+        assertEquals(2, callbackStatistics.getExecutions());
+        assertEquals(2, callbackStatistics.getRetries());
+        assertEquals(1, callbackStatistics.getFailures());
+        assertEquals(200, callbackStatistics.getWastedMs());
+    }
+}
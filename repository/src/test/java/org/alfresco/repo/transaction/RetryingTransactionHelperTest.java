@@ -279,6 +279,76 @@ public class RetryingTransactionHelperTest extends BaseSpringTest
         assertEquals("Only one increment expected", 1, txnValue);
     }
 
+    /**
+     * Check that retries of failures on a named entity are tracked against it
+     */
+    @Test
+    public void testContendedRetriesAreTracked()
+    {
+        RetryContentionTracker tracker = new RetryContentionTracker();
+        RetryingTransactionHelper trackingTxnHelper = transactionService.getRetryingTransactionHelper();
+        trackingTxnHelper.setContentionTracker(tracker);
+        trackingTxnHelper.setMinRetryWaitMs(1);
+        trackingTxnHelper.setMaxRetryWaitMs(10);
+        RetryingTransactionCallback<Long> callback = new RetryingTransactionCallback<Long>() {
+            private int callCount = 0;
+
+            public Long execute() throws Throwable
+            {
+                callCount++;
+                Long checkValue = incrementCheckValue();
+                if (callCount == 3)
+                {
+                    return checkValue;
+                }
+                throw new KeyedConcurrencyFailureException("Testing", "node-" + workingNodeRef.getId());
+            }
+        };
+        long txnValue = trackingTxnHelper.doInTransaction(callback);
+        assertEquals("Only one increment expected", 1, txnValue);
+
+        assertEquals(2, tracker.getCollisions("node-" + workingNodeRef.getId()));
+        RetryContentionTracker.CallbackStatistics statistics = tracker.getCallbackStatistics().get(callback.getClass().getName());
+        assertNotNull(statistics);
+        assertEquals(1, statistics.getExecutions());
+        assertEquals(2, statistics.getRetries());
+        assertEquals(0, statistics.getFailures());
+    }
+
+    /**
+     * Check that failures on different children of one parent are also tracked against the parent
+     */
+    @Test
+    public void testContendedRetriesAreTrackedAgainstParent()
+    {
+        RetryContentionTracker tracker = new RetryContentionTracker();
+        RetryingTransactionHelper trackingTxnHelper = transactionService.getRetryingTransactionHelper();
+        trackingTxnHelper.setContentionTracker(tracker);
+        trackingTxnHelper.setMinRetryWaitMs(1);
+        trackingTxnHelper.setMaxRetryWaitMs(10);
+        final String parentKey = "node-" + workingNodeRef.getId();
+        RetryingTransactionCallback<Long> callback = new RetryingTransactionCallback<Long>() {
+            private int callCount = 0;
+
+            public Long execute() throws Throwable
+            {
+                callCount++;
+                Long checkValue = incrementCheckValue();
+                if (callCount == 3)
+                {
+                    return checkValue;
+                }
+                throw new KeyedConcurrencyFailureException("Testing", "child-" + callCount, parentKey, null);
+            }
+        };
+        long txnValue = trackingTxnHelper.doInTransaction(callback);
+        assertEquals("Only one increment expected", 1, txnValue);
+
+        assertEquals(1, tracker.getCollisions("child-1"));
+        assertEquals(1, tracker.getCollisions("child-2"));
+        assertEquals(2, tracker.getCollisions(parentKey));
+    }
+
     /**
      * Checks that a non-retrying exception is passed out and that the transaction is rolled back.
      */
@@ -454,6 +454,58 @@ public class VirtualPermissionServiceExtensionTest extends VirtualizationIntegra
 
     }
 
+    @Test
+    public void testHasPermissions() throws Exception
+    {
+        setUpTestPermissions();
+
+        // batch checks must go through the virtual extension like single checks
+
+        final List<NodeRef> nodeRefs = new ArrayList<>();
+        nodeRefs.add(this.virtualFolder1NodeRef);
+        nodeRefs.add(vf1Node2);
+        nodeRefs.add(virtualContent);
+
+        for (final String permission : new String[]{PermissionService.DELETE, PermissionService.CREATE_CHILDREN})
+        {
+            Map<NodeRef, AccessStatus> statuses = AuthenticationUtil.runAs(new RunAsWork<Map<NodeRef, AccessStatus>>() {
+
+                @Override
+                public Map<NodeRef, AccessStatus> doWork() throws Exception
+                {
+                    return permissionService.hasPermissions(nodeRefs,
+                            permission);
+                }
+
+            },
+                    user1);
+
+            for (NodeRef nodeRef : nodeRefs)
+            {
+                assertEquals(hasPermissionAs(nodeRef,
+                        permission,
+                        user1),
+                        statuses.get(nodeRef));
+            }
+        }
+
+        Map<NodeRef, AccessStatus> deletes = AuthenticationUtil.runAs(new RunAsWork<Map<NodeRef, AccessStatus>>() {
+
+            @Override
+            public Map<NodeRef, AccessStatus> doWork() throws Exception
+            {
+                return permissionService.hasPermissions(nodeRefs,
+                        PermissionService.DELETE);
+            }
+
+        },
+                user1);
+        assertEquals(AccessStatus.ALLOWED,
+                deletes.get(this.virtualFolder1NodeRef));
+        assertEquals(AccessStatus.DENIED,
+                deletes.get(vf1Node2));
+    }
+
     @Test
     public void testReadonlyNodeHasPermission() throws Exception
     {